@@ -0,0 +1,624 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.records.reader.impl.csv;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CSV record reader for large, purely numerical CSV files.<br>
+ * Each file is memory mapped and split into line-aligned chunks, which are parsed in parallel (with a bounded number
+ * of chunks prefetched ahead of the consumer) straight into primitive column arrays, without creating
+ * String or Writable objects per field.<br>
+ * {@link #next(int)} returns {@link NDArrayRecordBatch} with one [numExamples, 1] array per column, so
+ * RecordReaderDataSetIterator and RecordReaderMultiDataSetIterator build features and labels from the column
+ * arrays directly.<br>
+ * <br>
+ * Limitations, compared to {@link CSVRecordReader}:<br>
+ * - only local files are supported<br>
+ * - all fields must be numerical; quoted fields are not supported<br>
+ * - blank lines are skipped<br>
+ * - record metadata is not supported
+ */
+@Slf4j
+public class MappedCSVRecordReader extends BaseRecordReader {
+    public final static String NUM_THREADS = NAME_SPACE + ".numthreads";
+    public final static String CHUNK_SIZE = NAME_SPACE + ".chunksize";
+    public final static int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int e = 1; e < POWERS_OF_TEN.length; e++)
+            POWERS_OF_TEN[e] = POWERS_OF_TEN[e - 1] * 10.0;
+    }
+
+    @Getter
+    protected int skipNumLines;
+    @Getter
+    protected char delimiter;
+    @Getter
+    protected int numThreads;
+    @Getter
+    protected int chunkSize;
+    protected Configuration conf;
+
+    protected transient List<Chunk> chunks;
+    protected transient ExecutorService executor;
+    protected transient LinkedList<Future<ParsedChunk>> pending;
+    protected transient int nextChunk;
+    protected transient ParsedChunk current;
+    protected transient int currentRow;
+    protected transient int numColumns = -1;
+
+    public MappedCSVRecordReader() {
+        this(0, CSVRecordReader.DEFAULT_DELIMITER);
+    }
+
+    /**
+     * @param skipNumLines number of lines to skip at the beginning of each file
+     * @param delimiter    field delimiter
+     */
+    public MappedCSVRecordReader(int skipNumLines, char delimiter) {
+        this(skipNumLines, delimiter, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param skipNumLines number of lines to skip at the beginning of each file
+     * @param delimiter    field delimiter
+     * @param numThreads   number of parser threads
+     * @param chunkSize    approximate chunk size in bytes. Chunks are extended to the end of the line
+     */
+    public MappedCSVRecordReader(int skipNumLines, char delimiter, int numThreads, int chunkSize) {
+        Preconditions.checkArgument(skipNumLines >= 0, "Number of lines to skip can't be negative: %s", skipNumLines);
+        Preconditions.checkArgument(numThreads > 0, "Number of threads should be positive: %s", numThreads);
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size should be positive: %s", chunkSize);
+        Preconditions.checkArgument(delimiter < 128 && delimiter != '\n' && delimiter != '\r' && delimiter != '"',
+                        "Delimiter should be single ASCII character other than quote or line break, got '%s'", delimiter);
+
+        this.skipNumLines = skipNumLines;
+        this.delimiter = delimiter;
+        this.numThreads = numThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        super.initialize(split);
+        close();
+
+        chunks = new ArrayList<>();
+        Iterator<URI> iterator = split.locationsIterator();
+        while (iterator.hasNext()) {
+            URI uri = iterator.next();
+            if (uri.getScheme() != null && !"file".equals(uri.getScheme()))
+                throw new UnsupportedOperationException("MappedCSVRecordReader supports local files only, got " + uri);
+
+            splitFile(new File(uri), chunks);
+        }
+
+        numColumns = -1;
+        startExecution();
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.conf = conf;
+        this.skipNumLines = conf.getInt(CSVRecordReader.SKIP_NUM_LINES, skipNumLines);
+        this.delimiter = conf.getChar(CSVRecordReader.DELIMITER, delimiter);
+        this.numThreads = conf.getInt(NUM_THREADS, numThreads);
+        this.chunkSize = conf.getInt(CHUNK_SIZE, chunkSize);
+        initialize(split);
+    }
+
+    /**
+     * This method splits file into line-aligned chunks of approximately {@link #chunkSize} bytes
+     */
+    protected void splitFile(File file, List<Chunk> target) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+
+            // skipped lines are excluded from the first chunk, so they don't depend on chunk size
+            long start = 0;
+            for (int e = 0; e < skipNumLines && start < size; e++)
+                start = nextLine(channel, start, size, probe);
+
+            while (start < size) {
+                // move chunk end right past the next line break
+                long end = Math.min(size, start + chunkSize);
+                if (end < size)
+                    end = nextLine(channel, end, size, probe);
+
+                if (end - start > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Line at offset " + start + " of file " + file
+                                    + " is longer than 2GB");
+
+                target.add(new Chunk(file, start, end));
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * This method returns position right past the next line break at or after given position, or file size if
+     * there's no line break left
+     */
+    private static long nextLine(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0)
+                return size;
+
+            for (int e = 0; e < read; e++) {
+                if (probe.get(e) == '\n')
+                    return pos + e + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    protected void startExecution() {
+        if (executor == null) {
+            final AtomicInteger cnt = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MappedCSVRecordReader-" + cnt.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        pending = new LinkedList<>();
+        nextChunk = 0;
+        current = null;
+        currentRow = 0;
+        fillQueue();
+    }
+
+    protected void fillQueue() {
+        // at most two chunks per thread are kept in memory ahead of the consumer
+        while (pending.size() < numThreads * 2 && nextChunk < chunks.size()) {
+            final Chunk chunk = chunks.get(nextChunk++);
+            pending.add(executor.submit(new Callable<ParsedChunk>() {
+                @Override
+                public ParsedChunk call() throws Exception {
+                    return parseChunk(chunk);
+                }
+            }));
+        }
+    }
+
+    /**
+     * This method makes sure current chunk has rows left, moving on to the next parsed chunk if necessary
+     *
+     * @return false if there's no more rows
+     */
+    protected boolean advance() {
+        Preconditions.checkState(chunks != null, "RecordReader has not been initialized before use");
+        while (current == null || currentRow >= current.numRows) {
+            if (pending.isEmpty())
+                return false;
+
+            Future<ParsedChunk> future = pending.removeFirst();
+            try {
+                current = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+            currentRow = 0;
+            fillQueue();
+
+            if (current.numRows > 0) {
+                if (numColumns < 0)
+                    numColumns = current.columns.length;
+                else if (numColumns != current.columns.length)
+                    throw new IllegalStateException("Number of columns mismatch: expected " + numColumns + ", got "
+                                    + current.columns.length + " in " + current.chunk);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return advance();
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        Preconditions.checkArgument(num > 0, "Number of records should be positive: %s", num);
+        if (!advance())
+            throw new NoSuchElementException("No next element found!");
+
+        // rows may span multiple chunks, so we only know the final size after we've collected them
+        List<double[][]> parts = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        int total = 0;
+        while (total < num && advance()) {
+            int cnt = Math.min(num - total, current.numRows - currentRow);
+            parts.add(current.columns);
+            ranges.add(new int[] {currentRow, cnt});
+            currentRow += cnt;
+            total += cnt;
+        }
+
+        List<INDArray> columns = new ArrayList<>(numColumns);
+        for (int c = 0; c < numColumns; c++) {
+            double[] data;
+            if (parts.size() == 1 && ranges.get(0)[0] == 0 && ranges.get(0)[1] == parts.get(0)[c].length) {
+                data = parts.get(0)[c];
+            } else {
+                data = new double[total];
+                int offset = 0;
+                for (int p = 0; p < parts.size(); p++) {
+                    int[] range = ranges.get(p);
+                    System.arraycopy(parts.get(p)[c], range[0], data, offset, range[1]);
+                    offset += range[1];
+                }
+            }
+            columns.add(Nd4j.create(data, new long[] {total, 1}, Nd4j.defaultFloatingPointType()));
+        }
+
+        NDArrayRecordBatch batch = new NDArrayRecordBatch(columns);
+        invokeListeners(batch);
+        return batch;
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!advance())
+            throw new NoSuchElementException("No next element found!");
+
+        List<Writable> ret = new ArrayList<>(numColumns);
+        for (int c = 0; c < numColumns; c++)
+            ret.add(new DoubleWritable(current.columns[c][currentRow]));
+        currentRow++;
+
+        invokeListeners(ret);
+        return ret;
+    }
+
+    @Override
+    public Record nextRecord() {
+        return new org.datavec.api.records.impl.Record(next(), null);
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void reset() {
+        Preconditions.checkState(chunks != null, "RecordReader has not been initialized before use");
+        for (Future<ParsedChunk> f : pending)
+            f.cancel(true);
+        startExecution();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("MappedCSVRecordReader supports local files only");
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) throws IOException {
+        throw new UnsupportedOperationException("Record metadata is not supported by MappedCSVRecordReader");
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) throws IOException {
+        throw new UnsupportedOperationException("Record metadata is not supported by MappedCSVRecordReader");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pending != null) {
+            for (Future<ParsedChunk> f : pending)
+                f.cancel(true);
+            pending.clear();
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        current = null;
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    /**
+     * This method maps given chunk and parses it into column arrays
+     */
+    protected ParsedChunk parseChunk(Chunk chunk) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(chunk.file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        }
+
+        int limit = buffer.limit();
+        int pos = 0;
+
+        // first pass: number of rows and columns
+        int first = pos;
+        int rows = 0;
+        int cols = -1;
+        while (pos < limit) {
+            int eol = lineEnd(buffer, pos, limit);
+            int end = trimLine(buffer, pos, eol);
+            if (end > pos) {
+                if (cols < 0) {
+                    cols = 1;
+                    for (int i = pos; i < end; i++)
+                        if (buffer.get(i) == delimiter)
+                            cols++;
+                }
+                rows++;
+            }
+            pos = eol + 1;
+        }
+
+        if (rows == 0)
+            return new ParsedChunk(chunk, new double[0][0], 0);
+
+        // second pass: actual parsing
+        double[][] columns = new double[cols][rows];
+        byte delim = (byte) delimiter;
+        int row = 0;
+        int line = 0;
+        pos = first;
+        while (pos < limit) {
+            int eol = lineEnd(buffer, pos, limit);
+            int end = trimLine(buffer, pos, eol);
+            if (end > pos) {
+                int col = 0;
+                int fieldStart = pos;
+                for (int i = pos; i <= end; i++) {
+                    if (i == end || buffer.get(i) == delim) {
+                        if (col >= cols)
+                            throw new IllegalStateException("Number of columns mismatch: expected " + cols
+                                            + " at line " + line + " of " + chunk);
+                        try {
+                            columns[col][row] = parseDouble(buffer, fieldStart, i);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalStateException("Unable to parse numerical value in column " + col
+                                            + " at line " + line + " of " + chunk, e);
+                        }
+                        col++;
+                        fieldStart = i + 1;
+                    }
+                }
+
+                if (col != cols)
+                    throw new IllegalStateException("Number of columns mismatch: expected " + cols + ", got " + col
+                                    + " at line " + line + " of " + chunk);
+                row++;
+            }
+            line++;
+            pos = eol + 1;
+        }
+
+        return new ParsedChunk(chunk, columns, rows);
+    }
+
+    protected static int lineEnd(ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit && buffer.get(pos) != '\n')
+            pos++;
+        return pos;
+    }
+
+    protected static int trimLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+        return end;
+    }
+
+    /**
+     * This method parses ASCII representation of double value from buffer range [start, end).<br>
+     * Plain decimal values with up to 18 significant digits are parsed without any allocations,
+     * everything else falls back to {@link Double#parseDouble(String)}
+     */
+    public static double parseDouble(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ')
+            start++;
+        while (end > start && buffer.get(end - 1) == ' ')
+            end--;
+
+        if (start == end)
+            throw new NumberFormatException("Empty field");
+
+        int i = start;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (i < end && (b = buffer.get(i)) >= '0' && b <= '9') {
+            if (mantissa != 0 || b != '0') {
+                if (++digits > 18)
+                    return parseSlow(buffer, start, end);
+                mantissa = mantissa * 10 + (b - '0');
+            }
+            any = true;
+            i++;
+        }
+
+        if (i < end && buffer.get(i) == '.') {
+            i++;
+            while (i < end && (b = buffer.get(i)) >= '0' && b <= '9') {
+                if (mantissa != 0 || b != '0') {
+                    if (++digits > 18)
+                        return parseSlow(buffer, start, end);
+                    mantissa = mantissa * 10 + (b - '0');
+                }
+                exponent--;
+                any = true;
+                i++;
+            }
+        }
+
+        if (!any)
+            return parseSlow(buffer, start, end);
+
+        if (i < end && ((b = buffer.get(i)) == 'e' || b == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < end && ((b = buffer.get(i)) == '-' || b == '+')) {
+                negativeExp = b == '-';
+                i++;
+            }
+
+            int exp = 0;
+            boolean anyExp = false;
+            while (i < end && (b = buffer.get(i)) >= '0' && b <= '9') {
+                if (exp > 10000)
+                    return parseSlow(buffer, start, end);
+                exp = exp * 10 + (b - '0');
+                anyExp = true;
+                i++;
+            }
+
+            if (!anyExp)
+                return parseSlow(buffer, start, end);
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        if (i != end)
+            return parseSlow(buffer, start, end);
+
+        if (mantissa == 0)
+            return negative ? -0.0 : 0.0;
+
+        // both mantissa and power of ten are exact doubles here, so single operation gives correctly rounded result
+        if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double d = mantissa;
+            d = exponent < 0 ? d / POWERS_OF_TEN[-exponent] : d * POWERS_OF_TEN[exponent];
+            return negative ? -d : d;
+        }
+
+        return parseSlow(buffer, start, end);
+    }
+
+    protected static double parseSlow(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int e = 0; e < bytes.length; e++)
+            bytes[e] = buffer.get(start + e);
+
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    protected static class Chunk {
+        protected final File file;
+        protected final long start;
+        protected final long end;
+
+        protected Chunk(File file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return "chunk [" + start + ", " + end + ") of file " + file;
+        }
+    }
+
+    protected static class ParsedChunk {
+        protected final Chunk chunk;
+        // column-major: columns[column][row]
+        protected final double[][] columns;
+        protected final int numRows;
+
+        protected ParsedChunk(Chunk chunk, double[][] columns, int numRows) {
+            this.chunk = chunk;
+            this.columns = columns;
+            this.numRows = numRows;
+        }
+    }
+}
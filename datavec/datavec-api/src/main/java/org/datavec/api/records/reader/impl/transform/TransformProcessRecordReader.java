@@ -26,6 +26,8 @@ import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.transform.TransformProcess;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
 
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -40,19 +42,42 @@ import java.util.NoSuchElementException;
  * with a {@link TransformProcess} and allows every {@link Record}
  * that is returned by the {@link RecordReader}
  * to have a transform process applied before being returned.
+ * <br>
+ * In columnar mode, records are read from the underlying reader in batches and the transform process is executed
+ * via {@link TransformProcess#executeColumnar(ColumnarRecordBatch)}. {@link #next(int)} then returns an
+ * {@link NDArrayRecordBatch} with one [numExamples, 1] array per column if all output columns are numerical, so
+ * RecordReaderDataSetIterator builds features/labels without per-record Writables.
  *
  * @author Adam Gibson
  */
 public class TransformProcessRecordReader implements RecordReader {
+    public static final int DEFAULT_COLUMNAR_BATCH_SIZE = 1024;
+
     protected RecordReader recordReader;
     protected TransformProcess transformProcess;
+    protected boolean columnar;
 
     //Cached/prefetched values, in case of filtering
     protected Record next;
 
+    //Cached/prefetched values, columnar mode
+    protected ColumnarRecordBatch nextBatch;
+    protected int nextBatchPosition;
+
     public TransformProcessRecordReader(RecordReader recordReader, TransformProcess transformProcess){
+        this(recordReader, transformProcess, false);
+    }
+
+    /**
+     * @param recordReader     underlying record reader
+     * @param transformProcess transform process to apply
+     * @param columnar         if true, transform process is executed over batches of records in columnar form.
+     *                         Note that record metadata is not available in columnar mode
+     */
+    public TransformProcessRecordReader(RecordReader recordReader, TransformProcess transformProcess, boolean columnar){
         this.recordReader = recordReader;
         this.transformProcess = transformProcess;
+        this.columnar = columnar;
     }
 
     /**
@@ -87,6 +112,9 @@ public class TransformProcessRecordReader implements RecordReader {
 
     @Override
     public List<List<Writable>> next(int num) {
+        if(columnar)
+            return nextColumnar(num);
+
         if(!hasNext())
             throw new NoSuchElementException("No next element");
 
@@ -107,6 +135,9 @@ public class TransformProcessRecordReader implements RecordReader {
         if(!hasNext()){ //Also triggers prefetch
             throw new NoSuchElementException("No next element");
         }
+        if(columnar)
+            return nextBatch.get(nextBatchPosition++);
+
         List<Writable> out = next.getRecord();
         next = null;
         return out;
@@ -119,6 +150,9 @@ public class TransformProcessRecordReader implements RecordReader {
      */
     @Override
     public boolean hasNext() {
+        if(columnar)
+            return prefetchColumnar(DEFAULT_COLUMNAR_BATCH_SIZE);
+
         if(next != null){
             return true;
         }
@@ -139,6 +173,54 @@ public class TransformProcessRecordReader implements RecordReader {
         return next != null;
     }
 
+    protected List<List<Writable>> nextColumnar(int num) {
+        if(!prefetchColumnar(num))
+            throw new NoSuchElementException("No next element");
+
+        List<ColumnarRecordBatch> parts = new ArrayList<>();
+        int count = 0;
+        while(count < num && prefetchColumnar(num - count)){
+            int n = Math.min(num - count, nextBatch.size() - nextBatchPosition);
+            parts.add(nextBatch.slice(nextBatchPosition, n));
+            nextBatchPosition += n;
+            count += n;
+        }
+
+        ColumnarRecordBatch out = ColumnarRecordBatch.concat(parts);
+        return out.isNumerical() ? out.toNDArrayRecordBatch() : out;
+    }
+
+    /**
+     * Make sure there's at least one transformed record buffered, reading up to num records from the underlying
+     * reader at once if necessary
+     */
+    protected boolean prefetchColumnar(int num) {
+        //Keep reading until we find a batch that isn't completely filtered out - or we run out of data
+        while(nextBatch == null || nextBatchPosition >= nextBatch.size()){
+            if(!recordReader.hasNext())
+                return false;
+
+            List<List<Writable>> raw;
+            if(recordReader.batchesSupported()){
+                raw = recordReader.next(num);
+            } else {
+                raw = new ArrayList<>(num);
+                while(raw.size() < num && recordReader.hasNext())
+                    raw.add(recordReader.next());
+            }
+
+            ColumnarRecordBatch in;
+            if(raw instanceof NDArrayRecordBatch){
+                in = ColumnarRecordBatch.fromArrays(transformProcess.getInitialSchema(), ((NDArrayRecordBatch) raw).getArrays());
+            } else {
+                in = ColumnarRecordBatch.fromRecords(transformProcess.getInitialSchema(), raw);
+            }
+            nextBatch = transformProcess.executeColumnar(in);
+            nextBatchPosition = 0;
+        }
+        return true;
+    }
+
     /**
      * List of label strings
      *
@@ -157,6 +239,7 @@ public class TransformProcessRecordReader implements RecordReader {
     @Override
     public void reset() {
         next = null;
+        nextBatch = null;
         recordReader.reset();
     }
 
@@ -190,6 +273,9 @@ public class TransformProcessRecordReader implements RecordReader {
         if(!hasNext()){ //Also triggers prefetch
             throw new NoSuchElementException("No next element");
         }
+        if(columnar)
+            return new org.datavec.api.records.impl.Record(next(), null);
+
         Record toRet = next;
         next = null;
         return toRet;
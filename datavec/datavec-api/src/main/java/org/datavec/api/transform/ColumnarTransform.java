@@ -0,0 +1,42 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform;
+
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
+
+/**
+ * Transform that can be executed over a {@link ColumnarRecordBatch}, without materializing individual records.<br>
+ * Used by {@link TransformProcess#executeColumnar(ColumnarRecordBatch)}: transforms that don't implement this
+ * interface (or return null) are executed record by record instead.
+ */
+public interface ColumnarTransform {
+
+    /**
+     * Execute the transform over the batch.
+     * Implementations should never modify column arrays of the input batch in place.
+     *
+     * @param batch        input batch, with the input schema of this transform
+     * @param outputSchema output schema of this transform
+     * @return transformed batch, or null if this batch can't be transformed in columnar form (for example,
+     * if the values of the input column are not numerical)
+     */
+    ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema);
+}
@@ -64,6 +64,7 @@ import org.datavec.api.transform.transform.string.*;
 import org.datavec.api.transform.transform.time.StringToTimeTransform;
 import org.datavec.api.transform.transform.time.TimeMathOpTransform;
 import org.datavec.api.writable.*;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.datavec.api.writable.comparator.WritableComparator;
 import org.joda.time.DateTimeZone;
 import org.nd4j.common.primitives.Pair;
@@ -246,6 +247,72 @@ public class TransformProcess implements Serializable {
         return currValues;
     }
 
+    /**
+     * Execute the full sequence of transformations for a batch of examples in columnar form.<br>
+     * Transforms implementing {@link ColumnarTransform} operate directly on the primitive column arrays; all other
+     * transforms (and filters) fall back to record by record execution for that step only.
+     * Examples removed by filters are not present in the output batch, so it may be smaller than the input batch, or
+     * even empty.<br>
+     * <b>NOTE:</b> As with {@link #execute(List)}, sequence operations are not supported
+     *
+     * @param input input batch. Schema of the batch should match the initial schema of this TransformProcess
+     * @return transformed batch, with the final schema of this TransformProcess
+     */
+    public ColumnarRecordBatch executeColumnar(@NonNull ColumnarRecordBatch input) {
+        if (input.numColumns() != initialSchema.numColumns())
+            throw new IllegalStateException("Number of columns in the batch (" + input.numColumns()
+                    + ") does not match initial schema: " + initialSchema.getColumnNames());
+
+        ColumnarRecordBatch curr = input;
+        if (!initialSchema.equals(input.getSchema())) {
+            Object[] columns = new Object[input.numColumns()];
+            for (int c = 0; c < columns.length; c++)
+                columns[c] = input.getColumn(c);
+            curr = input.withColumns(initialSchema, columns);
+        }
+        Schema currSchema = initialSchema;
+
+        for (DataAction d : actionList) {
+            if (d.getTransform() != null) {
+                Transform t = d.getTransform();
+                Schema outSchema = t.transform(currSchema);
+
+                ColumnarRecordBatch out = null;
+                if (t instanceof ColumnarTransform)
+                    out = ((ColumnarTransform) t).mapColumnar(curr, outSchema);
+
+                if (out == null) {
+                    List<List<Writable>> records = new ArrayList<>(curr.size());
+                    for (List<Writable> record : curr)
+                        records.add(t.map(record));
+                    out = ColumnarRecordBatch.fromRecords(outSchema, records);
+                }
+
+                curr = out;
+                currSchema = outSchema;
+            } else if (d.getFilter() != null) {
+                Filter f = d.getFilter();
+                boolean[] keep = new boolean[curr.size()];
+                for (int i = 0; i < keep.length; i++)
+                    keep[i] = !f.removeExample(curr.get(i));
+                curr = curr.select(keep);
+            } else if (d.getConvertToSequence() != null) {
+                throw new RuntimeException(
+                        "Cannot execute examples individually: TransformProcess contains a ConvertToSequence operation");
+            } else if (d.getConvertFromSequence() != null) {
+                throw new RuntimeException(
+                        "Unexpected operation: TransformProcess contains a ConvertFromSequence operation");
+            } else if (d.getSequenceSplit() != null) {
+                throw new RuntimeException(
+                        "Cannot execute examples individually: TransformProcess contains a SequenceSplit operation");
+            } else {
+                throw new RuntimeException("Unknown action: " + d);
+            }
+        }
+
+        return curr;
+    }
+
     /**
      *
      * @param input
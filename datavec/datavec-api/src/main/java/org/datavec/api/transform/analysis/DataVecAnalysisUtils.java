@@ -21,7 +21,11 @@ package org.datavec.api.transform.analysis;
 import org.datavec.api.transform.ColumnType;
 import org.datavec.api.transform.analysis.columns.*;
 import org.datavec.api.transform.analysis.counter.*;
+import org.datavec.api.transform.analysis.histogram.CategoricalHistogramCounter;
 import org.datavec.api.transform.analysis.histogram.HistogramCounter;
+import org.datavec.api.transform.analysis.histogram.StreamingHistogramCounter;
+import org.datavec.api.transform.metadata.CategoricalMetaData;
+import org.datavec.api.transform.schema.Schema;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -62,6 +66,34 @@ public class DataVecAnalysisUtils {
     }
 
 
+    /**
+     * Create histogram counters for single pass analysis: unlike the counters used for the second pass of a two pass
+     * analysis, these don't require the min/max values of each column to be known in advance, and can be merged
+     *
+     * @param schema Schema of the data
+     * @param nBins  Number of histogram bins
+     * @return Histogram counter for each column (null for Bytes columns)
+     */
+    public static List<HistogramCounter> createStreamingHistogramCounters(Schema schema, int nBins){
+        List<HistogramCounter> out = new ArrayList<>();
+        List<ColumnType> columnTypes = schema.getColumnTypes();
+        for (int i = 0; i < columnTypes.size(); i++) {
+            ColumnType ct = columnTypes.get(i);
+            switch (ct) {
+                case Categorical:
+                    CategoricalMetaData meta = (CategoricalMetaData) schema.getMetaData(i);
+                    out.add(new CategoricalHistogramCounter(meta.getStateNames()));
+                    break;
+                case Bytes:
+                    out.add(null);
+                    break;
+                default:
+                    out.add(new StreamingHistogramCounter(ct, nBins));
+            }
+        }
+        return out;
+    }
+
     public static List<ColumnAnalysis> convertCounters(List<AnalysisCounter> counters, double[][] minsMaxes, List<ColumnType> columnTypes){
         int nColumns = columnTypes.size();
 
@@ -76,7 +108,8 @@ public class DataVecAnalysisUtils {
                     list.add(new StringAnalysis.Builder().countTotal(sac.getCountTotal())
                             .minLength(sac.getMinLengthSeen()).maxLength(sac.getMaxLengthSeen())
                             .meanLength(sac.getMean()).sampleStdevLength(sac.getSampleStdev())
-                            .sampleVarianceLength(sac.getSampleVariance()).build());
+                            .sampleVarianceLength(sac.getSampleVariance())
+                            .countDistinctEstimate(sac.getDistinctCounter().getEstimate()).build());
                     minsMaxes[i][0] = sac.getMinLengthSeen();
                     minsMaxes[i][1] = sac.getMaxLengthSeen();
                     break;
@@ -87,7 +120,8 @@ public class DataVecAnalysisUtils {
                             .sampleVariance(iac.getSampleVariance()).countZero(iac.getCountZero())
                             .countNegative(iac.getCountNegative()).countPositive(iac.getCountPositive())
                             .countMinValue(iac.getCountMinValue()).countMaxValue(iac.getCountMaxValue())
-                            .countTotal(iac.getCountTotal()).digest(iac.getDigest()).build();
+                            .countTotal(iac.getCountTotal()).digest(iac.getDigest())
+                            .countDistinctEstimate(iac.getDistinctCounter().getEstimate()).build();
                     list.add(ia);
 
                     minsMaxes[i][0] = iac.getMinValueSeen();
@@ -102,7 +136,8 @@ public class DataVecAnalysisUtils {
                             .sampleVariance(lac.getSampleVariance()).countZero(lac.getCountZero())
                             .countNegative(lac.getCountNegative()).countPositive(lac.getCountPositive())
                             .countMinValue(lac.getCountMinValue()).countMaxValue(lac.getCountMaxValue())
-                            .countTotal(lac.getCountTotal()).digest(lac.getDigest()).build();
+                            .countTotal(lac.getCountTotal()).digest(lac.getDigest())
+                            .countDistinctEstimate(lac.getDistinctCounter().getEstimate()).build();
 
                     list.add(la);
 
@@ -118,7 +153,8 @@ public class DataVecAnalysisUtils {
                             .sampleVariance(dac.getSampleVariance()).countZero(dac.getCountZero())
                             .countNegative(dac.getCountNegative()).countPositive(dac.getCountPositive())
                             .countMinValue(dac.getCountMinValue()).countMaxValue(dac.getCountMaxValue())
-                            .countNaN(dac.getCountNaN()).digest(dac.getDigest()).countTotal(dac.getCountTotal()).build();
+                            .countNaN(dac.getCountNaN()).digest(dac.getDigest()).countTotal(dac.getCountTotal())
+                            .countDistinctEstimate(dac.getDistinctCounter().getEstimate()).build();
                     list.add(da);
 
                     minsMaxes[i][0] = dac.getMinValueSeen();
@@ -139,7 +175,8 @@ public class DataVecAnalysisUtils {
                             .sampleVariance(lac2.getSampleVariance()).countZero(lac2.getCountZero())
                             .countNegative(lac2.getCountNegative()).countPositive(lac2.getCountPositive())
                             .countMinValue(lac2.getCountMinValue()).countMaxValue(lac2.getCountMaxValue())
-                            .countTotal(lac2.getCountTotal()).digest(lac2.getDigest()).build();
+                            .countTotal(lac2.getCountTotal()).digest(lac2.getDigest())
+                            .countDistinctEstimate(lac2.getDistinctCounter().getEstimate()).build();
 
                     list.add(la2);
 
@@ -167,7 +204,8 @@ public class DataVecAnalysisUtils {
                             .sampleVariance(iac2.getSampleVariance()).countZero(iac2.getCountZero())
                             .countNegative(iac2.getCountNegative()).countPositive(iac2.getCountPositive())
                             .countMinValue(iac2.getCountMinValue()).countMaxValue(iac2.getCountMaxValue())
-                            .countTotal(iac2.getCountTotal()).digest(iac2.getDigest()).build();
+                            .countTotal(iac2.getCountTotal()).digest(iac2.getDigest())
+                            .countDistinctEstimate(iac2.getDistinctCounter().getEstimate()).build();
                     list.add(ia2);
 
                     minsMaxes[i][0] = iac2.getMinValueSeen();
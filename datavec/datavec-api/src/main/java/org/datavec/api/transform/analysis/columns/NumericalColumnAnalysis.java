@@ -49,6 +49,11 @@ public abstract class NumericalColumnAnalysis implements ColumnAnalysis {
     @JsonSerialize(using = TDigestSerializer.class)
     @JsonDeserialize(using = TDigestDeserializer.class)
     protected TDigest digest;
+    /**
+     * HyperLogLog estimate of the number of distinct values. Null if not available (for example, for analyses
+     * serialized before this field was added)
+     */
+    protected Long countDistinctEstimate;
 
     protected NumericalColumnAnalysis(Builder builder) {
         this.mean = builder.mean;
@@ -63,6 +68,7 @@ public abstract class NumericalColumnAnalysis implements ColumnAnalysis {
         this.histogramBuckets = builder.histogramBuckets;
         this.histogramBucketCounts = builder.histogramBucketCounts;
         this.digest = builder.digest;
+        this.countDistinctEstimate = builder.countDistinctEstimate;
     }
 
     protected NumericalColumnAnalysis() {
@@ -85,7 +91,8 @@ public abstract class NumericalColumnAnalysis implements ColumnAnalysis {
         return "mean=" + mean + ",sampleStDev=" + sampleStdev + ",sampleVariance=" + sampleVariance + ",countZero="
                         + countZero + ",countNegative=" + countNegative + ",countPositive=" + countPositive
                         + ",countMinValue=" + countMinValue + ",countMaxValue=" + countMaxValue + ",count="
-                        + countTotal + q;
+                        + countTotal + (countDistinctEstimate == null ? "" : ",countDistinctEstimate=" + countDistinctEstimate)
+                        + q;
     }
 
     public abstract double getMinDouble();
@@ -106,6 +113,7 @@ public abstract class NumericalColumnAnalysis implements ColumnAnalysis {
         protected double[] histogramBuckets;
         protected long[] histogramBucketCounts;
         protected TDigest digest;
+        protected Long countDistinctEstimate;
 
         public T mean(double mean) {
             this.mean = mean;
@@ -167,6 +175,11 @@ public abstract class NumericalColumnAnalysis implements ColumnAnalysis {
             return (T) this;
         }
 
+        public T countDistinctEstimate(Long countDistinctEstimate) {
+            this.countDistinctEstimate = countDistinctEstimate;
+            return (T) this;
+        }
+
     }
 
 }
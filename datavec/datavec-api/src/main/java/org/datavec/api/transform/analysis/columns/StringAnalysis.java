@@ -40,6 +40,11 @@ public class StringAnalysis implements ColumnAnalysis {
     private long countTotal;
     private double[] histogramBuckets;
     private long[] histogramBucketCounts;
+    /**
+     * HyperLogLog estimate of the number of distinct values. Null if not available (for example, for analyses
+     * serialized before this field was added)
+     */
+    private Long countDistinctEstimate;
 
     private StringAnalysis(Builder builder) {
         this.minLength = builder.minLength;
@@ -50,13 +55,15 @@ public class StringAnalysis implements ColumnAnalysis {
         this.countTotal = builder.countTotal;
         this.histogramBuckets = builder.histogramBuckets;
         this.histogramBucketCounts = builder.histogramBucketCounts;
+        this.countDistinctEstimate = builder.countDistinctEstimate;
     }
 
     @Override
     public String toString() {
         return "StringAnalysis(minLen=" + minLength + ",maxLen=" + maxLength + ",meanLen=" + meanLength
                         + ",sampleStDevLen=" + sampleStdevLength + ",sampleVarianceLen=" + sampleVarianceLength
-                        + ",count=" + countTotal + ")";
+                        + ",count=" + countTotal
+                        + (countDistinctEstimate == null ? "" : ",countDistinctEstimate=" + countDistinctEstimate) + ")";
     }
 
     @Override
@@ -73,6 +80,7 @@ public class StringAnalysis implements ColumnAnalysis {
         private long countTotal;
         private double[] histogramBuckets;
         private long[] histogramBucketCounts;
+        private Long countDistinctEstimate;
 
         public Builder minLength(int minLength) {
             this.minLength = minLength;
@@ -114,6 +122,11 @@ public class StringAnalysis implements ColumnAnalysis {
             return this;
         }
 
+        public Builder countDistinctEstimate(Long countDistinctEstimate) {
+            this.countDistinctEstimate = countDistinctEstimate;
+            return this;
+        }
+
         public StringAnalysis build() {
             return new StringAnalysis(this);
         }
@@ -50,6 +50,11 @@ public class DoubleAnalysisCounter implements AnalysisCounter<DoubleAnalysisCoun
    */
   private TDigest digest = TDigest.createDigest(100);
 
+    /**
+     * Mergeable sketch for the number of distinct values
+     */
+    private HyperLogLogCounter distinctCounter = new HyperLogLogCounter();
+
 
     public DoubleAnalysisCounter() {}
 
@@ -110,6 +115,7 @@ public class DoubleAnalysisCounter implements AnalysisCounter<DoubleAnalysisCoun
         }
 
         digest.add(value);
+        distinctCounter.add(value);
         counter.add(value);
 
         return this;
@@ -141,9 +147,10 @@ public class DoubleAnalysisCounter implements AnalysisCounter<DoubleAnalysisCoun
         }
 
         digest.add(other.getDigest());
+        distinctCounter.merge(other.getDistinctCounter());
 
         return new DoubleAnalysisCounter(counter.merge(other.getCounter()), countZero + other.getCountZero(),
                         newCountMinValue, newCountMaxValue, countPositive + other.getCountPositive(),
-                        countNegative + other.getCountNegative(), countNaN + other.getCountNaN(), digest);
+                        countNegative + other.getCountNegative(), countNaN + other.getCountNaN(), digest, distinctCounter);
     }
 }
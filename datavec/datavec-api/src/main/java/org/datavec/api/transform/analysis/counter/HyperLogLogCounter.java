@@ -0,0 +1,157 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.api.transform.analysis.counter;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values of a column in a single pass.<br>
+ * Counters built on different partitions of the data can be merged, and the merged estimate is the same as if all the
+ * values had been added to a single counter. With the default precision (2^12 registers, 4KB per counter) the
+ * relative standard error of the estimate is about 1.6%
+ */
+public class HyperLogLogCounter implements Serializable {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLogCounter() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision Number of bits of the hash used to select a register: 2^precision registers are used, and the
+     *                  relative standard error of the estimate is about 1.04 / sqrt(2^precision). Must be in [4, 18]
+     */
+    public HyperLogLogCounter(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18 inclusive, got " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(long value) {
+        addHash(mix64(value));
+    }
+
+    public void add(double value) {
+        //-0.0 and 0.0 are the same value; doubleToLongBits already maps all NaNs to the same bits
+        add(Double.doubleToLongBits(value == 0.0 ? 0.0 : value));
+    }
+
+    public void add(String value) {
+        //64 bit FNV-1a over the UTF-8 bytes, then mixed - String.hashCode() collides too often for large columns
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        addHash(mix64(h));
+    }
+
+    private void addHash(long hash) {
+        int idx = (int) (hash >>> (64 - precision));
+        //Position of the first 1 bit in the remaining bits; the precision low bits shifted in are set, so the rank
+        //is at most 64 - precision + 1
+        long w = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[idx]) {
+            registers[idx] = rank;
+        }
+    }
+
+    /**
+     * Merge the other counter into this counter
+     *
+     * @param o Counter to merge. Must have the same precision as this counter
+     * @return This counter, after merging
+     */
+    public HyperLogLogCounter merge(HyperLogLogCounter o) {
+        if (o == null || o == this) {
+            return this;
+        }
+        if (o.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog counters with different precision: "
+                    + precision + " vs. " + o.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (o.registers[i] > registers[i]) {
+                registers[i] = o.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return Estimated number of distinct values added to this counter (and the counters merged into it)
+     */
+    public long getEstimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+
+        double alpha;
+        switch (m) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1.0 + 1.079 / m);
+        }
+
+        double estimate = alpha * m * (double) m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            //Small range correction: linear counting
+            estimate = m * Math.log(m / (double) zeros);
+        }
+        //No large range correction needed with 64 bit hashes
+        return Math.round(estimate);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLogCounter(precision=" + precision + ",estimate=" + getEstimate() + ")";
+    }
+}
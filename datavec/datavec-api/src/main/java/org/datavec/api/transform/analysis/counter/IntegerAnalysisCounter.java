@@ -49,6 +49,11 @@ public class IntegerAnalysisCounter implements AnalysisCounter<IntegerAnalysisCo
      */
     private TDigest digest = TDigest.createDigest(100);
 
+    /**
+     * Mergeable sketch for the number of distinct values
+     */
+    private HyperLogLogCounter distinctCounter = new HyperLogLogCounter();
+
     public IntegerAnalysisCounter() {}
 
     public int getMinValueSeen() {
@@ -105,6 +110,7 @@ public class IntegerAnalysisCounter implements AnalysisCounter<IntegerAnalysisCo
         }
 
         digest.add((double) value);
+        distinctCounter.add(value);
         counter.add((double) value);
 
         return this;
@@ -136,9 +142,10 @@ public class IntegerAnalysisCounter implements AnalysisCounter<IntegerAnalysisCo
         }
 
         digest.add(other.getDigest());
+        distinctCounter.merge(other.getDistinctCounter());
 
         return new IntegerAnalysisCounter(counter.merge(other.getCounter()), countZero + other.getCountZero(),
                         newCountMinValue, newCountMaxValue, countPositive + other.getCountPositive(),
-                        countNegative + other.getCountNegative(), digest);
+                        countNegative + other.getCountNegative(), digest, distinctCounter);
     }
 }
@@ -49,6 +49,11 @@ public class LongAnalysisCounter implements AnalysisCounter<LongAnalysisCounter>
      */
     private TDigest digest = TDigest.createDigest(100);
 
+    /**
+     * Mergeable sketch for the number of distinct values
+     */
+    private HyperLogLogCounter distinctCounter = new HyperLogLogCounter();
+
     public LongAnalysisCounter() {}
 
     public long getMinValueSeen() {
@@ -105,6 +110,7 @@ public class LongAnalysisCounter implements AnalysisCounter<LongAnalysisCounter>
         }
 
         digest.add((double) value);
+        distinctCounter.add(value);
         counter.add((double) value);
 
         return this;
@@ -136,9 +142,10 @@ public class LongAnalysisCounter implements AnalysisCounter<LongAnalysisCounter>
         }
 
         digest.add(other.getDigest());
+        distinctCounter.merge(other.getDistinctCounter());
 
         return new LongAnalysisCounter(counter.merge(other.getCounter()), countZero + other.getCountZero(),
                         newCountMinValue, newCountMaxValue, countPositive + other.getCountPositive(),
-                        countNegative + other.getCountNegative(), digest);
+                        countNegative + other.getCountNegative(), digest, distinctCounter);
     }
 }
@@ -37,6 +37,11 @@ public class StringAnalysisCounter implements AnalysisCounter<StringAnalysisCoun
     private long countMinLength = 0;
     private long countMaxLength = 0;
 
+    /**
+     * Mergeable sketch for the number of distinct values
+     */
+    private HyperLogLogCounter distinctCounter = new HyperLogLogCounter();
+
     public StringAnalysisCounter() {}
 
     public int getMinLengthSeen() {
@@ -69,7 +74,8 @@ public class StringAnalysisCounter implements AnalysisCounter<StringAnalysisCoun
 
     @Override
     public StringAnalysisCounter add(Writable writable) {
-        int length = writable.toString().length();
+        String str = writable.toString();
+        int length = str.length();
 
         if (length == 0)
             countZeroLength++;
@@ -87,6 +93,7 @@ public class StringAnalysisCounter implements AnalysisCounter<StringAnalysisCoun
         }
 
         counter.add((double) length);
+        distinctCounter.add(str);
 
         return this;
     }
@@ -116,7 +123,10 @@ public class StringAnalysisCounter implements AnalysisCounter<StringAnalysisCoun
             newCountMaxLength = countMaxLength;
         }
 
+        distinctCounter.merge(other.getDistinctCounter());
+
         return new StringAnalysisCounter(counter.merge(other.getCounter()),
-                        countZeroLength + other.getCountZeroLength(), newCountMinLength, newCountMaxLength);
+                        countZeroLength + other.getCountZeroLength(), newCountMinLength, newCountMaxLength,
+                        distinctCounter);
     }
 }
@@ -0,0 +1,248 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.api.transform.analysis.histogram;
+
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * A single pass, mergeable counter for building histograms on numerical columns (and String length, NDArray values).
+ * Unlike {@link DoubleHistogramCounter}, the minimum and maximum values do not have to be known in advance: values are
+ * counted in a fixed number of fine-grained bins, aligned to a grid with a power of 2 bin width. The bin width is
+ * doubled (merging adjacent bins) whenever the observed range no longer fits. Because all counters use the same grid,
+ * counters built on different partitions of the data can be merged.<br>
+ * The final histogram bins span the exact minimum and maximum values seen. Each fine-grained bin is assigned to the
+ * histogram bin containing its lower edge, hence bucket counts are exact for integer values (when the range is
+ * sufficiently small) and are otherwise accurate to within one fine-grained bin width, which is less than
+ * 1/1000th of the range of values.
+ */
+public class StreamingHistogramCounter implements HistogramCounter {
+
+    private static final int MIN_CAPACITY = 2048;
+    private static final int FINE_BINS_PER_BIN = 64;
+    private static final double MAX_INDEX = 0x1p62;
+
+    private final ColumnType columnType;
+    private final int nBins;
+    private final int capacity;
+
+    private long[] counts;
+    private int exponent;           //Width of the fine-grained bins: 2^exponent
+    private long offset;            //Grid index of counts[0]
+    private long minIndex;
+    private long maxIndex;
+    private long total;
+    private double minValue = Double.POSITIVE_INFINITY;
+    private double maxValue = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param columnType Type of the column. Used to determine the values to count: String length for String columns,
+     *                   all values for NDArray columns, and the value itself otherwise
+     * @param nBins      Number of histogram bins
+     */
+    public StreamingHistogramCounter(ColumnType columnType, int nBins) {
+        if (nBins <= 0)
+            throw new IllegalArgumentException("Number of bins must be positive, got " + nBins);
+        this.columnType = columnType;
+        this.nBins = nBins;
+        this.capacity = Math.max(MIN_CAPACITY, FINE_BINS_PER_BIN * nBins);
+        this.counts = new long[capacity];
+    }
+
+    @Override
+    public HistogramCounter add(Writable w) {
+        if (columnType == ColumnType.String) {
+            add(w.toString().length());
+        } else if (w instanceof NDArrayWritable) {
+            INDArray arr = ((NDArrayWritable) w).get();
+            if (arr != null) {
+                long length = arr.length();
+                for (long i = 0; i < length; i++) {
+                    add(arr.getDouble(i));
+                }
+            }
+        } else {
+            add(w.toDouble());
+        }
+        return this;
+    }
+
+    /**
+     * Add a single value to the histogram. NaN and infinite values are ignored
+     */
+    public void add(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            return;
+
+        if (total == 0) {
+            //Start with 2^20 fine-grained bins per power of 2 of the first value. Bins are only ever made wider
+            exponent = d == 0 ? -40 : Math.getExponent(d) - 20;
+        }
+        minValue = Math.min(minValue, d);
+        maxValue = Math.max(maxValue, d);
+
+        double scaled = Math.scalb(d, -exponent);
+        while (Math.abs(scaled) >= MAX_INDEX) {
+            coarsen();
+            scaled = Math.scalb(d, -exponent);
+        }
+        addToBin((long) Math.floor(scaled), 1);
+    }
+
+    private void addToBin(long index, long count) {
+        if (total == 0) {
+            offset = index - capacity / 2;
+            minIndex = index;
+            maxIndex = index;
+        } else {
+            long lo = Math.min(minIndex, index);
+            long hi = Math.max(maxIndex, index);
+            while (hi - lo >= capacity) {
+                coarsen();
+                index >>= 1;
+                lo = Math.min(minIndex, index);
+                hi = Math.max(maxIndex, index);
+            }
+            if (index < offset || index >= offset + capacity) {
+                relocate(lo, hi, exponent);
+            }
+            minIndex = lo;
+            maxIndex = hi;
+        }
+
+        counts[(int) (index - offset)] += count;
+        total += count;
+    }
+
+    /**
+     * Double the width of the fine-grained bins, merging pairs of adjacent bins
+     */
+    private void coarsen() {
+        if (total == 0) {
+            exponent++;
+            return;
+        }
+        relocate(minIndex >> 1, maxIndex >> 1, exponent + 1);
+    }
+
+    /**
+     * Move the counts to a new array centered on [lo, hi] (grid indices at the new exponent)
+     */
+    private void relocate(long lo, long hi, int newExponent) {
+        int shift = newExponent - exponent;
+        long newOffset = lo - (capacity - (hi - lo + 1)) / 2;
+        long[] newCounts = new long[capacity];
+        for (long idx = minIndex; idx <= maxIndex; idx++) {
+            long c = counts[(int) (idx - offset)];
+            if (c != 0) {
+                newCounts[(int) ((idx >> shift) - newOffset)] += c;
+            }
+        }
+        counts = newCounts;
+        offset = newOffset;
+        exponent = newExponent;
+        minIndex = minIndex >> shift;
+        maxIndex = maxIndex >> shift;
+    }
+
+    @Override
+    public StreamingHistogramCounter merge(HistogramCounter other) {
+        if (other == null)
+            return this;
+        if (!(other instanceof StreamingHistogramCounter))
+            throw new IllegalArgumentException("Cannot merge " + other);
+
+        StreamingHistogramCounter o = (StreamingHistogramCounter) other;
+        if (nBins != o.nBins)
+            throw new IllegalStateException("Different number of bins: " + nBins + " vs " + o.nBins);
+        if (o.total == 0)
+            return this;
+
+        if (total == 0) {
+            exponent = o.exponent;
+        }
+        while (exponent < o.exponent) {
+            coarsen();
+        }
+
+        for (long idx = o.minIndex; idx <= o.maxIndex; idx++) {
+            long c = o.counts[(int) (idx - o.offset)];
+            if (c != 0) {
+                //Note that this counter may be coarsened when adding: always map from the other counter's grid
+                addToBin(idx >> (exponent - o.exponent), c);
+            }
+        }
+        minValue = Math.min(minValue, o.minValue);
+        maxValue = Math.max(maxValue, o.maxValue);
+
+        return this;
+    }
+
+    /**
+     * @return Total number of values counted
+     */
+    public long getCountTotal() {
+        return total;
+    }
+
+    @Override
+    public double[] getBins() {
+        double min = total == 0 ? 0 : minValue;
+        double max = total == 0 ? 0 : maxValue;
+        double[] bins = new double[nBins + 1]; //+1 because bins are defined by a range of values: bins[i] to bins[i+1]
+        double step = (max - min) / nBins;
+        for (int i = 0; i < bins.length; i++) {
+            if (i == bins.length - 1)
+                bins[i] = max;
+            else
+                bins[i] = min + i * step;
+        }
+        return bins;
+    }
+
+    @Override
+    public long[] getCounts() {
+        long[] binCounts = new long[nBins];
+        if (total == 0)
+            return binCounts;
+
+        double[] bins = getBins();
+        double step = (maxValue - minValue) / nBins;
+        for (long idx = minIndex; idx <= maxIndex; idx++) {
+            long c = counts[(int) (idx - offset)];
+            if (c == 0)
+                continue;
+
+            int bin = nBins - 1;
+            if (step > 0) {
+                double value = Math.max(minValue, Math.min(maxValue, Math.scalb((double) idx, exponent)));
+                bin = (int) Math.min(nBins - 1, Math.floor((value - minValue) / step));
+                //Correct for rounding, consistent with bins[i] <= value < bins[i+1]
+                while (bin > 0 && value < bins[bin])
+                    bin--;
+                while (bin < nBins - 1 && value >= bins[bin + 1])
+                    bin++;
+            }
+            binCounts[bin] += c;
+        }
+        return binCounts;
+    }
+}
@@ -19,6 +19,7 @@
 package org.datavec.api.transform.transform.categorical;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.metadata.CategoricalMetaData;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.IntegerMetaData;
@@ -26,6 +27,7 @@ import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseTransform;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -36,7 +38,7 @@ import java.util.*;
  */
 @Data
 @JsonIgnoreProperties({"inputSchema", "columnIdx", "stateNames", "statesMap"})
-public class CategoricalToIntegerTransform extends BaseTransform {
+public class CategoricalToIntegerTransform extends BaseTransform implements ColumnarTransform {
 
     private String columnName;
     private int columnIdx = -1;
@@ -218,4 +220,20 @@ public class CategoricalToIntegerTransform extends BaseTransform {
     public String columnName() {
         return columnName;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        Writable[] in = batch.getWritableColumn(columnIdx);
+        long[] out = new long[in.length];
+        for (int i = 0; i < in.length; i++) {
+            String str = in[i].toString();
+            Integer classIdx = statesMap.get(str);
+            if (classIdx == null) {
+                throw new IllegalStateException("Cannot convert categorical value to integer value: input value (\"" + str
+                        + "\") is not in the list of known categories (state names/categories: " + stateNames + ")");
+            }
+            out[i] = classIdx;
+        }
+        return batch.withColumn(outputSchema, columnIdx, out);
+    }
 }
@@ -19,6 +19,7 @@
 package org.datavec.api.transform.transform.categorical;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.metadata.CategoricalMetaData;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.IntegerMetaData;
@@ -26,6 +27,7 @@ import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseTransform;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -36,7 +38,7 @@ import java.util.*;
  */
 @Data
 @JsonIgnoreProperties({"inputSchema", "columnIdx", "stateNames", "statesMap"})
-public class CategoricalToOneHotTransform extends BaseTransform {
+public class CategoricalToOneHotTransform extends BaseTransform implements ColumnarTransform {
 
     private String columnName;
     private int columnIdx = -1;
@@ -240,4 +242,32 @@ public class CategoricalToOneHotTransform extends BaseTransform {
     public String columnName() {
         return columnName;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        Writable[] in = batch.getWritableColumn(columnIdx);
+        int n = stateNames.size();
+        long[][] oneHot = new long[n][in.length];
+        for (int i = 0; i < in.length; i++) {
+            String str = in[i].toString();
+            Integer classIdx = statesMap.get(str);
+            if (classIdx == null) {
+                throw new IllegalStateException("Cannot convert categorical value to one-hot: input value (\"" + str
+                        + "\") is not in the list of known categories (state names/categories: " + stateNames + ")");
+            }
+            oneHot[classIdx][i] = 1;
+        }
+
+        Object[] columns = new Object[outputSchema.numColumns()];
+        int j = 0;
+        for (int i = 0; i < batch.numColumns(); i++) {
+            if (i == columnIdx) {
+                for (long[] col : oneHot)
+                    columns[j++] = col;
+            } else {
+                columns[j++] = batch.getColumn(i);
+            }
+        }
+        return batch.withColumns(outputSchema, columns);
+    }
 }
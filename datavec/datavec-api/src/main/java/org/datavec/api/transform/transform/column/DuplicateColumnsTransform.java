@@ -20,10 +20,12 @@ package org.datavec.api.transform.transform.column;
 
 import lombok.Data;
 import org.datavec.api.transform.ColumnOp;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -41,7 +43,7 @@ import java.util.Set;
  */
 @JsonIgnoreProperties({"columnsToDuplicateSet", "columnIndexesToDuplicateSet", "inputSchema"})
 @Data
-public class DuplicateColumnsTransform implements Transform, ColumnOp {
+public class DuplicateColumnsTransform implements Transform, ColumnOp, ColumnarTransform {
 
     private final List<String> columnsToDuplicate;
     private final List<String> newColumnNames;
@@ -230,4 +232,17 @@ public class DuplicateColumnsTransform implements Transform, ColumnOp {
     public String columnName() {
         return columnNames()[0];
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        //Column arrays are immutable, so duplicates can share storage
+        Object[] columns = new Object[outputSchema.numColumns()];
+        int j = 0;
+        for (int i = 0; i < batch.numColumns(); i++) {
+            columns[j++] = batch.getColumn(i);
+            if (columnIndexesToDuplicateSet.contains(i))
+                columns[j++] = batch.getColumn(i);
+        }
+        return batch.withColumns(outputSchema, columns);
+    }
 }
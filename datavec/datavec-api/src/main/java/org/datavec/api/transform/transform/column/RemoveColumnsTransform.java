@@ -21,10 +21,12 @@ package org.datavec.api.transform.transform.column;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
 import org.datavec.api.transform.ColumnOp;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseTransform;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -39,7 +41,7 @@ import java.util.*;
  */
 @JsonIgnoreProperties({"inputSchema", "columnsToRemoveIdx", "indicesToRemove"})
 @Data
-public class RemoveColumnsTransform extends BaseTransform implements ColumnOp {
+public class RemoveColumnsTransform extends BaseTransform implements ColumnOp, ColumnarTransform {
 
     private int[] columnsToRemoveIdx;
     private String[] columnsToRemove;
@@ -232,4 +234,9 @@ public class RemoveColumnsTransform extends BaseTransform implements ColumnOp {
     public String columnName() {
         return columnNames()[0];
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        return batch.selectColumns(outputSchema);
+    }
 }
@@ -20,10 +20,12 @@ package org.datavec.api.transform.transform.column;
 
 import lombok.Data;
 import org.datavec.api.transform.ColumnOp;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -38,7 +40,7 @@ import java.util.List;
  */
 @JsonIgnoreProperties({"inputSchema"})
 @Data
-public class RenameColumnsTransform implements Transform, ColumnOp {
+public class RenameColumnsTransform implements Transform, ColumnOp, ColumnarTransform {
 
     private final List<String> oldNames;
     private final List<String> newNames;
@@ -203,4 +205,13 @@ public class RenameColumnsTransform implements Transform, ColumnOp {
     public String columnName() {
         return columnNames()[0];
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        //No op, apart from the new schema
+        Object[] columns = new Object[batch.numColumns()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = batch.getColumn(i);
+        return batch.withColumns(outputSchema, columns);
+    }
 }
@@ -20,10 +20,12 @@ package org.datavec.api.transform.transform.column;
 
 import lombok.Data;
 import org.datavec.api.transform.ColumnOp;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -40,7 +42,7 @@ import java.util.List;
  */
 @JsonIgnoreProperties({"inputSchema", "outputOrder"})
 @Data
-public class ReorderColumnsTransform implements Transform, ColumnOp {
+public class ReorderColumnsTransform implements Transform, ColumnOp, ColumnarTransform {
 
     private final List<String> newOrder;
     private Schema inputSchema;
@@ -239,4 +241,9 @@ public class ReorderColumnsTransform implements Transform, ColumnOp {
     public String columnName() {
         return columnNames()[0];
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        return batch.selectColumns(outputSchema);
+    }
 }
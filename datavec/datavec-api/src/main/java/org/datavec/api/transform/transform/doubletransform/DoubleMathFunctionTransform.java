@@ -19,9 +19,12 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.MathFunction;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
@@ -31,7 +34,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  * @author Alex Black
  */
 @Data
-public class DoubleMathFunctionTransform extends BaseDoubleTransform {
+public class DoubleMathFunctionTransform extends BaseDoubleTransform implements ColumnarTransform {
 
     private MathFunction mathFunction;
 
@@ -41,51 +44,7 @@ public class DoubleMathFunctionTransform extends BaseDoubleTransform {
         this.mathFunction = mathFunction;
     }
 
-    @Override
-    public Writable map(Writable w) {
-        switch (mathFunction) {
-            case ABS:
-                return new DoubleWritable(Math.abs(w.toDouble()));
-            case ACOS:
-                return new DoubleWritable(Math.acos(w.toDouble()));
-            case ASIN:
-                return new DoubleWritable(Math.asin(w.toDouble()));
-            case ATAN:
-                return new DoubleWritable(Math.atan(w.toDouble()));
-            case CEIL:
-                return new DoubleWritable(Math.ceil(w.toDouble()));
-            case COS:
-                return new DoubleWritable(Math.cos(w.toDouble()));
-            case COSH:
-                return new DoubleWritable(Math.cosh(w.toDouble()));
-            case EXP:
-                return new DoubleWritable(Math.exp(w.toDouble()));
-            case FLOOR:
-                return new DoubleWritable(Math.floor(w.toDouble()));
-            case LOG:
-                return new DoubleWritable(Math.log(w.toDouble()));
-            case LOG10:
-                return new DoubleWritable(Math.log10(w.toDouble()));
-            case SIGNUM:
-                return new DoubleWritable(Math.signum(w.toDouble()));
-            case SIN:
-                return new DoubleWritable(Math.sin(w.toDouble()));
-            case SINH:
-                return new DoubleWritable(Math.sinh(w.toDouble()));
-            case SQRT:
-                return new DoubleWritable(Math.sqrt(w.toDouble()));
-            case TAN:
-                return new DoubleWritable(Math.tan(w.toDouble()));
-            case TANH:
-                return new DoubleWritable(Math.tanh(w.toDouble()));
-            default:
-                throw new RuntimeException("Unknown function: " + mathFunction);
-        }
-    }
-
-    @Override
-    public Object map(Object input) {
-        double d = ((Number) input).doubleValue();
+    private double doOp(double d) {
         switch (mathFunction) {
             case ABS:
                 return Math.abs(d);
@@ -125,4 +84,26 @@ public class DoubleMathFunctionTransform extends BaseDoubleTransform {
                 throw new RuntimeException("Unknown function: " + mathFunction);
         }
     }
+
+    @Override
+    public Writable map(Writable w) {
+        return new DoubleWritable(doOp(w.toDouble()));
+    }
+
+    @Override
+    public Object map(Object input) {
+        return doOp(((Number) input).doubleValue());
+    }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = doOp(in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -19,12 +19,15 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.MathOp;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.DoubleMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseColumnTransform;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
@@ -38,7 +41,7 @@ import java.util.List;
  * @see DoubleColumnsMathOpTransform to do a mathematical operation involving multiple columns (instead of a scalar)
  */
 @Data
-public class DoubleMathOpTransform extends BaseColumnTransform {
+public class DoubleMathOpTransform extends BaseColumnTransform implements ColumnarTransform {
 
     private final MathOp mathOp;
     private final double scalar;
@@ -136,4 +139,16 @@ public class DoubleMathOpTransform extends BaseColumnTransform {
             ret.add(map(o));
         return ret;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = doOp(in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -19,10 +19,13 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.DoubleMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
@@ -33,7 +36,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  * @author Alex Black
  */
 @Data
-public class Log2Normalizer extends BaseDoubleTransform {
+public class Log2Normalizer extends BaseDoubleTransform implements ColumnarTransform {
 
     protected static final double log2 = Math.log(2);
     protected final double columnMean;
@@ -93,4 +96,15 @@ public class Log2Normalizer extends BaseDoubleTransform {
         return normMean(val);
     }
 
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = Double.isNaN(in[i]) ? 0 : normMean(in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -19,10 +19,13 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.DoubleMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
@@ -35,7 +38,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  */
 @Data
 @JsonIgnoreProperties({"ratio", "inputSchema", "columnNumber"})
-public class MinMaxNormalizer extends BaseDoubleTransform {
+public class MinMaxNormalizer extends BaseDoubleTransform implements ColumnarTransform {
 
     protected final double min;
     protected final double max;
@@ -91,4 +94,16 @@ public class MinMaxNormalizer extends BaseDoubleTransform {
             return new DoubleWritable(0);
         return ratio * (val - min) + newMin;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = Double.isNaN(in[i]) ? 0 : ratio * (in[i] - min) + newMin;
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -19,8 +19,11 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
@@ -30,7 +33,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  * @author Alex Black
  */
 @Data
-public class StandardizeNormalizer extends BaseDoubleTransform {
+public class StandardizeNormalizer extends BaseDoubleTransform implements ColumnarTransform {
 
     protected final double mean;
     protected final double stdev;
@@ -67,4 +70,16 @@ public class StandardizeNormalizer extends BaseDoubleTransform {
         double val = n.doubleValue();
         return new DoubleWritable((val - mean) / stdev);
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = (in[i] - mean) / stdev;
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
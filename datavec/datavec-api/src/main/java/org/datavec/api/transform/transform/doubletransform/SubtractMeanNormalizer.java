@@ -19,15 +19,18 @@
 package org.datavec.api.transform.transform.doubletransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
  * Normalize by substracting the mean
  */
 @Data
-public class SubtractMeanNormalizer extends BaseDoubleTransform {
+public class SubtractMeanNormalizer extends BaseDoubleTransform implements ColumnarTransform {
 
     private final double mean;
 
@@ -58,4 +61,16 @@ public class SubtractMeanNormalizer extends BaseDoubleTransform {
         Number n = (Number) input;
         return n.doubleValue() - mean;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = in[i] - mean;
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
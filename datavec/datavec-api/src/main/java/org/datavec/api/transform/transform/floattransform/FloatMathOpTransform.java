@@ -19,13 +19,16 @@
 package org.datavec.api.transform.transform.floattransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.MathOp;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.FloatMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseColumnTransform;
 import org.datavec.api.transform.transform.floattransform.FloatColumnsMathOpTransform;
 import org.datavec.api.writable.FloatWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
@@ -39,7 +42,7 @@ import java.util.List;
  * @see FloatColumnsMathOpTransform to do a mathematical operation involving multiple columns (instead of a scalar)
  */
 @Data
-public class FloatMathOpTransform extends BaseColumnTransform {
+public class FloatMathOpTransform extends BaseColumnTransform implements ColumnarTransform {
 
     private final MathOp mathOp;
     private final float scalar;
@@ -137,4 +140,16 @@ public class FloatMathOpTransform extends BaseColumnTransform {
             ret.add(map(o));
         return ret;
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        double[] in = batch.getDoubleColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        double[] out = new double[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = doOp((float) in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
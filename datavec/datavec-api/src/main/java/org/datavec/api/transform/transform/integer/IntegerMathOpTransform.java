@@ -19,12 +19,15 @@
 package org.datavec.api.transform.transform.integer;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.MathOp;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.IntegerMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseColumnTransform;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
@@ -35,7 +38,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  * @see IntegerColumnsMathOpTransform to do a mathematical operation involving multiple columns (instead of a scalar)
  */
 @Data
-public class IntegerMathOpTransform extends BaseColumnTransform {
+public class IntegerMathOpTransform extends BaseColumnTransform implements ColumnarTransform {
 
     private final MathOp mathOp;
     private final int scalar;
@@ -117,5 +120,15 @@ public class IntegerMathOpTransform extends BaseColumnTransform {
         return doOp(n.intValue());
     }
 
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        long[] in = batch.getLongColumn(columnNumber);
+        if (in == null)
+            return null;
 
+        long[] out = new long[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = doOp((int) in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -19,12 +19,15 @@
 package org.datavec.api.transform.transform.longtransform;
 
 import lombok.Data;
+import org.datavec.api.transform.ColumnarTransform;
 import org.datavec.api.transform.MathOp;
 import org.datavec.api.transform.metadata.ColumnMetaData;
 import org.datavec.api.transform.metadata.LongMetaData;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.BaseColumnTransform;
 import org.datavec.api.writable.LongWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 /**
@@ -35,7 +38,7 @@ import org.nd4j.shade.jackson.annotation.JsonProperty;
  * @see LongColumnsMathOpTransform to do a mathematical operation involving multiple long columns (instead of a scalar)
  */
 @Data
-public class LongMathOpTransform extends BaseColumnTransform {
+public class LongMathOpTransform extends BaseColumnTransform implements ColumnarTransform {
 
     private final MathOp mathOp;
     private final long scalar;
@@ -116,4 +119,16 @@ public class LongMathOpTransform extends BaseColumnTransform {
         Number n = (Number) input;
         return doOp(n.longValue());
     }
+
+    @Override
+    public ColumnarRecordBatch mapColumnar(ColumnarRecordBatch batch, Schema outputSchema) {
+        long[] in = batch.getLongColumn(columnNumber);
+        if (in == null)
+            return null;
+
+        long[] out = new long[in.length];
+        for (int i = 0; i < in.length; i++)
+            out[i] = doOp(in[i]);
+        return batch.withColumn(outputSchema, columnNumber, out);
+    }
 }
@@ -0,0 +1,529 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.writable.batch;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.FloatWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.LongWritable;
+import org.datavec.api.writable.Writable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@code List<List<Writable>>} record batch, backed by one primitive array per column.<br>
+ * Storage of each column depends on its type in the schema:<br>
+ * - Double and Float columns are stored as {@code double[]}<br>
+ * - Integer, Long and Time columns are stored as {@code long[]}<br>
+ * - all other columns (and numerical columns whose values can't be parsed) are stored as {@code Writable[]}<br>
+ * <br>
+ * Column arrays are never modified in place, so they may be shared between batches.
+ * On calls to methods like .get(int) the record is materialized as a list of Writables, with Writable type
+ * matching the column type
+ */
+public class ColumnarRecordBatch extends AbstractWritableRecordBatch {
+
+    @Getter
+    private final Schema schema;
+    private final int numRows;
+    private final Object[] columns;
+
+    /**
+     * @param schema  schema of the batch
+     * @param numRows number of records in the batch
+     * @param columns one double[], long[] or Writable[] array of length numRows per schema column
+     */
+    public ColumnarRecordBatch(@NonNull Schema schema, int numRows, @NonNull Object[] columns) {
+        if (columns.length != schema.numColumns())
+            throw new IllegalArgumentException("Number of columns (" + columns.length
+                            + ") does not match number of columns in schema (" + schema.numColumns() + ")");
+
+        for (int c = 0; c < columns.length; c++) {
+            Object col = columns[c];
+            int length;
+            if (col instanceof double[] && isDoubleColumn(schema.getType(c)))
+                length = ((double[]) col).length;
+            else if (col instanceof long[] && isLongColumn(schema.getType(c)))
+                length = ((long[]) col).length;
+            else if (col instanceof Writable[])
+                length = ((Writable[]) col).length;
+            else
+                throw new IllegalArgumentException("Invalid storage for column \"" + schema.getName(c) + "\" of type "
+                                + schema.getType(c) + ": " + (col == null ? null : col.getClass().getSimpleName()));
+
+            if (length != numRows)
+                throw new IllegalArgumentException("Invalid length for column \"" + schema.getName(c) + "\": expected "
+                                + numRows + ", got " + length);
+        }
+
+        this.schema = schema;
+        this.numRows = numRows;
+        this.columns = columns;
+    }
+
+    /**
+     * Create a columnar batch from the list of records
+     *
+     * @param schema  schema of the records
+     * @param records records to convert
+     */
+    public static ColumnarRecordBatch fromRecords(@NonNull Schema schema, @NonNull List<List<Writable>> records) {
+        if (records instanceof ColumnarRecordBatch)
+            return (ColumnarRecordBatch) records;
+
+        int n = records.size();
+        int numColumns = schema.numColumns();
+        for (int i = 0; i < n; i++) {
+            if (records.get(i).size() != numColumns)
+                throw new IllegalStateException("Invalid record " + i + ": expected " + numColumns
+                                + " values (schema: " + schema.getColumnNames() + "), got " + records.get(i).size());
+        }
+
+        Object[] columns = new Object[numColumns];
+        for (int c = 0; c < numColumns; c++) {
+            ColumnType type = schema.getType(c);
+            Writable[] values = new Writable[n];
+            for (int i = 0; i < n; i++)
+                values[i] = records.get(i).get(c);
+
+            if (isDoubleColumn(type)) {
+                double[] d = toDoubles(values);
+                columns[c] = d != null ? d : values;
+            } else if (isLongColumn(type)) {
+                long[] l = toLongs(values, type == ColumnType.Integer);
+                columns[c] = l != null ? l : values;
+            } else {
+                columns[c] = values;
+            }
+        }
+
+        return new ColumnarRecordBatch(schema, n, columns);
+    }
+
+    /**
+     * Create a columnar batch from the list of column arrays, as returned by {@link NDArrayRecordBatch#getArrays()}.
+     * Each array should be a vector with length equal to the number of examples, and all columns should be numerical
+     *
+     * @param schema schema of the records
+     * @param arrays one array per column
+     */
+    public static ColumnarRecordBatch fromArrays(@NonNull Schema schema, @NonNull List<INDArray> arrays) {
+        if (arrays.size() != schema.numColumns())
+            throw new IllegalArgumentException("Number of arrays (" + arrays.size()
+                            + ") does not match number of columns in schema (" + schema.numColumns() + ")");
+
+        int n = -1;
+        Object[] columns = new Object[arrays.size()];
+        for (int c = 0; c < columns.length; c++) {
+            INDArray arr = arrays.get(c);
+            if (n < 0)
+                n = (int) arr.size(0);
+
+            if (arr.length() != n || arr.size(0) != n)
+                throw new IllegalArgumentException("Array for column \"" + schema.getName(c)
+                                + "\" should be a column vector of length " + n + ", got shape "
+                                + Arrays.toString(arr.shape()));
+
+            ColumnType type = schema.getType(c);
+            if (isDoubleColumn(type))
+                columns[c] = arr.toDoubleVector();
+            else if (isLongColumn(type)) {
+                long[] l = arr.dataType().isFPType() ? toLongs(arr.toDoubleVector(), type == ColumnType.Integer)
+                                : toLongs(arr.toLongVector(), type == ColumnType.Integer);
+                if (l == null)
+                    throw new IllegalArgumentException("Array for column \"" + schema.getName(c) + "\" of type "
+                                    + type + " contains values that are not valid " + type + " values");
+                columns[c] = l;
+            } else
+                throw new IllegalArgumentException("Column \"" + schema.getName(c) + "\" of type " + type
+                                + " can't be created from an INDArray");
+        }
+
+        return new ColumnarRecordBatch(schema, Math.max(n, 0), columns);
+    }
+
+    /**
+     * Concatenate batches with the same schema
+     */
+    public static ColumnarRecordBatch concat(@NonNull List<ColumnarRecordBatch> batches) {
+        if (batches.isEmpty())
+            throw new IllegalArgumentException("Unable to concatenate empty list of batches");
+
+        if (batches.size() == 1)
+            return batches.get(0);
+
+        Schema schema = batches.get(0).getSchema();
+        int n = 0;
+        for (ColumnarRecordBatch b : batches) {
+            if (b.numColumns() != schema.numColumns())
+                throw new IllegalArgumentException("Unable to concatenate batches with different schemas");
+            n += b.size();
+        }
+
+        Object[] columns = new Object[schema.numColumns()];
+        for (int c = 0; c < columns.length; c++) {
+            boolean doubles = true, longs = true;
+            for (ColumnarRecordBatch b : batches) {
+                doubles &= b.columns[c] instanceof double[];
+                longs &= b.columns[c] instanceof long[];
+            }
+
+            int offset = 0;
+            if (doubles) {
+                double[] out = new double[n];
+                for (ColumnarRecordBatch b : batches) {
+                    System.arraycopy(b.columns[c], 0, out, offset, b.size());
+                    offset += b.size();
+                }
+                columns[c] = out;
+            } else if (longs) {
+                long[] out = new long[n];
+                for (ColumnarRecordBatch b : batches) {
+                    System.arraycopy(b.columns[c], 0, out, offset, b.size());
+                    offset += b.size();
+                }
+                columns[c] = out;
+            } else {
+                Writable[] out = new Writable[n];
+                for (ColumnarRecordBatch b : batches) {
+                    System.arraycopy(b.getWritableColumn(c), 0, out, offset, b.size());
+                    offset += b.size();
+                }
+                columns[c] = out;
+            }
+        }
+
+        return new ColumnarRecordBatch(schema, n, columns);
+    }
+
+    /**
+     * Returns true if values of the given column type are stored as double[]
+     */
+    public static boolean isDoubleColumn(ColumnType type) {
+        return type == ColumnType.Double || type == ColumnType.Float;
+    }
+
+    /**
+     * Returns true if values of the given column type are stored as long[]
+     */
+    public static boolean isLongColumn(ColumnType type) {
+        return type == ColumnType.Integer || type == ColumnType.Long || type == ColumnType.Time;
+    }
+
+    @Override
+    public int size() {
+        return numRows;
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    @Override
+    public List<Writable> get(int index) {
+        if (index < 0 || index >= numRows)
+            throw new IndexOutOfBoundsException("Invalid index: " + index + ", size = " + numRows);
+
+        List<Writable> out = new ArrayList<>(columns.length);
+        for (int c = 0; c < columns.length; c++)
+            out.add(getWritable(c, index));
+        return out;
+    }
+
+    /**
+     * Get the underlying storage of the column: double[], long[] or Writable[]
+     */
+    public Object getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Get the values of the column as double[].
+     *
+     * @return column values, or null if the column values are not numerical
+     */
+    public double[] getDoubleColumn(int column) {
+        Object col = columns[column];
+        if (col instanceof double[])
+            return (double[]) col;
+
+        if (col instanceof long[]) {
+            long[] l = (long[]) col;
+            double[] out = new double[l.length];
+            for (int i = 0; i < l.length; i++)
+                out[i] = l[i];
+            return out;
+        }
+
+        return toDoubles((Writable[]) col);
+    }
+
+    /**
+     * Get the values of the column as long[].
+     *
+     * @return column values, or null if the column values are not integer values
+     */
+    public long[] getLongColumn(int column) {
+        Object col = columns[column];
+        if (col instanceof long[])
+            return (long[]) col;
+
+        if (col instanceof double[])
+            return null;
+
+        return toLongs((Writable[]) col, schema.getType(column) == ColumnType.Integer);
+    }
+
+    /**
+     * Get the values of the column as Writable[]
+     */
+    public Writable[] getWritableColumn(int column) {
+        Object col = columns[column];
+        if (col instanceof Writable[])
+            return (Writable[]) col;
+
+        Writable[] out = new Writable[numRows];
+        for (int i = 0; i < numRows; i++)
+            out[i] = getWritable(column, i);
+        return out;
+    }
+
+    /**
+     * Returns true if all columns are stored as primitive arrays
+     */
+    public boolean isNumerical() {
+        for (Object col : columns)
+            if (col instanceof Writable[])
+                return false;
+        return true;
+    }
+
+    /**
+     * Create a new batch with the same rows, but different columns
+     *
+     * @param schema  schema of the new batch
+     * @param columns column arrays
+     */
+    public ColumnarRecordBatch withColumns(@NonNull Schema schema, @NonNull Object[] columns) {
+        return new ColumnarRecordBatch(schema, numRows, columns);
+    }
+
+    /**
+     * Create a new batch, with the given column replaced. All other columns are shared with this batch
+     *
+     * @param schema schema of the new batch. Should have the same number of columns as this batch
+     * @param column index of the column to replace
+     * @param values new column values
+     */
+    public ColumnarRecordBatch withColumn(@NonNull Schema schema, int column, @NonNull Object values) {
+        Object[] out = Arrays.copyOf(columns, columns.length);
+        out[column] = values;
+        return new ColumnarRecordBatch(schema, numRows, out);
+    }
+
+    /**
+     * Create a new batch, with columns picked by name from this batch
+     *
+     * @param schema schema of the new batch. All columns should be present in this batch
+     */
+    public ColumnarRecordBatch selectColumns(@NonNull Schema schema) {
+        Object[] out = new Object[schema.numColumns()];
+        for (int c = 0; c < out.length; c++) {
+            int idx = this.schema.getIndexOfColumn(schema.getName(c));
+            out[c] = columns[idx];
+        }
+        return new ColumnarRecordBatch(schema, numRows, out);
+    }
+
+    /**
+     * Create a new batch with rows for which keep[row] is true
+     */
+    public ColumnarRecordBatch select(@NonNull boolean[] keep) {
+        if (keep.length != numRows)
+            throw new IllegalArgumentException("Mask length (" + keep.length + ") does not match number of rows ("
+                            + numRows + ")");
+
+        int n = 0;
+        for (boolean b : keep)
+            if (b)
+                n++;
+
+        if (n == numRows)
+            return this;
+
+        Object[] out = new Object[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            Object col = columns[c];
+            int j = 0;
+            if (col instanceof double[]) {
+                double[] src = (double[]) col, dst = new double[n];
+                for (int i = 0; i < numRows; i++)
+                    if (keep[i])
+                        dst[j++] = src[i];
+                out[c] = dst;
+            } else if (col instanceof long[]) {
+                long[] src = (long[]) col, dst = new long[n];
+                for (int i = 0; i < numRows; i++)
+                    if (keep[i])
+                        dst[j++] = src[i];
+                out[c] = dst;
+            } else {
+                Writable[] src = (Writable[]) col, dst = new Writable[n];
+                for (int i = 0; i < numRows; i++)
+                    if (keep[i])
+                        dst[j++] = src[i];
+                out[c] = dst;
+            }
+        }
+
+        return new ColumnarRecordBatch(schema, n, out);
+    }
+
+    /**
+     * Create a new batch with rows [from, from + count) of this batch
+     */
+    public ColumnarRecordBatch slice(int from, int count) {
+        if (from < 0 || count < 0 || from + count > numRows)
+            throw new IndexOutOfBoundsException("Invalid slice [" + from + ", " + (from + count) + ") of batch with "
+                            + numRows + " rows");
+
+        if (from == 0 && count == numRows)
+            return this;
+
+        Object[] out = new Object[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            Object col = columns[c];
+            if (col instanceof double[])
+                out[c] = Arrays.copyOfRange((double[]) col, from, from + count);
+            else if (col instanceof long[])
+                out[c] = Arrays.copyOfRange((long[]) col, from, from + count);
+            else
+                out[c] = Arrays.copyOfRange((Writable[]) col, from, from + count);
+        }
+
+        return new ColumnarRecordBatch(schema, count, out);
+    }
+
+    /**
+     * Convert this batch to {@link NDArrayRecordBatch}, with one [numRows, 1] array of default floating point type
+     * per column. All columns should be numerical
+     */
+    public NDArrayRecordBatch toNDArrayRecordBatch() {
+        List<INDArray> arrays = new ArrayList<>(columns.length);
+        for (int c = 0; c < columns.length; c++) {
+            double[] values = getDoubleColumn(c);
+            if (values == null)
+                throw new IllegalStateException("Column \"" + schema.getName(c) + "\" of type " + schema.getType(c)
+                                + " can't be converted to an INDArray");
+
+            arrays.add(Nd4j.create(values, new long[] {numRows, 1}, Nd4j.defaultFloatingPointType()));
+        }
+
+        return new NDArrayRecordBatch(arrays);
+    }
+
+    protected Writable getWritable(int column, int row) {
+        Object col = columns[column];
+        if (col instanceof double[]) {
+            double v = ((double[]) col)[row];
+            return schema.getType(column) == ColumnType.Float ? new FloatWritable((float) v) : new DoubleWritable(v);
+        } else if (col instanceof long[]) {
+            long v = ((long[]) col)[row];
+            return schema.getType(column) == ColumnType.Integer ? new IntWritable((int) v) : new LongWritable(v);
+        } else {
+            return ((Writable[]) col)[row];
+        }
+    }
+
+    protected static double[] toDoubles(Writable[] values) {
+        double[] out = new double[values.length];
+        try {
+            for (int i = 0; i < values.length; i++)
+                out[i] = values[i].toDouble();
+        } catch (RuntimeException e) {
+            //Not numerical (or missing) values: keep the Writables as is
+            return null;
+        }
+        return out;
+    }
+
+    /**
+     * Convert the values of an Integer or Long column. As with {@link org.datavec.api.transform.metadata.IntegerMetaData}
+     * and {@link org.datavec.api.transform.metadata.LongMetaData}, non-integer values (such as a DoubleWritable of 1.5)
+     * and values out of range are not valid: null is returned and the Writables are kept as is, instead of truncating
+     *
+     * @param intColumn if true, values should be in int range
+     */
+    protected static long[] toLongs(Writable[] values, boolean intColumn) {
+        long[] out = new long[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                Writable w = values[i];
+                if (w instanceof DoubleWritable || w instanceof FloatWritable) {
+                    double d = w.toDouble();
+                    if (!isIntegral(d, intColumn))
+                        return null;
+                    out[i] = (long) d;
+                } else {
+                    out[i] = w.toLong();
+                    if (intColumn && (out[i] < Integer.MIN_VALUE || out[i] > Integer.MAX_VALUE))
+                        return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return out;
+    }
+
+    protected static long[] toLongs(double[] values, boolean intColumn) {
+        long[] out = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (!isIntegral(values[i], intColumn))
+                return null;
+            out[i] = (long) values[i];
+        }
+        return out;
+    }
+
+    protected static long[] toLongs(long[] values, boolean intColumn) {
+        if (intColumn) {
+            for (long v : values)
+                if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE)
+                    return null;
+        }
+        return values;
+    }
+
+    private static boolean isIntegral(double d, boolean intColumn) {
+        if (d != Math.rint(d))
+            return false;       //Non-integer or NaN
+        return intColumn ? d >= Integer.MIN_VALUE && d <= Integer.MAX_VALUE
+                        : d >= Long.MIN_VALUE && d < 0x1p63;
+    }
+}
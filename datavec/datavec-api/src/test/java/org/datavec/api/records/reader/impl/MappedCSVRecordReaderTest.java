@@ -0,0 +1,196 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.records.reader.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.MappedCSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.common.tests.BaseND4JTest;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedCSVRecordReaderTest extends BaseND4JTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testParseDouble() {
+        String[] values = {"0", "-0", "1", "+1", "-17", "3.14159", ".5", "5.", "1e5", "1.5E-3", " 42 ", "0.000123",
+                        "123456789012345678901234", "1e300", "4.9e-324", "NaN", "-Infinity", "0.1", "2.2250738585072014E-308"};
+        for (String v : values) {
+            ByteBuffer bb = ByteBuffer.wrap(v.getBytes(StandardCharsets.US_ASCII));
+            assertEquals(v, Double.parseDouble(v.trim()), MappedCSVRecordReader.parseDouble(bb, 0, bb.limit()), 0.0);
+        }
+
+        Random r = new Random(12345);
+        for (int e = 0; e < 10000; e++) {
+            double d = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(20) - 10);
+            String v = String.valueOf(d);
+            ByteBuffer bb = ByteBuffer.wrap(v.getBytes(StandardCharsets.US_ASCII));
+            assertEquals(v, d, MappedCSVRecordReader.parseDouble(bb, 0, bb.limit()), 0.0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoubleInvalid() {
+        ByteBuffer bb = ByteBuffer.wrap("1.2.3".getBytes(StandardCharsets.US_ASCII));
+        MappedCSVRecordReader.parseDouble(bb, 0, bb.limit());
+    }
+
+    @Test
+    public void testSameAsCSVRecordReader() throws Exception {
+        File f = writeCsv(testDir.newFile("data.csv"), 1000, 5);
+
+        CSVRecordReader expected = new CSVRecordReader(1, ',');
+        expected.initialize(new FileSplit(f));
+
+        // tiny chunks to force multiple chunks per file, with lines spanning chunk boundaries
+        MappedCSVRecordReader actual = new MappedCSVRecordReader(1, ',', 4, 100);
+        actual.initialize(new FileSplit(f));
+
+        for (int r = 0; r < 2; r++) {
+            int cnt = 0;
+            while (expected.hasNext()) {
+                assertTrue(actual.hasNext());
+                List<Writable> e = expected.next();
+                List<Writable> a = actual.next();
+                assertEquals(e.size(), a.size());
+                for (int i = 0; i < e.size(); i++)
+                    assertEquals(e.get(i).toDouble(), a.get(i).toDouble(), 0.0);
+                cnt++;
+            }
+            assertFalse(actual.hasNext());
+            assertEquals(1000, cnt);
+
+            expected.reset();
+            actual.reset();
+        }
+        actual.close();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        File dir = testDir.newFolder();
+        writeCsv(new File(dir, "a.csv"), 250, 4);
+        writeCsv(new File(dir, "b.csv"), 250, 4);
+
+        CSVRecordReader expected = new CSVRecordReader(1, ',');
+        expected.initialize(new FileSplit(dir));
+
+        MappedCSVRecordReader actual = new MappedCSVRecordReader(1, ',', 2, 256);
+        actual.initialize(new FileSplit(dir));
+        assertTrue(actual.batchesSupported());
+
+        int total = 0;
+        while (actual.hasNext()) {
+            List<List<Writable>> batch = actual.next(32);
+            assertTrue(batch instanceof NDArrayRecordBatch);
+
+            List<INDArray> columns = ((NDArrayRecordBatch) batch).getArrays();
+            assertEquals(4, columns.size());
+            long n = columns.get(0).size(0);
+            assertTrue(n > 0 && n <= 32);
+
+            for (int i = 0; i < n; i++) {
+                List<Writable> e = expected.next();
+                for (int c = 0; c < 4; c++) {
+                    assertArrayEquals(new long[] {n, 1}, columns.get(c).shape());
+                    assertEquals(e.get(c).toDouble(), columns.get(c).getDouble(i, 0), 1e-5);
+                }
+            }
+            total += n;
+        }
+
+        assertEquals(500, total);
+        assertFalse(expected.hasNext());
+        actual.close();
+    }
+
+    @Test
+    public void testSkipLinesPastFirstChunk() throws Exception {
+        File f = testDir.newFile("header.csv");
+        FileUtils.writeStringToFile(f, "first header line\nsecond header line\nthird\n1,2\n3,4\n5,6\n", StandardCharsets.UTF_8);
+
+        // skipped lines span multiple chunks
+        for (int chunkSize : new int[] {1, 4, 16, 1024}) {
+            MappedCSVRecordReader rr = new MappedCSVRecordReader(3, ',', 2, chunkSize);
+            rr.initialize(new FileSplit(f));
+
+            int cnt = 0;
+            while (rr.hasNext()) {
+                List<Writable> next = rr.next();
+                assertEquals(2, next.size());
+                assertEquals(2 * cnt + 1, next.get(0).toDouble(), 0.0);
+                assertEquals(2 * cnt + 2, next.get(1).toDouble(), 0.0);
+                cnt++;
+            }
+            assertEquals("Chunk size " + chunkSize, 3, cnt);
+            rr.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testColumnMismatch() throws Exception {
+        File f = testDir.newFile("bad.csv");
+        FileUtils.writeStringToFile(f, "1,2,3\n4,5\n", StandardCharsets.UTF_8);
+
+        MappedCSVRecordReader rr = new MappedCSVRecordReader(0, ',', 1, 1024);
+        rr.initialize(new FileSplit(f));
+        while (rr.hasNext())
+            rr.next();
+    }
+
+    private static File writeCsv(File f, int rows, int cols) throws Exception {
+        Random r = new Random(f.getName().hashCode());
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < cols; c++)
+            sb.append(c == 0 ? "" : ",").append("col").append(c);
+        sb.append("\r\n");
+
+        for (int i = 0; i < rows; i++) {
+            for (int c = 0; c < cols; c++) {
+                if (c > 0)
+                    sb.append(",");
+                if (c == cols - 1)
+                    sb.append(r.nextInt(3));
+                else
+                    sb.append(r.nextGaussian() * 100);
+            }
+            sb.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+
+        FileUtils.writeStringToFile(f, sb.toString(), StandardCharsets.UTF_8);
+        return f;
+    }
+}
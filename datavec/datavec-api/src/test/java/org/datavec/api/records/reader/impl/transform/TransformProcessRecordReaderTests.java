@@ -27,10 +27,12 @@ import org.datavec.api.transform.schema.SequenceSchema;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.LongWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.joda.time.DateTimeZone;
 import org.junit.Test;
 import org.nd4j.common.tests.BaseND4JTest;
 import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -71,6 +73,38 @@ public class TransformProcessRecordReaderTests extends BaseND4JTest {
         assertEquals(all, batch);
     }
 
+    @Test
+    public void simpleTransformTestColumnar() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnsDouble("%d", 0, 4)
+                .build();
+        TransformProcess transformProcess = new TransformProcess.Builder(schema).removeColumns("0").build();
+
+        CSVRecordReader csvRecordReader = new CSVRecordReader();
+        csvRecordReader.initialize(new FileSplit(new ClassPathResource("datavec-api/iris.dat").getFile()));
+        List<List<Writable>> all = new ArrayList<>();
+        TransformProcessRecordReader rr = new TransformProcessRecordReader(csvRecordReader, transformProcess);
+        while(rr.hasNext())
+            all.add(rr.next());
+
+        rr = new TransformProcessRecordReader(csvRecordReader, transformProcess, true);
+        rr.reset();
+        int count = 0;
+        while(rr.hasNext()){
+            List<List<Writable>> batch = rr.next(32);
+            assertTrue(batch instanceof NDArrayRecordBatch);
+            List<INDArray> columns = ((NDArrayRecordBatch) batch).getArrays();
+            assertEquals(4, columns.size());
+            for( int i=0; i<batch.size(); i++ ){
+                for( int j=0; j<4; j++ ){
+                    assertEquals(all.get(count).get(j).toDouble(), columns.get(j).getDouble(i, 0), 1e-5);
+                }
+                count++;
+            }
+        }
+        assertEquals(150, count);
+    }
+
     @Test
     public void simpleTransformTestSequence() {
         List<List<Writable>> sequence = new ArrayList<>();
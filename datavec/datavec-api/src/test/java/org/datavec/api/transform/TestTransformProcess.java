@@ -21,18 +21,26 @@ package org.datavec.api.transform;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.records.reader.impl.collection.ListStringRecordReader;
 import org.datavec.api.split.ListStringSplit;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
 import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.MinMaxNormalizer;
 import org.datavec.api.transform.transform.nlp.TextToCharacterIndexTransform;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.LongWritable;
 import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.junit.Test;
 import org.nd4j.common.tests.BaseND4JTest;
 
 import java.util.*;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TestTransformProcess extends BaseND4JTest {
 
@@ -84,6 +92,71 @@ public class TestTransformProcess extends BaseND4JTest {
         assertEquals(expSeq, out);
     }
 
+    @Test
+    public void testColumnarIntegerValues(){
+        Schema schema = new Schema.Builder()
+                .addColumnInteger("i")
+                .build();
+
+        ColumnarRecordBatch integral = ColumnarRecordBatch.fromRecords(schema, Arrays.asList(
+                Collections.<Writable>singletonList(new IntWritable(1)),
+                Collections.<Writable>singletonList(new DoubleWritable(2.0))));
+        assertArrayEquals(new long[]{1, 2}, integral.getLongColumn(0));
+
+        //Non-integer and out of range values are not truncated: Writables are kept as is
+        for (Writable w : new Writable[]{new DoubleWritable(1.5), new DoubleWritable(Double.NaN), new LongWritable(1L << 40)}) {
+            ColumnarRecordBatch batch = ColumnarRecordBatch.fromRecords(schema, Arrays.asList(
+                    Collections.<Writable>singletonList(new IntWritable(1)),
+                    Collections.<Writable>singletonList(w)));
+            assertNull(batch.getLongColumn(0));
+            assertEquals(w, batch.getWritableColumn(0)[1]);
+        }
+    }
+
+    @Test
+    public void testExecuteColumnar(){
+        Schema schema = new Schema.Builder()
+                .addColumnString("str")
+                .addColumnDouble("d")
+                .addColumnInteger("i")
+                .addColumnCategorical("cat", "a", "b", "c")
+                .addColumnDouble("unused")
+                .build();
+
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .doubleMathOp("d", MathOp.Multiply, 2.0)
+                .filter(new DoubleColumnCondition("d", ConditionOp.LessThan, 0.0))
+                .integerMathOp("i", MathOp.Add, 10)
+                .appendStringColumnTransform("str", "_x")      //No columnar implementation: executed record by record
+                .transform(new MinMaxNormalizer("d", -10, 10))
+                .duplicateColumn("i", "i2")
+                .categoricalToOneHot("cat")
+                .removeColumns("unused")
+                .renameColumn("i2", "label")
+                .build();
+
+        List<List<Writable>> in = new ArrayList<>();
+        Random r = new Random(12345);
+        for (int i = 0; i < 100; i++) {
+            in.add(Arrays.<Writable>asList(new Text("s" + i), new DoubleWritable(r.nextDouble() * 10 - 2),
+                    new IntWritable(i), new Text(String.valueOf((char) ('a' + i % 3))), new DoubleWritable(i)));
+        }
+
+        List<List<Writable>> exp = new ArrayList<>();
+        for (List<Writable> l : in) {
+            List<Writable> out = tp.execute(l);
+            if (out != null)
+                exp.add(out);
+        }
+        assertTrue(exp.size() < in.size());
+
+        ColumnarRecordBatch out = tp.executeColumnar(ColumnarRecordBatch.fromRecords(schema, in));
+        assertEquals(tp.getFinalSchema(), out.getSchema());
+        assertEquals(exp.size(), out.size());
+        for (int i = 0; i < exp.size(); i++)
+            assertEquals(exp.get(i), out.get(i));
+    }
+
     @Test
     public void testInferColumns()  throws Exception {
         List<List<String>> categories = Arrays.asList(
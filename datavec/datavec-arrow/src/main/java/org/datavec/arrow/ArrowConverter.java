@@ -44,11 +44,15 @@ import org.datavec.api.util.ndarray.RecordConverter;
 import org.datavec.api.writable.*;
 import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
 import org.datavec.arrow.recordreader.ArrowWritableRecordTimeSeriesBatch;
+import org.bytedeco.javacpp.Pointer;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.memory.pointers.PagedPointer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.exception.ND4JIllegalArgumentException;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.primitives.Pair;
 import org.nd4j.serde.binary.BinarySerde;
 
@@ -147,23 +151,98 @@ public class ArrowConverter {
         }
 
         int cols = schema.numColumns();
-        INDArray arr  = Nd4j.create(rows,cols);
+        int[] columns = new int[cols];
         for(int i = 0; i < cols; i++) {
-            INDArray put = ArrowConverter.convertArrowVector(columnVectors.get(i),schema.getType(i));
-            switch(arr.data().dataType()) {
-                case FLOAT:
-                    arr.putColumn(i,Nd4j.create(put.data().asFloat()).reshape(rows,1));
-                    break;
-                case DOUBLE:
-                    arr.putColumn(i,Nd4j.create(put.data().asDouble()).reshape(rows,1));
-                    break;
-            }
+            columns[i] = i;
+        }
+
+        return toArray(arrowWritableRecordBatch,columns,Nd4j.defaultFloatingPointType());
+    }
+
+    /**
+     * Create a [rows, columns.length] matrix from the given numeric columns of a batch.
+     * Each column is copied with a single memcpy when its type matches the requested data type,
+     * or converted with a single cast otherwise. The returned array is in 'f' order,
+     * so that each column is contiguous like in the arrow vectors.
+     *
+     * @param arrowWritableRecordBatch the incoming batch
+     * @param columns the indices of the columns to use, in order
+     * @param dataType the data type of the returned array
+     * @return the matrix, independent of the memory of the arrow batch
+     */
+    public static INDArray toArray(ArrowWritableRecordBatch arrowWritableRecordBatch,int[] columns,DataType dataType) {
+        List<FieldVector> columnVectors = arrowWritableRecordBatch.getList();
+        int offset = arrowWritableRecordBatch.getOffset();
+        int rows = arrowWritableRecordBatch.size();
+        INDArray arr = Nd4j.createUninitialized(dataType,new long[] {rows,columns.length},'f');
+        if(rows == 0) {
+            return arr;
+        }
 
+        long columnBytes = (long) rows * dataType.width();
+        for(int i = 0; i < columns.length; i++) {
+            FieldVector fieldVector = columnVectors.get(columns[i]);
+            if(dataTypeFor(fieldVector) == dataType) {
+                Pointer src = new PagedPointer(fieldVector.getDataBuffer().memoryAddress() + (long) offset * dataType.width());
+                Pointer dst = new PagedPointer(arr.data().address() + i * columnBytes);
+                Pointer.memcpy(dst,src,columnBytes);
+            }
+            else {
+                INDArray column = wrapArrowVector(fieldVector);
+                arr.getColumn(i,true).assign(column.get(NDArrayIndex.interval(offset,offset + rows),NDArrayIndex.all()));
+            }
         }
 
+        Nd4j.getAffinityManager().tagLocation(arr, AffinityManager.Location.HOST);
         return arr;
     }
 
+    /**
+     * Wrap the data buffer of a fixed width numeric arrow vector
+     * ({@link IntVector}, {@link BigIntVector}, {@link Float4Vector} or {@link Float8Vector})
+     * as a [rows, 1] column vector without copying it.
+     * Unlike {@link #convertArrowVector(FieldVector, ColumnType)}, the returned array shares
+     * its memory with the arrow vector: it is only valid until the vector is closed,
+     * and null entries show up as whatever value is in the underlying buffer.
+     *
+     * @param fieldVector the field vector to wrap
+     * @return the column vector
+     */
+    public static INDArray wrapArrowVector(FieldVector fieldVector) {
+        DataType dataType = dataTypeFor(fieldVector);
+        int rows = fieldVector.getValueCount();
+        if(rows == 0) {
+            return Nd4j.create(dataType,0,1);
+        }
+
+        Pointer pointer = new PagedPointer(fieldVector.getDataBuffer().memoryAddress());
+        DataBuffer buffer = Nd4j.createBuffer(pointer,rows,dataType);
+        return Nd4j.create(buffer,new long[] {rows,1});
+    }
+
+    /**
+     * Get the nd4j data type matching the values of a fixed width numeric arrow vector
+     * @param fieldVector the field vector
+     * @return the matching data type
+     */
+    public static DataType dataTypeFor(FieldVector fieldVector) {
+        if(fieldVector instanceof IntVector) {
+            return DataType.INT;
+        }
+        else if(fieldVector instanceof BigIntVector) {
+            return DataType.LONG;
+        }
+        else if(fieldVector instanceof Float4Vector) {
+            return DataType.FLOAT;
+        }
+        else if(fieldVector instanceof Float8Vector) {
+            return DataType.DOUBLE;
+        }
+
+        throw new ND4JIllegalArgumentException("Unable to use vector " + fieldVector.getField().getName() + " of type "
+                + fieldVector.getClass().getSimpleName() + " as an array: only int, long, float and double vectors are supported");
+    }
+
     /**
      * Convert a field vector to a column vector
      * @param fieldVector the field vector to convert
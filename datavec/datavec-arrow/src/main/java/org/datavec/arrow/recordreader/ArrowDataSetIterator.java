@@ -0,0 +1,216 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.arrow.recordreader;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.datavec.arrow.ArrowConverter;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link DataSetIterator} that returns one {@link DataSet} per arrow record batch
+ * (i.e. per file) of an {@link ArrowRecordReader}.
+ * Unlike iterating over the reader record by record, the features and labels are copied
+ * out of the arrow vectors column by column (see {@link ArrowConverter#toArray(ArrowWritableRecordBatch, int[], DataType)}),
+ * without creating any {@link org.datavec.api.writable.Writable}.
+ * All feature and label columns must be int, long, float or double columns.
+ * The minibatch size is the number of rows of each arrow batch.
+ */
+public class ArrowDataSetIterator implements DataSetIterator {
+
+    private final ArrowRecordReader recordReader;
+    private final int labelIndexFrom;
+    private final int labelIndexTo;
+    private final int numPossibleLabels;
+    private final boolean regression;
+    @Getter
+    @Setter
+    private DataSetPreProcessor preProcessor;
+    @Getter
+    @Setter
+    private DataType dataType = Nd4j.defaultFloatingPointType();
+    private int lastBatchSize = -1;
+    private int inputColumns = -1;
+
+    /**
+     * Iterator with all columns used as features, and no labels
+     * @param recordReader the reader to get the batches from
+     */
+    public ArrowDataSetIterator(ArrowRecordReader recordReader) {
+        this(recordReader,-1,-1,-1,false);
+    }
+
+    /**
+     * Classification iterator: the integer class index in the label column
+     * is converted to a one-hot representation
+     * @param recordReader the reader to get the batches from
+     * @param labelIndex the index of the label column
+     * @param numPossibleLabels the number of classes
+     */
+    public ArrowDataSetIterator(ArrowRecordReader recordReader,int labelIndex,int numPossibleLabels) {
+        this(recordReader,labelIndex,labelIndex,numPossibleLabels,false);
+    }
+
+    /**
+     * Regression iterator (when regression is true): the columns from labelIndexFrom to labelIndexTo
+     * (inclusive) are used as labels
+     * @param recordReader the reader to get the batches from
+     * @param labelIndexFrom the index of the first label column
+     * @param labelIndexTo the index of the last label column (inclusive)
+     * @param regression must be true
+     */
+    public ArrowDataSetIterator(ArrowRecordReader recordReader,int labelIndexFrom,int labelIndexTo,boolean regression) {
+        this(recordReader,labelIndexFrom,labelIndexTo,-1,regression);
+        if(!regression) {
+            throw new IllegalArgumentException("Use ArrowDataSetIterator(recordReader, labelIndex, numPossibleLabels) for classification");
+        }
+    }
+
+    private ArrowDataSetIterator(ArrowRecordReader recordReader,int labelIndexFrom,int labelIndexTo,int numPossibleLabels,boolean regression) {
+        if(labelIndexTo < labelIndexFrom) {
+            throw new IllegalArgumentException("Invalid label indices: labelIndexFrom=" + labelIndexFrom + ", labelIndexTo=" + labelIndexTo);
+        }
+        if(labelIndexFrom >= 0 && !regression && numPossibleLabels <= 0) {
+            throw new IllegalArgumentException("Number of possible labels must be > 0 for classification: got " + numPossibleLabels);
+        }
+
+        this.recordReader = recordReader;
+        this.labelIndexFrom = labelIndexFrom;
+        this.labelIndexTo = labelIndexTo;
+        this.numPossibleLabels = numPossibleLabels;
+        this.regression = regression;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return recordReader.hasNextBatch();
+    }
+
+    @Override
+    public DataSet next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException("No more arrow batches");
+        }
+
+        ArrowWritableRecordBatch batch = recordReader.nextBatch();
+        int numColumns = batch.getList().size();
+        int numLabelColumns = labelIndexFrom < 0 ? 0 : labelIndexTo - labelIndexFrom + 1;
+        int[] featureColumns = new int[numColumns - numLabelColumns];
+        for(int i = 0, j = 0; i < numColumns; i++) {
+            if(i < labelIndexFrom || i > labelIndexTo) {
+                featureColumns[j++] = i;
+            }
+        }
+
+        INDArray features = ArrowConverter.toArray(batch,featureColumns,dataType);
+        INDArray labels = null;
+        if(numLabelColumns > 0) {
+            int[] labelColumns = new int[numLabelColumns];
+            for(int i = 0; i < numLabelColumns; i++) {
+                labelColumns[i] = labelIndexFrom + i;
+            }
+
+            if(regression) {
+                labels = ArrowConverter.toArray(batch,labelColumns,dataType);
+            }
+            else {
+                INDArray classIndices = ArrowConverter.toArray(batch,labelColumns,DataType.INT);
+                labels = Nd4j.create(dataType,batch.size(),numPossibleLabels);
+                for(int i = 0; i < batch.size(); i++) {
+                    int classIdx = classIndices.getInt(i,0);
+                    if(classIdx < 0 || classIdx >= numPossibleLabels) {
+                        throw new IllegalStateException("Invalid class index " + classIdx + " in row " + i
+                                + ": expected a value between 0 and " + (numPossibleLabels - 1));
+                    }
+                    labels.putScalar(i,classIdx,1.0);
+                }
+            }
+        }
+
+        lastBatchSize = batch.size();
+        inputColumns = featureColumns.length;
+        DataSet ret = new DataSet(features,labels);
+        if(preProcessor != null) {
+            preProcessor.preProcess(ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Not supported: the minibatch size is the size of each arrow record batch
+     */
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("ArrowDataSetIterator returns one DataSet per arrow record batch: use next()");
+    }
+
+    /**
+     * @return the number of feature columns, or -1 before the first batch has been read
+     */
+    @Override
+    public int inputColumns() {
+        return inputColumns;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        if(labelIndexFrom < 0) {
+            return -1;
+        }
+        return regression ? labelIndexTo - labelIndexFrom + 1 : numPossibleLabels;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return recordReader.resetSupported();
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        recordReader.reset();
+    }
+
+    /**
+     * @return the number of rows of the last batch, or -1 before the first batch has been read
+     */
+    @Override
+    public int batch() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+}
@@ -121,6 +121,37 @@ public class ArrowRecordReader implements RecordReader {
 
     }
 
+    /**
+     * Whether there is another arrow file to read with {@link #nextBatch()}
+     * @return true if another batch can be read
+     */
+    public boolean hasNextBatch() {
+        return pathsIter.hasNext();
+    }
+
+    /**
+     * Read the whole record batch of the next arrow file at once,
+     * instead of record by record. The previous batch is closed: arrays wrapping
+     * its vectors (see {@link org.datavec.arrow.ArrowConverter#wrapArrowVector(org.apache.arrow.vector.FieldVector)})
+     * must not be used after this call.
+     * Records of the previous file that have not been returned by {@link #next()} yet are skipped.
+     * @return the batch read from the next file
+     */
+    public ArrowWritableRecordBatch nextBatch() {
+        ArrowWritableRecordBatch previous = currentBatch;
+        loadNextBatch();
+        if(previous != null && previous != currentBatch) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                log.error("",e);
+            }
+        }
+
+        currIdx = currentBatch.size();
+        return currentBatch;
+    }
+
     private void loadNextBatch() {
         String url = pathsIter.next();
         try (InputStream inputStream = split.openInputStreamFor(url)) {
@@ -144,7 +175,7 @@ public class ArrowRecordReader implements RecordReader {
 
     @Override
     public boolean hasNext() {
-        return pathsIter.hasNext() || currIdx < this.currentBatch.size();
+        return pathsIter.hasNext() || (currentBatch != null && currIdx < this.currentBatch.size());
     }
 
     @Override
@@ -156,6 +187,9 @@ public class ArrowRecordReader implements RecordReader {
     public void reset() {
         if(split != null) {
             split.reset();
+            this.pathsIter = split.locationsPathIterator();
+            this.currIdx = 0;
+            this.currentBatch = null;
         }
     }
 
@@ -0,0 +1,161 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.arrow.recordreader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.common.tests.BaseND4JTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class ArrowDataSetIteratorTest extends BaseND4JTest {
+
+    private static BufferAllocator bufferAllocator = new RootAllocator(Long.MAX_VALUE);
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testWrapAndCopyColumns() {
+        float[] f = {1, 2, 3, 4};
+        int[] i = {5, 6, 7, 8};
+        double[] d = {0.5, 1.5, 2.5, 3.5};
+        List<FieldVector> vectors = Arrays.<FieldVector>asList(
+                ArrowConverter.vectorFor(bufferAllocator, "f", f),
+                ArrowConverter.vectorFor(bufferAllocator, "i", i),
+                ArrowConverter.vectorFor(bufferAllocator, "d", d));
+
+        INDArray wrapped = ArrowConverter.wrapArrowVector(vectors.get(0));
+        assertEquals(DataType.FLOAT, wrapped.dataType());
+        assertEquals(Nd4j.createFromArray(f).reshape(4, 1), wrapped);
+        assertEquals(Nd4j.createFromArray(i).reshape(4, 1), ArrowConverter.wrapArrowVector(vectors.get(1)));
+
+        Schema schema = new Schema.Builder().addColumnFloat("f").addColumnInteger("i").addColumnDouble("d").build();
+        ArrowWritableRecordBatch batch = new ArrowWritableRecordBatch(vectors, schema);
+        INDArray arr = ArrowConverter.toArray(batch, new int[] {0, 1, 2}, DataType.DOUBLE);
+        INDArray expected = Nd4j.create(DataType.DOUBLE, 4, 3);
+        for (int r = 0; r < 4; r++) {
+            expected.putScalar(r, 0, f[r]);
+            expected.putScalar(r, 1, i[r]);
+            expected.putScalar(r, 2, d[r]);
+        }
+        assertEquals(expected, arr);
+
+        //Column subset and reordering, and a view of the batch
+        ArrowWritableRecordBatch view = new ArrowWritableRecordBatch(vectors, schema, 1, 2);
+        INDArray sub = ArrowConverter.toArray(view, new int[] {2, 0}, DataType.FLOAT);
+        assertEquals(Nd4j.createFromArray(new float[][] {{1.5f, 2}, {2.5f, 3}}), sub);
+    }
+
+    @Test
+    public void testIteratorMatchesPerRecordPath() throws Exception {
+        int numFiles = 5;
+        int rowsPerFile = 2000;
+        int numFeatures = 8;
+        int numClasses = 3;
+        Schema.Builder sb = new Schema.Builder();
+        for (int j = 0; j < numFeatures; j++) {
+            sb.addColumnDouble("f" + j);
+        }
+        Schema schema = sb.addColumnInteger("label").build();
+
+        File dir = testDir.newFolder();
+        Random r = new Random(12345);
+        for (int n = 0; n < numFiles; n++) {
+            List<List<Writable>> records = new ArrayList<>();
+            for (int i = 0; i < rowsPerFile; i++) {
+                List<Writable> record = new ArrayList<>();
+                for (int j = 0; j < numFeatures; j++) {
+                    record.add(new DoubleWritable(r.nextDouble()));
+                }
+                record.add(new IntWritable(r.nextInt(numClasses)));
+                records.add(record);
+            }
+            try (FileOutputStream fos = new FileOutputStream(new File(dir, "batch-" + n + ".arrow"))) {
+                ArrowConverter.writeRecordBatchTo(records, schema, fos);
+            }
+        }
+
+        //Per-record path: one List<Writable> per record, copied value by value
+        long start = System.nanoTime();
+        ArrowRecordReader perRecord = new ArrowRecordReader();
+        perRecord.initialize(new FileSplit(dir));
+        List<INDArray> expFeatures = new ArrayList<>();
+        List<INDArray> expLabels = new ArrayList<>();
+        for (int n = 0; n < numFiles; n++) {
+            INDArray features = Nd4j.create(DataType.FLOAT, rowsPerFile, numFeatures);
+            INDArray labels = Nd4j.create(DataType.FLOAT, rowsPerFile, numClasses);
+            for (int i = 0; i < rowsPerFile; i++) {
+                List<Writable> record = perRecord.next();
+                for (int j = 0; j < numFeatures; j++) {
+                    features.putScalar(i, j, record.get(j).toDouble());
+                }
+                labels.putScalar(i, record.get(numFeatures).toInt(), 1.0);
+            }
+            expFeatures.add(features);
+            expLabels.add(labels);
+        }
+        assertFalse(perRecord.hasNext());
+        long perRecordTime = System.nanoTime() - start;
+
+        //Batch path
+        ArrowRecordReader rr = new ArrowRecordReader();
+        rr.initialize(new FileSplit(dir));
+        ArrowDataSetIterator iter = new ArrowDataSetIterator(rr, numFeatures, numClasses);
+        iter.setDataType(DataType.FLOAT);
+        assertEquals(numClasses, iter.totalOutcomes());
+        for (int epoch = 0; epoch < 2; epoch++) {
+            start = System.nanoTime();
+            int n = 0;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                assertEquals(expFeatures.get(n), ds.getFeatures());
+                assertEquals(expLabels.get(n), ds.getLabels());
+                n++;
+            }
+            assertEquals(numFiles, n);
+            assertEquals(numFeatures, iter.inputColumns());
+            assertEquals(rowsPerFile, iter.batch());
+            log.info("Per-record path: {} ms, batch path: {} ms", perRecordTime / 1000000,
+                    (System.nanoTime() - start) / 1000000);
+            iter.reset();
+        }
+    }
+}
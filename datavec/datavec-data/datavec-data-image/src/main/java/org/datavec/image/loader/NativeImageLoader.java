@@ -36,7 +36,9 @@ import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.util.ArrayUtil;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Random;
 
 import org.bytedeco.leptonica.*;
 import org.bytedeco.opencv.opencv_core.*;
@@ -64,6 +66,8 @@ public class NativeImageLoader extends BaseImageLoader {
 
     boolean direct = !Loader.getPlatform().startsWith("android");
 
+    protected boolean reducedResolutionDecode = false;
+
     /**
      * Loads images with no scaling or conversion.
      */
@@ -141,6 +145,24 @@ public class NativeImageLoader extends BaseImageLoader {
         this.centerCropIfNeeded = other.centerCropIfNeeded;
         this.imageTransform = other.imageTransform;
         this.multiPageMode = other.multiPageMode;
+        this.reducedResolutionDecode = other.reducedResolutionDecode;
+    }
+
+    /**
+     * Enables or disables reduced-resolution decoding. When enabled, JPEG images that are at least twice as large
+     * as the target height and width are decoded directly at 1/2, 1/4 or 1/8 of their size (with one of the
+     * {@code IMREAD_REDUCED_*} modes of OpenCV) instead of being decoded at full resolution and scaled down afterwards.
+     * It only applies when the number of channels is set to 1 or 3 and no {@link ImageTransform} is used, since
+     * transforms may depend on the original image size.
+     *
+     * @param reducedResolutionDecode true to enable reduced-resolution decoding
+     */
+    public void setReducedResolutionDecode(boolean reducedResolutionDecode) {
+        this.reducedResolutionDecode = reducedResolutionDecode;
+    }
+
+    public boolean isReducedResolutionDecode() {
+        return reducedResolutionDecode;
     }
 
     @Override
@@ -272,7 +294,7 @@ public class NativeImageLoader extends BaseImageLoader {
         if (this.multiPageMode != null) {
             a = asMatrix(mat.data(), mat.cols());
         }else{
-            Mat image = imdecode(mat, IMREAD_ANYDEPTH | IMREAD_ANYCOLOR);
+            Mat image = imdecode(mat, decodeFlags(mat));
             if (image == null || image.empty()) {
                 PIX pix = pixReadMem(mat.data(), mat.cols());
                 if (pix == null) {
@@ -547,9 +569,95 @@ public class NativeImageLoader extends BaseImageLoader {
         Nd4j.getAffinityManager().tagLocation(ret, AffinityManager.Location.HOST);
     }
 
+    /**
+     * Returns the flags to pass to {@code imdecode()} for the encoded image: one of the {@code IMREAD_REDUCED_*}
+     * modes when {@link #setReducedResolutionDecode(boolean)} is enabled and the image is a JPEG large enough to be
+     * decoded at a reduced size, or {@code IMREAD_ANYDEPTH | IMREAD_ANYCOLOR} otherwise.
+     */
+    protected int decodeFlags(Mat encoded) {
+        int flags = IMREAD_ANYDEPTH | IMREAD_ANYCOLOR;
+        if (!reducedResolutionDecode || imageTransform != null || height <= 0 || width <= 0
+                        || (channels != 1 && channels != 3)) {
+            return flags;
+        }
+        int[] size = jpegSize(encoded.data(), encoded.cols());
+        if (size == null) {
+            return flags;
+        }
+        for (int factor = 8; factor >= 2; factor /= 2) {
+            if (size[0] / factor >= height && size[1] / factor >= width) {
+                switch (factor) {
+                    case 8:
+                        return channels == 1 ? IMREAD_REDUCED_GRAYSCALE_8 : IMREAD_REDUCED_COLOR_8;
+                    case 4:
+                        return channels == 1 ? IMREAD_REDUCED_GRAYSCALE_4 : IMREAD_REDUCED_COLOR_4;
+                    default:
+                        return channels == 1 ? IMREAD_REDUCED_GRAYSCALE_2 : IMREAD_REDUCED_COLOR_2;
+                }
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Reads the height and width from the start-of-frame segment of a JPEG image, without decoding it.
+     *
+     * @return {height, width}, or null if the data is not a JPEG image or its header could not be parsed
+     */
+    protected static int[] jpegSize(BytePointer data, long length) {
+        if (length < 4 || (data.get(0) & 0xFF) != 0xFF || (data.get(1) & 0xFF) != 0xD8) {
+            return null;
+        }
+        long pos = 2;
+        while (pos + 4 <= length) {
+            if ((data.get(pos) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = data.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                //Fill byte
+                pos++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                //Standalone markers have no length field
+                pos += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                //End of image or start of scan before any frame header
+                return null;
+            }
+            int segmentLength = ((data.get(pos + 2) & 0xFF) << 8) | (data.get(pos + 3) & 0xFF);
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                if (pos + 9 > length) {
+                    return null;
+                }
+                int h = ((data.get(pos + 5) & 0xFF) << 8) | (data.get(pos + 6) & 0xFF);
+                int w = ((data.get(pos + 7) & 0xFF) << 8) | (data.get(pos + 8) & 0xFF);
+                return h > 0 && w > 0 ? new int[] {h, w} : null;
+            }
+            pos += 2 + segmentLength;
+        }
+        return null;
+    }
+
     public void asMatrixView(InputStream is, INDArray view) throws IOException {
+        asMatrixView(is, view, null);
+    }
+
+    /**
+     * As per {@link #asMatrixView(InputStream, INDArray)}, but with the given source of randomness passed to the
+     * {@link ImageTransform}, if any. This allows augmentations to be reproducible regardless of the order and the
+     * thread in which images get loaded.
+     *
+     * @param is     Input stream to load the image from
+     * @param view   Array to load the image into
+     * @param random Random to use for the image transform, or null to use the transform's own
+     */
+    public void asMatrixView(InputStream is, INDArray view, Random random) throws IOException {
         Mat mat = streamToMat(is);
-        Mat image = imdecode(mat, IMREAD_ANYDEPTH | IMREAD_ANYCOLOR);
+        Mat image = imdecode(mat, decodeFlags(mat));
         if (image == null || image.empty()) {
             PIX pix = pixReadMem(mat.data(), mat.cols());
             if (pix == null) {
@@ -560,8 +668,55 @@ public class NativeImageLoader extends BaseImageLoader {
         }
         if (image == null)
             throw new RuntimeException();
-        asMatrixView(image, view);
+        transformImage(image, view, random);
+        image.deallocate();
+    }
+
+    /**
+     * Decodes the encoded image in the remaining bytes of the given buffer into the given view. When the buffer is
+     * direct (for example a slice of a memory-mapped file), the image is decoded in place without copying it first.
+     *
+     * @param encoded Buffer holding the encoded image, between its position and its limit
+     * @param view    Array to load the image into
+     * @param random  Random to use for the image transform, or null to use the transform's own
+     */
+    public void asMatrixView(ByteBuffer encoded, INDArray view, Random random) throws IOException {
+        Mat image = decode(encoded);
+        transformImage(image, view, random);
+        image.deallocate();
+    }
+
+    /**
+     * As per {@link #asMatrixView(ByteBuffer, INDArray, Random)}, but returns a new array of shape
+     * [1, channels, height, width].
+     */
+    public INDArray asMatrix(ByteBuffer encoded) throws IOException {
+        Mat image = decode(encoded);
+        INDArray ret = asMatrix(image);
         image.deallocate();
+        return ret;
+    }
+
+    protected Mat decode(ByteBuffer encoded) throws IOException {
+        BytePointer data;
+        if (encoded.isDirect()) {
+            data = new BytePointer(encoded.slice());
+        } else {
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.duplicate().get(bytes);
+            data = new BytePointer(bytes);
+        }
+        Mat mat = new Mat(1, encoded.remaining(), CV_8UC1, data);
+        Mat image = imdecode(mat, decodeFlags(mat));
+        if (image == null || image.empty()) {
+            PIX pix = pixReadMem(mat.data(), mat.cols());
+            if (pix == null) {
+                throw new IOException("Could not decode image from buffer");
+            }
+            image = convert(pix);
+            pixDestroy(pix);
+        }
+        return image;
     }
 
     public void asMatrixView(String filename, INDArray view) throws IOException {
@@ -569,8 +724,13 @@ public class NativeImageLoader extends BaseImageLoader {
     }
 
     public void asMatrixView(File f, INDArray view) throws IOException {
+        asMatrixView(f, view, null);
+    }
+
+    /** As per {@link #asMatrixView(InputStream, INDArray, Random)} but from a file */
+    public void asMatrixView(File f, INDArray view, Random random) throws IOException {
         try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(f))) {
-            asMatrixView(bis, view);
+            asMatrixView(bis, view, random);
         }
     }
 
@@ -604,9 +764,13 @@ public class NativeImageLoader extends BaseImageLoader {
     }
 
     protected INDArray transformImage(Mat image, INDArray ret) throws IOException {
+        return transformImage(image, ret, null);
+    }
+
+    protected INDArray transformImage(Mat image, INDArray ret, Random random) throws IOException {
         if (imageTransform != null && converter != null) {
             ImageWritable writable = new ImageWritable(converter.convert(image));
-            writable = imageTransform.transform(writable);
+            writable = random != null ? imageTransform.transform(writable, random) : imageTransform.transform(writable);
             image = converter.convert(writable.getFrame());
         }
         Mat image2 = null, image3 = null, image4 = null;
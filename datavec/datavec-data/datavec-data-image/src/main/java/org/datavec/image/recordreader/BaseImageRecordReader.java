@@ -32,6 +32,7 @@ import org.datavec.api.records.reader.BaseRecordReader;
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.split.InputStreamInputSplit;
+import org.datavec.api.transform.serde.JsonMappers;
 import org.datavec.api.util.files.FileFromPathIterator;
 import org.datavec.api.util.files.URIUtil;
 import org.datavec.api.util.ndarray.RecordConverter;
@@ -42,6 +43,7 @@ import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.datavec.image.loader.BaseImageLoader;
 import org.datavec.image.loader.ImageLoader;
 import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.transform.BaseImageTransform;
 import org.datavec.image.transform.ImageTransform;
 import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -50,6 +52,8 @@ import org.nd4j.linalg.factory.Nd4j;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for the image record reader
@@ -81,12 +85,34 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     protected boolean logLabelCountOnInit = true;
     @Getter @Setter
     protected boolean nchw_channels_first = true;
+    /** Number of threads used by {@link #next(int)} to decode, resize and transform the images of a batch */
+    @Getter @Setter
+    protected int numDecodeThreads = 1;
+    /**
+     * If set, the {@link ImageTransform} gets a {@link Random} seeded from this value, the epoch and the index of the
+     * example since the last reset, making augmentation independent of the number of decode threads while still
+     * differing from one epoch to the next
+     */
+    @Getter @Setter
+    protected Long decodeSeed = null;
+    @Getter
+    protected boolean reducedResolutionDecode = false;
+    /** Index of the next example since the last reset, advanced by both {@link #next()} and {@link #next(int)} */
+    protected long exampleIndex = 0;
+    /** Number of resets since initialization */
+    protected long epoch = 0;
+    protected transient ExecutorService decodeExecutor;
+    protected transient ThreadLocal<NativeImageLoader> decodeLoaders;
+    protected transient boolean sharedDecodeTransform;
 
     public final static String HEIGHT = NAME_SPACE + ".height";
     public final static String WIDTH = NAME_SPACE + ".width";
     public final static String CHANNELS = NAME_SPACE + ".channels";
     public final static String CROP_IMAGE = NAME_SPACE + ".cropimage";
     public final static String IMAGE_LOADER = NAME_SPACE + ".imageloader";
+    public final static String DECODE_THREADS = NAME_SPACE + ".decodethreads";
+    public final static String DECODE_SEED = NAME_SPACE + ".decodeseed";
+    public final static String REDUCED_RESOLUTION_DECODE = NAME_SPACE + ".reduceddecode";
 
     public BaseImageRecordReader() {}
 
@@ -128,11 +154,29 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     }
 
 
+    /**
+     * Enables or disables reduced-resolution decoding of JPEG images, see
+     * {@link NativeImageLoader#setReducedResolutionDecode(boolean)}.
+     */
+    public void setReducedResolutionDecode(boolean reducedResolutionDecode) {
+        this.reducedResolutionDecode = reducedResolutionDecode;
+        if (imageLoader instanceof NativeImageLoader) {
+            ((NativeImageLoader) imageLoader).setReducedResolutionDecode(reducedResolutionDecode);
+        }
+        decodeLoaders = null;
+    }
+
     @Override
     public void initialize(InputSplit split) throws IOException {
         if (imageLoader == null) {
             imageLoader = new NativeImageLoader(height, width, channels, imageTransform);
         }
+        if (imageLoader instanceof NativeImageLoader) {
+            ((NativeImageLoader) imageLoader).setReducedResolutionDecode(reducedResolutionDecode);
+        }
+        decodeLoaders = null;
+        exampleIndex = 0;
+        epoch = 0;
 
         if(split instanceof InputStreamInputSplit) {
             this.inputSplit = split;
@@ -186,6 +230,11 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         this.width = conf.getLong(WIDTH, width);
         this.channels = conf.getLong(CHANNELS, channels);
         this.cropImage = conf.getBoolean(CROP_IMAGE, cropImage);
+        this.numDecodeThreads = conf.getInt(DECODE_THREADS, numDecodeThreads);
+        if (conf.get(DECODE_SEED) != null) {
+            this.decodeSeed = conf.getLong(DECODE_SEED, 0);
+        }
+        this.reducedResolutionDecode = conf.getBoolean(REDUCED_RESOLUTION_DECODE, reducedResolutionDecode);
         if ("imageio".equals(conf.get(IMAGE_LOADER))) {
             this.imageLoader = new ImageLoader(height, width, channels, cropImage);
         } else {
@@ -245,9 +294,18 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
             if (image.isDirectory())
                 return next();
+            long index = exampleIndex++;
             try {
                 invokeListeners(image);
-                INDArray array = imageLoader.asMatrix(image);
+                INDArray array;
+                Random random = exampleRandom(index);
+                if (random != null && imageLoader.getClass() == NativeImageLoader.class) {
+                    //Same per-example augmentation as next(int)
+                    array = Nd4j.createUninitialized(new long[] {1, channels, height, width}, 'c');
+                    ((NativeImageLoader) imageLoader).asMatrixView(image, array, random);
+                } else {
+                    array = imageLoader.asMatrix(image);
+                }
                 if(!nchw_channels_first){
                     array = array.permute(0,2,3,1);     //NCHW to NHWC
                 }
@@ -342,13 +400,19 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
         INDArray features = Nd4j.createUninitialized(new long[] {cnt, channels, height, width}, 'c');
         Nd4j.getAffinityManager().tagLocation(features, AffinityManager.Location.HOST);
-        for (int i = 0; i < cnt; i++) {
-            try {
-                ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
-                        features.tensorAlongDimension(i, 1, 2, 3));
-            } catch (Exception e) {
-                System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
-                throw new RuntimeException(e);
+        long firstExample = exampleIndex;
+        exampleIndex += cnt;
+        if (numDecodeThreads > 1 && cnt > 1 && imageLoader.getClass() == NativeImageLoader.class) {
+            decodeParallel(currBatch, features, firstExample);
+        } else {
+            for (int i = 0; i < cnt; i++) {
+                try {
+                    ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
+                            features.tensorAlongDimension(i, 1, 2, 3), exampleRandom(firstExample + i));
+                } catch (Exception e) {
+                    log.error("Image file failed during load: " + currBatch.get(i).getAbsolutePath(), e);
+                    throw new RuntimeException(e);
+                }
             }
         }
         if(!nchw_channels_first){
@@ -401,9 +465,132 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         return new NDArrayRecordBatch(ret);
     }
 
+    /**
+     * Decodes the given files into the corresponding slices of the preallocated features array, using
+     * {@link #numDecodeThreads} threads with one {@link NativeImageLoader} (and one copy of the
+     * {@link ImageTransform}) per thread.
+     */
+    protected void decodeParallel(final List<File> files, INDArray features, final long firstExample) {
+        if (decodeExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            decodeExecutor = Executors.newFixedThreadPool(numDecodeThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ImageRecordReader-decode-" + threadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        if (decodeLoaders == null) {
+            //Transforms that cannot be copied are shared by all threads, and only applied by one at a time
+            sharedDecodeTransform = imageTransform != null && copyImageTransform() == imageTransform;
+            decodeLoaders = new ThreadLocal<NativeImageLoader>() {
+                @Override
+                protected NativeImageLoader initialValue() {
+                    NativeImageLoader loader = new NativeImageLoader(height, width, channels,
+                            sharedDecodeTransform ? imageTransform : copyImageTransform());
+                    loader.setReducedResolutionDecode(reducedResolutionDecode);
+                    return loader;
+                }
+            };
+        }
+
+        final ThreadLocal<NativeImageLoader> loaders = decodeLoaders;
+        final boolean sharedTransform = sharedDecodeTransform;
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final int idx = i;
+            final INDArray view = features.tensorAlongDimension(i, 1, 2, 3);
+            futures.add(decodeExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Random random = exampleRandom(firstExample + idx);
+                    if (sharedTransform) {
+                        synchronized (imageTransform) {
+                            loaders.get().asMatrixView(files.get(idx), view, random);
+                        }
+                    } else {
+                        loaders.get().asMatrixView(files.get(idx), view, random);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                log.error("Image file failed during load: " + files.get(i).getAbsolutePath(), e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of {@link #imageTransform} for use by a single decode thread, made by round-tripping it through
+     * JSON, or the transform itself if it is null or cannot be serialized. The {@link Random} of a
+     * {@link BaseImageTransform} is not serialized: the copy gets a new one seeded from the original instead.
+     */
+    protected ImageTransform copyImageTransform() {
+        if (imageTransform == null) {
+            return null;
+        }
+        synchronized (imageTransform) {
+            Random random = null;
+            if (imageTransform instanceof BaseImageTransform) {
+                random = ((BaseImageTransform<?>) imageTransform).getRandom();
+                ((BaseImageTransform<?>) imageTransform).setRandom(null);
+            }
+            try {
+                String json = JsonMappers.getMapper().writeValueAsString(imageTransform);
+                ImageTransform copy = JsonMappers.getMapper().readValue(json, ImageTransform.class);
+                if (random != null && copy instanceof BaseImageTransform) {
+                    ((BaseImageTransform<?>) copy).setRandom(new Random(random.nextLong()));
+                }
+                return copy;
+            } catch (Exception e) {
+                log.warn("Could not copy image transform {} for parallel decoding; transforms will run sequentially",
+                        imageTransform.getClass().getSimpleName(), e);
+                return imageTransform;
+            } finally {
+                if (random != null) {
+                    ((BaseImageTransform<?>) imageTransform).setRandom(random);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the source of randomness for the transform of the example at the given index since the last reset
+     * in the current epoch, or null if no {@link #decodeSeed} has been set.
+     */
+    protected Random exampleRandom(long index) {
+        if (decodeSeed == null) {
+            return null;
+        }
+        long epochSeed = mix64(decodeSeed + (epoch + 1) * 0x9E3779B97F4A7C15L);
+        return new Random(mix64(epochSeed + (index + 1) * 0x9E3779B97F4A7C15L));
+    }
+
+    /** SplitMix64 finalizer, so that consecutive epochs and examples get uncorrelated seeds */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     @Override
     public void close() throws IOException {
-        //No op
+        if (decodeExecutor != null) {
+            decodeExecutor.shutdownNow();
+            decodeExecutor = null;
+        }
+        decodeLoaders = null;
     }
 
     @Override
@@ -472,6 +659,8 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         if (inputSplit == null)
             throw new UnsupportedOperationException("Cannot reset without first initializing");
         inputSplit.reset();
+        exampleIndex = 0;
+        epoch++;
         if (iter != null) {
             iter = new FileFromPathIterator(inputSplit.locationsPathIterator());
         } else if (record != null) {
@@ -0,0 +1,161 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.image.recordreader.shard;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only view of a shard file written by {@link ImageShardWriter}. The file is memory-mapped, and the encoded
+ * images can be accessed in any order through {@link #getImage(int)}, without copying them.
+ * <p>
+ * Shard layout (all integers big-endian):
+ * <pre>
+ * header:  int magic, int version
+ * records: encoded image bytes (JPEG, PNG, ...), back to back
+ * index:   int numRecords, then for each record: long offset, int length, UTF label ("" if none)
+ * footer:  long indexOffset, int magic
+ * </pre>
+ */
+public class ImageShard implements Closeable {
+
+    public static final String EXTENSION = "shard";
+
+    protected static final int MAGIC = 0x44564953;     //"DVIS"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_LENGTH = 8;
+    protected static final int FOOTER_LENGTH = 12;
+
+    @Getter
+    private final File file;
+    private MappedByteBuffer buffer;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final String[] labels;
+
+    protected ImageShard(File file, MappedByteBuffer buffer, long[] offsets, int[] lengths, String[] labels) {
+        this.file = file;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.labels = labels;
+    }
+
+    /**
+     * Memory-maps the given shard file and reads its index.
+     *
+     * @param file Shard file to open
+     * @return The opened shard
+     * @throws IOException If the file cannot be read or is not a valid shard
+     */
+    public static ImageShard open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Shard file " + file + " is larger than " + Integer.MAX_VALUE + " bytes");
+            }
+            if (size < HEADER_LENGTH + FOOTER_LENGTH) {
+                throw new IOException("File " + file + " is not a valid image shard: file is too short");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int size = buffer.capacity();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+            throw new IOException("File " + file + " is not a valid image shard: invalid magic number");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported image shard version " + version + " in file " + file);
+        }
+        long indexOffset = buffer.getLong(size - FOOTER_LENGTH);
+        if (indexOffset < HEADER_LENGTH || indexOffset > size - FOOTER_LENGTH) {
+            throw new IOException("File " + file + " is not a valid image shard: invalid index offset " + indexOffset);
+        }
+
+        ByteBuffer index = buffer.duplicate();
+        index.position((int) indexOffset);
+        index.limit(size - FOOTER_LENGTH);
+        byte[] indexBytes = new byte[index.remaining()];
+        index.get(indexBytes);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(indexBytes));
+        int numRecords = dis.readInt();
+        long[] offsets = new long[numRecords];
+        int[] lengths = new int[numRecords];
+        String[] labels = new String[numRecords];
+        for (int i = 0; i < numRecords; i++) {
+            offsets[i] = dis.readLong();
+            lengths[i] = dis.readInt();
+            labels[i] = dis.readUTF();
+            if (offsets[i] < HEADER_LENGTH || offsets[i] + lengths[i] > indexOffset) {
+                throw new IOException("File " + file + " is not a valid image shard: record " + i + " is out of bounds");
+            }
+        }
+        return new ImageShard(file, buffer, offsets, lengths, labels);
+    }
+
+    /**
+     * @return Number of images in this shard
+     */
+    public int numRecords() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the encoded bytes of the given image, as a read-only buffer backed by the mapped file.
+     *
+     * @param index Index of the image in this shard
+     */
+    public ByteBuffer getImage(int index) {
+        checkOpen();
+        ByteBuffer b = buffer.duplicate();
+        b.position((int) offsets[index]);
+        b.limit((int) offsets[index] + lengths[index]);
+        return b.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @param index Index of the image in this shard
+     * @return Label of the given image, or null if it was written without a label
+     */
+    public String getLabel(int index) {
+        return labels[index].isEmpty() ? null : labels[index];
+    }
+
+    private void checkOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("Image shard " + file + " has been closed");
+        }
+    }
+
+    /**
+     * Releases the reference to the mapped file. The mapping itself is released once the buffers returned by
+     * {@link #getImage(int)} have been garbage collected.
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.image.recordreader.shard;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.metadata.RecordMetaDataIndex;
+import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.util.ndarray.RecordConverter;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.recordreader.BaseImageRecordReader;
+import org.datavec.image.transform.ImageTransform;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Record reader for image shards written by {@link ImageShardWriter}. Initialize it with an {@link InputSplit} over
+ * the shard files, for example {@code new FileSplit(shardDir, new String[]{"shard"})}.
+ * <p>
+ * Records have the same format as those of {@link org.datavec.image.recordreader.ImageRecordReader}: the image as an
+ * {@link org.datavec.api.writable.NDArrayWritable} of shape [1, channels, height, width], followed by the index of
+ * its label in {@link #getLabels()} (sorted label names from all the shards) when the shards contain labels.
+ * <p>
+ * When a shuffle buffer size greater than 1 is set, the order of the shards is shuffled at each epoch, and records
+ * are then drawn at random from a buffer of that many records, filled from the shards in order. Larger buffers give
+ * a better shuffle, at no memory cost since the images stay in the memory-mapped shards until they are decoded.
+ */
+@Slf4j
+public class ImageShardRecordReader extends BaseRecordReader {
+
+    protected long height;
+    protected long width;
+    protected long channels;
+    protected ImageTransform imageTransform;
+    @Getter @Setter
+    protected boolean nchw_channels_first = true;
+    protected int shuffleBufferSize;
+    protected Random rng;
+    protected Configuration conf;
+
+    protected List<ImageShard> shards;
+    protected List<String> labels;
+    protected Map<String, Integer> labelIndices;
+    protected boolean appendLabel;
+    protected NativeImageLoader imageLoader;
+
+    protected int[] shardOrder;
+    protected int nextShard;
+    protected int nextRecordInShard;
+    protected List<long[]> shuffleBuffer = new ArrayList<>();
+    protected long[] current;
+
+    public ImageShardRecordReader(long height, long width, long channels) {
+        this(height, width, channels, null);
+    }
+
+    public ImageShardRecordReader(long height, long width, long channels, ImageTransform imageTransform) {
+        this(height, width, channels, imageTransform, 0, 0);
+    }
+
+    /**
+     * @param height            Height of the output images
+     * @param width             Width of the output images
+     * @param channels          Number of channels of the output images
+     * @param imageTransform    Transform to apply to the images, may be null
+     * @param shuffleBufferSize Size of the shuffle buffer. 0 or 1: no shuffling, records are returned in order
+     * @param seed              Seed for the shuffling of shards and records
+     */
+    public ImageShardRecordReader(long height, long width, long channels, ImageTransform imageTransform,
+                                  int shuffleBufferSize, long seed) {
+        this.height = height;
+        this.width = width;
+        this.channels = channels;
+        this.imageTransform = imageTransform;
+        this.shuffleBufferSize = shuffleBufferSize;
+        this.rng = new Random(seed);
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        super.initialize(split);
+        close();
+
+        URI[] locations = split.locations();
+        if (locations == null || locations.length == 0) {
+            throw new IllegalArgumentException("No shard locations found in the split");
+        }
+        shards = new ArrayList<>();
+        Set<String> labelSet = new HashSet<>();
+        for (URI uri : locations) {
+            File f = new File(uri);
+            if (f.isDirectory()) {
+                continue;
+            }
+            ImageShard shard = ImageShard.open(f);
+            shards.add(shard);
+            for (int i = 0; i < shard.numRecords(); i++) {
+                String label = shard.getLabel(i);
+                if (label != null) {
+                    labelSet.add(label);
+                }
+            }
+        }
+        labels = new ArrayList<>(labelSet);
+        Collections.sort(labels);
+        labelIndices = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            labelIndices.put(labels.get(i), i);
+        }
+        appendLabel = !labels.isEmpty();
+        imageLoader = new NativeImageLoader(height, width, channels, imageTransform);
+        reset();
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.height = conf.getLong(BaseImageRecordReader.HEIGHT, height);
+        this.width = conf.getLong(BaseImageRecordReader.WIDTH, width);
+        this.channels = conf.getLong(BaseImageRecordReader.CHANNELS, channels);
+        this.conf = conf;
+        initialize(split);
+    }
+
+    /**
+     * Returns the next record position as {shard index, record index in shard}, or null when there are no more
+     */
+    protected long[] nextPosition() {
+        //Fill the shuffle buffer (or take the next record directly, when not shuffling)
+        int bufferSize = Math.max(1, shuffleBufferSize);
+        while (shuffleBuffer.size() < bufferSize && nextShard < shardOrder.length) {
+            ImageShard shard = shards.get(shardOrder[nextShard]);
+            if (nextRecordInShard < shard.numRecords()) {
+                shuffleBuffer.add(new long[] {shardOrder[nextShard], nextRecordInShard++});
+            } else {
+                nextShard++;
+                nextRecordInShard = 0;
+            }
+        }
+        if (shuffleBuffer.isEmpty()) {
+            return null;
+        }
+        int idx = shuffleBufferSize > 1 ? rng.nextInt(shuffleBuffer.size()) : 0;
+        long[] ret = shuffleBuffer.get(idx);
+        //Swap with the last element for O(1) removal
+        shuffleBuffer.set(idx, shuffleBuffer.get(shuffleBuffer.size() - 1));
+        shuffleBuffer.remove(shuffleBuffer.size() - 1);
+        return ret;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (shards == null) {
+            throw new IllegalStateException("Record reader has not been initialized");
+        }
+        if (!shuffleBuffer.isEmpty()) {
+            return true;
+        }
+        //Skip empty shards
+        while (nextShard < shardOrder.length && nextRecordInShard >= shards.get(shardOrder[nextShard]).numRecords()) {
+            nextShard++;
+            nextRecordInShard = 0;
+        }
+        return nextShard < shardOrder.length;
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more records");
+        }
+        current = nextPosition();
+        return load(current);
+    }
+
+    protected List<Writable> load(long[] position) {
+        ImageShard shard = shards.get((int) position[0]);
+        int record = (int) position[1];
+        invokeListeners(shard.getFile());
+        INDArray array;
+        try {
+            array = imageLoader.asMatrix(shard.getImage(record));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not decode record " + record + " of shard " + shard.getFile(), e);
+        }
+        if (!nchw_channels_first) {
+            array = array.permute(0, 2, 3, 1);     //NCHW to NHWC
+        }
+        List<Writable> ret = RecordConverter.toRecord(array);
+        if (appendLabel) {
+            ret.add(new IntWritable(labelIndex(shard, record)));
+        }
+        return ret;
+    }
+
+    protected int labelIndex(ImageShard shard, int record) {
+        String label = shard.getLabel(record);
+        if (label == null) {
+            throw new IllegalStateException("Record " + record + " of shard " + shard.getFile()
+                    + " has no label, but other records do");
+        }
+        return labelIndices.get(label);
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        Preconditions.checkArgument(num > 0, "Number of examples must be > 0: got %s", num);
+        List<long[]> positions = new ArrayList<>(num);
+        while (positions.size() < num && hasNext()) {
+            positions.add(nextPosition());
+        }
+        if (positions.isEmpty()) {
+            throw new NoSuchElementException("No more records");
+        }
+        current = positions.get(positions.size() - 1);
+
+        int cnt = positions.size();
+        INDArray features = Nd4j.createUninitialized(new long[] {cnt, channels, height, width}, 'c');
+        Nd4j.getAffinityManager().tagLocation(features, AffinityManager.Location.HOST);
+        INDArray labelsArr = appendLabel ? Nd4j.create(cnt, labels.size()) : null;
+        for (int i = 0; i < cnt; i++) {
+            ImageShard shard = shards.get((int) positions.get(i)[0]);
+            int record = (int) positions.get(i)[1];
+            invokeListeners(shard.getFile());
+            try {
+                imageLoader.asMatrixView(shard.getImage(record), features.tensorAlongDimension(i, 1, 2, 3), null);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not decode record " + record + " of shard " + shard.getFile(), e);
+            }
+            if (appendLabel) {
+                labelsArr.putScalar(i, labelIndex(shard, record), 1.0f);
+            }
+        }
+        if (!nchw_channels_first) {
+            features = features.permute(0, 2, 3, 1);   //NCHW to NHWC
+        }
+        Nd4j.getAffinityManager().ensureLocation(features, AffinityManager.Location.DEVICE);
+
+        List<INDArray> ret = new ArrayList<>();
+        ret.add(features);
+        if (appendLabel) {
+            ret.add(labelsArr);
+        }
+        return new NDArrayRecordBatch(ret);
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void reset() {
+        if (shards == null) {
+            throw new UnsupportedOperationException("Cannot reset without first initializing");
+        }
+        shardOrder = new int[shards.size()];
+        for (int i = 0; i < shardOrder.length; i++) {
+            shardOrder[i] = i;
+        }
+        if (shuffleBufferSize > 1) {
+            //Fisher-Yates shuffle of the shard order
+            for (int i = shardOrder.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int tmp = shardOrder[i];
+                shardOrder[i] = shardOrder[j];
+                shardOrder[j] = tmp;
+            }
+        }
+        nextShard = 0;
+        nextRecordInShard = 0;
+        shuffleBuffer.clear();
+        current = null;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("Reading from a stream is not supported for image shards: "
+                + "use ImageRecordReader for individual image files");
+    }
+
+    @Override
+    public Record nextRecord() {
+        List<Writable> next = next();
+        ImageShard shard = shards.get((int) current[0]);
+        return new org.datavec.api.records.impl.Record(next,
+                new RecordMetaDataIndex(current[1], shard.getFile().toURI(), ImageShardRecordReader.class));
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) throws IOException {
+        return loadFromMetaData(Collections.singletonList(recordMetaData)).get(0);
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) throws IOException {
+        List<Record> out = new ArrayList<>();
+        for (RecordMetaData meta : recordMetaDatas) {
+            if (!(meta instanceof RecordMetaDataIndex)) {
+                throw new IllegalArgumentException("Expected RecordMetaDataIndex, got " + meta.getClass().getSimpleName());
+            }
+            File f = new File(meta.getURI());
+            int shardIdx = -1;
+            for (int i = 0; i < shards.size(); i++) {
+                if (shards.get(i).getFile().equals(f)) {
+                    shardIdx = i;
+                    break;
+                }
+            }
+            if (shardIdx < 0) {
+                throw new IllegalArgumentException("Shard " + f + " is not part of the split this reader was initialized with");
+            }
+            long[] position = {shardIdx, ((RecordMetaDataIndex) meta).getIndex()};
+            out.add(new org.datavec.api.records.impl.Record(load(position), meta));
+        }
+        return out;
+    }
+
+    @Override
+    public void close() {
+        if (shards != null) {
+            for (ImageShard shard : shards) {
+                shard.close();
+            }
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+}
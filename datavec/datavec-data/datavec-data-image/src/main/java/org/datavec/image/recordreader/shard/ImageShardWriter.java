@@ -0,0 +1,215 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.image.recordreader.shard;
+
+import org.datavec.api.io.labels.PathLabelGenerator;
+import org.datavec.api.split.InputSplit;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Packs encoded images and their labels into large shard files, which can then be read with
+ * {@link ImageShardRecordReader}. Reading a few large files instead of many small ones avoids most of the file
+ * system overhead (metadata lookups, open and close calls) of datasets made of many small image files.
+ * <p>
+ * Images are stored as they are, without decoding them. A new shard is started whenever the current one would grow
+ * past the maximum shard size. Shards are named {@code <prefix>-00000.shard}, {@code <prefix>-00001.shard}, etc.
+ * See {@link ImageShard} for the layout of each file.
+ */
+public class ImageShardWriter implements Closeable {
+
+    public static final long DEFAULT_MAX_SHARD_BYTES = 256L * 1024 * 1024;
+
+    private final File directory;
+    private final String prefix;
+    private final long maxShardBytes;
+    private final List<File> shardFiles = new ArrayList<>();
+
+    private DataOutputStream out;
+    private long position;
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+    //Encoded size of the index of the current shard, including the record count
+    private long indexBytes;
+
+    /**
+     * Uses a maximum shard size of {@link #DEFAULT_MAX_SHARD_BYTES}.
+     */
+    public ImageShardWriter(File directory, String prefix) {
+        this(directory, prefix, DEFAULT_MAX_SHARD_BYTES);
+    }
+
+    /**
+     * @param directory     Directory to write the shards to
+     * @param prefix        Prefix of the shard file names
+     * @param maxShardBytes Maximum size of each shard, in bytes. A single image larger than this gets a shard of its own,
+     *                      which still can't be larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    public ImageShardWriter(File directory, String prefix, long maxShardBytes) {
+        if (maxShardBytes <= 0 || maxShardBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum shard size must be between 1 and " + Integer.MAX_VALUE
+                    + " bytes: got " + maxShardBytes);
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Could not create directory " + directory);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxShardBytes = maxShardBytes;
+    }
+
+    /**
+     * Packs all the image files of the given split into shards.
+     *
+     * @param split          Image files to pack
+     * @param labelGenerator Label generator for the images, may be null
+     * @param directory      Directory to write the shards to
+     * @param prefix         Prefix of the shard file names
+     * @param maxShardBytes  Maximum size of each shard, in bytes
+     * @return The shard files that were written
+     */
+    public static List<File> pack(InputSplit split, PathLabelGenerator labelGenerator, File directory, String prefix,
+                                  long maxShardBytes) throws IOException {
+        try (ImageShardWriter writer = new ImageShardWriter(directory, prefix, maxShardBytes)) {
+            for (URI uri : split.locations()) {
+                File f = new File(uri);
+                if (f.isDirectory()) {
+                    continue;
+                }
+                String label = labelGenerator == null ? null : labelGenerator.getLabelForPath(uri).toString();
+                writer.write(f, label);
+            }
+            return writer.getShardFiles();
+        }
+    }
+
+    /**
+     * Writes the given image file, without decoding it.
+     *
+     * @param image Image file
+     * @param label Label of the image, may be null
+     */
+    public void write(File image, String label) throws IOException {
+        write(Files.readAllBytes(image.toPath()), label);
+    }
+
+    /**
+     * Writes the given encoded image (JPEG, PNG, ...).
+     *
+     * @param encoded Encoded image bytes
+     * @param label   Label of the image, may be null
+     */
+    public void write(byte[] encoded, String label) throws IOException {
+        label = label == null ? "" : label;
+        int labelBytes = utfLength(label);
+        if (labelBytes > 65535) {
+            throw new IllegalArgumentException("Label is too long: " + labelBytes + " bytes encoded, at most 65535 allowed");
+        }
+        //Size of the index entry: long offset, int length and UTF label (2 byte length + encoded chars)
+        long entryBytes = 12 + 2 + labelBytes;
+        //ImageShard.open() memory-maps the whole shard, which can't be larger than Integer.MAX_VALUE bytes
+        long aloneBytes = ImageShard.HEADER_LENGTH + encoded.length + 4 + entryBytes + ImageShard.FOOTER_LENGTH;
+        if (aloneBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image of " + encoded.length + " bytes does not fit in a shard: shards "
+                    + "can't be larger than " + Integer.MAX_VALUE + " bytes");
+        }
+        if (out != null && !offsets.isEmpty() && position + encoded.length + indexBytes + entryBytes
+                + ImageShard.FOOTER_LENGTH > maxShardBytes) {
+            finishShard();
+        }
+        if (out == null) {
+            startShard();
+        }
+        offsets.add(position);
+        lengths.add(encoded.length);
+        labels.add(label);
+        indexBytes += entryBytes;
+        out.write(encoded);
+        position += encoded.length;
+    }
+
+    /**
+     * Same as the length written by {@link DataOutputStream#writeUTF(String)}, without the 2 byte length prefix
+     */
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    private void startShard() throws IOException {
+        File f = new File(directory, String.format("%s-%05d.%s", prefix, shardFiles.size(), ImageShard.EXTENSION));
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 20));
+        out.writeInt(ImageShard.MAGIC);
+        out.writeInt(ImageShard.VERSION);
+        position = ImageShard.HEADER_LENGTH;
+        indexBytes = 4;
+        shardFiles.add(f);
+    }
+
+    private void finishShard() throws IOException {
+        long indexOffset = position;
+        out.writeInt(offsets.size());
+        for (int i = 0; i < offsets.size(); i++) {
+            out.writeLong(offsets.get(i));
+            out.writeInt(lengths.get(i));
+            out.writeUTF(labels.get(i));
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(ImageShard.MAGIC);
+        out.close();
+        out = null;
+        offsets.clear();
+        lengths.clear();
+        labels.clear();
+    }
+
+    /**
+     * Finishes the current shard. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            finishShard();
+        }
+    }
+
+    /**
+     * @return An unmodifiable view of the shard files written so far
+     */
+    public List<File> getShardFiles() {
+        return Collections.unmodifiableList(shardFiles);
+    }
+}
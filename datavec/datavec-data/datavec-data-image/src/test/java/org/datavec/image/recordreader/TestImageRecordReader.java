@@ -34,12 +34,14 @@ import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.transform.CropImageTransform;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.io.ClassPathResource;
 
 import java.io.*;
@@ -471,6 +473,83 @@ public class TestImageRecordReader {
 
 
 
+    @Test
+    public void testParallelDecode() throws Exception {
+        File f0 = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(f0);
+
+        for (boolean withTransform : new boolean[] {false, true}) {
+            List<List<INDArray>> expected = new ArrayList<>();
+            for (int numThreads : new int[] {1, 4}) {
+                ImageRecordReader rr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+                rr.setNumDecodeThreads(numThreads);
+                rr.setDecodeSeed(12345L);
+                if (withTransform) {
+                    rr.initialize(new FileSplit(f0), new CropImageTransform(new Random(42), 8));
+                } else {
+                    rr.initialize(new FileSplit(f0));
+                }
+
+                for (int epoch = 0; epoch < 2; epoch++) {
+                    if (numThreads == 1) {
+                        expected.add(new ArrayList<INDArray>());
+                    }
+                    int i = 0;
+                    while (rr.hasNext()) {
+                        NDArrayRecordBatch b = (NDArrayRecordBatch) rr.next(3);
+                        INDArray features = b.getArrays().get(0);
+                        assertArrayEquals(new long[] {3, 3, 32, 32}, features.shape());
+                        if (numThreads == 1) {
+                            expected.get(epoch).add(features);
+                        } else {
+                            //Same per-example seeds within an epoch regardless of the number of threads
+                            assertEquals(expected.get(epoch).get(i), features);
+                        }
+                        i++;
+                    }
+                    assertEquals(2, i);
+                    rr.reset();
+                }
+                rr.close();
+            }
+
+            //Without a transform, epochs are identical; with one, augmentation changes after reset
+            if (withTransform) {
+                assertNotEquals(expected.get(0), expected.get(1));
+            } else {
+                assertEquals(expected.get(0), expected.get(1));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleNextMatchesBatch() throws Exception {
+        File f0 = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(f0);
+
+        ImageRecordReader batchReader = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        batchReader.setDecodeSeed(12345L);
+        batchReader.initialize(new FileSplit(f0), new CropImageTransform(new Random(42), 8));
+        List<INDArray> expected = new ArrayList<>();
+        while (batchReader.hasNext()) {
+            INDArray features = ((NDArrayRecordBatch) batchReader.next(3)).getArrays().get(0);
+            for (int i = 0; i < features.size(0); i++) {
+                expected.add(features.get(NDArrayIndex.interval(i, i + 1), NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.all()));
+            }
+        }
+
+        //Example indices advance in next() too: one record at a time gives the same augmentation as batches
+        ImageRecordReader rr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        rr.setDecodeSeed(12345L);
+        rr.initialize(new FileSplit(f0), new CropImageTransform(new Random(42), 8));
+        int i = 0;
+        while (rr.hasNext()) {
+            INDArray arr = ((NDArrayWritable) rr.next().get(0)).get();
+            assertEquals(expected.get(i++), arr);
+        }
+        assertEquals(expected.size(), i);
+    }
+
     @Test
     public void testNCHW_NCHW() throws Exception {
         //Idea: labels order should be consistent regardless of input file order
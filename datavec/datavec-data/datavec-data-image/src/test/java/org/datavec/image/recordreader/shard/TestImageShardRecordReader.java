@@ -0,0 +1,194 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.image.recordreader.shard;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.io.labels.ParentPathLabelGenerator;
+import org.datavec.api.split.CollectionInputSplit;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.recordreader.ImageRecordReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestImageShardRecordReader {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private List<File> imageFiles() throws Exception {
+        File f = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(f);
+        List<File> files = new ArrayList<>(FileUtils.listFiles(f, null, true));
+        Collections.sort(files);
+        assertEquals(6, files.size());
+        return files;
+    }
+
+    private List<File> writeShards(List<File> files, File dir) throws Exception {
+        long totalBytes = 0;
+        for (File f : files) {
+            totalBytes += f.length();
+        }
+        try (ImageShardWriter writer = new ImageShardWriter(dir, "test", totalBytes / 2)) {
+            for (File f : files) {
+                writer.write(f, f.getParentFile().getName());
+            }
+            writer.close();
+            return new ArrayList<>(writer.getShardFiles());
+        }
+    }
+
+    private static CollectionInputSplit split(List<File> files) {
+        List<URI> uris = new ArrayList<>();
+        for (File f : files) {
+            uris.add(f.toURI());
+        }
+        return new CollectionInputSplit(uris);
+    }
+
+    @Test
+    public void testWriteAndOpenShards() throws Exception {
+        List<File> files = imageFiles();
+        List<File> shardFiles = writeShards(files, testDir.newFolder());
+        assertTrue(shardFiles.size() >= 2);
+
+        int idx = 0;
+        for (File sf : shardFiles) {
+            try (ImageShard shard = ImageShard.open(sf)) {
+                assertTrue(shard.numRecords() > 0);
+                for (int i = 0; i < shard.numRecords(); i++) {
+                    File f = files.get(idx++);
+                    byte[] expected = FileUtils.readFileToByteArray(f);
+                    ByteBuffer bb = shard.getImage(i);
+                    byte[] actual = new byte[bb.remaining()];
+                    bb.get(actual);
+                    assertArrayEquals(expected, actual);
+                    assertEquals(f.getParentFile().getName(), shard.getLabel(i));
+                }
+            }
+        }
+        assertEquals(files.size(), idx);
+    }
+
+    @Test
+    public void testShardSizeWithLongLabels() throws Exception {
+        File dir = testDir.newFolder();
+        long maxShardBytes = 4096;
+        byte[] image = new byte[100];
+        String longLabel = String.join("", Collections.nCopies(400, "x"));
+        try (ImageShardWriter writer = new ImageShardWriter(dir, "test", maxShardBytes)) {
+            //Long labels first, then short ones: the index size must not be estimated from the current label
+            for (int i = 0; i < 40; i++) {
+                writer.write(image, i < 3 ? longLabel : "a");
+            }
+            writer.close();
+
+            int count = 0;
+            for (File sf : writer.getShardFiles()) {
+                assertTrue(sf.length() <= maxShardBytes);
+                try (ImageShard shard = ImageShard.open(sf)) {
+                    count += shard.numRecords();
+                }
+            }
+            assertEquals(40, count);
+        }
+    }
+
+    @Test
+    public void testMatchesImageRecordReader() throws Exception {
+        List<File> files = imageFiles();
+        List<File> shardFiles = writeShards(files, testDir.newFolder());
+
+        ImageRecordReader expRr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        expRr.initialize(split(files));
+        ImageShardRecordReader rr = new ImageShardRecordReader(32, 32, 3);
+        rr.initialize(split(shardFiles));
+
+        assertEquals(expRr.getLabels(), rr.getLabels());
+        while (expRr.hasNext()) {
+            assertTrue(rr.hasNext());
+            List<Writable> exp = expRr.next();
+            List<Writable> act = rr.next();
+            assertEquals(((NDArrayWritable) exp.get(0)).get(), ((NDArrayWritable) act.get(0)).get());
+            assertEquals(exp.get(1), act.get(1));
+        }
+        assertFalse(rr.hasNext());
+
+        //Batches
+        expRr.reset();
+        rr.reset();
+        while (expRr.hasNext()) {
+            INDArray expFeatures = ((NDArrayRecordBatch) expRr.next(4)).getArrays().get(0);
+            NDArrayRecordBatch act = (NDArrayRecordBatch) rr.next(4);
+            assertEquals(expFeatures, act.getArrays().get(0));
+            assertEquals(expRr.getLabels().size(), act.getArrays().get(1).size(1));
+        }
+        assertFalse(rr.hasNext());
+    }
+
+    @Test
+    public void testShuffle() throws Exception {
+        List<File> files = imageFiles();
+        List<File> shardFiles = writeShards(files, testDir.newFolder());
+
+        List<List<Integer>> orders = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            ImageShardRecordReader rr = new ImageShardRecordReader(16, 16, 3, null, 4, 12345);
+            rr.initialize(split(shardFiles));
+            for (int epoch = 0; epoch < 2; epoch++) {
+                List<Integer> labels = new ArrayList<>();
+                int count = 0;
+                while (rr.hasNext()) {
+                    labels.add(((IntWritable) rr.next().get(1)).get());
+                    count++;
+                }
+                assertEquals(files.size(), count);
+                if (r == 0) {
+                    orders.add(labels);
+                } else {
+                    //Same seed: same order
+                    assertEquals(orders.get(epoch), labels);
+                }
+                rr.reset();
+            }
+            rr.close();
+        }
+
+        //Every epoch returns the same records, whatever their order
+        List<Integer> e0 = new ArrayList<>(orders.get(0));
+        List<Integer> e1 = new ArrayList<>(orders.get(1));
+        Collections.sort(e0);
+        Collections.sort(e1);
+        assertEquals(e0, e1);
+    }
+}
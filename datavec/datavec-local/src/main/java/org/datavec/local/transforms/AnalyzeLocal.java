@@ -33,12 +33,17 @@ import org.datavec.api.transform.quality.columns.ColumnQuality;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.Writable;
 import org.datavec.local.transforms.analysis.aggregate.AnalysisAddFunction;
-import org.datavec.local.transforms.analysis.histogram.HistogramAddFunction;
+import org.datavec.local.transforms.analysis.aggregate.AnalysisCombineFunction;
+import org.datavec.local.transforms.analysis.histogram.HistogramCombineFunction;
+import org.datavec.local.transforms.analysis.histogram.StreamingHistogramAddFunction;
+import org.nd4j.common.primitives.Pair;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 public class AnalyzeLocal {
     private static final int DEFAULT_MAX_HISTOGRAM_BUCKETS = 30;
+    private static final int BATCH_SIZE = 256;
 
     /**
      * Analyse the specified data - returns a DataAnalysis object with summary information about each column
@@ -52,38 +57,139 @@ public class AnalyzeLocal {
     }
 
     /**
-     * Analyse the specified data - returns a DataAnalysis object with summary information about each column
+     * Analyse the specified data - returns a DataAnalysis object with summary information about each column.
+     * The data is analyzed in a single pass, hence the record reader does not need to support reset.
      *
-     * @param schema Schema for data
-     * @param rr     Data to analyze
+     * @param schema              Schema for data
+     * @param rr                  Data to analyze
+     * @param maxHistogramBuckets Number of histogram buckets for each column
      * @return DataAnalysis for data
      */
     public static DataAnalysis analyze(Schema schema, RecordReader rr, int maxHistogramBuckets){
-        AnalysisAddFunction addFn = new AnalysisAddFunction(schema);
-        List<AnalysisCounter> counters = null;
-        while(rr.hasNext()){
-            counters = addFn.apply(counters, rr.next());
+        return analyze(schema, rr, maxHistogramBuckets, 1);
+    }
+
+    /**
+     * Analyse the specified data - returns a DataAnalysis object with summary information about each column.
+     * The data is analyzed in a single pass: records are read on the calling thread and counted in batches by
+     * the specified number of threads, each with its own (mergeable) counters and histograms. Histogram bucket counts
+     * are approximate for non-integer values - see {@link org.datavec.api.transform.analysis.histogram.StreamingHistogramCounter}
+     *
+     * @param schema              Schema for data
+     * @param rr                  Data to analyze
+     * @param maxHistogramBuckets Number of histogram buckets for each column
+     * @param numThreads          Number of threads to use for analysis
+     * @return DataAnalysis for data
+     */
+    public static DataAnalysis analyze(Schema schema, RecordReader rr, int maxHistogramBuckets, int numThreads){
+        Pair<List<AnalysisCounter>, List<HistogramCounter>> counters;
+        if(numThreads <= 1){
+            counters = new Pair<>(null, null);
+            AnalysisAddFunction addFn = new AnalysisAddFunction(schema);
+            StreamingHistogramAddFunction histogramAddFn = new StreamingHistogramAddFunction(maxHistogramBuckets, schema);
+            while(rr.hasNext()){
+                List<Writable> next = rr.next();
+                counters.setFirst(addFn.apply(counters.getFirst(), next));
+                counters.setSecond(histogramAddFn.apply(counters.getSecond(), next));
+            }
+        } else {
+            counters = analyzeParallel(schema, rr, maxHistogramBuckets, numThreads);
         }
 
-        double[][] minsMaxes = new double[counters.size()][2];
+        if(counters.getFirst() == null){
+            throw new IllegalStateException("Cannot analyze data: record reader has no data");
+        }
 
+        double[][] minsMaxes = new double[counters.getFirst().size()][2];
         List<ColumnType> columnTypes = schema.getColumnTypes();
-        List<ColumnAnalysis> list = DataVecAnalysisUtils.convertCounters(counters, minsMaxes, columnTypes);
+        List<ColumnAnalysis> list = DataVecAnalysisUtils.convertCounters(counters.getFirst(), minsMaxes, columnTypes);
+        DataVecAnalysisUtils.mergeCounters(list, counters.getSecond());
 
+        return new DataAnalysis(schema, list);
+    }
 
-        //Do another pass collecting histogram values:
-        List<HistogramCounter> histogramCounters = null;
-        HistogramAddFunction add = new HistogramAddFunction(maxHistogramBuckets, schema, minsMaxes);
-        if(rr.resetSupported()){
-            rr.reset();
-            while(rr.hasNext()){
-                histogramCounters = add.apply(histogramCounters, rr.next());
+    private static Pair<List<AnalysisCounter>, List<HistogramCounter>> analyzeParallel(final Schema schema, RecordReader rr,
+                                                                                      final int maxHistogramBuckets, int numThreads){
+        final List<List<Writable>> end = new ArrayList<>();
+        final BlockingQueue<List<List<Writable>>> queue = new ArrayBlockingQueue<>(2 * numThreads);
+        ExecutorService exec = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AnalyzeLocal-worker");
+                t.setDaemon(true);
+                return t;
             }
+        });
 
-            DataVecAnalysisUtils.mergeCounters(list, histogramCounters);
+        List<Future<Pair<List<AnalysisCounter>, List<HistogramCounter>>>> futures = new ArrayList<>();
+        for( int i=0; i<numThreads; i++ ){
+            futures.add(exec.submit(new Callable<Pair<List<AnalysisCounter>, List<HistogramCounter>>>() {
+                @Override
+                public Pair<List<AnalysisCounter>, List<HistogramCounter>> call() throws Exception {
+                    AnalysisAddFunction addFn = new AnalysisAddFunction(schema);
+                    StreamingHistogramAddFunction histogramAddFn = new StreamingHistogramAddFunction(maxHistogramBuckets, schema);
+                    List<AnalysisCounter> counters = null;
+                    List<HistogramCounter> histogramCounters = null;
+                    RuntimeException error = null;
+                    List<List<Writable>> batch;
+                    while((batch = queue.take()) != end){
+                        if(error != null){
+                            continue;   //Keep draining the queue, so the reader is never blocked
+                        }
+                        try {
+                            for (List<Writable> record : batch) {
+                                counters = addFn.apply(counters, record);
+                                histogramCounters = histogramAddFn.apply(histogramCounters, record);
+                            }
+                        } catch (RuntimeException e){
+                            error = e;
+                        }
+                    }
+                    if(error != null){
+                        throw error;
+                    }
+                    return new Pair<>(counters, histogramCounters);
+                }
+            }));
         }
 
-        return new DataAnalysis(schema, list);
+        try {
+            try {
+                List<List<Writable>> batch = new ArrayList<>(BATCH_SIZE);
+                while (rr.hasNext()) {
+                    batch.add(rr.next());
+                    if (batch.size() == BATCH_SIZE) {
+                        queue.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            } finally {
+                for (int i = 0; i < numThreads; i++) {
+                    queue.put(end);
+                }
+            }
+
+            AnalysisCombineFunction combineFn = new AnalysisCombineFunction();
+            HistogramCombineFunction histogramCombineFn = new HistogramCombineFunction();
+            List<AnalysisCounter> counters = null;
+            List<HistogramCounter> histogramCounters = null;
+            for (Future<Pair<List<AnalysisCounter>, List<HistogramCounter>>> f : futures) {
+                Pair<List<AnalysisCounter>, List<HistogramCounter>> p = f.get();
+                counters = combineFn.apply(counters, p.getFirst());
+                histogramCounters = histogramCombineFn.apply(histogramCounters, p.getSecond());
+            }
+            return new Pair<>(counters, histogramCounters);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during data analysis", e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("Error during data analysis", e.getCause());
+        } finally {
+            exec.shutdownNow();
+        }
     }
 
 
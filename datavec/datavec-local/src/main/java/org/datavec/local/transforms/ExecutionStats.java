@@ -0,0 +1,86 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-stage statistics for an execution of a TransformProcess by {@link LocalTransformExecutor}.<br>
+ * Consecutive transform and filter operations are executed as a single (fused) stage; every other operation
+ * (conversion to/from sequence, reduction, sort, etc) is a separate stage.
+ */
+public class ExecutionStats {
+
+    private final List<StageStats> stages = Collections.synchronizedList(new ArrayList<StageStats>());
+
+    /**
+     * @return Statistics for each stage, in order of execution
+     */
+    public List<StageStats> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    StageStats addStage(String name) {
+        StageStats s = new StageStats(name, 0, 0, 0);
+        stages.add(s);
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (StageStats s : getStages()) {
+            sb.append(s).append("\n");
+        }
+        return sb.toString();
+    }
+
+    @AllArgsConstructor
+    @Data
+    public static class StageStats {
+        /** Name of the stage: names of the operations executed in it */
+        private String name;
+        /** Number of records (or sequences) input to the stage */
+        private long recordsIn;
+        /** Number of records (or sequences) output by the stage */
+        private long recordsOut;
+        /** Total time spent in this stage, in nanoseconds */
+        private long timeNanos;
+
+        /**
+         * @return Number of input records processed per second by this stage
+         */
+        public double getRecordsPerSecond() {
+            return timeNanos == 0 ? 0 : recordsIn / (timeNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d records in, %d records out, %.1f ms, %.1f records/sec", name, recordsIn,
+                    recordsOut, timeNanos / 1e6, getRecordsPerSecond());
+        }
+    }
+}
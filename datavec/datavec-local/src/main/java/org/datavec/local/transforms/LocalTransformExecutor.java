@@ -25,10 +25,9 @@ import lombok.val;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
+import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.transform.DataAction;
-import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.TransformProcess;
-import org.datavec.api.transform.filter.Filter;
 import org.datavec.api.transform.join.Join;
 import org.datavec.api.transform.ops.IAggregableReduceOp;
 import org.datavec.api.transform.rank.CalculateSortedRank;
@@ -39,16 +38,14 @@ import org.datavec.api.transform.sequence.ConvertToSequence;
 import org.datavec.api.transform.sequence.SequenceSplit;
 import org.datavec.api.writable.*;
 import org.datavec.arrow.ArrowConverter;
-import org.datavec.local.transforms.functions.EmptyRecordFunction;
 import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
 import org.datavec.local.transforms.join.ExtractKeysFunction;
 import org.datavec.local.transforms.misc.ColumnAsKeyPairFunction;
 import org.datavec.local.transforms.rank.UnzipForCalculateSortedRankFunction;
 import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
 import org.datavec.local.transforms.sequence.*;
-import org.datavec.local.transforms.transform.LocalTransformFunction;
+import org.datavec.local.transforms.transform.LocalFusedTransformFunction;
 import org.datavec.local.transforms.transform.SequenceSplitFunction;
-import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
 import org.nd4j.common.function.Function;
 import org.nd4j.common.function.FunctionalUtils;
 import org.nd4j.common.primitives.Pair;
@@ -56,6 +53,7 @@ import org.nd4j.common.primitives.Pair;
 import java.util.*;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -68,6 +66,11 @@ public class LocalTransformExecutor {
     //will cause some functions to invoke a try catch block and just log errors
     //returning empty records
     public final static String LOG_ERROR_PROPERTY = "org.datavec.spark.transform.logerrors";
+    //a boolean jvm argument that when the system property is true
+    //will cause consecutive transforms and filters to be executed in parallel (on the fork join common pool)
+    //note that all transforms and filters must then be thread safe
+    public final static String PARALLEL_PROPERTY = "org.datavec.local.transform.parallel";
+    private static final int STREAMING_BATCH_SIZE = 1024;
 
     private static BufferAllocator bufferAllocator = new RootAllocator(Long.MAX_VALUE);
 
@@ -82,6 +85,21 @@ public class LocalTransformExecutor {
      */
     public static List<List<Writable>> execute(List<List<Writable>> inputWritables,
                                                TransformProcess transformProcess) {
+        return execute(inputWritables, transformProcess, null);
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given input data, recording statistics for each stage of the
+     * execution<br>
+     * Note: this method can only be used if the TransformProcess returns non-sequence data.
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @param stats            Statistics for each stage are added to this object. May be null
+     * @return Processed data
+     */
+    public static List<List<Writable>> execute(List<List<Writable>> inputWritables,
+                                               TransformProcess transformProcess, ExecutionStats stats) {
         if (transformProcess.getFinalSchema() instanceof SequenceSchema) {
             throw new IllegalStateException("Cannot return sequence data with this method");
 
@@ -92,7 +110,87 @@ public class LocalTransformExecutor {
         if(filteredSequence.size() != inputWritables.size()) {
             log.warn("Filtered out " + (inputWritables.size() - filteredSequence.size()) + " values");
         }
-        return execute(filteredSequence, null, transformProcess).getFirst();
+        return execute(filteredSequence, null, transformProcess, 0, stats).getFirst();
+    }
+
+    /**
+     * Execute the specified TransformProcess on the data from the given record reader<br>
+     * Records are streamed from the reader: the leading transform and filter operations of the TransformProcess are
+     * applied (as a single fused stage) to batches of records as they are read, so the unprocessed input data is
+     * never held in memory. Data is only collected before the first operation that requires all records (reduction,
+     * sort, conversion to sequence, etc), and at the end.<br>
+     * Note: this method can only be used if the TransformProcess returns non-sequence data.
+     *
+     * @param reader           Record reader providing the input data
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    public static List<List<Writable>> execute(RecordReader reader, TransformProcess transformProcess) {
+        return execute(reader, transformProcess, null);
+    }
+
+    /**
+     * As per {@link #execute(RecordReader, TransformProcess)}, recording statistics for each stage of the execution
+     *
+     * @param reader           Record reader providing the input data
+     * @param transformProcess TransformProcess to execute
+     * @param stats            Statistics for each stage are added to this object. May be null
+     * @return Processed data
+     */
+    public static List<List<Writable>> execute(RecordReader reader, TransformProcess transformProcess,
+                                               ExecutionStats stats) {
+        if (transformProcess.getFinalSchema() instanceof SequenceSchema) {
+            throw new IllegalStateException("Cannot return sequence data with this method");
+        }
+
+        List<DataAction> actions = transformProcess.getActionList();
+        int firstBarrier = 0;
+        while (firstBarrier < actions.size() && isRecordWise(actions.get(firstBarrier))) {
+            firstBarrier++;
+        }
+        List<DataAction> fused = actions.subList(0, firstBarrier);
+        LocalFusedTransformFunction function = new LocalFusedTransformFunction(fused);
+        int numColumns = transformProcess.getInitialSchema().numColumns();
+
+        long recordsIn = 0;
+        long filteredOut = 0;
+        long timeNanos = 0;
+        List<List<Writable>> out = new ArrayList<>();
+        List<List<Writable>> batch = new ArrayList<>(STREAMING_BATCH_SIZE);
+        while (reader.hasNext()) {
+            List<Writable> next = reader.next();
+            recordsIn++;
+            if (next.size() != numColumns) {
+                filteredOut++;
+                continue;
+            }
+            batch.add(next);
+            if (batch.size() == STREAMING_BATCH_SIZE) {
+                long start = System.nanoTime();
+                out.addAll(executeFused(batch, function));
+                timeNanos += System.nanoTime() - start;
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            long start = System.nanoTime();
+            out.addAll(executeFused(batch, function));
+            timeNanos += System.nanoTime() - start;
+        }
+        if (filteredOut > 0) {
+            log.warn("Filtered out " + filteredOut + " values");
+        }
+        if (stats != null && !fused.isEmpty()) {
+            ExecutionStats.StageStats s = stats.addStage(stageName(fused));
+            s.setRecordsIn(recordsIn);
+            s.setRecordsOut(out.size());
+            s.setTimeNanos(timeNanos);
+        }
+
+        if (out.isEmpty()) {
+            return out;
+        }
+        return execute(out, null, transformProcess, firstBarrier, stats).getFirst();
     }
 
     /**
@@ -303,21 +401,76 @@ public class LocalTransformExecutor {
         return Boolean.getBoolean(LOG_ERROR_PROPERTY);
     }
 
+    /**
+     * Returns true if the executor should execute fused
+     * transform and filter stages in parallel.
+     * @return
+     */
+    public static boolean isParallel() {
+        return Boolean.getBoolean(PARALLEL_PROPERTY);
+    }
+
+    private static boolean isRecordWise(DataAction d) {
+        return d.getTransform() != null || d.getFilter() != null;
+    }
+
+    private static String stageName(List<DataAction> actions) {
+        StringBuilder sb = new StringBuilder();
+        for (DataAction d : actions) {
+            Object op = d.getTransform() != null ? d.getTransform() : d.getFilter() != null ? d.getFilter()
+                    : d.getConvertToSequence() != null ? d.getConvertToSequence()
+                    : d.getConvertFromSequence() != null ? d.getConvertFromSequence()
+                    : d.getSequenceSplit() != null ? d.getSequenceSplit()
+                    : d.getReducer() != null ? d.getReducer() : d.getCalculateSortedRank();
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(op == null ? "null" : op.getClass().getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    private static void recordStage(ExecutionStats stats, String name, long recordsIn, List<List<Writable>> writables,
+                                    List<List<List<Writable>>> sequences, long startTime) {
+        if (stats == null) {
+            return;
+        }
+        ExecutionStats.StageStats s = stats.addStage(name);
+        s.setRecordsIn(recordsIn);
+        s.setRecordsOut(writables != null ? writables.size() : sequences.size());
+        s.setTimeNanos(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Apply a fused transform/filter function to each record, removing records for which it returns null
+     */
+    private static <T> List<T> executeFused(List<T> input, Function<T, T> function) {
+        Stream<T> stream = isParallel() ? input.parallelStream() : input.stream();
+        return stream.map(function::apply).filter(Objects::nonNull).collect(toList());
+    }
+
     private static Pair<List<List<Writable>>, List<List<List<Writable>>>> execute(
             List<List<Writable>> inputWritables, List<List<List<Writable>>> inputSequence,
             TransformProcess sequence) {
+        return execute(inputWritables, inputSequence, sequence, 0, null);
+    }
+
+    private static Pair<List<List<Writable>>, List<List<List<Writable>>>> execute(
+            List<List<Writable>> inputWritables, List<List<List<Writable>>> inputSequence,
+            TransformProcess sequence, int firstAction, ExecutionStats stats) {
         List<List<Writable>> currentWritables = inputWritables;
         List<List<List<Writable>>> currentSequence = inputSequence;
 
-        List<DataAction> dataActions = sequence.getActionList();
-        if (inputWritables != null) {
+        List<DataAction> dataActions = sequence.getActionList().subList(firstAction, sequence.getActionList().size());
+        //Note: when starting after the first action, input data has already been processed by the earlier actions
+        if (firstAction == 0 && inputWritables != null) {
             List<Writable> first = inputWritables.get(0);
             if (first.size() != sequence.getInitialSchema().numColumns()) {
                 throw new IllegalStateException("Input data number of columns (" + first.size()
                         + ") does not match the number of columns for the transform process ("
                         + sequence.getInitialSchema().numColumns() + ")");
             }
-        } else {
+        } else if (firstAction == 0) {
             List<List<Writable>> firstSeq = inputSequence.get(0);
             if (firstSeq.size() > 0 && firstSeq.get(0).size() != sequence.getInitialSchema().numColumns()) {
                 throw new IllegalStateException("Input sequence data number of columns (" + firstSeq.get(0).size()
@@ -327,44 +480,27 @@ public class LocalTransformExecutor {
         }
 
 
-        for (DataAction d : dataActions) {
-            //log.info("Starting execution of stage {} of {}", count, dataActions.size());     //
-
-            if (d.getTransform() != null) {
-                Transform t = d.getTransform();
-                if (currentWritables != null) {
-                    Function<List<Writable>, List<Writable>> function = new LocalTransformFunction(t);
-                    if (isTryCatch())
-                        currentWritables = currentWritables.stream()
-                                .map(input -> function.apply(input)).filter(input -> new EmptyRecordFunction().apply(input)).collect(toList());
-                    else
-                        currentWritables = currentWritables.stream()
-                                .map(input -> function.apply(input)).collect(toList());
-                } else {
-                    Function<List<List<Writable>>, List<List<Writable>>> function =
-                            new LocalSequenceTransformFunction(t);
-                    if (isTryCatch())
-                        currentSequence = currentSequence.stream()
-                                .map(input -> function.apply(input)).filter(input ->
-                                new SequenceEmptyRecordFunction().apply(input)).collect(toList());
-                    else
-                        currentSequence = currentSequence.stream()
-                                .map(input -> function.apply(input)).collect(toList());
-
+        int i = 0;
+        while (i < dataActions.size()) {
+            DataAction d = dataActions.get(i);
+            long startTime = System.nanoTime();
+            long recordsIn = currentWritables != null ? currentWritables.size() : currentSequence.size();
 
+            if (isRecordWise(d)) {
+                //Fuse all consecutive transforms and filters into a single pass over the data
+                int end = i;
+                while (end < dataActions.size() && isRecordWise(dataActions.get(end))) {
+                    end++;
                 }
-            } else if (d.getFilter() != null) {
-                //Filter
-                Filter f = d.getFilter();
+                List<DataAction> fused = dataActions.subList(i, end);
+                i = end;
                 if (currentWritables != null) {
-                    LocalFilterFunction localFilterFunction = new LocalFilterFunction(f);
-                    currentWritables = currentWritables.stream()
-                            .filter(input -> localFilterFunction.apply(input)).collect(toList());
+                    currentWritables = executeFused(currentWritables, new LocalFusedTransformFunction(fused));
                 } else {
-                    LocalSequenceFilterFunction localSequenceFilterFunction = new LocalSequenceFilterFunction(f);
-                    currentSequence = currentSequence.stream().filter(input -> localSequenceFilterFunction.apply(input)).collect(toList());
+                    currentSequence = executeFused(currentSequence, new LocalFusedSequenceTransformFunction(fused));
                 }
-
+                recordStage(stats, stageName(fused), recordsIn, currentWritables, currentSequence, startTime);
+                continue;
             } else if (d.getConvertToSequence() != null) {
                 //Convert to a sequence...
                 final ConvertToSequence cts = d.getConvertToSequence();
@@ -503,6 +639,8 @@ public class LocalTransformExecutor {
                 throw new RuntimeException("Unknown/not implemented action: " + d);
             }
 
+            recordStage(stats, stageName(Collections.singletonList(d)), recordsIn, currentWritables, currentSequence, startTime);
+            i++;
         }
 
         //log.info("Completed {} of {} execution steps", count - 1, dataActions.size());       //Lazy execution means this can be printed before anything has actually happened...
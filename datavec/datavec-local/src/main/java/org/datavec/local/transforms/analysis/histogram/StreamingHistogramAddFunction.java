@@ -0,0 +1,57 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.analysis.histogram;
+
+import lombok.AllArgsConstructor;
+import org.datavec.api.transform.analysis.DataVecAnalysisUtils;
+import org.datavec.api.transform.analysis.histogram.HistogramCounter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.nd4j.common.function.BiFunction;
+
+import java.util.List;
+
+/**
+ * An adder function used in the calculation of histograms in a single pass over the data: unlike
+ * {@link HistogramAddFunction}, the min/max values of each column are not required
+ */
+@AllArgsConstructor
+public class StreamingHistogramAddFunction implements BiFunction<List<HistogramCounter>, List<Writable>, List<HistogramCounter>> {
+    private final int nBins;
+    private final Schema schema;
+
+    @Override
+    public List<HistogramCounter> apply(List<HistogramCounter> histogramCounters, List<Writable> writables) {
+        if (histogramCounters == null) {
+            histogramCounters = DataVecAnalysisUtils.createStreamingHistogramCounters(schema, nBins);
+        }
+
+        int size = histogramCounters.size();
+        if (size != writables.size())
+            throw new IllegalStateException("Writables list and number of counters does not match (" + writables.size()
+                            + " vs " + size + ")");
+        for (int i = 0; i < size; i++) {
+            HistogramCounter hc = histogramCounters.get(i);
+            if (hc != null)
+                hc.add(writables.get(i));
+        }
+
+        return histogramCounters;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.sequence;
+
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.nd4j.common.function.Function;
+
+import java.util.List;
+
+/**
+ * Function for executing a sequence of consecutive transform and filter operations on a single sequence, so that
+ * no intermediate list of sequences is created between them.
+ * Returns null if the sequence is removed by one of the filters (or, when {@link LocalTransformExecutor#isTryCatch()}
+ * is true, if a transform returns an empty sequence)
+ */
+public class LocalFusedSequenceTransformFunction implements Function<List<List<Writable>>, List<List<Writable>>> {
+
+    private final Object[] ops;
+
+    /**
+     * @param actions Data actions to execute: each must be either a transform or a filter
+     */
+    public LocalFusedSequenceTransformFunction(List<DataAction> actions) {
+        this.ops = new Object[actions.size()];
+        for (int i = 0; i < ops.length; i++) {
+            DataAction d = actions.get(i);
+            if (d.getTransform() != null) {
+                ops[i] = new LocalSequenceTransformFunction(d.getTransform());
+            } else if (d.getFilter() != null) {
+                ops[i] = d.getFilter();
+            } else {
+                throw new IllegalArgumentException("Only transform and filter actions can be fused: got " + d);
+            }
+        }
+    }
+
+    @Override
+    public List<List<Writable>> apply(List<List<Writable>> sequence) {
+        for (Object op : ops) {
+            if (op instanceof Filter) {
+                if (((Filter) op).removeSequence(sequence))
+                    return null;
+            } else {
+                sequence = ((LocalSequenceTransformFunction) op).apply(sequence);
+                if (sequence.isEmpty() && LocalTransformExecutor.isTryCatch())
+                    return null;
+            }
+        }
+        return sequence;
+    }
+}
@@ -37,7 +37,10 @@ import org.nd4j.common.io.ClassPathResource;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TestAnalyzeLocal {
 
@@ -79,4 +82,72 @@ public class TestAnalyzeLocal {
 
     }
 
+    @Test
+    public void testAnalysisParallel() throws Exception {
+
+        RecordReader rr = new CSVRecordReader();
+        rr.initialize(new FileSplit(new ClassPathResource("iris.txt").getFile()));
+
+        Schema s = new Schema.Builder()
+                .addColumnsDouble("0", "1", "2", "3")
+                .addColumnInteger("label")
+                .build();
+
+        DataAnalysis da = AnalyzeLocal.analyze(s, rr);
+        rr.reset();
+        DataAnalysis daParallel = AnalyzeLocal.analyze(s, rr, 30, 4);
+
+        for( int i=0; i<5; i++ ){
+            NumericalColumnAnalysis ca = (NumericalColumnAnalysis)da.getColumnAnalysis().get(i);
+            NumericalColumnAnalysis caParallel = (NumericalColumnAnalysis)daParallel.getColumnAnalysis().get(i);
+            assertEquals(150, ca.getCountTotal());
+            assertEquals(150, caParallel.getCountTotal());
+            assertEquals(ca.getMean(), caParallel.getMean(), 1e-6);
+            assertEquals(ca.getSampleStdev(), caParallel.getSampleStdev(), 1e-6);
+            assertEquals(ca.getMinDouble(), caParallel.getMinDouble(), 0.0);
+            assertEquals(ca.getMaxDouble(), caParallel.getMaxDouble(), 0.0);
+
+            //Histograms are calculated in the same (single) pass
+            double[] buckets = ca.getHistogramBuckets();
+            assertEquals(31, buckets.length);
+            assertEquals(ca.getMinDouble(), buckets[0], 0.0);
+            assertEquals(ca.getMaxDouble(), buckets[30], 0.0);
+            assertArrayEquals(buckets, caParallel.getHistogramBuckets(), 0.0);
+            assertEquals(150, sum(ca.getHistogramBucketCounts()));
+            assertEquals(150, sum(caParallel.getHistogramBucketCounts()));
+        }
+
+        //Integer column: histogram counts are exact
+        long[] labelCounts = ((NumericalColumnAnalysis)daParallel.getColumnAnalysis().get(4)).getHistogramBucketCounts();
+        assertEquals(50, labelCounts[0]);
+        assertEquals(50, labelCounts[29]);
+        assertEquals(150, sum(labelCounts));
+
+        //Distinct counts are estimated in the same pass, and merged across threads
+        for (DataAnalysis d : new DataAnalysis[]{da, daParallel}) {
+            NumericalColumnAnalysis label = (NumericalColumnAnalysis) d.getColumnAnalysis().get(4);
+            assertEquals(Long.valueOf(3), label.getCountDistinctEstimate());
+            for (int i = 0; i < 4; i++) {
+                Long distinct = ((NumericalColumnAnalysis) d.getColumnAnalysis().get(i)).getCountDistinctEstimate();
+                assertTrue(distinct > 10 && distinct < 150);
+            }
+        }
+        assertEquals(((NumericalColumnAnalysis) da.getColumnAnalysis().get(0)).getCountDistinctEstimate(),
+                ((NumericalColumnAnalysis) daParallel.getColumnAnalysis().get(0)).getCountDistinctEstimate());
+
+        //JSON written before distinct counts were added is still readable
+        String json = da.toJson();
+        assertTrue(json.contains("countDistinctEstimate"));
+        DataAnalysis fromOldJson = DataAnalysis.fromJson(json.replaceAll("\"countDistinctEstimate\" : \\d+,?", ""));
+        assertNull(((NumericalColumnAnalysis) fromOldJson.getColumnAnalysis().get(4)).getCountDistinctEstimate());
+        assertEquals(150, ((NumericalColumnAnalysis) fromOldJson.getColumnAnalysis().get(4)).getCountTotal());
+    }
+
+    private static long sum(long[] counts){
+        long sum = 0;
+        for(long l : counts){
+            sum += l;
+        }
+        return sum;
+    }
 }
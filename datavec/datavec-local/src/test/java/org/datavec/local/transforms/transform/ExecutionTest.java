@@ -19,6 +19,7 @@
 package org.datavec.local.transforms.transform;
 
 
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
 import org.datavec.api.transform.MathFunction;
 import org.datavec.api.transform.MathOp;
 import org.datavec.api.transform.ReduceOp;
@@ -31,6 +32,7 @@ import org.datavec.api.transform.schema.SequenceSchema;
 import org.datavec.api.writable.*;
 import org.datavec.python.PythonTransform;
 
+import org.datavec.local.transforms.ExecutionStats;
 import org.datavec.local.transforms.LocalTransformExecutor;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -249,6 +251,56 @@ public class ExecutionTest  {
         assertEquals(expOut, out);
     }
 
+    @Test
+    public void testExecutionFromRecordReader(){
+
+        List<List<Writable>> in = new ArrayList<>();
+        for( int i=0; i<2500; i++ ){
+            in.add(Arrays.<Writable>asList(new IntWritable(i % 3), new Text("t" + i), new DoubleWritable(i)));
+        }
+
+        Schema s = new Schema.Builder()
+                .addColumnInteger("intCol")
+                .addColumnString("textCol")
+                .addColumnDouble("doubleCol")
+                .build();
+
+        TransformProcess tp = new TransformProcess.Builder(s)
+                .filter(new DoubleColumnCondition("doubleCol", ConditionOp.LessThan, 100))
+                .doubleMathOp("doubleCol", MathOp.Multiply, 2.0)
+                .reduce(new Reducer.Builder(ReduceOp.TakeFirst)
+                        .keyColumns("intCol")
+                        .takeFirstColumns("textCol")
+                        .sumColumns("doubleCol").build())
+                .doubleMathOp("sum(doubleCol)", MathOp.Add, 1.0)
+                .build();
+
+        List<List<Writable>> expected = new ArrayList<>(LocalTransformExecutor.execute(in, tp));
+
+        ExecutionStats stats = new ExecutionStats();
+        List<List<Writable>> out = new ArrayList<>(LocalTransformExecutor.execute(new CollectionRecordReader(in), tp, stats));
+
+        Comparator<List<Writable>> c = new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                return Integer.compare(o1.get(0).toInt(), o2.get(0).toInt());
+            }
+        };
+        Collections.sort(expected, c);
+        Collections.sort(out, c);
+        assertEquals(3, out.size());
+        assertEquals(expected, out);
+
+        //Filter and math op are fused into a single stage
+        List<ExecutionStats.StageStats> stages = stats.getStages();
+        assertEquals(3, stages.size());
+        assertEquals(2500, stages.get(0).getRecordsIn());
+        assertEquals(2400, stages.get(0).getRecordsOut());
+        assertEquals(2400, stages.get(1).getRecordsIn());
+        assertEquals(3, stages.get(1).getRecordsOut());
+        assertEquals(3, stages.get(2).getRecordsOut());
+    }
+
     @Test(timeout = 60000L)
     @Ignore("AB 2019/05/21 - Fine locally, timeouts on CI - Issue #7657 and #7771")
     public void testPythonExecutionNdarray()throws Exception{
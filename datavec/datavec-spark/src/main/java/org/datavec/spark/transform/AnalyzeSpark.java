@@ -41,10 +41,8 @@ import org.datavec.api.writable.comparator.Comparators;
 import org.datavec.spark.transform.analysis.SelectColumnFunction;
 import org.datavec.spark.transform.analysis.SequenceFlatMapFunction;
 import org.datavec.spark.transform.analysis.SequenceLengthFunction;
-import org.datavec.spark.transform.analysis.aggregate.AnalysisAddFunction;
-import org.datavec.spark.transform.analysis.aggregate.AnalysisCombineFunction;
-import org.datavec.spark.transform.analysis.histogram.HistogramAddFunction;
-import org.datavec.spark.transform.analysis.histogram.HistogramCombineFunction;
+import org.datavec.spark.transform.analysis.aggregate.SinglePassAnalysisAddFunction;
+import org.datavec.spark.transform.analysis.aggregate.SinglePassAnalysisCombineFunction;
 import org.datavec.spark.transform.analysis.seqlength.IntToDoubleFunction;
 import org.datavec.spark.transform.analysis.seqlength.SequenceLengthAnalysisAddFunction;
 import org.datavec.spark.transform.analysis.seqlength.SequenceLengthAnalysisCounter;
@@ -133,24 +131,27 @@ public class AnalyzeSpark {
         return analyze(schema, data, DEFAULT_HISTOGRAM_BUCKETS);
     }
 
+    /**
+     * Analyse the specified data - returns a DataAnalysis object with summary information about each column.
+     * Counters and histograms are calculated in a single pass over the data, using mergeable histogram counters
+     * (see {@link org.datavec.api.transform.analysis.histogram.StreamingHistogramCounter}) - hence the data does not
+     * need to be cached.
+     *
+     * @param schema              Schema for data
+     * @param data                Data to analyze
+     * @param maxHistogramBuckets Number of histogram buckets for each column
+     * @return                    DataAnalysis for data
+     */
     public static DataAnalysis analyze(Schema schema, JavaRDD<List<Writable>> data, int maxHistogramBuckets) {
-        data.cache();
-        /*
-         * TODO: Some care should be given to add histogramBuckets and histogramBucketCounts to this in the future
-         */
-
         List<ColumnType> columnTypes = schema.getColumnTypes();
-        List<AnalysisCounter> counters =
-                        data.aggregate(null, new AnalysisAddFunction(schema), new AnalysisCombineFunction());
-
-        double[][] minsMaxes = new double[counters.size()][2];
-        List<ColumnAnalysis> list = DataVecAnalysisUtils.convertCounters(counters, minsMaxes, columnTypes);
+        Tuple2<List<AnalysisCounter>, List<HistogramCounter>> counters =
+                        data.aggregate(null, new SinglePassAnalysisAddFunction(schema, maxHistogramBuckets),
+                                        new SinglePassAnalysisCombineFunction());
 
-        List<HistogramCounter> histogramCounters =
-                        data.aggregate(null, new HistogramAddFunction(maxHistogramBuckets, schema, minsMaxes),
-                                        new HistogramCombineFunction());
+        double[][] minsMaxes = new double[counters._1().size()][2];
+        List<ColumnAnalysis> list = DataVecAnalysisUtils.convertCounters(counters._1(), minsMaxes, columnTypes);
 
-        DataVecAnalysisUtils.mergeCounters(list, histogramCounters);
+        DataVecAnalysisUtils.mergeCounters(list, counters._2());
         return new DataAnalysis(schema, list);
     }
 
@@ -0,0 +1,65 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.spark.transform.analysis.aggregate;
+
+import org.apache.spark.api.java.function.Function2;
+import org.datavec.api.transform.analysis.AnalysisCounter;
+import org.datavec.api.transform.analysis.DataVecAnalysisUtils;
+import org.datavec.api.transform.analysis.histogram.HistogramCounter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import scala.Tuple2;
+
+import java.util.List;
+
+/**
+ * Add function used for undertaking analysis (counters and histograms) of a data set via Spark, in a single pass
+ * over the data
+ */
+public class SinglePassAnalysisAddFunction implements
+                Function2<Tuple2<List<AnalysisCounter>, List<HistogramCounter>>, List<Writable>, Tuple2<List<AnalysisCounter>, List<HistogramCounter>>> {
+    private final Schema schema;
+    private final int nBins;
+    private final AnalysisAddFunction addFunction;
+
+    public SinglePassAnalysisAddFunction(Schema schema, int nBins) {
+        this.schema = schema;
+        this.nBins = nBins;
+        this.addFunction = new AnalysisAddFunction(schema);
+    }
+
+    @Override
+    public Tuple2<List<AnalysisCounter>, List<HistogramCounter>> call(
+                    Tuple2<List<AnalysisCounter>, List<HistogramCounter>> counters, List<Writable> writables)
+                    throws Exception {
+        List<AnalysisCounter> analysisCounters = addFunction.call(counters == null ? null : counters._1(), writables);
+        List<HistogramCounter> histogramCounters = counters == null ? null : counters._2();
+        if (histogramCounters == null) {
+            histogramCounters = DataVecAnalysisUtils.createStreamingHistogramCounters(schema, nBins);
+        }
+
+        for (int i = 0; i < histogramCounters.size(); i++) {
+            HistogramCounter hc = histogramCounters.get(i);
+            if (hc != null)
+                hc.add(writables.get(i));
+        }
+
+        return new Tuple2<>(analysisCounters, histogramCounters);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.spark.transform.analysis.aggregate;
+
+import org.apache.spark.api.java.function.Function2;
+import org.datavec.api.transform.analysis.AnalysisCounter;
+import org.datavec.api.transform.analysis.histogram.HistogramCounter;
+import org.datavec.spark.transform.analysis.histogram.HistogramCombineFunction;
+import scala.Tuple2;
+
+import java.util.List;
+
+/**
+ * Combine function used for undertaking analysis (counters and histograms) of a data set via Spark, in a single pass
+ * over the data
+ */
+public class SinglePassAnalysisCombineFunction implements
+                Function2<Tuple2<List<AnalysisCounter>, List<HistogramCounter>>, Tuple2<List<AnalysisCounter>, List<HistogramCounter>>, Tuple2<List<AnalysisCounter>, List<HistogramCounter>>> {
+    private final AnalysisCombineFunction combineFunction = new AnalysisCombineFunction();
+    private final HistogramCombineFunction histogramCombineFunction = new HistogramCombineFunction();
+
+    @Override
+    public Tuple2<List<AnalysisCounter>, List<HistogramCounter>> call(
+                    Tuple2<List<AnalysisCounter>, List<HistogramCounter>> t1,
+                    Tuple2<List<AnalysisCounter>, List<HistogramCounter>> t2) throws Exception {
+        if (t1 == null)
+            return t2;
+        if (t2 == null)
+            return t1;
+
+        return new Tuple2<>(combineFunction.call(t1._1(), t2._1()), histogramCombineFunction.call(t1._2(), t2._2()));
+    }
+}
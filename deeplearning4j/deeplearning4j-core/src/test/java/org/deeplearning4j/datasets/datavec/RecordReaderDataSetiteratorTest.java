@@ -32,6 +32,7 @@ import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
 import org.datavec.api.records.reader.impl.collection.CollectionSequenceRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVSequenceRecordReader;
+import org.datavec.api.records.reader.impl.csv.MappedCSVRecordReader;
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputStreamInputSplit;
 import org.datavec.api.split.NumberedFileInputSplit;
@@ -1258,6 +1259,43 @@ public class RecordReaderDataSetiteratorTest extends BaseDL4JTest {
         assertEquals(expL, ds.getLabels());
     }
 
+    @Test
+    public void testMappedCSVRecordReader() throws Exception {
+        File f = temporaryFolder.newFile("mapped.csv");
+        Random r = new Random(12345);
+        StringBuilder sb = new StringBuilder("a,b,c,label\n");
+        for (int i = 0; i < 150; i++)
+            sb.append(r.nextDouble()).append(',').append(r.nextDouble()).append(',').append(r.nextDouble())
+                            .append(',').append(r.nextInt(3)).append('\n');
+        FileUtils.writeStringToFile(f, sb.toString(), "UTF-8");
+
+        RecordReader expRR = new CSVRecordReader(1, ',');
+        expRR.initialize(new FileSplit(f));
+        // small chunks: batches span chunk boundaries
+        RecordReader rr = new MappedCSVRecordReader(1, ',', 2, 512);
+        rr.initialize(new FileSplit(f));
+
+        DataSetIterator expIter = new RecordReaderDataSetIterator(expRR, 32, 3, 3);
+        DataSetIterator iter = new RecordReaderDataSetIterator(rr, 32, 3, 3);
+        for (int e = 0; e < 2; e++) {
+            int cnt = 0;
+            while (expIter.hasNext()) {
+                assertTrue(iter.hasNext());
+                DataSet exp = expIter.next();
+                DataSet act = iter.next();
+                assertEquals(exp.getFeatures().castTo(DataType.DOUBLE), act.getFeatures().castTo(DataType.DOUBLE));
+                assertEquals(exp.getLabels().castTo(DataType.DOUBLE), act.getLabels().castTo(DataType.DOUBLE));
+                cnt += act.numExamples();
+            }
+            assertFalse(iter.hasNext());
+            assertEquals(150, cnt);
+
+            expIter.reset();
+            iter.reset();
+        }
+        rr.close();
+    }
+
     @Test
     public void testNormalizerPrefetchReset() throws Exception {
         //Check NPE fix for: https://github.com/deeplearning4j/deeplearning4j/issues/4214
@@ -29,10 +29,13 @@ import org.deeplearning4j.nn.conf.graph.rnn.DuplicateToTimeSeriesVertex;
 import org.deeplearning4j.nn.conf.graph.rnn.LastTimeStepVertex;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.memory.ActivationLivenessReport;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
 import org.deeplearning4j.nn.conf.memory.MemoryType;
 import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
 import org.deeplearning4j.nn.conf.preprocessor.FeedForwardToCnnPreProcessor;
+import org.deeplearning4j.nn.workspace.ArrayType;
 import org.junit.Test;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.buffer.DataType;
@@ -44,10 +47,14 @@ import org.nd4j.common.primitives.Pair;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Created by Alex on 14/07/2017.
@@ -270,4 +277,103 @@ public class TestMemoryReports extends BaseDL4JTest {
 
         conf.getMemoryReport(InputType.convolutional(17,19,19));
     }
+
+    @Test
+    public void testActivationLivenessMLN() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(new DenseLayer.Builder().nIn(10).nOut(100).build())
+                        .layer(new DenseLayer.Builder().nIn(100).nOut(100).build())
+                        .layer(new DenseLayer.Builder().nIn(100).nOut(100).build())
+                        .layer(new DenseLayer.Builder().nIn(100).nOut(100).build())
+                        .layer(new OutputLayer.Builder().nIn(100).nOut(10).build()).build();
+
+        NetworkMemoryReport mr = conf.getMemoryReport(InputType.feedForward(10));
+
+        //Inference: at most two consecutive activations are live at any time
+        ActivationLivenessReport inference = mr.getActivationLivenessReport(MemoryUseMode.INFERENCE);
+        assertValidLayout(inference);
+        assertEquals(200, inference.getPeakElementsPerExample());
+        assertEquals(410, inference.getTotalElementsPerExample());
+        assertEquals(200 * 32 * 4, mr.getPeakLiveActivationBytes(32, MemoryUseMode.INFERENCE, DataType.FLOAT));
+
+        ActivationLivenessReport training = mr.getActivationLivenessReport(MemoryUseMode.TRAINING);
+        assertValidLayout(training);
+        assertTrue(training.getPeakElementsPerExample() >= inference.getPeakElementsPerExample());
+        assertTrue(training.getPeakElementsPerExample() < training.getTotalElementsPerExample());
+        assertTrue(training.getRecomputedVertices().isEmpty());
+
+        //Gradient checkpointing estimate: lower peak, at the cost of recomputing the given layers
+        NetworkMemoryReport mrRecompute =
+                        conf.getMemoryReport(InputType.feedForward(10), Arrays.asList("layer1", "layer2"));
+        ActivationLivenessReport recomputed = mrRecompute.getActivationLivenessReport(MemoryUseMode.TRAINING);
+        assertValidLayout(recomputed);
+        assertEquals(Arrays.asList("layer1", "layer2"), recomputed.getRecomputedVertices());
+        assertTrue(recomputed.getPeakElementsPerExample() < training.getPeakElementsPerExample());
+        assertEquals(inference, mrRecompute.getActivationLivenessReport(MemoryUseMode.INFERENCE));
+
+        assertTrue(mr.toString().contains("Peak Live Training Activations"));
+        assertTrue(mr.peakLiveVsActual(0, 32, MemoryUseMode.TRAINING, DataType.FLOAT).contains("peak live"));
+
+        //Liveness reports are not part of the serialized report
+        assertEquals(mr, MemoryReport.fromJson(mr.toJson()));
+
+        try {
+            conf.getMemoryReport(InputType.feedForward(10), Collections.singletonList("nonexistent"));
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("nonexistent"));
+        }
+    }
+
+    @Test
+    public void testActivationLivenessCG() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().graphBuilder().addInputs("in")
+                        .addLayer("d1", new DenseLayer.Builder().nIn(10).nOut(50).build(), "in")
+                        .addLayer("d2", new DenseLayer.Builder().nIn(50).nOut(50).build(), "d1")
+                        .addLayer("d3", new DenseLayer.Builder().nIn(50).nOut(50).build(), "d2")
+                        .addVertex("merge", new MergeVertex(), "d1", "d3")
+                        .addLayer("out", new OutputLayer.Builder().nIn(100).nOut(10).build(), "merge")
+                        .setOutputs("out").build();
+
+        NetworkMemoryReport mr = conf.getMemoryReport(InputType.feedForward(10));
+
+        for (MemoryUseMode mode : MemoryUseMode.values()) {
+            assertValidLayout(mr.getActivationLivenessReport(mode));
+        }
+
+        //Skip connection: d1 is live until merge is executed, d2 only until d3 is executed
+        ActivationLivenessReport inference = mr.getActivationLivenessReport(MemoryUseMode.INFERENCE);
+        assertEquals(getActivations(inference, "merge").getFirstStep(), getActivations(inference, "d1").getLastStep());
+        assertEquals(getActivations(inference, "d3").getFirstStep(), getActivations(inference, "d2").getLastStep());
+        assertEquals(10, getActivations(inference, "out").getElementsPerExample());
+        assertEquals(100, getActivations(inference, "merge").getElementsPerExample());
+    }
+
+    private static ActivationLivenessReport.Buffer getActivations(ActivationLivenessReport report, String vertexName) {
+        for (ActivationLivenessReport.Buffer b : report.getBuffers()) {
+            if (b.getVertexName().equals(vertexName) && b.getArrayType() == ArrayType.ACTIVATIONS) {
+                return b;
+            }
+        }
+        throw new AssertionError("No activations for vertex " + vertexName);
+    }
+
+    private static void assertValidLayout(ActivationLivenessReport report) {
+        List<ActivationLivenessReport.Buffer> buffers = report.getBuffers();
+        for (int i = 0; i < buffers.size(); i++) {
+            ActivationLivenessReport.Buffer b1 = buffers.get(i);
+            assertTrue(b1.getFirstStep() <= b1.getLastStep());
+            assertTrue(b1.getOffset() + b1.getElementsPerExample() <= report.getPeakElementsPerExample());
+            for (int j = i + 1; j < buffers.size(); j++) {
+                ActivationLivenessReport.Buffer b2 = buffers.get(j);
+                if (!b1.overlaps(b2)) {
+                    continue;
+                }
+                //Buffers live at the same time must not share memory
+                boolean disjoint = b1.getOffset() + b1.getElementsPerExample() <= b2.getOffset()
+                                || b2.getOffset() + b2.getElementsPerExample() <= b1.getOffset();
+                assertTrue(b1 + " vs. " + b2, disjoint);
+            }
+        }
+    }
 }
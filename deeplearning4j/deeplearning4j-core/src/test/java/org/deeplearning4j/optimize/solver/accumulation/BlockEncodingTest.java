@@ -0,0 +1,108 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solver.accumulation;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.solvers.accumulation.EncodingHandler;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.threshold.FixedThresholdAlgorithm;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.Assert.*;
+
+public class BlockEncodingTest extends BaseDL4JTest {
+
+    @Test
+    public void testUniformBlocks1() {
+        ParameterBlocks blocks = ParameterBlocks.uniform(100, 32);
+        assertEquals(4, blocks.numBlocks());
+        assertEquals(100, blocks.getLength());
+        assertEquals(96, blocks.getOffset(3));
+        assertEquals(4, blocks.getLength(3));
+
+        INDArray vector = Nd4j.linspace(0, 99, 100).reshape(1, 100);
+        INDArray view = blocks.view(vector, 1);
+        assertEquals(32, view.length());
+        assertEquals(32.0, view.getDouble(0), 1e-5);
+    }
+
+    @Test
+    public void testModelBlocks1() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(new DenseLayer.Builder().nIn(100).nOut(50).build())
+                        .layer(new DenseLayer.Builder().nIn(50).nOut(2).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(2).nOut(10).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        // layer 0: 5050 params, layers 1 and 2 are too small for separate blocks and get merged
+        ParameterBlocks blocks = ParameterBlocks.fromModel(net, 1000);
+        assertEquals(2, blocks.numBlocks());
+        assertEquals(5050, blocks.getLength(0));
+        assertEquals(net.numParams(), blocks.getLength());
+
+        // every layer is a block of its own
+        assertEquals(3, ParameterBlocks.fromModel(net, 1).numBlocks());
+    }
+
+    @Test
+    public void testBlockEncoding1() {
+        int length = 2048;
+        ParameterBlocks blocks = ParameterBlocks.uniform(length, 512);
+        EncodingHandler handler = new EncodingHandler(new FixedThresholdAlgorithm(1e-3), null, null, false, blocks);
+
+        // block 0: dense, block 1: sparse, blocks 2 and 3: nothing to send
+        INDArray updates = Nd4j.create(1, length);
+        for (int e = 0; e < 512; e++)
+            updates.putScalar(e, 5e-3);
+        for (int e = 512; e < 520; e++)
+            updates.putScalar(e, -5e-3);
+
+        INDArray original = updates.dup();
+        for (int i = 0; i < 3; i++) {
+            INDArray encoded = handler.encodeUpdates(i, 0, updates);
+            assertNotNull(encoded);
+            assertEquals(BlockEncoding.BLOCK_ENCODING, encoded.data().getInt(3));
+
+            INDArray decoded = Nd4j.create(1, length);
+            BlockEncoding.decode(encoded, decoded);
+
+            // decoded updates plus residual should always give the original updates
+            assertEquals(original, decoded.add(updates));
+            original = updates.dup();
+        }
+
+        assertTrue(handler.getBytesPerUpdate(0) > 0);
+        assertTrue(handler.getBytesPerUpdate(1) > 0);
+        assertEquals(0.0, handler.getBytesPerUpdate(3), 1e-5);
+        assertTrue(handler.getBitmapRatio(0) > handler.getBitmapRatio(1));
+        assertTrue(handler.getEncodedBytes() > handler.getEncodedBytes(0) + handler.getEncodedBytes(1));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solver.accumulation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.optimize.solvers.accumulation.BroadcastRingBuffer;
+import org.deeplearning4j.optimize.solvers.accumulation.FancyBlockingQueue;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class BroadcastRingBufferTest extends BaseDL4JTest {
+
+    @Test
+    public void testSingleThread1() {
+        BroadcastRingBuffer<Integer> buffer = new BroadcastRingBuffer<>(5, 2);
+        assertEquals(8, buffer.getCapacity());
+        assertTrue(buffer.isEmpty(0));
+
+        for (int e = 0; e < 8; e++)
+            buffer.put(e);
+
+        assertEquals(8, buffer.size(0));
+        assertFalse(buffer.isEmpty(1));
+
+        for (int e = 0; e < 8; e++)
+            assertEquals(e, buffer.poll(0).intValue());
+        assertNull(buffer.poll(0));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(8, buffer.drainTo(1, drained));
+        assertEquals(7, drained.get(7).intValue());
+
+        // both consumers are done, so the whole capacity is available again
+        for (int e = 8; e < 16; e++)
+            buffer.put(e);
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty(0));
+        assertTrue(buffer.isEmpty(1));
+    }
+
+    @Test(timeout = 60000L)
+    public void testBroadcast1() throws Exception {
+        final int producers = 3;
+        final int consumers = 4;
+        final int perProducer = 10000;
+        final BroadcastRingBuffer<Integer> buffer = new BroadcastRingBuffer<>(16, consumers);
+
+        final AtomicLong sum = new AtomicLong(0);
+        final AtomicLong ordered = new AtomicLong(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            final int consumer = c;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int[] last = new int[producers];
+                    for (int e = 0; e < producers * perProducer; e++) {
+                        try {
+                            int value = buffer.take(consumer);
+                            sum.addAndGet(value % perProducer);
+
+                            // elements of the same producer should arrive in publication order
+                            int producer = value / perProducer;
+                            if (value % perProducer >= last[producer]) {
+                                last[producer] = value % perProducer;
+                                ordered.incrementAndGet();
+                            }
+                        } catch (InterruptedException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int e = 0; e < perProducer; e++)
+                        buffer.put(producer * perProducer + e);
+                }
+            }));
+        }
+
+        for (Thread t : threads)
+            t.start();
+
+        for (Thread t : threads)
+            t.join();
+
+        long expected = (long) perProducer * (perProducer - 1) / 2 * producers * consumers;
+        assertEquals(expected, sum.get());
+        assertEquals((long) producers * perProducer * consumers, ordered.get());
+        for (int c = 0; c < consumers; c++)
+            assertTrue(buffer.isEmpty(c));
+    }
+
+    /**
+     * Throughput comparison with FancyBlockingQueue: single producer, N consumers, every consumer gets every element
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void benchmarkConsumers() throws Exception {
+        int numElements = 100000;
+        for (int consumers : new int[] {2, 4, 8, 16}) {
+            long fancy = benchmarkFancyQueue(consumers, numElements);
+            long ring = benchmarkRingBuffer(consumers, numElements);
+            log.info("Consumers: {}; FancyBlockingQueue: {} ms; BroadcastRingBuffer: {} ms", consumers, fancy, ring);
+        }
+    }
+
+    protected long benchmarkFancyQueue(int consumers, int numElements) throws Exception {
+        final FancyBlockingQueue<Integer> queue = new FancyBlockingQueue<>(new LinkedBlockingQueue<Integer>(numElements), consumers);
+        for (int e = 0; e < numElements; e++)
+            queue.add(e);
+
+        queue.registerConsumers(consumers);
+
+        Thread[] threads = new Thread[consumers];
+        for (int c = 0; c < consumers; c++) {
+            threads[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!queue.isEmpty())
+                        queue.poll();
+                }
+            });
+        }
+
+        long time = System.currentTimeMillis();
+        for (Thread t : threads)
+            t.start();
+
+        for (Thread t : threads)
+            t.join();
+
+        return System.currentTimeMillis() - time;
+    }
+
+    protected long benchmarkRingBuffer(final int consumers, final int numElements) throws Exception {
+        final BroadcastRingBuffer<Integer> buffer = new BroadcastRingBuffer<>(1024, consumers);
+
+        Thread[] threads = new Thread[consumers + 1];
+        for (int c = 0; c < consumers; c++) {
+            final int consumer = c;
+            threads[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int e = 0; e < numElements; e++)
+                            buffer.take(consumer);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+        }
+
+        threads[consumers] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int e = 0; e < numElements; e++)
+                    buffer.put(e);
+            }
+        });
+
+        long time = System.currentTimeMillis();
+        for (Thread t : threads)
+            t.start();
+
+        for (Thread t : threads)
+            t.join();
+
+        return System.currentTimeMillis() - time;
+    }
+}
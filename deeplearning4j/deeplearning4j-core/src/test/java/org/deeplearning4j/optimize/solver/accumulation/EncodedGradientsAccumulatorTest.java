@@ -84,6 +84,27 @@ public class EncodedGradientsAccumulatorTest extends BaseDL4JTest {
     }
 
 
+    /**
+     * In broadcast mode updates are stored once, so no per-worker queues are allocated
+     */
+    @Test
+    public void testBroadcastMode1() throws Exception {
+        int numParams = 10000;
+        int numWorkers = 3;
+        EncodingHandler handler = new EncodingHandler(new FixedThresholdAlgorithm(1e-3), null, null, false);
+
+        val bufferSize = EncodedGradientsAccumulator.getOptimalBufferSize(numParams, numWorkers, 2);
+        EncodedGradientsAccumulator accumulator =
+                        new EncodedGradientsAccumulator(numWorkers, handler, bufferSize, 2, null, false, true);
+
+        assertNotNull(accumulator.getBroadcast());
+        assertTrue(accumulator.getMessages().isEmpty());
+
+        INDArray encoded = handler.encodeUpdates(0, 0, getGradients(numParams, 100, 2e-3));
+        accumulator.receiveUpdate(encoded);
+        accumulator.reset();
+    }
+
     /**
      * Here we ensure that no matter how dense/sparse our updates are - we're never going above 1/16 of original elements of gradients array
      *
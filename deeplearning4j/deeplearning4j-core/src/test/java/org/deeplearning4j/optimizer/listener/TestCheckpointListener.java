@@ -22,16 +22,20 @@ import org.deeplearning4j.BaseDL4JTest;
 import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.listeners.Checkpoint;
 import org.deeplearning4j.optimize.listeners.CheckpointListener;
+import org.deeplearning4j.optimize.listeners.CheckpointStats;
 import org.deeplearning4j.util.ModelSerializer;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.NoOp;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.nd4j.common.primitives.Pair;
 
@@ -307,4 +311,73 @@ public class TestCheckpointListener extends BaseDL4JTest {
         assertNotNull(fList);
         assertEquals(2, fList.length);
     }
+
+    @Test
+    public void testAsyncShardedSaving() throws Exception {
+        File f = tempDir.newFolder();
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .updater(new Adam(1e-2))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).updater(new NoOp()).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iter = new IrisDataSetIterator(25,50);
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepLast(2)
+                .saveEveryNEpochs(1)
+                .asyncSaving(true)
+                .shardedSaving(true)
+                .build();
+        net.setListeners(l);
+
+        for(int i=0; i<4; i++ ){
+            net.fit(iter);
+        }
+        l.awaitPendingCheckpoint();
+
+        List<CheckpointStats> stats = l.getCheckpointStats();
+        assertEquals(4, stats.size());
+        assertEquals(2, l.availableCheckpoints().size());
+        for(int i=0; i<4; i++ ){
+            CheckpointStats s = stats.get(i);
+            assertEquals(i, s.getCheckpointNum());
+            assertTrue(s.getBytesWritten() > 0);
+            if(i > 0){
+                //First layer is not updated: its shard is reused
+                assertTrue(s.getShardsReused() >= 1);
+            }
+        }
+
+        //Shards of deleted checkpoints should have been removed: 2 shards per checkpoint (one is shared) + updater
+        File[] shards = new File(f, "shards").listFiles();
+        assertNotNull(shards);
+        assertEquals(5, shards.length);
+
+        MultiLayerNetwork restored = l.loadCheckpointMLN(l.lastCheckpoint());
+        assertEquals(net.getLayerWiseConfigurations(), restored.getLayerWiseConfigurations());
+        assertEquals(net.params(), restored.params());
+        assertEquals(net.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+
+        //close() stops the writer thread; the listener can still save checkpoints afterwards
+        l.close();
+        assertFalse(isWriterThreadAlive());
+        net.fit(iter);
+        l.close();
+        assertEquals(5, l.getCheckpointStats().size());
+        assertFalse(isWriterThreadAlive());
+    }
+
+    private static boolean isWriterThreadAlive(){
+        for(Thread t : Thread.getAllStackTraces().keySet()){
+            if("CheckpointListener-writer".equals(t.getName()) && t.isAlive()){
+                return true;
+            }
+        }
+        return false;
+    }
 }
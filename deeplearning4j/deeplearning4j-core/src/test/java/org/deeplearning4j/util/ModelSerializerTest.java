@@ -42,6 +42,7 @@ import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.nd4j.common.primitives.Pair;
@@ -50,6 +51,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -158,6 +160,98 @@ public class ModelSerializerTest extends BaseDL4JTest {
         assertEquals(cg.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
     }
 
+    @Test
+    public void testWriteMappableMLN() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.01))
+                        .activation(Activation.TANH).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(20).build())
+                        .layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(20).nOut(3).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        net.fit(ds);
+
+        File tempFile = tempDir.newFile();
+        ModelSerializer.writeModelMappable(net, tempFile, true);
+        assertEquals(0, rawParamsOffset(tempFile) % ModelSerializer.PARAMS_ALIGNMENT);
+
+        //Inference only restore: mapped parameters, no updater state
+        MultiLayerNetwork mapped = ModelSerializer.restoreMultiLayerNetworkMapped(tempFile);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), mapped.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), mapped.params());
+        assertEquals(net.output(ds.getFeatures()), mapped.output(ds.getFeatures()));
+
+        //Regular restore, from file and from stream
+        MultiLayerNetwork fromFile = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(net.params(), fromFile.params());
+        assertEquals(net.getUpdater().getStateViewArray(), fromFile.getUpdater().getStateViewArray());
+
+        try (InputStream is = new FileInputStream(tempFile)) {
+            MultiLayerNetwork fromStream = ModelSerializer.restoreMultiLayerNetwork(is, true);
+            assertEquals(net.params(), fromStream.params());
+            assertEquals(net.getUpdater().getStateViewArray(), fromStream.getUpdater().getStateViewArray());
+        }
+
+        //Files without the mappable layout are still restored
+        File regular = tempDir.newFile();
+        ModelSerializer.writeModel(net, regular, true);
+        assertEquals(net.params(), ModelSerializer.restoreMultiLayerNetworkMapped(regular).params());
+    }
+
+    @Test
+    public void testWriteMappableCG() throws Exception {
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder().updater(new Adam(0.01))
+                        .graphBuilder().addInputs("in")
+                        .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(10).build(), "in").addLayer("out",
+                                        new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                                                .activation(Activation.SOFTMAX).build(),
+                                        "dense")
+                        .setOutputs("out").build();
+
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        cg.fit(ds);
+
+        NormalizerStandardize normalizer = new NormalizerStandardize();
+        normalizer.fit(ds);
+
+        File tempFile = tempDir.newFile();
+        ModelSerializer.writeModelMappable(cg, tempFile, true, normalizer);
+        assertEquals(0, rawParamsOffset(tempFile) % ModelSerializer.PARAMS_ALIGNMENT);
+
+        ComputationGraph mapped = ModelSerializer.restoreComputationGraphMapped(tempFile);
+        assertEquals(cg.getConfiguration().toJson(), mapped.getConfiguration().toJson());
+        assertEquals(cg.params(), mapped.params());
+        assertEquals(cg.outputSingle(ds.getFeatures()), mapped.outputSingle(ds.getFeatures()));
+
+        ComputationGraph fromFile = ModelSerializer.restoreComputationGraph(tempFile, true);
+        assertEquals(cg.params(), fromFile.params());
+        assertEquals(cg.getUpdater().getStateViewArray(), fromFile.getUpdater().getStateViewArray());
+
+        NormalizerStandardize restoredNormalizer = ModelSerializer.restoreNormalizerFromFile(tempFile);
+        assertEquals(normalizer.getMean(), restoredNormalizer.getMean());
+    }
+
+    /**
+     * Offset of the data of the first entry of the zip file
+     */
+    private static long rawParamsOffset(File file) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[30];
+            raf.readFully(header);
+            int nameLength = (header[26] & 0xFF) | (header[27] & 0xFF) << 8;
+            int extraLength = (header[28] & 0xFF) | (header[29] & 0xFF) << 8;
+            byte[] name = new byte[nameLength];
+            raf.readFully(name);
+            assertEquals(ModelSerializer.COEFFICIENTS_RAW, new String(name, "UTF-8"));
+            return 30 + nameLength + extraLength;
+        }
+    }
+
     @Test
     public void testWriteCGModelInputStream() throws Exception {
         ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder()
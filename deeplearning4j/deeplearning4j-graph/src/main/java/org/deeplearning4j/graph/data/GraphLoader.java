@@ -22,6 +22,7 @@ import org.deeplearning4j.graph.api.Edge;
 import org.deeplearning4j.graph.api.Vertex;
 import org.deeplearning4j.graph.data.impl.DelimitedEdgeLineProcessor;
 import org.deeplearning4j.graph.data.impl.WeightedEdgeLineProcessor;
+import org.deeplearning4j.graph.graph.CSRGraph;
 import org.deeplearning4j.graph.graph.Graph;
 import org.deeplearning4j.graph.vertexfactory.StringVertexFactory;
 import org.deeplearning4j.graph.vertexfactory.VertexFactory;
@@ -190,4 +191,52 @@ public class GraphLoader {
 
         return graph;
     }
+
+    /** Load a graph into memory in compressed sparse row format, using a given EdgeLineProcessor.
+     * Assume one edge per line<br>
+     * The resulting graph is immutable, and is more compact and faster for random walks than {@link Graph}
+     * @param path Path to the file containing the edges, one per line
+     * @param lineProcessor EdgeLineProcessor used to convert lines of text into a graph (or null for comment lines etc)
+     * @param vertexFactory Used to create vertices
+     * @param numVertices number of vertices in the graph
+     * @param allowMultipleEdges whether the graph should allow multiple edges between a given pair of vertices or not
+     * @return CSRGraph
+     */
+    public static <V, E> CSRGraph<V, E> loadCSRGraph(String path, EdgeLineProcessor<E> lineProcessor,
+                    VertexFactory<V> vertexFactory, int numVertices, boolean allowMultipleEdges) throws IOException {
+        CSRGraph.Builder<V, E> builder = new CSRGraph.Builder<>(numVertices, allowMultipleEdges, vertexFactory);
+        loadEdges(new File(path), lineProcessor, builder);
+        return builder.build();
+    }
+
+    /** Load graph in compressed sparse row format, assuming vertices are in one file and edges are in another file.
+     *
+     * @param vertexFilePath Path to file containing vertices, one per line
+     * @param edgeFilePath Path to the file containing edges, one per line
+     * @param vertexLoader VertexLoader, for loading vertices from the file
+     * @param edgeLineProcessor EdgeLineProcessor, converts text lines into edges
+     * @param allowMultipleEdges whether the graph should allow (or filter out) multiple edges
+     * @return CSRGraph loaded from files
+     */
+    public static <V, E> CSRGraph<V, E> loadCSRGraph(String vertexFilePath, String edgeFilePath,
+                    VertexLoader<V> vertexLoader, EdgeLineProcessor<E> edgeLineProcessor, boolean allowMultipleEdges)
+                    throws IOException {
+        List<Vertex<V>> vertices = vertexLoader.loadVertices(vertexFilePath);
+        CSRGraph.Builder<V, E> builder = new CSRGraph.Builder<>(vertices, allowMultipleEdges);
+        loadEdges(new File(edgeFilePath), edgeLineProcessor, builder);
+        return builder.build();
+    }
+
+    private static <V, E> void loadEdges(File file, EdgeLineProcessor<E> lineProcessor, CSRGraph.Builder<V, E> builder)
+                    throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Edge<E> edge = lineProcessor.processLine(line);
+                if (edge != null) {
+                    builder.addEdge(edge);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,479 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.graph.graph;
+
+import org.deeplearning4j.graph.api.BaseGraph;
+import org.deeplearning4j.graph.api.Edge;
+import org.deeplearning4j.graph.api.IGraph;
+import org.deeplearning4j.graph.api.Vertex;
+import org.deeplearning4j.graph.exception.NoEdgesException;
+import org.deeplearning4j.graph.vertexfactory.VertexFactory;
+
+import java.util.*;
+
+/** Immutable graph, where adjacency is stored in compressed sparse row (CSR) format: a single offsets array
+ * indexed by vertex, and flat arrays of neighbour indices and edge weights.<br>
+ * Unlike {@link Graph}, neighbours of a vertex can be accessed without any allocation, which makes this
+ * implementation suited for random walks on large graphs (100M+ edges).<br>
+ * If all edge values are instances of {@link Number}, per-vertex alias tables are built, so that weighted neighbour
+ * sampling ({@link #getRandomConnectedVertexWeighted(int, Random)}) takes O(1) time regardless of vertex degree.<br>
+ * As with {@link Graph}, undirected edges are stored once for each of the two vertices.<br>
+ * Instances are created via {@link Builder}, {@link #fromGraph(IGraph)} or
+ * {@link org.deeplearning4j.graph.data.GraphLoader#loadCSRGraph(String, org.deeplearning4j.graph.data.EdgeLineProcessor, VertexFactory, int, boolean)}
+ * @param <V> Type parameter for vertices (type of objects attached to each vertex)
+ * @param <E> Type parameter for edges (type of objects attached to each edge)
+ */
+public class CSRGraph<V, E> extends BaseGraph<V, E> {
+    private final List<Vertex<V>> vertices;
+    private final int[] offsets;        //Neighbours of vertex i are at positions offsets[i] (inclusive) to offsets[i+1] (exclusive)
+    private final int[] neighbours;
+    private final BitSet directed;
+    private final double[] weights;     //null if edge values aren't numeric
+    private final Object[] values;      //null if all values are null, or all values are Double (restored from weights)
+    private final float[] aliasProbabilities;
+    private final int[] aliases;
+
+    private CSRGraph(List<Vertex<V>> vertices, int[] offsets, int[] neighbours, BitSet directed, double[] weights,
+                    Object[] values) {
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.directed = directed;
+        this.weights = weights;
+        this.values = values;
+
+        if (weights != null) {
+            aliasProbabilities = new float[neighbours.length];
+            aliases = new int[neighbours.length];
+            buildAliasTables();
+        } else {
+            aliasProbabilities = null;
+            aliases = null;
+        }
+    }
+
+    /** Create a CSRGraph with the same vertices and edges as the specified graph */
+    public static <V, E> CSRGraph<V, E> fromGraph(IGraph<V, E> graph) {
+        int nVertices = graph.numVertices();
+        Builder<V, E> builder = new Builder<>(graph.getVertices(0, nVertices - 1), true);
+        for (int i = 0; i < nVertices; i++) {
+            boolean skipSelfLoop = false;
+            for (Edge<E> edge : graph.getEdgesOut(i)) {
+                //Undirected edges are present in edge lists of both vertices: add each of them only once
+                if (edge.isDirected()) {
+                    builder.addEdge(edge);
+                } else if (edge.getFrom() == edge.getTo()) {
+                    //Undirected self loops are present twice in the same edge list
+                    if (!skipSelfLoop)
+                        builder.addEdge(edge);
+                    skipSelfLoop = !skipSelfLoop;
+                } else if (edge.getFrom() == i) {
+                    builder.addEdge(edge);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int numVertices() {
+        return vertices.size();
+    }
+
+    /** Total number of stored (directed) adjacency entries. Undirected edges are counted twice */
+    public int numAdjacencyEntries() {
+        return neighbours.length;
+    }
+
+    /** Whether edge values are numeric, and hence weighted sampling is available */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    @Override
+    public Vertex<V> getVertex(int idx) {
+        if (idx < 0 || idx >= vertices.size())
+            throw new IllegalArgumentException("Invalid index: " + idx);
+        return vertices.get(idx);
+    }
+
+    @Override
+    public List<Vertex<V>> getVertices(int[] indexes) {
+        List<Vertex<V>> out = new ArrayList<>(indexes.length);
+        for (int i : indexes)
+            out.add(getVertex(i));
+        return out;
+    }
+
+    @Override
+    public List<Vertex<V>> getVertices(int from, int to) {
+        if (to < from || from < 0 || to >= vertices.size())
+            throw new IllegalArgumentException("Invalid range: from=" + from + ", to=" + to);
+        return new ArrayList<>(vertices.subList(from, to + 1));
+    }
+
+    /** Not supported: CSRGraph is immutable. Use {@link Builder} instead */
+    @Override
+    public void addEdge(Edge<E> edge) {
+        throw new UnsupportedOperationException("CSRGraph is immutable: use CSRGraph.Builder to add edges");
+    }
+
+    /** {@inheritDoc}<br>
+     * Note: edges are created on every call. Use {@link #getNeighbour(int, int)} and {@link #getVertexDegree(int)}
+     * for allocation-free access
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Edge<E>> getEdgesOut(int vertex) {
+        checkVertex(vertex);
+        int start = offsets[vertex];
+        int end = offsets[vertex + 1];
+        if (start == end)
+            return Collections.emptyList();
+
+        List<Edge<E>> out = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            E value;
+            if (values != null)
+                value = (E) values[i];
+            else if (weights != null)
+                value = (E) Double.valueOf(weights[i]);
+            else
+                value = null;
+            out.add(new Edge<>(vertex, neighbours[i], value, directed.get(i)));
+        }
+        return out;
+    }
+
+    @Override
+    public int getVertexDegree(int vertex) {
+        checkVertex(vertex);
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /** Get the index of the k-th neighbour of the specified vertex, without any allocation
+     * @param vertex index of the vertex
+     * @param k neighbour number, in range 0 to getVertexDegree(vertex) exclusive
+     */
+    public int getNeighbour(int vertex, int k) {
+        if (k < 0 || k >= getVertexDegree(vertex))
+            throw new IllegalArgumentException("Invalid neighbour number " + k + " for vertex " + vertex);
+        return neighbours[offsets[vertex] + k];
+    }
+
+    @Override
+    public Vertex<V> getRandomConnectedVertex(int vertex, Random rng) throws NoEdgesException {
+        return vertices.get(randomConnectedVertexIndex(vertex, rng));
+    }
+
+    /** Uniformly sample index of a vertex connected to a given vertex.
+     * @see #getRandomConnectedVertex(int, Random)
+     */
+    public int randomConnectedVertexIndex(int vertex, Random rng) throws NoEdgesException {
+        int start = offsets[checkEdges(vertex)];
+        return neighbours[start + rng.nextInt(offsets[vertex + 1] - start)];
+    }
+
+    /** Randomly sample a vertex connected to a given vertex, with probability proportional to the edge weight.
+     * Sampling uses alias method, and hence takes O(1) time.
+     * @param vertex vertex to randomly sample from
+     * @param rng Random number generator to use
+     * @return A vertex connected to the specified vertex
+     * @throws NoEdgesException thrown if the specified vertex has no edges, or no outgoing edges (in the case
+     * of a directed graph).
+     */
+    public Vertex<V> getRandomConnectedVertexWeighted(int vertex, Random rng) throws NoEdgesException {
+        return vertices.get(randomConnectedVertexIndexWeighted(vertex, rng));
+    }
+
+    /** Sample index of a vertex connected to a given vertex, with probability proportional to the edge weight.
+     * @see #getRandomConnectedVertexWeighted(int, Random)
+     */
+    public int randomConnectedVertexIndexWeighted(int vertex, Random rng) throws NoEdgesException {
+        if (weights == null)
+            throw new IllegalStateException("Cannot sample weighted vertex: graph edge values are not numeric");
+
+        int start = offsets[checkEdges(vertex)];
+        int pos = start + rng.nextInt(offsets[vertex + 1] - start);
+        if (rng.nextFloat() >= aliasProbabilities[pos])
+            pos = start + aliases[pos];
+        return neighbours[pos];
+    }
+
+    @Override
+    public List<Vertex<V>> getConnectedVertices(int vertex) {
+        checkVertex(vertex);
+        List<Vertex<V>> list = new ArrayList<>(offsets[vertex + 1] - offsets[vertex]);
+        for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++)
+            list.add(vertices.get(neighbours[i]));
+        return list;
+    }
+
+    @Override
+    public int[] getConnectedVertexIndices(int vertex) {
+        checkVertex(vertex);
+        return Arrays.copyOfRange(neighbours, offsets[vertex], offsets[vertex + 1]);
+    }
+
+    private void checkVertex(int vertex) {
+        if (vertex < 0 || vertex >= vertices.size())
+            throw new IllegalArgumentException("Invalid vertex index: " + vertex);
+    }
+
+    private int checkEdges(int vertex) {
+        checkVertex(vertex);
+        if (offsets[vertex] == offsets[vertex + 1])
+            throw new NoEdgesException("Cannot generate random connected vertex: vertex " + vertex
+                            + " has no outgoing/undirected edges");
+        return vertex;
+    }
+
+    /** Vose's alias method: for each vertex, split its neighbour probabilities into equally sized buckets, each
+     * holding at most two outcomes: the neighbour at the bucket position, and its alias */
+    private void buildAliasTables() {
+        int maxDegree = 0;
+        for (int v = 0; v < vertices.size(); v++)
+            maxDegree = Math.max(maxDegree, offsets[v + 1] - offsets[v]);
+
+        double[] scaled = new double[maxDegree];
+        int[] small = new int[maxDegree];
+        int[] large = new int[maxDegree];
+
+        for (int v = 0; v < vertices.size(); v++) {
+            int start = offsets[v];
+            int degree = offsets[v + 1] - start;
+            if (degree == 0)
+                continue;
+
+            double sum = 0.0;
+            for (int i = 0; i < degree; i++) {
+                double w = weights[start + i];
+                if (w < 0 || Double.isNaN(w) || Double.isInfinite(w))
+                    throw new IllegalStateException("Invalid edge weight " + w + " for vertex " + v);
+                sum += w;
+            }
+
+            int nSmall = 0;
+            int nLarge = 0;
+            for (int i = 0; i < degree; i++) {
+                //All-zero weights: fall back to uniform sampling
+                scaled[i] = sum > 0 ? weights[start + i] * degree / sum : 1.0;
+                if (scaled[i] < 1.0)
+                    small[nSmall++] = i;
+                else
+                    large[nLarge++] = i;
+            }
+
+            while (nSmall > 0 && nLarge > 0) {
+                int s = small[--nSmall];
+                int l = large[--nLarge];
+                aliasProbabilities[start + s] = (float) scaled[s];
+                aliases[start + s] = l;
+
+                scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+                if (scaled[l] < 1.0)
+                    small[nSmall++] = l;
+                else
+                    large[nLarge++] = l;
+            }
+
+            //Remaining buckets are full (up to numerical error)
+            while (nLarge > 0) {
+                int l = large[--nLarge];
+                aliasProbabilities[start + l] = 1.0f;
+                aliases[start + l] = l;
+            }
+            while (nSmall > 0) {
+                int s = small[--nSmall];
+                aliasProbabilities[start + s] = 1.0f;
+                aliases[start + s] = s;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CSRGraph(numVertices=" + vertices.size() + ",numAdjacencyEntries=" + neighbours.length + ",weighted="
+                        + isWeighted() + ")";
+    }
+
+
+    /** Builder for {@link CSRGraph}. Edges are buffered in flat primitive arrays, and converted to CSR format
+     * on {@link #build()}
+     * @param <V> Type parameter for vertices
+     * @param <E> Type parameter for edges
+     */
+    public static class Builder<V, E> {
+        private final List<Vertex<V>> vertices;
+        private final boolean allowMultipleEdges;
+
+        private int numEdges = 0;
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private Object[] values = new Object[16];
+        private BitSet directed = new BitSet();
+
+        public Builder(int numVertices, VertexFactory<V> vertexFactory) {
+            this(numVertices, true, vertexFactory);
+        }
+
+        /**
+         * @param numVertices number of vertices in the graph
+         * @param allowMultipleEdges If false, multiple edges between a pair of vertices will be removed on build
+         * @param vertexFactory factory used to create vertices
+         */
+        public Builder(int numVertices, boolean allowMultipleEdges, VertexFactory<V> vertexFactory) {
+            if (numVertices <= 0)
+                throw new IllegalArgumentException("Number of vertices must be positive: got " + numVertices);
+            this.allowMultipleEdges = allowMultipleEdges;
+            this.vertices = new ArrayList<>(numVertices);
+            for (int i = 0; i < numVertices; i++)
+                vertices.add(vertexFactory.create(i));
+        }
+
+        public Builder(List<Vertex<V>> vertices, boolean allowMultipleEdges) {
+            if (vertices.isEmpty())
+                throw new IllegalArgumentException("Cannot create graph with no vertices");
+            this.vertices = new ArrayList<>(vertices);
+            this.allowMultipleEdges = allowMultipleEdges;
+        }
+
+        public Builder<V, E> addEdge(Edge<E> edge) {
+            return addEdge(edge.getFrom(), edge.getTo(), edge.getValue(), edge.isDirected());
+        }
+
+        public Builder<V, E> addEdge(int from, int to, E value, boolean directed) {
+            if (from < 0 || to < 0 || from >= vertices.size() || to >= vertices.size())
+                throw new IllegalArgumentException("Invalid edge: " + from + (directed ? "->" : "--") + to
+                                + ", from/to indexes out of range");
+
+            if (numEdges == this.from.length) {
+                int newLength = (int) Math.min(Integer.MAX_VALUE - 8, 2L * numEdges);
+                if (newLength == numEdges)
+                    throw new IllegalStateException("Too many edges: " + numEdges);
+                this.from = Arrays.copyOf(this.from, newLength);
+                this.to = Arrays.copyOf(this.to, newLength);
+                this.values = Arrays.copyOf(this.values, newLength);
+            }
+
+            this.from[numEdges] = from;
+            this.to[numEdges] = to;
+            this.values[numEdges] = value;
+            if (directed)
+                this.directed.set(numEdges);
+            numEdges++;
+            return this;
+        }
+
+        public CSRGraph<V, E> build() {
+            int nVertices = vertices.size();
+
+            //Counting sort of adjacency entries by source vertex
+            long[] counts = new long[nVertices + 1];
+            for (int i = 0; i < numEdges; i++) {
+                counts[from[i] + 1]++;
+                if (!directed.get(i))
+                    counts[to[i] + 1]++;
+            }
+            for (int v = 0; v < nVertices; v++)
+                counts[v + 1] += counts[v];
+            if (counts[nVertices] > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many adjacency entries for CSR format: " + counts[nVertices]);
+
+            int[] offsets = new int[nVertices + 1];
+            for (int v = 0; v <= nVertices; v++)
+                offsets[v] = (int) counts[v];
+
+            int total = offsets[nVertices];
+            int[] neighbours = new int[total];
+            int[] edgeIdx = new int[total];
+            BitSet entryDirected = new BitSet(total);
+            int[] position = Arrays.copyOf(offsets, nVertices);
+            for (int i = 0; i < numEdges; i++) {
+                int p = position[from[i]]++;
+                neighbours[p] = to[i];
+                edgeIdx[p] = i;
+                if (directed.get(i)) {
+                    entryDirected.set(p);
+                } else {
+                    p = position[to[i]]++;
+                    neighbours[p] = from[i];
+                    edgeIdx[p] = i;
+                }
+            }
+
+            if (!allowMultipleEdges) {
+                total = removeMultipleEdges(offsets, neighbours, edgeIdx, entryDirected);
+                neighbours = Arrays.copyOf(neighbours, total);
+                edgeIdx = Arrays.copyOf(edgeIdx, total);
+            }
+
+            //Edge values: stored as doubles where possible
+            boolean allNull = true;
+            boolean allDouble = true;
+            boolean allNumbers = true;
+            for (int i = 0; i < numEdges; i++) {
+                Object value = values[i];
+                allNull &= value == null;
+                allDouble &= value instanceof Double;
+                allNumbers &= value instanceof Number;
+            }
+
+            double[] weights = null;
+            if (numEdges > 0 && allNumbers) {
+                weights = new double[total];
+                for (int p = 0; p < total; p++)
+                    weights[p] = ((Number) values[edgeIdx[p]]).doubleValue();
+            }
+
+            Object[] entryValues = null;
+            if (!allNull && !(numEdges > 0 && allDouble)) {
+                entryValues = new Object[total];
+                for (int p = 0; p < total; p++)
+                    entryValues[p] = values[edgeIdx[p]];
+            }
+
+            return new CSRGraph<>(vertices, offsets, neighbours, entryDirected, weights, entryValues);
+        }
+
+        /** Keep only the first entry for each (vertex, neighbour) pair, compacting arrays in place */
+        private static int removeMultipleEdges(int[] offsets, int[] neighbours, int[] edgeIdx, BitSet entryDirected) {
+            Set<Integer> seen = new HashSet<>();
+            int write = 0;
+            for (int v = 0; v < offsets.length - 1; v++) {
+                int start = offsets[v];
+                int end = offsets[v + 1];
+                offsets[v] = write;
+                seen.clear();
+                for (int p = start; p < end; p++) {
+                    if (!seen.add(neighbours[p]))
+                        continue;
+                    neighbours[write] = neighbours[p];
+                    edgeIdx[write] = edgeIdx[p];
+                    entryDirected.set(write, entryDirected.get(p));
+                    write++;
+                }
+            }
+            offsets[offsets.length - 1] = write;
+            if (entryDirected.length() > write)
+                entryDirected.clear(write, entryDirected.length());
+            return write;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.deeplearning4j.graph.api.IVertexSequence;
 import org.deeplearning4j.graph.api.NoEdgeHandling;
 import org.deeplearning4j.graph.api.Vertex;
 import org.deeplearning4j.graph.exception.NoEdgesException;
+import org.deeplearning4j.graph.graph.CSRGraph;
 import org.deeplearning4j.graph.graph.VertexSequence;
 
 import java.util.NoSuchElementException;
@@ -110,7 +111,7 @@ public class RandomWalkIterator<V> implements GraphWalkIterator<V> {
         } catch (NoEdgesException e) {
             switch (mode) {
                 case SELF_LOOP_ON_DISCONNECTED:
-                    for (int i = 1; i < walkLength; i++)
+                    for (int i = 1; i <= walkLength; i++)
                         indices[i] = currVertexIdx;
                     return new VertexSequence<>(graph, indices);
                 case EXCEPTION_ON_DISCONNECTED:
@@ -122,6 +123,20 @@ public class RandomWalkIterator<V> implements GraphWalkIterator<V> {
         indices[1] = next.vertexID();
         currVertexIdx = indices[1];
 
+        if (graph instanceof CSRGraph) {
+            //Fast path: sample vertex indices directly, without vertex lookups
+            CSRGraph<V, ?> csr = (CSRGraph<V, ?>) graph;
+            for (int i = 2; i <= walkLength; i++) {
+                if (mode == NoEdgeHandling.SELF_LOOP_ON_DISCONNECTED && csr.getVertexDegree(currVertexIdx) == 0) {
+                    indices[i] = currVertexIdx;
+                    continue;
+                }
+                currVertexIdx = csr.randomConnectedVertexIndex(currVertexIdx, rng);
+                indices[i] = currVertexIdx;
+            }
+            return new VertexSequence<>(graph, indices);
+        }
+
         for (int i = 2; i <= walkLength; i++) { //<= walk length: i.e., if walk length = 2, it contains 3 vertices etc
             next = graph.getRandomConnectedVertex(currVertexIdx, rng);
             currVertexIdx = next.vertexID();
@@ -23,6 +23,7 @@ import org.deeplearning4j.graph.api.IGraph;
 import org.deeplearning4j.graph.api.IVertexSequence;
 import org.deeplearning4j.graph.api.NoEdgeHandling;
 import org.deeplearning4j.graph.exception.NoEdgesException;
+import org.deeplearning4j.graph.graph.CSRGraph;
 import org.deeplearning4j.graph.graph.VertexSequence;
 
 import java.util.List;
@@ -35,7 +36,8 @@ import java.util.Random;
  * Because the edge values are used to determine the probabilities of selecting an edge, the {@code WeightedRandomWalkIterator}
  * can only be used on graphs with an edge type that extends the {@link java.lang.Number} class (i.e., Integer, Double, etc)<br>
  * Random walks are generated starting at every node in the graph exactly once, though the order of the starting nodes
- * is randomized.
+ * is randomized.<br>
+ * For {@link CSRGraph}, edges are sampled via precomputed alias tables, i.e., in O(1) time and without any allocation.
  * @author Alex Black
  */
 public class WeightedRandomWalkIterator<V> implements GraphWalkIterator<V> {
@@ -110,6 +112,9 @@ public class WeightedRandomWalkIterator<V> implements GraphWalkIterator<V> {
         if (walkLength == 0)
             return new VertexSequence<>(graph, indices);
 
+        if (graph instanceof CSRGraph)
+            return nextCSR((CSRGraph<V, ? extends Number>) graph, currVertexIdx, indices);
+
         for (int i = 1; i <= walkLength; i++) {
             List<? extends Edge<? extends Number>> edgeList = graph.getEdgesOut(currVertexIdx);
 
@@ -159,6 +164,30 @@ public class WeightedRandomWalkIterator<V> implements GraphWalkIterator<V> {
         return new VertexSequence<>(graph, indices);
     }
 
+    private IVertexSequence<V> nextCSR(CSRGraph<V, ? extends Number> csr, int currVertexIdx, int[] indices) {
+        for (int i = 1; i <= walkLength; i++) {
+            if (csr.getVertexDegree(currVertexIdx) == 0) {
+                switch (mode) {
+                    case SELF_LOOP_ON_DISCONNECTED:
+                        for (int j = i; j <= walkLength; j++)
+                            indices[j] = currVertexIdx;
+                        return new VertexSequence<>(graph, indices);
+                    case EXCEPTION_ON_DISCONNECTED:
+                        throw new NoEdgesException("Cannot conduct random walk: vertex " + currVertexIdx
+                                        + " has no outgoing edges. "
+                                        + " Set NoEdgeHandling mode to NoEdgeHandlingMode.SELF_LOOP_ON_DISCONNECTED to self loop instead of "
+                                        + "throwing an exception in this situation.");
+                    default:
+                        throw new RuntimeException("Unknown/not implemented NoEdgeHandling mode: " + mode);
+                }
+            }
+
+            currVertexIdx = csr.randomConnectedVertexIndexWeighted(currVertexIdx, rng);
+            indices[i] = currVertexIdx;
+        }
+        return new VertexSequence<>(graph, indices);
+    }
+
     @Override
     public boolean hasNext() {
         return position < order.length;
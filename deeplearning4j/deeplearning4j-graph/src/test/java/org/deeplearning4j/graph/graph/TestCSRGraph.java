@@ -0,0 +1,238 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.graph.graph;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.graph.api.Edge;
+import org.deeplearning4j.graph.api.IGraph;
+import org.deeplearning4j.graph.api.IVertexSequence;
+import org.deeplearning4j.graph.api.NoEdgeHandling;
+import org.deeplearning4j.graph.data.GraphLoader;
+import org.deeplearning4j.graph.data.impl.WeightedEdgeLineProcessor;
+import org.deeplearning4j.graph.exception.NoEdgesException;
+import org.deeplearning4j.graph.iterator.GraphWalkIterator;
+import org.deeplearning4j.graph.iterator.RandomWalkIterator;
+import org.deeplearning4j.graph.iterator.WeightedRandomWalkIterator;
+import org.deeplearning4j.graph.iterator.parallel.GraphWalkIteratorProvider;
+import org.deeplearning4j.graph.iterator.parallel.WeightedRandomWalkGraphIteratorProvider;
+import org.deeplearning4j.graph.vertexfactory.IntegerVertexFactory;
+import org.deeplearning4j.graph.vertexfactory.StringVertexFactory;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.common.io.ClassPathResource;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TestCSRGraph extends BaseDL4JTest {
+
+    @Test(timeout = 10000L)
+    public void testFromGraph() {
+        Graph<Integer, Double> graph = randomGraph(200, 1000, 12345);
+        CSRGraph<Integer, Double> csr = CSRGraph.fromGraph(graph);
+
+        assertEquals(graph.numVertices(), csr.numVertices());
+        assertTrue(csr.isWeighted());
+        for (int i = 0; i < graph.numVertices(); i++) {
+            assertEquals(graph.getVertex(i), csr.getVertex(i));
+            assertEquals(graph.getVertexDegree(i), csr.getVertexDegree(i));
+
+            int[] expected = graph.getConnectedVertexIndices(i);
+            int[] actual = csr.getConnectedVertexIndices(i);
+            Arrays.sort(expected);
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual);
+
+            assertEquals(edgeKeys(i, graph.getEdgesOut(i)), edgeKeys(i, csr.getEdgesOut(i)));
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void testBuilder() {
+        CSRGraph<String, String> graph = new CSRGraph.Builder<String, String>(4, false, new StringVertexFactory())
+                        .addEdge(0, 1, "a", false).addEdge(1, 0, "b", false).addEdge(0, 2, "c", true)
+                        .addEdge(3, 2, null, true).build();
+
+        assertFalse(graph.isWeighted());
+        assertEquals(2, graph.getVertexDegree(0));
+        assertEquals(1, graph.getVertexDegree(1)); //Duplicate undirected edge removed
+        assertEquals(0, graph.getVertexDegree(2));
+        assertEquals(1, graph.getVertexDegree(3));
+        assertEquals(4, graph.numAdjacencyEntries());
+
+        assertEquals(1, graph.getNeighbour(0, 0));
+        assertEquals(2, graph.getNeighbour(0, 1));
+        assertEquals(Arrays.asList(new Edge<>(0, 1, "a", false), new Edge<>(0, 2, "c", true)), graph.getEdgesOut(0));
+        assertEquals(Collections.singletonList(new Edge<String>(3, 2, null, true)), graph.getEdgesOut(3));
+
+        try {
+            graph.getRandomConnectedVertex(2, new Random(12345));
+            fail("Expected exception");
+        } catch (NoEdgesException e) {
+            //OK
+        }
+
+        try {
+            graph.addEdge(0, 3, "d", true);
+            fail("Expected exception");
+        } catch (UnsupportedOperationException e) {
+            //OK
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void testWeightedSampling() {
+        double[] weights = {1, 2, 0, 7};
+        CSRGraph.Builder<Integer, Double> builder = new CSRGraph.Builder<>(5, new IntegerVertexFactory());
+        for (int i = 0; i < weights.length; i++)
+            builder.addEdge(0, i + 1, weights[i], true);
+        CSRGraph<Integer, Double> graph = builder.build();
+
+        int n = 200000;
+        int[] counts = new int[5];
+        Random r = new Random(12345);
+        for (int i = 0; i < n; i++)
+            counts[graph.randomConnectedVertexIndexWeighted(0, r)]++;
+
+        assertEquals(0, counts[0]);
+        for (int i = 0; i < weights.length; i++)
+            assertEquals(weights[i] / 10.0, counts[i + 1] / (double) n, 0.01);
+    }
+
+    @Test(timeout = 10000L)
+    public void testRandomWalks() {
+        Graph<Integer, Double> graph = randomGraph(100, 300, 12345);
+        CSRGraph<Integer, Double> csr = CSRGraph.fromGraph(graph);
+
+        List<GraphWalkIterator<Integer>> iterators = new ArrayList<>();
+        iterators.add(new RandomWalkIterator<>(csr, 8, 12345, NoEdgeHandling.SELF_LOOP_ON_DISCONNECTED));
+        iterators.add(new WeightedRandomWalkIterator<>(csr, 8, 12345, NoEdgeHandling.SELF_LOOP_ON_DISCONNECTED));
+
+        for (GraphWalkIterator<Integer> iter : iterators) {
+            Set<Integer> starts = new HashSet<>();
+            while (iter.hasNext()) {
+                IVertexSequence<Integer> sequence = iter.next();
+                assertEquals(9, sequence.sequenceLength());
+
+                int prev = sequence.next().vertexID();
+                starts.add(prev);
+                while (sequence.hasNext()) {
+                    int curr = sequence.next().vertexID();
+                    if (csr.getVertexDegree(prev) == 0) {
+                        assertEquals(prev, curr); //Self loop on disconnected
+                        continue;
+                    }
+                    int[] connected = csr.getConnectedVertexIndices(prev);
+                    Arrays.sort(connected);
+                    assertTrue(prev + " -> " + curr, Arrays.binarySearch(connected, curr) >= 0);
+                    prev = curr;
+                }
+            }
+            assertEquals(100, starts.size());
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void testLoadCSRGraph() throws Exception {
+        String path = new ClassPathResource("deeplearning4j-graph/WeightedGraph.txt").getTempFileFromArchive()
+                        .getAbsolutePath();
+        int numVertices = 9;
+
+        Graph<String, Double> graph =
+                        GraphLoader.loadWeightedEdgeListFile(path, numVertices, ",", true, "//");
+        CSRGraph<String, Double> csr = GraphLoader.loadCSRGraph(path,
+                        new WeightedEdgeLineProcessor(",", true, "//"), new StringVertexFactory(), numVertices, true);
+
+        assertEquals(numVertices, csr.numVertices());
+        for (int i = 0; i < numVertices; i++)
+            assertEquals(graph.getEdgesOut(i), csr.getEdgesOut(i));
+    }
+
+    /**
+     * Measures walks per second for Graph vs CSRGraph, single-threaded and with one iterator per thread
+     */
+    @Test
+    @Ignore
+    public void benchmarkRandomWalks() throws Exception {
+        int numVertices = 1000000;
+        Graph<Integer, Double> graph = randomGraph(numVertices, 10000000, 12345);
+        CSRGraph<Integer, Double> csr = CSRGraph.fromGraph(graph);
+        int walkLength = 40;
+
+        for (IGraph<Integer, Double> g : Arrays.<IGraph<Integer, Double>>asList(graph, csr)) {
+            String name = g.getClass().getSimpleName();
+
+            long start = System.nanoTime();
+            GraphWalkIterator<Integer> iter = new WeightedRandomWalkIterator<>(g, walkLength, 12345,
+                            NoEdgeHandling.SELF_LOOP_ON_DISCONNECTED);
+            long walks = 0;
+            while (iter.hasNext() && walks < 200000) {
+                iter.next();
+                walks++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(name + ", 1 thread: " + (long) (walks / seconds) + " walks/sec");
+
+            int nThreads = Runtime.getRuntime().availableProcessors();
+            GraphWalkIteratorProvider<Integer> provider = new WeightedRandomWalkGraphIteratorProvider<>(g, walkLength,
+                            12345, NoEdgeHandling.SELF_LOOP_ON_DISCONNECTED);
+            ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+            final AtomicLong counter = new AtomicLong();
+            List<Future<?>> futures = new ArrayList<>();
+
+            start = System.nanoTime();
+            for (final GraphWalkIterator<Integer> it : provider.getGraphWalkIterators(nThreads)) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (it.hasNext()) {
+                            it.next();
+                            counter.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures)
+                f.get();
+            executor.shutdown();
+            seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(name + ", " + nThreads + " threads: " + (long) (counter.get() / seconds) + " walks/sec");
+        }
+    }
+
+    private static List<String> edgeKeys(int vertex, List<Edge<Double>> edges) {
+        //Undirected edges may be stored as either vertex--x or x--vertex
+        List<String> keys = new ArrayList<>();
+        for (Edge<Double> e : edges)
+            keys.add((e.getFrom() == vertex ? e.getTo() : e.getFrom()) + "," + e.getValue() + "," + e.isDirected());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static Graph<Integer, Double> randomGraph(int numVertices, int numEdges, long seed) {
+        Graph<Integer, Double> graph = new Graph<>(numVertices, true, new IntegerVertexFactory());
+        Random r = new Random(seed);
+        for (int i = 0; i < numEdges; i++)
+            graph.addEdge(r.nextInt(numVertices), r.nextInt(numVertices), 0.1 + r.nextDouble(), r.nextBoolean());
+        return graph;
+    }
+}
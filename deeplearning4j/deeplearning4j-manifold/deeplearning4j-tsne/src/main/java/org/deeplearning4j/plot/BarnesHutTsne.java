@@ -25,9 +25,8 @@ import lombok.Data;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.clustering.algorithm.Distance;
-import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.sptree.SpTree;
-import org.deeplearning4j.clustering.vptree.VPTree;
+import org.deeplearning4j.clustering.vptree.FlatVPTree;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.WorkspaceMode;
@@ -221,7 +220,15 @@ public class BarnesHutTsne implements Model {
             rows.putScalar(n + 1, rows.getDouble(n) + k);
 
         final double enthropy = Math.log(perplexity);
-        VPTree tree = new VPTree(d, simiarlityFunction, vpTreeWorkers,invert);
+        // all neighbours are found upfront, with one batched query over flat tree, in precision of the data.
+        // vantage points are picked using Nd4j RNG, so results are reproducible with fixed seed
+        FlatVPTree tree = new FlatVPTree(d, simiarlityFunction, invert, FlatVPTree.DEFAULT_LEAF_SIZE,
+                Nd4j.getRandom().nextLong());
+        final int numNeighbours = Math.min(k + 1, N);
+        int[] knnIndices = new int[N * numNeighbours];
+        double[] knnDistances = new double[N * numNeighbours];
+        tree.search(d.dup('c').data().asDouble(), N, numNeighbours, knnIndices, knnDistances,
+                Math.max(1, vpTreeWorkers));
 
         /*MemoryWorkspace workspace =
                 workspaceMode == WorkspaceMode.NONE ? new DummyWorkspace()
@@ -236,19 +243,18 @@ public class BarnesHutTsne implements Model {
 
                 double betaMin = -Double.MAX_VALUE;
                 double betaMax = Double.MAX_VALUE;
-                List<DataPoint> results = new ArrayList<>();
-                List<Double> distances = new ArrayList<>();
-                tree.search(d.getRow(i), k + 1, results, distances, false, true);
+                int numResults = 0;
+                while (numResults < numNeighbours && knnIndices[i * numNeighbours + numResults] >= 0)
+                    numResults++;
                 double betas = 1.0;
 
-                if(results.size() == 0){
+                if(numResults == 0){
                     throw new IllegalStateException("Search returned no values for vector " + i +
                             " - similarity \"" + simiarlityFunction + "\" may not be defined (for example, vector is" +
                             " all zeros with cosine similarity)");
                 }
 
-                Double[] dists = new Double[distances.size()];
-                distances.toArray(dists);
+                double[] dists = Arrays.copyOfRange(knnDistances, i * numNeighbours, i * numNeighbours + numResults);
                 INDArray cArr = Nd4j.createFromArray(dists).castTo(d.dataType()); //VPTree.buildFromData(results);
 
                 INDArray currP = null;
@@ -285,9 +291,9 @@ public class BarnesHutTsne implements Model {
                 currP.divi(currP.sumNumber().doubleValue() + Double.MIN_VALUE);
                 INDArray indices = Nd4j.create(1, k + 1);
                 for (int j = 0; j < indices.length(); j++) {
-                    if (j >= results.size())
+                    if (j >= numResults)
                         break;
-                    indices.putScalar(j, results.get(j).getIndex());
+                    indices.putScalar(j, knnIndices[i * numNeighbours + j]);
                 }
 
                 for (int l = 0; l < k; l++) {
@@ -34,6 +34,7 @@ import org.deeplearning4j.clustering.vptree.VPTreeFillSearch;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
 import org.deeplearning4j.nearestneighbor.model.*;
 import org.deeplearning4j.nn.conf.serde.JsonMappers;
+import org.nd4j.common.primitives.Pair;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.shape.Shape;
@@ -270,6 +271,51 @@ public class NearestNeighborsServer extends AbstractVerticle {
                 return;
             }
         });
+
+        r.post("/knnbatch").handler(rc -> {
+            try {
+                String json = rc.getBodyAsJson().encode();
+                Base64NDArrayBody record = JsonMappers.getMapper().readValue(json, Base64NDArrayBody.class);
+                if (record == null) {
+                    rc.response().setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
+                            .putHeader("content-type", "application/json")
+                            .end(JsonMappers.getMapper().writeValueAsString(Collections.singletonMap("status", "invalid json passed.")));
+                    return;
+                }
+
+                // all rows are searched at once, by multiple threads
+                INDArray arr = Nd4jBase64.fromBase64(record.getNdarray());
+                Pair<INDArray, INDArray> knn = tree.search(arr, record.getK());
+                int[][] indices = knn.getFirst().toIntMatrix();
+                double[][] distances = knn.getSecond().toDoubleMatrix();
+
+                List<NearestNeighborsResults> batch = new ArrayList<>(indices.length);
+                for (int i = 0; i < indices.length; i++) {
+                    List<NearestNeighborsResult> nnResult = new ArrayList<>();
+                    for (int j = 0; j < indices[i].length; j++) {
+                        int index = indices[i][j];
+                        if (index < 0)
+                            break;
+
+                        if (!labels.isEmpty())
+                            nnResult.add(new NearestNeighborsResult(index, distances[i][j], labels.get(index)));
+                        else
+                            nnResult.add(new NearestNeighborsResult(index, distances[i][j]));
+                    }
+                    batch.add(NearestNeighborsResults.builder().results(nnResult).build());
+                }
+
+                String j = JsonMappers.getMapper().writeValueAsString(NearestNeighborsBatchResults.builder().results(batch).build());
+                rc.response()
+                        .putHeader("content-type", "application/json")
+                        .end(j);
+            } catch (Throwable e) {
+                log.error("Error in POST /knnbatch",e);
+                rc.response().setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code())
+                        .end("Error parsing request - " + e.getMessage());
+                return;
+            }
+        });
     }
 
     /**
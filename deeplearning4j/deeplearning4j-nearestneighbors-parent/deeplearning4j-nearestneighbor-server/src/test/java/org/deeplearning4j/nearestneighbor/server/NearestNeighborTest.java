@@ -24,6 +24,7 @@ import org.deeplearning4j.clustering.vptree.VPTree;
 import org.deeplearning4j.clustering.vptree.VPTreeFillSearch;
 import org.deeplearning4j.nearestneighbor.client.NearestNeighborsClient;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborRequest;
+import org.deeplearning4j.nearestneighbor.model.NearestNeighborsBatchResults;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResult;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResults;
 import org.junit.Rule;
@@ -31,6 +32,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.serde.binary.BinarySerde;
 
 import java.io.File;
@@ -127,6 +129,13 @@ public class NearestNeighborTest extends BaseDL4JTest {
         NearestNeighborsClient client = new NearestNeighborsClient("http://localhost:" + localPort);
         NearestNeighborsResults result = client.knnNew(5, rand.getRow(0));
         assertEquals(5, result.getResults().size());
+
+        NearestNeighborsBatchResults batch = client.knnBatch(5, rand.get(NDArrayIndex.interval(0, 3), NDArrayIndex.all()));
+        assertEquals(3, batch.getResults().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(5, batch.getResults().get(i).getResults().size());
+            assertEquals(i, batch.getResults().get(i).getResults().get(0).getIndex());
+        }
         NearestNeighborsServer.getInstance().stop();
     }
 
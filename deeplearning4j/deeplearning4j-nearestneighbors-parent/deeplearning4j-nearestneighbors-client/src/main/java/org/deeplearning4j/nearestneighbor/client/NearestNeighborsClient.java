@@ -125,6 +125,30 @@ public class NearestNeighborsClient {
         return ret;
     }
 
+    /**
+     * Run a k nearest neighbors search
+     * on a batch of NEW data points at once
+     * @param k the number of results
+     *          to retrieve for each point
+     * @param arr the matrix to run the search on,
+     *            one point per row
+     * @return results for each row, in the same order
+     * @throws Exception
+     */
+    public NearestNeighborsBatchResults knnBatch(int k, INDArray arr) throws Exception {
+        Base64NDArrayBody base64NDArrayBody =
+                        Base64NDArrayBody.builder().k(k).ndarray(Nd4jBase64.base64String(arr)).build();
+
+        val req = Unirest.post(url + "/knnbatch");
+        req.header("accept", "application/json")
+                .header("Content-Type", "application/json").body(base64NDArrayBody);
+        addAuthHeader(req);
+
+        NearestNeighborsBatchResults ret = req.asObject(NearestNeighborsBatchResults.class).getBody();
+
+        return ret;
+    }
+
 
     /**
      * Add the specified authentication header to the specified HttpRequest
@@ -0,0 +1,602 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.clustering.vptree;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Vantage point tree stored in primitive arrays, used for batched k-NN queries.
+ *
+ * Unlike {@link VPTree}, nodes aren't objects and distances aren't computed as separate INDArray ops: vectors are
+ * copied into single double array, permuted so that each leaf bucket is a contiguous block of rows,
+ * and every bucket is scored by one pass over that block. Internal nodes hold vantage point and median threshold only.
+ * Double precision storage keeps double input as is, float input is represented exactly.
+ *
+ * Supports the same similarity functions as VPTree: euclidean, cosinedistance, cosinesimilarity, manhattan, dot,
+ * jaccard and hamming, with optional inversion.
+ */
+public class FlatVPTree implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_LEAF_SIZE = 32;
+
+    private static final int EUCLIDEAN = 0;
+    private static final int COSINE_DISTANCE = 1;
+    private static final int COSINE_SIMILARITY = 2;
+    private static final int MANHATTAN = 3;
+    private static final int DOT = 4;
+    private static final int JACCARD = 5;
+    private static final int HAMMING = 6;
+
+    @Getter
+    private final int rows;
+    @Getter
+    private final int columns;
+    @Getter
+    private final String similarityFunction;
+    @Getter
+    private final boolean invert;
+    private final int function;
+
+    // vectors in tree order, and original row index for each of them
+    private final double[] data;
+    private final double[] norms;
+    private final int[] order;
+
+    // node arrays: for internal nodes, vantage point is row "start", leaf nodes cover rows [start, end)
+    private int numNodes;
+    private final int[] start;
+    private final int[] end;
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+
+    public FlatVPTree(@NonNull float[][] items, String similarityFunction, boolean invert) {
+        this(items, similarityFunction, invert, DEFAULT_LEAF_SIZE, System.currentTimeMillis());
+    }
+
+    /**
+     *
+     * @param items              vectors to index, one per row
+     * @param similarityFunction the similarity function to use, as in VPTree
+     * @param invert             whether to invert the distance
+     * @param leafSize           max number of vectors in leaf bucket
+     * @param seed               seed used for vantage points selection
+     */
+    public FlatVPTree(@NonNull float[][] items, String similarityFunction, boolean invert, int leafSize, long seed) {
+        this(flatten(items), items.length, items.length == 0 ? 0 : items[0].length, similarityFunction, invert, leafSize, seed);
+    }
+
+    /**
+     * As per {@link #FlatVPTree(float[][], String, boolean, int, long)}, for double precision vectors
+     */
+    public FlatVPTree(@NonNull double[][] items, String similarityFunction, boolean invert, int leafSize, long seed) {
+        this(flatten(items), items.length, items.length == 0 ? 0 : items[0].length, similarityFunction, invert, leafSize, seed);
+    }
+
+    /**
+     * As per {@link #FlatVPTree(float[][], String, boolean, int, long)}, for vectors stored as rows of a matrix,
+     * without loss of precision for double matrices
+     */
+    public FlatVPTree(@NonNull INDArray items, String similarityFunction, boolean invert, int leafSize, long seed) {
+        this(items.dup('c').data().asDouble(), (int) items.rows(), (int) items.columns(), similarityFunction, invert,
+                leafSize, seed);
+    }
+
+    /**
+     * @param items vectors, stored row by row
+     */
+    private FlatVPTree(double[] items, int rows, int columns, String similarityFunction, boolean invert, int leafSize,
+                    long seed) {
+        if (rows == 0)
+            throw new IllegalArgumentException("Can't build tree from empty set of vectors");
+        if (leafSize < 1)
+            throw new IllegalArgumentException("Leaf size should be positive value");
+
+        this.rows = rows;
+        this.columns = columns;
+        this.similarityFunction = similarityFunction == null ? VPTree.EUCLIDEAN : similarityFunction;
+        this.invert = invert;
+        this.function = functionCode(this.similarityFunction);
+
+        order = new int[rows];
+        for (int i = 0; i < rows; i++)
+            order[i] = i;
+
+        // every node holds at least one vector
+        start = new int[rows];
+        end = new int[rows];
+        threshold = new double[rows];
+        left = new int[rows];
+        right = new int[rows];
+
+        double[] distances = new double[rows];
+        build(items, 0, rows, leafSize, new Random(seed), distances);
+
+        data = new double[rows * columns];
+        norms = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(items, order[r] * columns, data, r * columns, columns);
+
+            double norm = 0.0;
+            for (int i = r * columns; i < (r + 1) * columns; i++)
+                norm += data[i] * data[i];
+            norms[r] = Math.sqrt(norm);
+        }
+    }
+
+    private static double[] flatten(float[][] items) {
+        int columns = items.length == 0 ? 0 : items[0].length;
+        double[] result = new double[items.length * columns];
+        for (int r = 0; r < items.length; r++) {
+            if (items[r].length != columns)
+                throw new IllegalArgumentException("All vectors should have the same length");
+            for (int i = 0; i < columns; i++)
+                result[r * columns + i] = items[r][i];
+        }
+        return result;
+    }
+
+    private static double[] flatten(double[][] items) {
+        int columns = items.length == 0 ? 0 : items[0].length;
+        double[] result = new double[items.length * columns];
+        for (int r = 0; r < items.length; r++) {
+            if (items[r].length != columns)
+                throw new IllegalArgumentException("All vectors should have the same length");
+            System.arraycopy(items[r], 0, result, r * columns, columns);
+        }
+        return result;
+    }
+
+    private int build(double[] items, int lo, int hi, int leafSize, Random rng, double[] distances) {
+        int node = numNodes++;
+        start[node] = lo;
+        end[node] = hi;
+        left[node] = -1;
+        right[node] = -1;
+
+        if (hi - lo <= leafSize)
+            return node;
+
+        // vantage point goes to the first position of the range
+        swap(order, distances, lo, lo + rng.nextInt(hi - lo));
+        int vp = order[lo] * columns;
+        for (int i = lo + 1; i < hi; i++)
+            distances[i] = distance(items, vp, items, order[i] * columns, 0.0, 0.0);
+
+        // median split: [lo + 1, mid) are not further than threshold, [mid, hi) are not closer
+        int mid = lo + 1 + (hi - lo - 1) / 2;
+        select(distances, lo + 1, hi - 1, mid);
+        threshold[node] = distances[mid];
+        end[node] = lo + 1;
+
+        if (mid > lo + 1)
+            left[node] = build(items, lo + 1, mid, leafSize, rng, distances);
+        right[node] = build(items, mid, hi, leafSize, rng, distances);
+
+        return node;
+    }
+
+    /**
+     * This method returns k nearest neighbours of given vector, ordered by distance
+     *
+     * @param query     vector of length columns
+     * @param k         number of neighbours
+     * @param indices   array of length >= k, receives row indices of neighbours
+     * @param distances array of length >= k, receives distances
+     * @return number of neighbours found, i.e. min(k, rows) unless some distances are undefined.
+     *         Remaining positions are filled with -1 and NaN
+     */
+    public int search(@NonNull float[] query, int k, @NonNull int[] indices, @NonNull float[] distances) {
+        checkResults(k, 1, indices.length, distances.length);
+        return search(toDouble(query), 0, k, indices, 0, distances, null, 0, new Heap(Math.min(k, rows)));
+    }
+
+    /**
+     * As per {@link #search(float[], int, int[], float[])}, in double precision
+     */
+    public int search(@NonNull double[] query, int k, @NonNull int[] indices, @NonNull double[] distances) {
+        checkResults(k, 1, indices.length, distances.length);
+        return search(query, 0, k, indices, 0, null, distances, 0, new Heap(Math.min(k, rows)));
+    }
+
+    /**
+     * This method runs k-NN search for multiple queries, in parallel
+     *
+     * @param queries    queries, stored row by row
+     * @param numQueries number of queries
+     * @param k          number of neighbours per query
+     * @param indices    array of length >= numQueries * k, receives row indices of neighbours, k per query
+     * @param distances  array of length >= numQueries * k, receives distances, k per query
+     * @param numThreads number of threads to use
+     * @return number of neighbours per query, i.e. min(k, rows). Missing neighbours are filled with -1 and NaN
+     */
+    public int search(@NonNull float[] queries, int numQueries, int k, @NonNull int[] indices,
+                    @NonNull float[] distances, int numThreads) {
+        checkResults(k, numQueries, indices.length, distances.length);
+        return search(toDouble(queries), numQueries, k, indices, distances, null, numThreads);
+    }
+
+    /**
+     * As per {@link #search(float[], int, int, int[], float[], int)}, in double precision
+     */
+    public int search(@NonNull double[] queries, int numQueries, int k, @NonNull int[] indices,
+                    @NonNull double[] distances, int numThreads) {
+        checkResults(k, numQueries, indices.length, distances.length);
+        return search(queries, numQueries, k, indices, null, distances, numThreads);
+    }
+
+    private void checkResults(int k, int numQueries, int indicesLength, int distancesLength) {
+        if (k < 1)
+            throw new IllegalArgumentException("k should be positive value");
+        if (indicesLength < numQueries * k || distancesLength < numQueries * k)
+            throw new IllegalArgumentException("Result arrays should have length of at least " + numQueries * k);
+    }
+
+    private static double[] toDouble(float[] array) {
+        double[] result = new double[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Batched search, distances are written to either float or double array
+     */
+    private int search(final double[] queries, final int numQueries, final int k, final int[] indices,
+                    final float[] floatDistances, final double[] doubleDistances, int numThreads) {
+        if (queries.length < numQueries * columns)
+            throw new IllegalArgumentException("Queries array should have length of at least " + numQueries * columns);
+
+        final int found = Math.min(k, rows);
+        numThreads = Math.max(1, Math.min(numThreads, numQueries / 8));
+        if (numThreads == 1) {
+            searchRange(queries, 0, numQueries, k, indices, floatDistances, doubleDistances);
+            return found;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "FlatVPTree search thread");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try {
+            // more chunks than threads, to balance uneven queries
+            int chunks = numThreads * 4;
+            int chunkSize = (numQueries + chunks - 1) / chunks;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < numQueries; c += chunkSize) {
+                final int from = c;
+                final int to = Math.min(numQueries, c + chunkSize);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        searchRange(queries, from, to, k, indices, floatDistances, doubleDistances);
+                    }
+                }));
+            }
+
+            for (Future<?> f : futures)
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return found;
+    }
+
+    private void searchRange(double[] queries, int from, int to, int k, int[] indices, float[] floatDistances,
+                    double[] doubleDistances) {
+        Heap heap = new Heap(Math.min(k, rows));
+        for (int q = from; q < to; q++)
+            search(queries, q * columns, k, indices, q * k, floatDistances, doubleDistances, q * k, heap);
+    }
+
+    private int search(double[] query, int queryOffset, int k, int[] indices, int indicesOffset,
+                    float[] floatDistances, double[] doubleDistances, int distancesOffset, Heap heap) {
+        if (query.length - queryOffset < columns)
+            throw new IllegalArgumentException("Query should have length of " + columns);
+
+        heap.clear();
+        double queryNorm = 0.0;
+        if (function == COSINE_DISTANCE || function == COSINE_SIMILARITY) {
+            double norm = 0.0;
+            for (int i = 0; i < columns; i++)
+                norm += query[queryOffset + i] * query[queryOffset + i];
+            queryNorm = Math.sqrt(norm);
+        }
+
+        search(0, query, queryOffset, queryNorm, heap);
+
+        int found = heap.size();
+        for (int i = found - 1; i >= 0; i--) {
+            setDistance(floatDistances, doubleDistances, distancesOffset + i, heap.topDistance());
+            indices[indicesOffset + i] = order[heap.topRow()];
+            heap.pop();
+        }
+
+        // fewer vectors than requested: pad the rest
+        for (int i = found; i < k; i++) {
+            indices[indicesOffset + i] = -1;
+            setDistance(floatDistances, doubleDistances, distancesOffset + i, Double.NaN);
+        }
+
+        return found;
+    }
+
+    private static void setDistance(float[] floatDistances, double[] doubleDistances, int i, double distance) {
+        if (doubleDistances != null)
+            doubleDistances[i] = distance;
+        else
+            floatDistances[i] = (float) distance;
+    }
+
+    private void search(int node, double[] query, int queryOffset, double queryNorm, Heap heap) {
+        if (left[node] < 0 && right[node] < 0) {
+            // leaf bucket: contiguous block of rows
+            for (int r = start[node]; r < end[node]; r++)
+                heap.offer(r, score(query, queryOffset, queryNorm, r));
+            return;
+        }
+
+        double distance = score(query, queryOffset, queryNorm, start[node]);
+        heap.offer(start[node], distance);
+        double t = threshold[node];
+
+        if (distance < t) {
+            if (left[node] >= 0 && distance - heap.tau() <= t)
+                search(left[node], query, queryOffset, queryNorm, heap);
+
+            if (right[node] >= 0 && distance + heap.tau() >= t)
+                search(right[node], query, queryOffset, queryNorm, heap);
+        } else {
+            if (right[node] >= 0 && distance + heap.tau() >= t)
+                search(right[node], query, queryOffset, queryNorm, heap);
+
+            if (left[node] >= 0 && distance - heap.tau() <= t)
+                search(left[node], query, queryOffset, queryNorm, heap);
+        }
+    }
+
+    private double score(double[] query, int queryOffset, double queryNorm, int row) {
+        return distance(query, queryOffset, data, row * columns, queryNorm, norms[row]);
+    }
+
+    /**
+     * Distance between two vectors, following VPTree.distance() semantics
+     */
+    private double distance(double[] a, int aOffset, double[] b, int bOffset, double aNorm, double bNorm) {
+        double result;
+        switch (function) {
+            case COSINE_DISTANCE:
+            case COSINE_SIMILARITY: {
+                double dot = 0.0;
+                double na = 0.0;
+                double nb = 0.0;
+                for (int i = 0; i < columns; i++) {
+                    dot += a[aOffset + i] * b[bOffset + i];
+                    if (aNorm == 0.0)
+                        na += a[aOffset + i] * a[aOffset + i];
+                    if (bNorm == 0.0)
+                        nb += b[bOffset + i] * b[bOffset + i];
+                }
+                double norm = (aNorm == 0.0 ? Math.sqrt(na) : aNorm) * (bNorm == 0.0 ? Math.sqrt(nb) : bNorm);
+                double similarity = dot / norm;
+                result = function == COSINE_SIMILARITY ? similarity : 1.0 - similarity;
+                break;
+            }
+            case MANHATTAN: {
+                double sum = 0.0;
+                for (int i = 0; i < columns; i++)
+                    sum += Math.abs(a[aOffset + i] - b[bOffset + i]);
+                result = sum;
+                break;
+            }
+            case DOT: {
+                double dot = 0.0;
+                for (int i = 0; i < columns; i++)
+                    dot += a[aOffset + i] * b[bOffset + i];
+                result = dot;
+                break;
+            }
+            case JACCARD: {
+                double num = 0.0;
+                double denom = 0.0;
+                for (int i = 0; i < columns; i++) {
+                    num += Math.min(a[aOffset + i], b[bOffset + i]);
+                    denom += Math.max(a[aOffset + i], b[bOffset + i]);
+                }
+                result = 1.0 - num / denom;
+                break;
+            }
+            case HAMMING: {
+                int cnt = 0;
+                for (int i = 0; i < columns; i++)
+                    if (a[aOffset + i] != b[bOffset + i])
+                        cnt++;
+                result = (double) cnt / columns;
+                break;
+            }
+            case EUCLIDEAN:
+            default: {
+                double sum = 0.0;
+                for (int i = 0; i < columns; i++) {
+                    double d = a[aOffset + i] - b[bOffset + i];
+                    sum += d * d;
+                }
+                result = Math.sqrt(sum);
+                break;
+            }
+        }
+
+        return invert ? -result : result;
+    }
+
+    private static int functionCode(String similarityFunction) {
+        switch (similarityFunction) {
+            case "cosinedistance":
+                return COSINE_DISTANCE;
+            case "cosinesimilarity":
+                return COSINE_SIMILARITY;
+            case "manhattan":
+                return MANHATTAN;
+            case "dot":
+                return DOT;
+            case "jaccard":
+                return JACCARD;
+            case "hamming":
+                return HAMMING;
+            case "euclidean":
+            default:
+                return EUCLIDEAN;
+        }
+    }
+
+    /**
+     * Quickselect over distances[lo..hi], keeping order array in sync
+     */
+    private void select(double[] distances, int lo, int hi, int nth) {
+        while (hi > lo) {
+            double pivot = distances[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (distances[i] < pivot)
+                    i++;
+                while (distances[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(order, distances, i++, j--);
+            }
+
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private static void swap(int[] order, double[] distances, int i, int j) {
+        int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+
+        double d = distances[i];
+        distances[i] = distances[j];
+        distances[j] = d;
+    }
+
+    /**
+     * Bounded max-heap of (distance, row) pairs
+     */
+    private static class Heap {
+        private final double[] distances;
+        private final int[] rows;
+        private int size;
+
+        private Heap(int capacity) {
+            distances = new double[capacity];
+            rows = new int[capacity];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private double tau() {
+            return size < distances.length ? Double.MAX_VALUE : distances[0];
+        }
+
+        private double topDistance() {
+            return distances[0];
+        }
+
+        private int topRow() {
+            return rows[0];
+        }
+
+        private void offer(int row, double distance) {
+            if (Double.isNaN(distance))
+                return;
+
+            if (size < distances.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance)
+                        break;
+                    distances[i] = distances[parent];
+                    rows[i] = rows[parent];
+                    i = parent;
+                }
+                distances[i] = distance;
+                rows[i] = row;
+            } else if (distance < distances[0]) {
+                siftDown(row, distance);
+            }
+        }
+
+        private void pop() {
+            size--;
+            if (size > 0)
+                siftDown(rows[size], distances[size]);
+        }
+
+        private void siftDown(int row, double distance) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && distances[child + 1] > distances[child])
+                    child++;
+                if (distances[child] <= distance)
+                    break;
+                distances[i] = distances[child];
+                rows[i] = rows[child];
+                i = child;
+            }
+            distances[i] = distance;
+            rows[i] = row;
+        }
+    }
+}
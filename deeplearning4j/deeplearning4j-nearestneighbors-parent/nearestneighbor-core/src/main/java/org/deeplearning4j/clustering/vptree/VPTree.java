@@ -23,6 +23,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.sptree.HeapObject;
 import org.deeplearning4j.clustering.util.MathUtils;
+import org.nd4j.common.primitives.Pair;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
@@ -65,6 +66,8 @@ public class VPTree implements Serializable {
 
     private transient ThreadLocal<INDArray> scalars = new ThreadLocal<>();
 
+    private transient volatile FlatVPTree flatTree;
+
     private WorkspaceConfiguration workspaceConfiguration;
 
     protected VPTree() {
@@ -525,6 +528,73 @@ public class VPTree implements Serializable {
         }
     }
 
+    /**
+     * Batched k-NN search: finds k nearest items for each row of the queries matrix, using all available cores.
+     *
+     * @param queries matrix of queries, one per row
+     * @param k number of neighbours to find for each query
+     * @return pair of [numQueries, min(k, numItems)] matrices: INT indices of neighbours and their distances
+     * @see #search(INDArray, int, int)
+     */
+    public Pair<INDArray, INDArray> search(@NonNull INDArray queries, int k) {
+        return search(queries, k, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Batched k-NN search: finds k nearest items for each row of the queries matrix.
+     * Queries are answered by {@link FlatVPTree}, built upon first call, where tree is stored in primitive arrays
+     * and leaf buckets are scored in one pass, instead of separate INDArray op per distance.
+     * Unlike {@link #search(INDArray, int, List, List)}, items equal to the query aren't filtered out.
+     *
+     * @param queries matrix of queries, one per row
+     * @param k number of neighbours to find for each query
+     * @param numThreads number of threads used to process queries
+     * @return pair of [numQueries, min(k, numItems)] matrices: INT indices of neighbours and their distances,
+     *         ordered by distance. Neighbours with undefined distance are returned as index -1 and NaN distance
+     */
+    public Pair<INDArray, INDArray> search(@NonNull INDArray queries, int k, int numThreads) {
+        FlatVPTree tree = flatTree();
+
+        if (queries.rank() == 1)
+            queries = queries.reshape(1, queries.length());
+
+        if (queries.rank() != 2 || queries.columns() != tree.getColumns())
+            throw new ND4JIllegalStateException("Queries for search should have shape of [numQueries, "
+                    + tree.getColumns() + "] but got " + Arrays.toString(queries.shape()) + " instead");
+
+        int numQueries = queries.rows();
+        k = Math.min(k, tree.getRows());
+        int[] indices = new int[numQueries * k];
+        double[] distances = new double[numQueries * k];
+
+        tree.search(queries.dup('c').data().asDouble(), numQueries, k, indices, distances, numThreads);
+
+        return new Pair<>(Nd4j.createFromArray(indices).reshape(numQueries, k),
+                Nd4j.createFromArray(distances).reshape(numQueries, k).castTo(items.dataType()));
+    }
+
+    /**
+     * This method returns flat copy of this tree, used for batched search
+     *
+     * @return
+     */
+    public FlatVPTree flatTree() {
+        FlatVPTree tree = flatTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = flatTree;
+                if (tree == null) {
+                    INDArray matrix = items.rank() == 1 ? items.reshape(items.length(), 1) : items;
+                    tree = new FlatVPTree(matrix, similarityFunction, invert, FlatVPTree.DEFAULT_LEAF_SIZE,
+                            Nd4j.getRandom().nextLong());
+                    flatTree = tree;
+                }
+            }
+        }
+
+        return tree;
+    }
+
     /**
      *
      * @param node
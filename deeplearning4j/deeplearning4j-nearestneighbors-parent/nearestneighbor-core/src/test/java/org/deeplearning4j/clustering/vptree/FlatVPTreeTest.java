@@ -0,0 +1,224 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.clustering.vptree;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class FlatVPTreeTest extends BaseDL4JTest {
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(12);
+        float[][] items = randomVectors(random, 2000, 16);
+        float[][] queries = randomVectors(random, 100, 16);
+        int k = 10;
+
+        for (String function : Arrays.asList("euclidean", "manhattan")) {
+            for (int leafSize : new int[] {1, 7, 32, 5000}) {
+                FlatVPTree tree = new FlatVPTree(items, function, false, leafSize, 119);
+                assertEquals(2000, tree.getRows());
+                assertEquals(16, tree.getColumns());
+
+                int[] indices = new int[k];
+                float[] distances = new float[k];
+                for (float[] query : queries) {
+                    assertEquals(k, tree.search(query, k, indices, distances));
+
+                    int[] expected = bruteForce(items, query, k, function);
+                    for (int i = 0; i < k; i++) {
+                        assertEquals(function + "/" + leafSize, expected[i], indices[i]);
+                        assertEquals(distance(items[expected[i]], query, function), distances[i], 1e-3);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedSearchMatchesSingle() {
+        Random random = new Random(7);
+        float[][] items = randomVectors(random, 3000, 8);
+        float[][] queries = randomVectors(random, 500, 8);
+        int k = 5;
+
+        float[] flat = new float[queries.length * 8];
+        for (int i = 0; i < queries.length; i++)
+            System.arraycopy(queries[i], 0, flat, i * 8, 8);
+
+        for (String function : Arrays.asList("euclidean", "cosinedistance", "cosinesimilarity", "manhattan", "dot")) {
+            for (boolean invert : new boolean[] {false, true}) {
+                FlatVPTree tree = new FlatVPTree(items, function, invert);
+
+                int[] indices = new int[queries.length * k];
+                float[] distances = new float[queries.length * k];
+                tree.search(flat, queries.length, k, indices, distances, 4);
+
+                int[] single = new int[k];
+                float[] singleDistances = new float[k];
+                for (int q = 0; q < queries.length; q++) {
+                    tree.search(queries[q], k, single, singleDistances);
+                    for (int i = 0; i < k; i++) {
+                        assertEquals(single[i], indices[q * k + i]);
+                        assertEquals(singleDistances[i], distances[q * k + i], 0.0f);
+                        if (i > 0)
+                            assertTrue(distances[q * k + i - 1] <= distances[q * k + i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPadding() {
+        float[][] items = {{0, 0}, {1, 1}, {3, 3}};
+        FlatVPTree tree = new FlatVPTree(items, "euclidean", false);
+
+        int[] indices = new int[5];
+        float[] distances = new float[5];
+        assertEquals(3, tree.search(new float[] {3, 3}, 5, indices, distances));
+        assertArrayEquals(new int[] {2, 1, 0, -1, -1}, indices);
+        assertEquals(0.0f, distances[0], 1e-5f);
+        assertEquals((float) Math.sqrt(8), distances[1], 1e-5f);
+        assertTrue(Float.isNaN(distances[4]));
+    }
+
+    @Test
+    public void testDoublePrecision() {
+        // differences below float precision
+        double[][] items = {{1.0, 0.0}, {1.0 + 1e-9, 0.0}, {1.0 + 2e-9, 0.0}};
+        FlatVPTree tree = new FlatVPTree(items, "euclidean", false, 1, 119);
+
+        int[] indices = new int[3];
+        double[] distances = new double[3];
+        assertEquals(3, tree.search(new double[] {1.0 + 2e-9, 0.0}, 3, indices, distances));
+        assertArrayEquals(new int[] {2, 1, 0}, indices);
+        assertEquals(0.0, distances[0], 1e-15);
+        assertEquals(1e-9, distances[1], 1e-15);
+        assertEquals(2e-9, distances[2], 1e-15);
+    }
+
+    @Test
+    public void testVPTreeBatchedSearch() {
+        Nd4j.getRandom().setSeed(12);
+        INDArray points = Nd4j.rand(500, 10);
+        INDArray queries = Nd4j.rand(20, 10);
+        VPTree tree = new VPTree(points, "euclidean", false);
+
+        Pair<INDArray, INDArray> knn = tree.search(queries, 4);
+        assertArrayEquals(new long[] {20, 4}, knn.getFirst().shape());
+        assertArrayEquals(new long[] {20, 4}, knn.getSecond().shape());
+
+        for (int q = 0; q < 20; q++) {
+            List<DataPoint> results = new ArrayList<>();
+            List<Double> distances = new ArrayList<>();
+            tree.search(queries.getRow(q, true), 4, results, distances, false);
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(results.get(i).getIndex(), knn.getFirst().getInt(q, i));
+                assertEquals(distances.get(i), knn.getSecond().getDouble(q, i), 1e-4);
+            }
+        }
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkBatchedSearch() {
+        Nd4j.getRandom().setSeed(12);
+        int k = 30;
+        INDArray points = Nd4j.rand(50000, 50);
+        INDArray queries = Nd4j.rand(5000, 50);
+
+        long time = System.currentTimeMillis();
+        VPTree tree = new VPTree(points, "euclidean", false);
+        log.info("VPTree built in {} ms", System.currentTimeMillis() - time);
+
+        time = System.currentTimeMillis();
+        for (int q = 0; q < queries.rows(); q++) {
+            List<DataPoint> results = new ArrayList<>();
+            List<Double> distances = new ArrayList<>();
+            tree.search(queries.getRow(q, true), k, results, distances, false);
+        }
+        long perQuery = System.currentTimeMillis() - time;
+
+        time = System.currentTimeMillis();
+        tree.flatTree();
+        log.info("FlatVPTree built in {} ms", System.currentTimeMillis() - time);
+
+        time = System.currentTimeMillis();
+        tree.search(queries, k, 1);
+        long batchedSingle = System.currentTimeMillis() - time;
+
+        time = System.currentTimeMillis();
+        tree.search(queries, k);
+        long batched = System.currentTimeMillis() - time;
+
+        log.info("{} queries, k = {}: per-query search {} ms, batched 1 thread {} ms, batched {} threads {} ms",
+                        queries.rows(), k, perQuery, batchedSingle, Runtime.getRuntime().availableProcessors(), batched);
+    }
+
+    private static float[][] randomVectors(Random random, int rows, int columns) {
+        float[][] result = new float[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                result[i][j] = (float) random.nextGaussian();
+
+        return result;
+    }
+
+    private static int[] bruteForce(final float[][] items, final float[] query, int k, final String function) {
+        Integer[] ids = new Integer[items.length];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = i;
+
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(distance(items[o1], query, function), distance(items[o2], query, function));
+            }
+        });
+
+        int[] result = new int[k];
+        for (int i = 0; i < k; i++)
+            result[i] = ids[i];
+
+        return result;
+    }
+
+    private static double distance(float[] a, float[] b, String function) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += "euclidean".equals(function) ? diff * diff : Math.abs(diff);
+        }
+
+        return "euclidean".equals(function) ? Math.sqrt(sum) : sum;
+    }
+}
@@ -38,6 +38,8 @@ import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.learning.impl.elements.SkipGram;
 import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
+import org.deeplearning4j.models.embeddings.reader.impl.HnswIndex;
+import org.deeplearning4j.models.embeddings.reader.impl.HnswModelUtils;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectorsImpl;
 import org.deeplearning4j.models.fasttext.FastText;
@@ -54,6 +56,8 @@ import org.deeplearning4j.models.word2vec.wordstore.VocabularyHolder;
 import org.deeplearning4j.models.word2vec.wordstore.VocabularyWord;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mapped.MappedModelFile;
+import org.deeplearning4j.models.word2vec.wordstore.offheap.OffHeapVocabCache;
 import org.deeplearning4j.text.documentiterator.LabelsSource;
 import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
 import org.deeplearning4j.text.tokenization.tokenizer.TokenPreProcess;
@@ -1994,7 +1998,9 @@ public class WordVectorSerializer {
             throws IOException {
 
         InMemoryLookupTable<VocabWord> lookupTable = (InMemoryLookupTable<VocabWord>) vectors.getLookupTable();
-        AbstractCache<T> vocabCache = (AbstractCache<T>) vectors.getVocab();
+        AbstractCache<T> vocabCache = vectors.getVocab() instanceof OffHeapVocabCache
+                        ? ((OffHeapVocabCache<T>) vectors.getVocab()).toAbstractCache()
+                        : (AbstractCache<T>) vectors.getVocab();
 
         try (ZipOutputStream zipfile = new ZipOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(stream)));
              DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile))) {
@@ -2224,6 +2230,60 @@ public class WordVectorSerializer {
         }
     }
 
+    /**
+     * This method saves HNSW index graph used by given HnswModelUtils to provided File. Index is built if necessary.
+     * Please note: vectors aren't saved, they are taken from lookup table after index is restored.
+     *
+     * @param modelUtils
+     * @param file
+     * @throws IOException
+     */
+    public static void writeHnswIndex(@NonNull HnswModelUtils<?> modelUtils, @NonNull File file) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            writeHnswIndex(modelUtils, fos);
+        }
+    }
+
+    /**
+     * This method saves HNSW index graph used by given HnswModelUtils to provided OutputStream. Index is built if necessary.
+     * Please note: vectors aren't saved, they are taken from lookup table after index is restored.
+     *
+     * @param modelUtils
+     * @param stream
+     * @throws IOException
+     */
+    public static void writeHnswIndex(@NonNull HnswModelUtils<?> modelUtils, @NonNull OutputStream stream)
+            throws IOException {
+        modelUtils.buildIndex().write(stream);
+    }
+
+    /**
+     * This method restores HnswModelUtils from HNSW index saved with writeHnswIndex().
+     * Result should be passed to WordVectors.setModelUtils() of the same model the index was built for.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static <T extends SequenceElement> HnswModelUtils<T> readHnswIndex(@NonNull File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return readHnswIndex(fis);
+        }
+    }
+
+    /**
+     * This method restores HnswModelUtils from HNSW index saved with writeHnswIndex().
+     * Result should be passed to WordVectors.setModelUtils() of the same model the index was built for.
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static <T extends SequenceElement> HnswModelUtils<T> readHnswIndex(@NonNull InputStream stream)
+            throws IOException {
+        return new HnswModelUtils<T>(HnswIndex.read(stream), HnswModelUtils.DEFAULT_EF_SEARCH);
+    }
+
     /**
      * This method reads vocab cache from provided file.
      * Please note: it reads only vocab content, so it's suitable mostly for BagOfWords/TF-IDF vectorizers
@@ -2703,6 +2763,7 @@ public class WordVectorSerializer {
      * 1) Binary model, either compressed or not. Like well-known Google Model
      * 2) Popular CSV word2vec text format
      * 3) DL4j compressed format
+     * 4) Memory-mapped format, written with writeMappedModel()
      *
      * In return you get StaticWord2Vec model, which might be used as lookup table only in multi-gpu environment.
      *
@@ -2727,6 +2788,7 @@ public class WordVectorSerializer {
      * 1) Binary model, either compressed or not. Like well-known Google Model
      * 2) Popular CSV word2vec text format
      * 3) DL4j compressed format
+     * 4) Memory-mapped format, written with writeMappedModel()
      *
      * In return you get StaticWord2Vec model, which might be used as lookup table only in multi-gpu environment.
      *
@@ -2738,6 +2800,14 @@ public class WordVectorSerializer {
             throw new RuntimeException(
                     new FileNotFoundException("File [" + file.getAbsolutePath() + "] was not found"));
 
+        if (MappedModelFile.isMappedModel(file)) {
+            try {
+                return loadMappedModel(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         int originalFreq = Nd4j.getMemoryManager().getOccasionalGcFrequency();
         boolean originalPeriodic = Nd4j.getMemoryManager().isPeriodicGcActive();
 
@@ -2858,6 +2928,37 @@ public class WordVectorSerializer {
     }
 
 
+    /**
+     * This method saves WordVectors in compact read-only format, suitable for memory mapping via loadMappedModel().
+     * Vectors are stored as single aligned float block, and vocabulary as sorted offsets table,
+     * so multiple JVMs can share the same page cache.
+     *
+     * PLEASE NOTE: Huffman codes/points aren't saved, so restored model can't be trained further.
+     *
+     * @param vectors WordVectors to be saved
+     * @param file    destination file
+     * @throws IOException
+     */
+    public static void writeMappedModel(@NonNull WordVectors vectors, @NonNull File file) throws IOException {
+        MappedModelFile.write(vectors, file);
+    }
+
+    /**
+     * This method memory-maps model previously saved with writeMappedModel(). Load time doesn't depend on model size,
+     * since vectors and vocabulary are read from page cache on demand.
+     *
+     * In return you get StaticWord2Vec model, which might be used as read-only lookup table.
+     *
+     * @param file File
+     * @return
+     * @throws IOException
+     */
+    public static StaticWord2Vec loadMappedModel(@NonNull File file) throws IOException {
+        MappedModelFile model = MappedModelFile.open(file);
+        return new StaticWord2Vec.Builder(model.getStorage(), model.getVocabCache()).build();
+    }
+
+
     protected interface Reader extends AutoCloseable {
         boolean hasNext();
 
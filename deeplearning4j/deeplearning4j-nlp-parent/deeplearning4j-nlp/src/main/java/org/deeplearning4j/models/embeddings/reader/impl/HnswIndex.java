@@ -0,0 +1,665 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hierarchical Navigable Small World graph over unit-length vectors, used for approximate cosine nearest neighbour search.
+ * Implementation follows Malkov &amp; Yashunin, "Efficient and robust approximate nearest neighbor search using
+ * Hierarchical Navigable Small World graphs": every element gets random level, on every level it's linked to up to
+ * M neighbours (2 * M on level 0) picked with neighbour selection heuristic.
+ *
+ * Recall/latency tradeoff is controlled by M and efConstruction at build time, and by ef at query time.
+ *
+ * PLEASE NOTE: vectors aren't copied, and they are expected to be L2-normalized. Graph itself can be saved
+ * via {@link #write(OutputStream)}, vectors should be attached again after {@link #read(InputStream)}.
+ */
+public class HnswIndex {
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int LOCK_STRIPES = 4096;
+
+    @Getter
+    private final int numElements;
+    @Getter
+    private final int dimension;
+    @Getter
+    private final int m;
+    @Getter
+    private final int efConstruction;
+    private final int maxM0;
+
+    private final int[] levels;
+    // level 0 links, (maxM0 + 1) ints per element: number of neighbours followed by neighbours
+    private final int[] links0;
+    // links for levels above 0, (m + 1) ints per level, null for elements present on level 0 only
+    private final int[][] upperLinks;
+
+    private final int entryPoint;
+    private final int maxLevel;
+    private volatile boolean built;
+    private float[][] vectors;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ThreadLocal<Visited> visited = new ThreadLocal<>();
+
+    /**
+     * @param vectors        L2-normalized vectors, element id is the row number
+     * @param m              max number of links per element on levels above 0
+     * @param efConstruction size of dynamic candidates list used during build
+     * @param seed           seed used for levels generation
+     */
+    public HnswIndex(@NonNull float[][] vectors, int m, int efConstruction, long seed) {
+        if (vectors.length == 0)
+            throw new IllegalArgumentException("Can't build index over empty set of vectors");
+
+        if (m < 2)
+            throw new IllegalArgumentException("M should be >= 2");
+
+        if (efConstruction < 1)
+            throw new IllegalArgumentException("efConstruction should be positive value");
+
+        this.numElements = vectors.length;
+        this.dimension = vectors[0].length;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.maxM0 = m * 2;
+        this.vectors = vectors;
+
+        this.levels = new int[numElements];
+        this.links0 = new int[numElements * (maxM0 + 1)];
+        this.upperLinks = new int[numElements][];
+
+        double mult = 1.0 / Math.log(m);
+        Random random = new Random(seed);
+        int top = 0;
+        for (int e = 0; e < numElements; e++) {
+            if (vectors[e].length != dimension)
+                throw new IllegalArgumentException("All vectors should have the same length");
+
+            levels[e] = (int) (-Math.log(1.0 - random.nextDouble()) * mult);
+            if (levels[e] > 0)
+                upperLinks[e] = new int[levels[e] * (m + 1)];
+
+            if (levels[e] > levels[top])
+                top = e;
+        }
+
+        // entry point is known in advance, so it never changes during parallel build
+        this.entryPoint = top;
+        this.maxLevel = levels[top];
+
+        for (int e = 0; e < LOCK_STRIPES; e++)
+            locks[e] = new Object();
+    }
+
+    private HnswIndex(int numElements, int dimension, int m, int efConstruction, int[] levels, int[] links0,
+                    int[][] upperLinks, int entryPoint, int maxLevel) {
+        this.numElements = numElements;
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.maxM0 = m * 2;
+        this.levels = levels;
+        this.links0 = links0;
+        this.upperLinks = upperLinks;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+        this.built = true;
+
+        for (int e = 0; e < LOCK_STRIPES; e++)
+            locks[e] = new Object();
+    }
+
+    /**
+     * This method builds the graph, inserting elements from given number of threads
+     *
+     * @param workers number of threads to use
+     */
+    public void build(int workers) {
+        if (built)
+            throw new IllegalStateException("Index was built already");
+
+        final AtomicInteger position = new AtomicInteger(0);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int e;
+                    while ((e = position.getAndIncrement()) < numElements && error.get() == null) {
+                        // entry point is the only element present in the graph initially
+                        if (e != entryPoint)
+                            insert(e);
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }
+        };
+
+        int numThreads = Math.max(1, Math.min(workers, numElements / 1000 + 1));
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(runnable, "HnswIndex builder thread " + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+
+        try {
+            for (Thread t : threads)
+                t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+
+        built = true;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * This method returns true if vectors are available for this index, i.e. index wasn't just deserialized
+     */
+    public boolean hasVectors() {
+        return vectors != null;
+    }
+
+    /**
+     * This method attaches vectors to the deserialized graph
+     *
+     * @param vectors L2-normalized vectors, the same ones graph was built for
+     */
+    public void attach(@NonNull float[][] vectors) {
+        if (vectors.length != numElements || vectors[0].length != dimension)
+            throw new IllegalArgumentException("Index was built for " + numElements + " vectors of length " + dimension
+                            + ", but got " + vectors.length + " vectors of length " + vectors[0].length);
+
+        this.vectors = vectors;
+    }
+
+    /**
+     * This method returns ids of approximate k nearest neighbours of the query, ordered by descending cosine similarity
+     *
+     * @param query query vector, doesn't have to be normalized
+     * @param k     number of neighbours to return
+     * @param ef    size of dynamic candidates list, larger values give better recall at the cost of latency
+     * @return
+     */
+    public int[] search(@NonNull float[] query, int k, int ef) {
+        if (!built || vectors == null)
+            throw new IllegalStateException("Index should be built and have vectors attached before search");
+
+        if (query.length != dimension)
+            throw new IllegalArgumentException("Query length " + query.length + " doesn't match index dimension " + dimension);
+
+        if (k < 1)
+            return new int[0];
+
+        float[] q = normalize(query.clone());
+        int[] buffer = new int[maxM0];
+        int ep = entryPoint;
+        for (int level = maxLevel; level > 0; level--)
+            ep = greedy(q, ep, level, buffer);
+
+        Heap found = searchLayer(q, ep, distance(q, vectors[ep]), Math.max(ef, k), 0);
+        while (found.size() > k)
+            found.pop();
+
+        int[] result = new int[found.size()];
+        for (int e = result.length - 1; e >= 0; e--)
+            result[e] = found.pop();
+
+        return result;
+    }
+
+    /**
+     * This method writes graph (but not vectors) into given stream
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void write(@NonNull OutputStream stream) throws IOException {
+        if (!built)
+            throw new IllegalStateException("Index should be built before saving");
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(stream));
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(numElements);
+        dos.writeInt(dimension);
+        dos.writeInt(m);
+        dos.writeInt(efConstruction);
+        dos.writeInt(entryPoint);
+        dos.writeInt(maxLevel);
+
+        for (int e = 0; e < numElements; e++)
+            dos.writeInt(levels[e]);
+
+        for (int e = 0; e < numElements; e++) {
+            int offset = e * (maxM0 + 1);
+            int count = links0[offset];
+            dos.writeInt(count);
+            for (int i = 1; i <= count; i++)
+                dos.writeInt(links0[offset + i]);
+
+            for (int level = 1; level <= levels[e]; level++) {
+                int o = (level - 1) * (m + 1);
+                int c = upperLinks[e][o];
+                dos.writeInt(c);
+                for (int i = 1; i <= c; i++)
+                    dos.writeInt(upperLinks[e][o + i]);
+            }
+        }
+        dos.flush();
+    }
+
+    /**
+     * This method reads graph previously saved via {@link #write(OutputStream)}.
+     * Vectors should be attached via {@link #attach(float[][])} before search.
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex read(@NonNull InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
+        if (dis.readInt() != MAGIC)
+            throw new IOException("Stream doesn't contain HNSW index");
+
+        int version = dis.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported HNSW index version: " + version);
+
+        int numElements = dis.readInt();
+        int dimension = dis.readInt();
+        int m = dis.readInt();
+        int efConstruction = dis.readInt();
+        int entryPoint = dis.readInt();
+        int maxLevel = dis.readInt();
+
+        int[] levels = new int[numElements];
+        for (int e = 0; e < numElements; e++)
+            levels[e] = dis.readInt();
+
+        int maxM0 = m * 2;
+        int[] links0 = new int[numElements * (maxM0 + 1)];
+        int[][] upperLinks = new int[numElements][];
+        for (int e = 0; e < numElements; e++) {
+            int offset = e * (maxM0 + 1);
+            int count = dis.readInt();
+            links0[offset] = count;
+            for (int i = 1; i <= count; i++)
+                links0[offset + i] = dis.readInt();
+
+            if (levels[e] > 0) {
+                upperLinks[e] = new int[levels[e] * (m + 1)];
+                for (int level = 1; level <= levels[e]; level++) {
+                    int o = (level - 1) * (m + 1);
+                    int c = dis.readInt();
+                    upperLinks[e][o] = c;
+                    for (int i = 1; i <= c; i++)
+                        upperLinks[e][o + i] = dis.readInt();
+                }
+            }
+        }
+
+        return new HnswIndex(numElements, dimension, m, efConstruction, levels, links0, upperLinks, entryPoint, maxLevel);
+    }
+
+    /**
+     * This method L2-normalizes given vector in place
+     *
+     * @param vector
+     * @return the same vector
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector)
+            norm += v * v;
+
+        if (norm > 0.0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++)
+                vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    protected static float distance(float[] a, float[] b) {
+        float dot = 0.0f;
+        for (int i = 0; i < a.length; i++)
+            dot += a[i] * b[i];
+        return 1.0f - dot;
+    }
+
+    private void insert(int element) {
+        float[] q = vectors[element];
+        int level = levels[element];
+        int[] buffer = new int[maxM0];
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--)
+            ep = greedy(q, ep, l, buffer);
+
+        for (int l = level; l >= 0; l--) {
+            Heap found = searchLayer(q, ep, distance(q, vectors[ep]), efConstruction, l);
+
+            // candidates in ascending distance order
+            int count = found.size();
+            int[] candidates = new int[count];
+            float[] distances = new float[count];
+            for (int e = count - 1; e >= 0; e--) {
+                distances[e] = found.peekKey();
+                candidates[e] = found.pop();
+            }
+            ep = candidates[0];
+
+            int selected = selectNeighbours(candidates, distances, count, m);
+            synchronized (lockFor(element)) {
+                setLinks(element, l, candidates, selected);
+            }
+
+            int maxLinks = l == 0 ? maxM0 : m;
+            for (int e = 0; e < selected; e++)
+                connect(candidates[e], element, distances[e], l, maxLinks);
+        }
+    }
+
+    /**
+     * Adds link from source to target, shrinking source links with the heuristic if there are too many of them
+     */
+    private void connect(int source, int target, float distance, int level, int maxLinks) {
+        synchronized (lockFor(source)) {
+            int[] array = level == 0 ? links0 : upperLinks[source];
+            int offset = level == 0 ? source * (maxM0 + 1) : (level - 1) * (m + 1);
+            int count = array[offset];
+
+            for (int i = 1; i <= count; i++)
+                if (array[offset + i] == target)
+                    return;
+
+            if (count < maxLinks) {
+                array[offset + count + 1] = target;
+                array[offset] = count + 1;
+                return;
+            }
+
+            // candidates: existing links + new one, sorted by distance to source
+            int n = count + 1;
+            int[] candidates = new int[n];
+            float[] distances = new float[n];
+            float[] s = vectors[source];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = array[offset + i + 1];
+                distances[i] = distance(s, vectors[candidates[i]]);
+            }
+            candidates[count] = target;
+            distances[count] = distance;
+            sort(candidates, distances, n);
+
+            int selected = selectNeighbours(candidates, distances, n, maxLinks);
+            System.arraycopy(candidates, 0, array, offset + 1, selected);
+            array[offset] = selected;
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic: candidate is kept only if it's closer to the base element than to any of already
+     * selected neighbours. Candidates should be sorted by ascending distance, selected ones are moved to the head.
+     *
+     * @return number of selected candidates
+     */
+    private int selectNeighbours(int[] candidates, float[] distances, int count, int limit) {
+        int selected = 0;
+        for (int c = 0; c < count && selected < limit; c++) {
+            float[] v = vectors[candidates[c]];
+            boolean good = true;
+            for (int r = 0; r < selected; r++) {
+                if (distance(v, vectors[candidates[r]]) < distances[c]) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good) {
+                candidates[selected] = candidates[c];
+                distances[selected] = distances[c];
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    private void setLinks(int element, int level, int[] neighbours, int count) {
+        int[] array = level == 0 ? links0 : upperLinks[element];
+        int offset = level == 0 ? element * (maxM0 + 1) : (level - 1) * (m + 1);
+        System.arraycopy(neighbours, 0, array, offset + 1, count);
+        array[offset] = count;
+    }
+
+    /**
+     * Copies links of given element into buffer, and returns their number
+     */
+    private int links(int element, int level, int[] buffer) {
+        if (level > levels[element])
+            return 0;
+
+        int[] array = level == 0 ? links0 : upperLinks[element];
+        int offset = level == 0 ? element * (maxM0 + 1) : (level - 1) * (m + 1);
+        if (built) {
+            int count = array[offset];
+            System.arraycopy(array, offset + 1, buffer, 0, count);
+            return count;
+        }
+
+        synchronized (lockFor(element)) {
+            int count = array[offset];
+            System.arraycopy(array, offset + 1, buffer, 0, count);
+            return count;
+        }
+    }
+
+    private int greedy(float[] q, int ep, int level, int[] buffer) {
+        float best = distance(q, vectors[ep]);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = links(ep, level, buffer);
+            for (int i = 0; i < count; i++) {
+                float d = distance(q, vectors[buffer[i]]);
+                if (d < best) {
+                    best = d;
+                    ep = buffer[i];
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Beam search on the given level
+     *
+     * @return max-heap holding up to ef nearest elements found
+     */
+    private Heap searchLayer(float[] q, int ep, float epDistance, int ef, int level) {
+        Visited v = visited.get();
+        if (v == null) {
+            v = new Visited(numElements);
+            visited.set(v);
+        }
+        int mark = v.next();
+
+        Heap candidates = new Heap(ef * 2, false);
+        Heap found = new Heap(ef + 1, true);
+        int[] buffer = new int[maxM0];
+
+        candidates.push(ep, epDistance);
+        found.push(ep, epDistance);
+        v.marks[ep] = mark;
+
+        while (candidates.size() > 0) {
+            if (candidates.peekKey() > found.peekKey() && found.size() >= ef)
+                break;
+
+            int current = candidates.pop();
+            int count = links(current, level, buffer);
+            for (int i = 0; i < count; i++) {
+                int n = buffer[i];
+                if (v.marks[n] == mark)
+                    continue;
+                v.marks[n] = mark;
+
+                float dn = distance(q, vectors[n]);
+                if (found.size() < ef || dn < found.peekKey()) {
+                    candidates.push(n, dn);
+                    found.push(n, dn);
+                    if (found.size() > ef)
+                        found.pop();
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private Object lockFor(int element) {
+        return locks[element & (LOCK_STRIPES - 1)];
+    }
+
+    private static void sort(int[] ids, float[] keys, int count) {
+        // insertion sort, arrays are short here
+        for (int i = 1; i < count; i++) {
+            float k = keys[i];
+            int id = ids[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            ids[j + 1] = id;
+        }
+    }
+
+    /**
+     * Per-thread visited marks, reused between searches
+     */
+    private static class Visited {
+        private final int[] marks;
+        private int mark;
+
+        private Visited(int size) {
+            marks = new int[size];
+        }
+
+        private int next() {
+            if (++mark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+    }
+
+    /**
+     * Binary heap of (id, distance) pairs, either min-heap or max-heap by distance
+     */
+    private static class Heap {
+        private int[] ids;
+        private float[] keys;
+        private int size;
+        private final boolean max;
+
+        private Heap(int capacity, boolean max) {
+            this.ids = new int[Math.max(capacity, 4)];
+            this.keys = new float[ids.length];
+            this.max = max;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private float peekKey() {
+            return keys[0];
+        }
+
+        private void push(int id, float key) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(key, keys[parent]))
+                    break;
+                ids[i] = ids[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            keys[i] = key;
+        }
+
+        private int pop() {
+            int result = ids[0];
+            int id = ids[--size];
+            float key = keys[size];
+
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && before(keys[child + 1], keys[child]))
+                    child++;
+                if (!before(keys[child], key))
+                    break;
+                ids[i] = ids[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            ids[i] = id;
+            keys[i] = key;
+            return result;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.reader.ModelUtils;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ModelUtils implementation backed by HNSW approximate nearest neighbour index, suited for online similarity lookups
+ * over large vocabularies: each wordsNearest() query visits O(log V) elements instead of scanning the whole syn0.
+ *
+ * Index is built upon first query (or explicit {@link #buildIndex()} call) from InMemoryLookupTable,
+ * and can be saved/restored with WordVectorSerializer.writeHnswIndex()/readHnswIndex().
+ * Recall/latency tradeoff is controlled by M and efConstruction at build time, and by efSearch at query time.
+ *
+ * PLEASE NOTE: unlike BasicModelUtils, this reader doesn't normalize underlying lookup table, normalized copy of
+ * vectors is kept within the index instead.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    @Getter
+    protected final int m;
+    @Getter
+    protected final int efConstruction;
+    @Getter
+    protected volatile int efSearch;
+    protected final int workers;
+
+    protected volatile HnswIndex index;
+
+    public HnswModelUtils() {
+        this(DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * @param m              max number of links per element, higher values give better recall and take more memory
+     * @param efConstruction size of candidates list during build, higher values give better index and slower build
+     * @param efSearch       size of candidates list during search, higher values give better recall and higher latency
+     */
+    public HnswModelUtils(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, Runtime.getRuntime().availableProcessors());
+    }
+
+    public HnswModelUtils(int m, int efConstruction, int efSearch, int workers) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException("efSearch should be positive value");
+
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * This constructor wraps previously saved index, which will be used as is if it matches lookup table passed to init()
+     *
+     * @param index    deserialized index
+     * @param efSearch size of candidates list during search
+     */
+    public HnswModelUtils(@NonNull HnswIndex index, int efSearch) {
+        this(index.getM(), index.getEfConstruction(), efSearch);
+        this.index = index;
+    }
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+
+        HnswIndex current = index;
+        if (current != null && !current.hasVectors()) {
+            // deserialized index: reuse graph if it was built for the same table
+            if (!(lookupTable instanceof InMemoryLookupTable) || current.getNumElements() != vocabCache.numWords()
+                            || current.getDimension() != lookupTable.layerSize()) {
+                log.warn("HNSW index doesn't match lookup table, it will be rebuilt");
+                index = null;
+            }
+        } else {
+            index = null;
+        }
+    }
+
+    /**
+     * This method changes size of candidates list used during search
+     *
+     * @param efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException("efSearch should be positive value");
+
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * This method returns index, building it if necessary
+     *
+     * @return
+     */
+    public HnswIndex buildIndex() {
+        HnswIndex current = index;
+        if (current != null && current.hasVectors())
+            return current;
+
+        synchronized (this) {
+            if (index != null && index.hasVectors())
+                return index;
+
+            if (!(lookupTable instanceof InMemoryLookupTable))
+                throw new IllegalStateException("HNSW index can be built for InMemoryLookupTable only");
+
+            float[][] vectors = normalizedVectors();
+            if (index != null) {
+                index.attach(vectors);
+            } else {
+                long time = System.currentTimeMillis();
+                HnswIndex fresh = new HnswIndex(vectors, m, efConstruction, 119);
+                fresh.build(workers);
+                log.info("HNSW index over {} elements built in {} ms", vectors.length, System.currentTimeMillis() - time);
+                index = fresh;
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Words nearest to the given vector, ordered by descending cosine similarity
+     *
+     * @param words vector to look nearest words for
+     * @param top number of words to return
+     * @return
+     */
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        if (!(lookupTable instanceof InMemoryLookupTable))
+            return super.wordsNearest(words, top);
+
+        words = adjustRank(words);
+        HnswIndex current = buildIndex();
+
+        // a few spare results to compensate for filtered elements
+        int[] ids = current.search(words.toFloatVector(), top + 2, efSearch);
+
+        List<String> result = new ArrayList<>();
+        for (int id : ids) {
+            String word = vocabCache.wordAtIndex(id);
+            if (word != null && !word.equals("UNK") && !word.equals("STOP"))
+                result.add(word);
+
+            if (result.size() >= top)
+                break;
+        }
+
+        return result;
+    }
+
+    /**
+     * This method returns mean recall@k of this ModelUtils against reference implementation, i.e. BasicModelUtils,
+     * over given query labels.
+     *
+     * @param reference ModelUtils providing exact results, initialized with the same lookup table
+     * @param queries   labels to look nearest elements for
+     * @param k         number of nearest elements
+     * @return recall, in range [0, 1]
+     */
+    public double recall(@NonNull ModelUtils<T> reference, @NonNull Collection<String> queries, int k) {
+        double sum = 0.0;
+        int cnt = 0;
+        for (String query : queries) {
+            Collection<String> expected = reference.wordsNearest(query, k);
+            if (expected.isEmpty())
+                continue;
+
+            Set<String> actual = new HashSet<>(wordsNearest(query, k));
+            int hits = 0;
+            for (String word : expected)
+                if (actual.contains(word))
+                    hits++;
+
+            sum += (double) hits / expected.size();
+            cnt++;
+        }
+
+        return cnt == 0 ? 1.0 : sum / cnt;
+    }
+
+    protected float[][] normalizedVectors() {
+        INDArray syn0 = ((InMemoryLookupTable<T>) lookupTable).getSyn0();
+        int numWords = vocabCache.numWords();
+        float[][] vectors = new float[numWords][];
+        for (int i = 0; i < numWords; i++)
+            vectors[i] = HnswIndex.normalize(syn0.getRow(i).toFloatVector());
+
+        return vectors;
+    }
+}
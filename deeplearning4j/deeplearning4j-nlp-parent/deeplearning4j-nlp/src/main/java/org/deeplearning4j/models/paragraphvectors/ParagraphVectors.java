@@ -43,6 +43,7 @@ import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.offheap.OffHeapVocabCache;
 import org.deeplearning4j.text.documentiterator.*;
 import org.deeplearning4j.text.documentiterator.interoperability.DocumentIteratorConverter;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
@@ -739,6 +740,8 @@ public class ParagraphVectors extends Word2Vec {
 
         if (this.vocab instanceof AbstractCache) {
             retVal.addProperty(VOCAB_LIST_FIELD, ((AbstractCache<VocabWord>) this.vocab).toJson());
+        } else if (this.vocab instanceof OffHeapVocabCache) {
+            retVal.addProperty(VOCAB_LIST_FIELD, ((OffHeapVocabCache<VocabWord>) this.vocab).toJson());
         }
 
         return retVal.toString();
@@ -38,6 +38,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * This is special limited Word2Vec implementation, suited for serving as lookup table in concurrent multi-gpu environment
  * This implementation DOES NOT load all vectors onto any of gpus, instead of that it holds vectors in, optionally, compressed state in host memory.
  * This implementation DOES NOT provide some of original Word2Vec methods, such as wordsNearest or wordsNearestSum.
+ * Vectors and vocabulary can also be memory-mapped from disk and shared between JVMs, see WordVectorSerializer.loadMappedModel()
  *
  * @author raver119@gmail.com
  */
@@ -34,6 +34,7 @@ import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceItera
 import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.offheap.OffHeapVocabCache;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
@@ -133,6 +134,8 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
 
         if (this.vocab instanceof AbstractCache) {
             retVal.addProperty(VOCAB_LIST_FIELD, ((AbstractCache<VocabWord>) this.vocab).toJson());
+        } else if (this.vocab instanceof OffHeapVocabCache) {
+            retVal.addProperty(VOCAB_LIST_FIELD, ((OffHeapVocabCache<VocabWord>) this.vocab).toJson());
         }
 
         return retVal.toString();
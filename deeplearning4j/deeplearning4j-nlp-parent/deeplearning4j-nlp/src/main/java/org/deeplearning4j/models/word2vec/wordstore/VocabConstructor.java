@@ -28,6 +28,7 @@ import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.Huffman;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.offheap.OffHeapVocabCache;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.nd4j.common.util.ThreadUtils;
 import org.slf4j.Logger;
@@ -201,7 +202,7 @@ public class VocabConstructor<T extends SequenceElement> {
         return result;
     }
 
-    public void processDocument(AbstractCache<T> targetVocab, Sequence<T> document,
+    public void processDocument(VocabCache<T> targetVocab, Sequence<T> document,
                                 AtomicLong finalCounter, AtomicLong loopCounter) {
         try {
             Map<String, AtomicLong> seqMap = new HashMap<>();
@@ -242,8 +243,7 @@ public class VocabConstructor<T extends SequenceElement> {
                     // if element exists in tempHolder, we should update it seqCount, but only once per sequence
                     if (!seqMap.containsKey(token)) {
                         seqMap.put(token, new AtomicLong(1));
-                        T element = targetVocab.wordFor(token);
-                        element.incrementSequencesCount();
+                        targetVocab.incrementDocCount(token, 1);
                     }
 
                     if (index != null) {
@@ -284,7 +284,7 @@ public class VocabConstructor<T extends SequenceElement> {
         log.debug("Target vocab size before building: [" + cache.numWords() + "]");
         final AtomicLong loopCounter = new AtomicLong(0);
 
-        AbstractCache<T> topHolder = new AbstractCache.Builder<T>().minElementFrequency(0).build();
+        VocabCache<T> topHolder = createTemporaryHolder();
 
         int cnt = 0;
         int numProc = Runtime.getRuntime().availableProcessors();
@@ -301,7 +301,7 @@ public class VocabConstructor<T extends SequenceElement> {
             log.debug("Target vocab size before building: [" + cache.numWords() + "]");
             cnt++;
 
-            AbstractCache<T> tempHolder = new AbstractCache.Builder<T>().build();
+            VocabCache<T> tempHolder = createTemporaryHolder();
 
             int sequences = 0;
             while (iterator.hasMoreSequences()) {
@@ -445,8 +445,25 @@ public class VocabConstructor<T extends SequenceElement> {
         return cache;
     }
 
-    protected void filterVocab(AbstractCache<T> cache, int minWordFrequency) {
+    /**
+     * Temporary vocabularies follow storage of the target one: if target is OffHeapVocabCache,
+     * counting and merging happen off-heap as well
+     */
+    protected VocabCache<T> createTemporaryHolder() {
+        if (cache instanceof OffHeapVocabCache)
+            return new OffHeapVocabCache<T>();
+
+        return new AbstractCache.Builder<T>().minElementFrequency(0).build();
+    }
+
+    protected void filterVocab(VocabCache<T> cache, int minWordFrequency) {
         int numWords = cache.numWords();
+        if (cache instanceof OffHeapVocabCache) {
+            ((OffHeapVocabCache<T>) cache).removeInfrequent(minWordFrequency);
+            log.debug("Scavenger: Words before: {}; Words after: {};", numWords, cache.numWords());
+            return;
+        }
+
         LinkedBlockingQueue<String> labelsToRemove = new LinkedBlockingQueue<>();
         for (T element : cache.vocabWords()) {
             if (element.getElementFrequency() < minWordFrequency && !element.isSpecial() && !element.isLabel())
@@ -508,7 +525,8 @@ public class VocabConstructor<T extends SequenceElement> {
         }
 
         /**
-         * After temporary internal vocabulary is built, it will be transferred to target VocabCache you pass here
+         * After temporary internal vocabulary is built, it will be transferred to target VocabCache you pass here.
+         * If target is OffHeapVocabCache, temporary vocabularies are kept off-heap too.
          *
          * @param cache target VocabCache
          * @return
@@ -614,11 +632,11 @@ public class VocabConstructor<T extends SequenceElement> {
     protected class VocabRunnable implements Runnable {
         private final AtomicLong finalCounter;
         private final Sequence<T> document;
-        private final AbstractCache<T> targetVocab;
+        private final VocabCache<T> targetVocab;
         private final AtomicLong loopCounter;
         private AtomicBoolean done = new AtomicBoolean(false);
 
-        public VocabRunnable(@NonNull AbstractCache<T> targetVocab, @NonNull Sequence<T> sequence,
+        public VocabRunnable(@NonNull VocabCache<T> targetVocab, @NonNull Sequence<T> sequence,
                         @NonNull AtomicLong finalCounter, @NonNull AtomicLong loopCounter) {
             this.finalCounter = finalCounter;
             this.document = sequence;
@@ -0,0 +1,357 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact read-only word vectors format, suited for memory mapping.
+ *
+ * File layout (little endian):
+ * 1) 64 bytes header: magic, version, number of words, vector length, total word occurrences, total docs,
+ *    offsets of labels and vectors sections
+ * 2) element records in index order: label offset & length, element frequency, sequences count
+ * 3) element indexes sorted by UTF-8 label bytes, used for binary search of labels
+ * 4) (storageId, index) pairs sorted by storageId
+ * 5) UTF-8 labels
+ * 6) page-aligned float32 vectors block, one row per element, in index order
+ *
+ * Since file is mapped read-only, multiple JVMs on the same host share the same page cache, and model "loading"
+ * takes constant time regardless of model size. Use WordVectorSerializer.writeMappedModel() and
+ * WordVectorSerializer.loadMappedModel() to get StaticWord2Vec on top of this format.
+ */
+@Slf4j
+public class MappedModelFile {
+    public static final int MAGIC = 0x56344C44;
+    public static final int VERSION = 1;
+
+    protected static final int HEADER_LENGTH = 64;
+    protected static final int RECORD_LENGTH = 24;
+    protected static final int ID_RECORD_LENGTH = 12;
+    protected static final int ALIGNMENT = 4096;
+
+    @Getter
+    private final File file;
+    @Getter
+    private final MappedVocabCache vocabCache;
+    @Getter
+    private final MappedVectorStorage storage;
+
+    private MappedModelFile(File file, MappedVocabCache vocabCache, MappedVectorStorage storage) {
+        this.file = file;
+        this.vocabCache = vocabCache;
+        this.storage = storage;
+    }
+
+    public int getNumWords() {
+        return vocabCache.numWords();
+    }
+
+    public int getVectorLength() {
+        return storage.getVectorLength();
+    }
+
+    /**
+     * This method checks if given file starts with mapped model header
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isMappedModel(@NonNull File file) {
+        if (!file.isFile() || file.length() < HEADER_LENGTH)
+            return false;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer, 0);
+            return buffer.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method maps previously saved model. Nothing besides header is read eagerly.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static MappedModelFile open(@NonNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("File [" + file.getAbsolutePath() + "] isn't a mapped word vectors model");
+
+            int version = header.getInt(4);
+            if (version != VERSION)
+                throw new IOException("Unsupported mapped model version: " + version);
+
+            int numWords = header.getInt(8);
+            int vectorLength = header.getInt(12);
+            long totalWordOccurrences = header.getLong(16);
+            long totalDocs = header.getLong(24);
+            long labelsOffset = header.getLong(32);
+            long vectorsOffset = header.getLong(40);
+
+            if (numWords < 0 || vectorLength <= 0 || vectorsOffset > Integer.MAX_VALUE)
+                throw new IOException("Malformed mapped model header");
+
+            long rowBytes = vectorLength * 4L;
+            if (channel.size() < vectorsOffset + numWords * rowBytes)
+                throw new IOException("Mapped model file is truncated: [" + file.getAbsolutePath() + "]");
+
+            ByteBuffer metadata = channel.map(FileChannel.MapMode.READ_ONLY, 0, vectorsOffset)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+
+            // single MappedByteBuffer can't exceed 2GB, so vectors are split into chunks of whole rows
+            int rowsPerChunk = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+            int numChunks = (int) ((numWords + (long) rowsPerChunk - 1) / rowsPerChunk);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+            for (int c = 0; c < numChunks; c++) {
+                long first = (long) c * rowsPerChunk;
+                long rows = Math.min(rowsPerChunk, numWords - first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, vectorsOffset + first * rowBytes,
+                                rows * rowBytes);
+            }
+
+            MappedVocabCache vocabCache = new MappedVocabCache(metadata, numWords, (int) labelsOffset,
+                            totalWordOccurrences, totalDocs);
+            MappedVectorStorage storage = new MappedVectorStorage(chunks, numWords, vectorLength, rowsPerChunk);
+
+            log.debug("Mapped model with {} words of length {} from [{}]", numWords, vectorLength, file.getAbsolutePath());
+
+            return new MappedModelFile(file, vocabCache, storage);
+        }
+    }
+
+    /**
+     * This method writes given WordVectors into mapped model format
+     *
+     * @param vectors
+     * @param file
+     * @throws IOException
+     */
+    public static void write(@NonNull final WordVectors vectors, @NonNull File file) throws IOException {
+        final VocabCache<? extends SequenceElement> vocab = vectors.vocab();
+        final int vectorLength = vectors.vectorSize();
+
+        Iterator<float[]> rows = new Iterator<float[]>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < vocab.numWords();
+            }
+
+            @Override
+            public float[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                INDArray row = vectors.getWordVectorMatrix(vocab.wordAtIndex(position++));
+                return row == null ? new float[vectorLength] : row.toFloatVector();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        write(vocab, vectorLength, rows, file);
+    }
+
+    /**
+     * This method writes given vocabulary and vectors into mapped model format
+     *
+     * @param vocab        vocabulary, elements are stored in index order
+     * @param vectorLength length of each vector
+     * @param vectors      vectors, in the same order as vocabulary indexes
+     * @param file
+     * @throws IOException
+     */
+    public static void write(@NonNull VocabCache<? extends SequenceElement> vocab, int vectorLength,
+                    @NonNull Iterator<float[]> vectors, @NonNull File file) throws IOException {
+        if (vectorLength <= 0)
+            throw new IllegalArgumentException("Vector length should be positive value");
+
+        int numWords = vocab.numWords();
+        SequenceElement[] elements = new SequenceElement[numWords];
+        final byte[][] labels = new byte[numWords][];
+        long labelsLength = 0;
+        for (int i = 0; i < numWords; i++) {
+            elements[i] = vocab.elementAtIndex(i);
+            if (elements[i] == null)
+                throw new IllegalStateException("Vocabulary has no element at index " + i);
+
+            labels[i] = elements[i].getLabel().getBytes(StandardCharsets.UTF_8);
+            labelsLength += labels[i].length;
+        }
+
+        Integer[] sorted = new Integer[numWords];
+        for (int i = 0; i < numWords; i++)
+            sorted[i] = i;
+
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return compareBytes(labels[o1], labels[o2]);
+            }
+        });
+
+        final long[] ids = new long[numWords];
+        Integer[] byId = new Integer[numWords];
+        for (int i = 0; i < numWords; i++) {
+            ids[i] = elements[i].getStorageId();
+            byId[i] = i;
+        }
+
+        Arrays.sort(byId, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(ids[o1], ids[o2]);
+            }
+        });
+
+        long labelsOffset = HEADER_LENGTH + (long) numWords * (RECORD_LENGTH + 4 + ID_RECORD_LENGTH);
+        long vectorsOffset = align(labelsOffset + labelsLength);
+        if (vectorsOffset > Integer.MAX_VALUE)
+            throw new IllegalStateException("Vocabulary section can't exceed 2GB");
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(numWords).putInt(vectorLength);
+            buffer.putLong(vocab.totalWordOccurrences()).putLong(vocab.totalNumberOfDocs());
+            buffer.putLong(labelsOffset).putLong(vectorsOffset);
+            while (buffer.position() < HEADER_LENGTH)
+                buffer.put((byte) 0);
+
+            int labelOffset = 0;
+            for (int i = 0; i < numWords; i++) {
+                ensure(channel, buffer, RECORD_LENGTH);
+                buffer.putInt(labelOffset).putInt(labels[i].length);
+                buffer.putDouble(elements[i].getElementFrequency()).putLong(elements[i].getSequencesCount());
+                labelOffset += labels[i].length;
+            }
+
+            for (int i = 0; i < numWords; i++) {
+                ensure(channel, buffer, 4);
+                buffer.putInt(sorted[i]);
+            }
+
+            for (int i = 0; i < numWords; i++) {
+                ensure(channel, buffer, ID_RECORD_LENGTH);
+                buffer.putLong(ids[byId[i]]).putInt(byId[i]);
+            }
+
+            for (int i = 0; i < numWords; i++) {
+                for (byte b : labels[i]) {
+                    ensure(channel, buffer, 1);
+                    buffer.put(b);
+                }
+            }
+
+            long padding = vectorsOffset - labelsOffset - labelsLength;
+            for (long p = 0; p < padding; p++) {
+                ensure(channel, buffer, 1);
+                buffer.put((byte) 0);
+            }
+
+            int cnt = 0;
+            while (vectors.hasNext()) {
+                float[] row = vectors.next();
+                if (row.length != vectorLength)
+                    throw new IllegalArgumentException("Vector " + cnt + " has length " + row.length + ", expected "
+                                    + vectorLength);
+
+                for (float v : row) {
+                    ensure(channel, buffer, 4);
+                    buffer.putFloat(v);
+                }
+                cnt++;
+            }
+
+            if (cnt != numWords)
+                throw new IllegalArgumentException("Number of vectors [" + cnt
+                                + "] doesn't match number of words in vocabulary [" + numWords + "]");
+
+            flush(channel, buffer);
+        }
+    }
+
+    protected static int compareBytes(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+
+        return a.length - b.length;
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException();
+        }
+    }
+}
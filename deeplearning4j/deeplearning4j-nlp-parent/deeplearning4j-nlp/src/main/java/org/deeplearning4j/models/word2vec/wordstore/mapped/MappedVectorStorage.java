@@ -0,0 +1,123 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.compression.AbstractStorage;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Read-only AbstractStorage backed by memory-mapped vectors section of {@link MappedModelFile}.
+ * Keys are vocabulary indexes, each get() call copies single row out of the page cache.
+ */
+public class MappedVectorStorage implements AbstractStorage<Integer> {
+    private final FloatBuffer[] chunks;
+    private final int numWords;
+    @Getter
+    private final int vectorLength;
+    private final int rowsPerChunk;
+
+    protected MappedVectorStorage(@NonNull MappedByteBuffer[] chunks, int numWords, int vectorLength, int rowsPerChunk) {
+        this.chunks = new FloatBuffer[chunks.length];
+        for (int c = 0; c < chunks.length; c++)
+            this.chunks[c] = chunks[c].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+        this.numWords = numWords;
+        this.vectorLength = vectorLength;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    /**
+     * This method copies vector with given index into provided array, avoiding INDArray creation
+     *
+     * @param index  vocabulary index
+     * @param target array of vectorLength size, or null
+     * @return target array
+     */
+    public float[] getVector(int index, float[] target) {
+        if (index < 0 || index >= numWords)
+            throw new IndexOutOfBoundsException("Index [" + index + "] is out of range [0.." + numWords + ")");
+
+        if (target == null)
+            target = new float[vectorLength];
+        else if (target.length != vectorLength)
+            throw new IllegalArgumentException("Target array should have length of " + vectorLength);
+
+        // duplicate() keeps position changes local to this call
+        FloatBuffer chunk = chunks[index / rowsPerChunk].duplicate();
+        chunk.position((index % rowsPerChunk) * vectorLength);
+        chunk.get(target);
+
+        return target;
+    }
+
+    @Override
+    public INDArray get(Integer key) {
+        if (!containsKey(key))
+            return null;
+
+        return Nd4j.create(getVector(key, null), new int[] {1, vectorLength});
+    }
+
+    @Override
+    public boolean containsKey(Integer key) {
+        return key != null && key >= 0 && key < numWords;
+    }
+
+    @Override
+    public long size() {
+        return numWords;
+    }
+
+    @Override
+    public void store(Integer key, INDArray object) {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+
+    @Override
+    public void store(Integer key, float[] array) {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+
+    @Override
+    public void store(Integer key, double[] array) {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+
+    @Override
+    public boolean storeIfAbsent(Integer key, INDArray object) {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+
+    @Override
+    public void drop(Integer key) {
+        throw new UnsupportedOperationException("MappedVectorStorage is read-only");
+    }
+}
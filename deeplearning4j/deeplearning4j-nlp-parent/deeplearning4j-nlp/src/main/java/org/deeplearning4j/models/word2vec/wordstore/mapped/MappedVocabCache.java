@@ -0,0 +1,322 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.mapped;
+
+import lombok.NonNull;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.deeplearning4j.models.word2vec.wordstore.mapped.MappedModelFile.*;
+
+/**
+ * Read-only VocabCache backed by memory-mapped vocabulary section of {@link MappedModelFile}.
+ *
+ * Labels are looked up with binary search over sorted offsets table, so no heap structures are built upon load.
+ * VocabWords returned by this cache are created on demand, and have no Huffman codes/points attached.
+ * All methods modifying vocabulary throw UnsupportedOperationException.
+ */
+public class MappedVocabCache implements VocabCache<VocabWord> {
+    private final ByteBuffer metadata;
+    private final int numWords;
+    private final int sortedOffset;
+    private final int idsOffset;
+    private final int labelsOffset;
+    private final long totalWordOccurrences;
+    private final long totalDocs;
+
+    protected MappedVocabCache(@NonNull ByteBuffer metadata, int numWords, int labelsOffset, long totalWordOccurrences,
+                    long totalDocs) {
+        // only absolute reads are used below, so single buffer is safe to share between threads
+        this.metadata = metadata;
+        this.numWords = numWords;
+        this.sortedOffset = HEADER_LENGTH + numWords * RECORD_LENGTH;
+        this.idsOffset = sortedOffset + numWords * 4;
+        this.labelsOffset = labelsOffset;
+        this.totalWordOccurrences = totalWordOccurrences;
+        this.totalDocs = totalDocs;
+    }
+
+    @Override
+    public void loadVocab() {
+        // no-op
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return numWords > 0;
+    }
+
+    @Override
+    public void saveVocab() {
+        // no-op
+    }
+
+    /**
+     * Returns collection of labels available in this vocabulary, in index order
+     *
+     * @return
+     */
+    @Override
+    public Collection<String> words() {
+        List<String> result = new ArrayList<>(numWords);
+        for (int i = 0; i < numWords; i++)
+            result.add(label(i));
+
+        return result;
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public int wordFrequency(@NonNull String word) {
+        int index = indexOf(word);
+        return index < 0 ? 0 : (int) frequency(index);
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        return word != null && indexOf(word) >= 0;
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        return index >= 0 && index < numWords ? label(index) : null;
+    }
+
+    @Override
+    public VocabWord elementAtIndex(int index) {
+        return index >= 0 && index < numWords ? element(index) : null;
+    }
+
+    /**
+     * Returns index of given label, or -2 if label isn't present in vocabulary, the same as AbstractCache does
+     *
+     * @param label
+     * @return
+     */
+    @Override
+    public int indexOf(@NonNull String label) {
+        byte[] query = label.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = numWords - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int index = metadata.getInt(sortedOffset + mid * 4);
+            int cmp = compareLabel(index, query);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return index;
+        }
+
+        return -2;
+    }
+
+    @Override
+    public Collection<VocabWord> vocabWords() {
+        List<VocabWord> result = new ArrayList<>(numWords);
+        for (int i = 0; i < numWords; i++)
+            result.add(element(i));
+
+        return result;
+    }
+
+    @Override
+    public long totalWordOccurrences() {
+        return totalWordOccurrences;
+    }
+
+    @Override
+    public VocabWord wordFor(@NonNull String word) {
+        int index = indexOf(word);
+        return index < 0 ? null : element(index);
+    }
+
+    @Override
+    public VocabWord wordFor(long id) {
+        int low = 0;
+        int high = numWords - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = metadata.getLong(idsOffset + mid * ID_RECORD_LENGTH);
+            if (value < id)
+                low = mid + 1;
+            else if (value > id)
+                high = mid - 1;
+            else
+                return element(metadata.getInt(idsOffset + mid * ID_RECORD_LENGTH + 8));
+        }
+
+        return null;
+    }
+
+    @Override
+    public void addWordToIndex(int index, String word) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void addWordToIndex(int index, long elementId) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    @Deprecated
+    public void putVocabWord(String word) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public int numWords() {
+        return numWords;
+    }
+
+    @Override
+    public int docAppearedIn(String word) {
+        int index = indexOf(word);
+        return index < 0 ? -1 : (int) sequencesCount(index);
+    }
+
+    @Override
+    public void incrementDocCount(String word, long howMuch) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void setCountForDoc(String word, long count) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public long totalNumberOfDocs() {
+        return totalDocs;
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void incrementTotalDocCount(long by) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public Collection<VocabWord> tokens() {
+        return vocabWords();
+    }
+
+    @Override
+    public boolean addToken(VocabWord element) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public VocabWord tokenFor(String word) {
+        return wordFor(word);
+    }
+
+    @Override
+    public VocabWord tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    @Override
+    public boolean hasToken(String token) {
+        return containsWord(token);
+    }
+
+    @Override
+    public void importVocabulary(VocabCache<VocabWord> vocabCache) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void updateWordsOccurrences() {
+        // no-op, counters are fixed at write time
+    }
+
+    @Override
+    public void removeElement(String label) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    @Override
+    public void removeElement(VocabWord element) {
+        throw new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    protected VocabWord element(int index) {
+        VocabWord word = new VocabWord(frequency(index), label(index));
+        word.setIndex(index);
+        word.setSequencesCount(sequencesCount(index));
+        return word;
+    }
+
+    protected String label(int index) {
+        int record = HEADER_LENGTH + index * RECORD_LENGTH;
+        int offset = labelsOffset + metadata.getInt(record);
+        byte[] bytes = new byte[metadata.getInt(record + 4)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = metadata.get(offset + i);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected double frequency(int index) {
+        return metadata.getDouble(HEADER_LENGTH + index * RECORD_LENGTH + 8);
+    }
+
+    protected long sequencesCount(int index) {
+        return metadata.getLong(HEADER_LENGTH + index * RECORD_LENGTH + 16);
+    }
+
+    private int compareLabel(int index, byte[] query) {
+        int record = HEADER_LENGTH + index * RECORD_LENGTH;
+        int offset = labelsOffset + metadata.getInt(record);
+        int length = metadata.getInt(record + 4);
+
+        int common = Math.min(length, query.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (metadata.get(offset + i) & 0xFF) - (query[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+
+        return length - query.length;
+    }
+}
@@ -0,0 +1,1171 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.offheap;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.nd4j.shade.jackson.core.JsonProcessingException;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * VocabCache implementation that keeps vocabulary off-heap.<br>
+ * Elements are split into {@link #NUM_SEGMENTS} segments by their storage id, each segment is an open-addressing
+ * hash table over native memory: slot table, fixed-size entry records (storage id, frequency, sequences count,
+ * Huffman index, flags) and a char arena holding labels. So counting millions of distinct words doesn't create
+ * millions of VocabWord objects, and two caches can be merged segment-by-segment in parallel.
+ *
+ * Plain VocabWords are stored as primitives only. Once a VocabWord is requested via wordFor(), tokenFor(),
+ * elementAtIndex() or vocabWords(), it's materialized and kept on heap, and from that moment this object holds
+ * authoritative counters, so callers can modify it the same way as elements of {@link AbstractCache}.
+ * Any other elements (custom SequenceElement subclasses, elements with Huffman codes attached etc) are kept on heap as is.
+ *
+ * Native memory is allocated through JavaCPP, so it isn't limited by -XX:MaxDirectMemorySize, and it's released
+ * by {@link #close()} without waiting for GC.
+ *
+ * PLEASE NOTE: elements are identified by storage id only, so labels are expected to have distinct 64-bit hashes,
+ * exactly like in {@link AbstractCache}
+ */
+@Slf4j
+public class OffHeapVocabCache<T extends SequenceElement> implements VocabCache<T>, Closeable {
+    public static final int NUM_SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = 58;
+
+    // entry record layout, in bytes
+    private static final int ID_OFFSET = 0;
+    private static final int LABEL_OFFSET = 8;
+    private static final int LABEL_LENGTH = 12;
+    private static final int FREQUENCY_OFFSET = 16;
+    private static final int SEQUENCES_OFFSET = 24;
+    private static final int INDEX_OFFSET = 32;
+    private static final int FLAGS_OFFSET = 36;
+    private static final int ENTRY_BYTES = 40;
+
+    private static final int FLAG_REMOVED = 1;
+    private static final int FLAG_SPECIAL = 2;
+    private static final int FLAG_LABEL = 4;
+    private static final int FLAG_MATERIALIZED = 8;
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+    private final int mergeThreads;
+
+    // VocabWords handed out to callers
+    private final ConcurrentMap<Long, T> materialized = new ConcurrentHashMap<>();
+
+    // elements that can't be represented as primitives
+    private final ConcurrentMap<Long, T> heapElements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, T> heapLabels = new ConcurrentHashMap<>();
+
+    // Huffman index -> storage id
+    private BytePointer indexMemory;
+    private ByteBuffer indexTable;
+    private final Object indexLock = new Object();
+
+    private final AtomicLong documentsCounter = new AtomicLong(0);
+    private final AtomicLong totalWordCount = new AtomicLong(0);
+
+    public OffHeapVocabCache() {
+        this(1024, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param initialCapacity expected number of elements, used for initial sizing only
+     * @param mergeThreads    number of threads used in importVocabulary()
+     */
+    public OffHeapVocabCache(int initialCapacity, int mergeThreads) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Initial capacity can't be negative");
+
+        if (mergeThreads < 1)
+            throw new IllegalArgumentException("Number of merge threads should be positive value");
+
+        this.mergeThreads = mergeThreads;
+        for (int e = 0; e < NUM_SEGMENTS; e++)
+            segments[e] = new Segment(initialCapacity / NUM_SEGMENTS);
+
+        indexMemory = allocate(Math.max(16, initialCapacity) * 8L);
+        indexTable = view(indexMemory);
+    }
+
+    @Override
+    public void loadVocab() {
+        // no-op, the same as AbstractCache
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return numWords() > 0;
+    }
+
+    @Override
+    public void saveVocab() {
+        // no-op, the same as AbstractCache
+    }
+
+    /**
+     * Returns collection of labels available in this vocabulary
+     *
+     * @return
+     */
+    @Override
+    public Collection<String> words() {
+        List<String> result = new ArrayList<>(numWords());
+        for (Segment s : segments) {
+            synchronized (s) {
+                for (int e = 0; e < s.numEntries; e++)
+                    if (!s.hasFlag(e, FLAG_REMOVED))
+                        result.add(s.label(e));
+            }
+        }
+        result.addAll(heapLabels.keySet());
+        return Collections.unmodifiableCollection(result);
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        incrementWordCount(word, 1);
+    }
+
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                if (s.hasFlag(e, FLAG_MATERIALIZED))
+                    materialized.get(id).increaseElementFrequency(increment);
+                else
+                    s.setFrequency(e, s.frequency(e) + increment);
+
+                totalWordCount.addAndGet(increment);
+                return;
+            }
+        }
+
+        T element = heapElement(word);
+        if (element != null) {
+            element.increaseElementFrequency(increment);
+            totalWordCount.addAndGet(increment);
+        }
+    }
+
+    @Override
+    public int wordFrequency(@NonNull String word) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0)
+                return (int) frequency(s, e);
+        }
+
+        T element = heapElement(word);
+        return element == null ? 0 : (int) element.getElementFrequency();
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            if (s.find(id) >= 0)
+                return true;
+        }
+
+        return heapElement(word) != null;
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        long id = idAtIndex(index);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0 && index(s, e) == index)
+                return s.label(e);
+        }
+
+        T element = heapElements.get(id);
+        return element != null && element.getIndex() == index ? element.getLabel() : null;
+    }
+
+    @Override
+    public T elementAtIndex(int index) {
+        long id = idAtIndex(index);
+
+        // fast path: element was already materialized, no locks involved
+        T element = materialized.get(id);
+        if (element != null && element.getIndex() == index)
+            return element;
+
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0 && index(s, e) == index)
+                return materialize(s, e);
+        }
+
+        element = heapElements.get(id);
+        return element != null && element.getIndex() == index ? element : null;
+    }
+
+    @Override
+    public int indexOf(String label) {
+        long id = SequenceElement.getLongHash(label);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0)
+                return index(s, e);
+        }
+
+        T element = heapElement(label);
+        return element == null ? -2 : element.getIndex();
+    }
+
+    /**
+     * Returns all elements stored in this vocabulary. Please note: all elements get materialized on heap
+     *
+     * @return
+     */
+    @Override
+    public Collection<T> vocabWords() {
+        List<T> result = new ArrayList<>(numWords());
+        for (Segment s : segments) {
+            synchronized (s) {
+                for (int e = 0; e < s.numEntries; e++)
+                    if (!s.hasFlag(e, FLAG_REMOVED))
+                        result.add(materialize(s, e));
+            }
+        }
+        result.addAll(heapElements.values());
+        return result;
+    }
+
+    @Override
+    public long totalWordOccurrences() {
+        return totalWordCount.get();
+    }
+
+    public void setTotalWordOccurences(long value) {
+        totalWordCount.set(value);
+    }
+
+    @Override
+    public T wordFor(@NonNull String label) {
+        long id = SequenceElement.getLongHash(label);
+        T element = materialized.get(id);
+        if (element != null)
+            return element;
+
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0)
+                return materialize(s, e);
+        }
+
+        return heapElement(label);
+    }
+
+    @Override
+    public T wordFor(long id) {
+        T element = materialized.get(id);
+        if (element != null)
+            return element;
+
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0)
+                return materialize(s, e);
+        }
+
+        return heapElements.get(id);
+    }
+
+    @Override
+    public void addWordToIndex(int index, String label) {
+        if (index >= 0 && label != null)
+            addToIndex(index, SequenceElement.getLongHash(label));
+    }
+
+    @Override
+    public void addWordToIndex(int index, long elementId) {
+        if (index >= 0)
+            addToIndex(index, elementId);
+    }
+
+    @Override
+    @Deprecated
+    public void putVocabWord(String word) {
+        if (!containsWord(word))
+            throw new IllegalStateException("Specified label is not present in vocabulary");
+    }
+
+    @Override
+    public int numWords() {
+        int result = heapElements.size();
+        for (Segment s : segments) {
+            synchronized (s) {
+                result += s.live;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int docAppearedIn(String word) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0)
+                return (int) sequences(s, e);
+        }
+
+        T element = heapElement(word);
+        return element == null ? -1 : (int) element.getSequencesCount();
+    }
+
+    @Override
+    public void incrementDocCount(String word, long howMuch) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                if (s.hasFlag(e, FLAG_MATERIALIZED))
+                    materialized.get(id).incrementSequencesCount(howMuch);
+                else
+                    s.setSequences(e, s.sequences(e) + howMuch);
+                return;
+            }
+        }
+
+        T element = heapElement(word);
+        if (element != null)
+            element.incrementSequencesCount(howMuch);
+    }
+
+    @Override
+    public void setCountForDoc(String word, long count) {
+        long id = SequenceElement.getLongHash(word);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                if (s.hasFlag(e, FLAG_MATERIALIZED))
+                    materialized.get(id).setSequencesCount(count);
+                else
+                    s.setSequences(e, count);
+                return;
+            }
+        }
+
+        T element = heapElement(word);
+        if (element != null)
+            element.setSequencesCount(count);
+    }
+
+    @Override
+    public long totalNumberOfDocs() {
+        return documentsCounter.get();
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        documentsCounter.incrementAndGet();
+    }
+
+    @Override
+    public void incrementTotalDocCount(long by) {
+        documentsCounter.addAndGet(by);
+    }
+
+    public void setTotalDocCount(long by) {
+        documentsCounter.set(by);
+    }
+
+    @Override
+    public Collection<T> tokens() {
+        return vocabWords();
+    }
+
+    /**
+     * This method adds specified SequenceElement to vocabulary. If element already exists, its counters are merged
+     * into existing element, the same way as in {@link AbstractCache}
+     *
+     * @param element the word to add
+     * @return true if element was added, false if it was merged into existing one
+     */
+    @Override
+    public boolean addToken(T element) {
+        long id = element.getStorageId();
+        Segment s = segmentFor(id);
+        double total;
+        boolean added = false;
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                total = merge(s, e, element.getElementFrequency(), element.getSequencesCount());
+            } else if (isPrimitive(element) && !heapElements.containsKey(id)) {
+                int flags = (element.isSpecial() ? FLAG_SPECIAL : 0) | (element.isLabel() ? FLAG_LABEL : 0);
+                e = s.insert(id, element.getLabel());
+                s.setFrequency(e, element.getElementFrequency());
+                s.setSequences(e, element.getSequencesCount());
+                s.setIndex(e, element.getIndex());
+                s.setFlags(e, flags);
+                total = element.getElementFrequency();
+                added = true;
+            } else {
+                T oldElement = heapElements.putIfAbsent(id, element);
+                if (oldElement == null) {
+                    if (element.getLabel() != null)
+                        heapLabels.put(element.getLabel(), element);
+                    oldElement = element;
+                    added = true;
+                } else {
+                    oldElement.incrementSequencesCount(element.getSequencesCount());
+                    oldElement.increaseElementFrequency((int) element.getElementFrequency());
+                }
+                total = oldElement.getElementFrequency();
+            }
+        }
+
+        totalWordCount.addAndGet((long) total);
+        return added;
+    }
+
+    @Override
+    public T tokenFor(String label) {
+        return wordFor(label);
+    }
+
+    @Override
+    public T tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    @Override
+    public boolean hasToken(String label) {
+        return containsWord(label);
+    }
+
+    /**
+     * This method imports all elements from VocabCache passed as argument.
+     * If argument is OffHeapVocabCache too, segments are merged in parallel without materializing elements.
+     *
+     * @param vocabCache
+     */
+    @Override
+    public void importVocabulary(@NonNull VocabCache<T> vocabCache) {
+        boolean added = false;
+        if (vocabCache instanceof OffHeapVocabCache) {
+            final OffHeapVocabCache<T> other = (OffHeapVocabCache<T>) vocabCache;
+
+            List<Callable<Boolean>> tasks = new ArrayList<>(NUM_SEGMENTS);
+            for (int e = 0; e < NUM_SEGMENTS; e++) {
+                final int segment = e;
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mergeSegment(other, segment);
+                    }
+                });
+            }
+
+            int numThreads = Math.min(mergeThreads, NUM_SEGMENTS);
+            if (numThreads > 1) {
+                ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "OffHeapVocabCache merge thread");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+                try {
+                    for (Future<Boolean> f : executor.invokeAll(tasks))
+                        added |= f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                } finally {
+                    executor.shutdown();
+                }
+            } else {
+                for (int e = 0; e < NUM_SEGMENTS; e++)
+                    added |= mergeSegment(other, e);
+            }
+
+            for (T element : other.heapElements.values())
+                added |= addToken(element);
+        } else {
+            for (T element : vocabCache.vocabWords())
+                added |= addToken(element);
+        }
+
+        if (added)
+            documentsCounter.addAndGet(vocabCache.totalNumberOfDocs());
+    }
+
+    @Override
+    public void updateWordsOccurrences() {
+        long total = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                for (int e = 0; e < s.numEntries; e++) {
+                    if (s.hasFlag(e, FLAG_REMOVED))
+                        continue;
+
+                    long value = (long) frequency(s, e);
+                    if (value > 0)
+                        total += value;
+                }
+            }
+        }
+
+        for (T element : heapElements.values()) {
+            long value = (long) element.getElementFrequency();
+            if (value > 0)
+                total += value;
+        }
+
+        totalWordCount.set(total);
+        log.info("Updated counter: [" + total + "]");
+    }
+
+    @Override
+    public void removeElement(String label) {
+        long id = SequenceElement.getLongHash(label);
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                totalWordCount.addAndGet(-(long) frequency(s, e));
+                remove(s, e);
+                s.compactIfSparse();
+                return;
+            }
+        }
+
+        T element = heapElement(label);
+        if (element == null)
+            throw new IllegalStateException("Can't get label: '" + label + "'");
+
+        totalWordCount.addAndGet(-(long) element.getElementFrequency());
+        heapElements.remove(element.getStorageId());
+        heapLabels.remove(label);
+    }
+
+    @Override
+    public void removeElement(T element) {
+        removeElement(element.getLabel());
+    }
+
+    /**
+     * This method removes all elements with frequency below given threshold, except special elements and labels,
+     * and releases memory occupied by them. It's a bulk equivalent of removeElement() calls.
+     *
+     * @param minFrequency
+     * @return number of removed elements
+     */
+    public int removeInfrequent(int minFrequency) {
+        int removed = 0;
+        long frequencies = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                for (int e = 0; e < s.numEntries; e++) {
+                    if (s.hasFlag(e, FLAG_REMOVED))
+                        continue;
+
+                    boolean keep;
+                    if (s.hasFlag(e, FLAG_MATERIALIZED)) {
+                        T element = materialized.get(s.id(e));
+                        keep = element.isSpecial() || element.isLabel() || element.getElementFrequency() >= minFrequency;
+                    } else
+                        keep = s.hasFlag(e, FLAG_SPECIAL) || s.hasFlag(e, FLAG_LABEL) || s.frequency(e) >= minFrequency;
+
+                    if (!keep) {
+                        frequencies += (long) frequency(s, e);
+                        remove(s, e);
+                        removed++;
+                    }
+                }
+                s.compact();
+            }
+        }
+
+        for (T element : new ArrayList<>(heapElements.values())) {
+            if (element.getElementFrequency() < minFrequency && !element.isSpecial() && !element.isLabel()) {
+                frequencies += (long) element.getElementFrequency();
+                heapElements.remove(element.getStorageId());
+                if (element.getLabel() != null)
+                    heapLabels.remove(element.getLabel());
+                removed++;
+            }
+        }
+
+        totalWordCount.addAndGet(-frequencies);
+        return removed;
+    }
+
+    /**
+     * This method returns AbstractCache holding the same elements and counters, i.e. for serialization purposes.
+     * Please note: all elements get materialized on heap, and returned cache shares them with this one.
+     *
+     * @return
+     */
+    public AbstractCache<T> toAbstractCache() {
+        AbstractCache<T> cache = new AbstractCache.Builder<T>().build();
+        for (T element : vocabWords()) {
+            cache.addToken(element);
+            if (element.getIndex() >= 0) {
+                if (element.getLabel() != null)
+                    cache.addWordToIndex(element.getIndex(), element.getLabel());
+                else
+                    cache.addWordToIndex(element.getIndex(), element.getStorageId());
+            }
+        }
+
+        cache.setTotalWordOccurences(totalWordCount.get());
+        cache.setTotalDocCount(documentsCounter.get());
+        return cache;
+    }
+
+    /**
+     * This method serializes this vocabulary into JSON, using the same format as {@link AbstractCache#toJson()}.
+     * Deserialized vocabulary will be AbstractCache.
+     *
+     * @return
+     * @throws JsonProcessingException
+     */
+    public String toJson() throws JsonProcessingException {
+        return toAbstractCache().toJson();
+    }
+
+    /**
+     * This method returns number of bytes of direct memory currently allocated by this vocabulary
+     *
+     * @return
+     */
+    public long getAllocatedBytes() {
+        long result;
+        synchronized (indexLock) {
+            result = indexMemory == null ? 0 : indexMemory.capacity();
+        }
+        for (Segment s : segments) {
+            synchronized (s) {
+                result += s.allocatedBytes();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method releases native memory held by this vocabulary. Vocabulary can't be used after that
+     */
+    @Override
+    public void close() {
+        for (Segment s : segments) {
+            synchronized (s) {
+                s.free();
+            }
+        }
+
+        synchronized (indexLock) {
+            free(indexMemory);
+            indexMemory = null;
+            indexTable = null;
+        }
+    }
+
+    protected static boolean isPrimitive(SequenceElement element) {
+        if (element.getClass() != VocabWord.class)
+            return false;
+
+        String label = element.getLabel();
+        if (label == null || label.isEmpty() || element.getStorageId() != SequenceElement.getLongHash(label))
+            return false;
+
+        // state below isn't stored in entry records
+        return element.getCodeLength() == 0 && element.getCodes().isEmpty() && element.getPoints().isEmpty()
+                        && !element.isLocked() && !element.isInit();
+    }
+
+    private Segment segmentFor(long id) {
+        return segments[(int) (id >>> SEGMENT_SHIFT)];
+    }
+
+    private T heapElement(String label) {
+        return heapLabels.isEmpty() ? null : heapLabels.get(label);
+    }
+
+    // methods below should be called while holding segment lock
+
+    private double frequency(Segment s, int e) {
+        return s.hasFlag(e, FLAG_MATERIALIZED) ? materialized.get(s.id(e)).getElementFrequency() : s.frequency(e);
+    }
+
+    private long sequences(Segment s, int e) {
+        return s.hasFlag(e, FLAG_MATERIALIZED) ? materialized.get(s.id(e)).getSequencesCount() : s.sequences(e);
+    }
+
+    private int index(Segment s, int e) {
+        return s.hasFlag(e, FLAG_MATERIALIZED) ? materialized.get(s.id(e)).getIndex() : s.index(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T materialize(Segment s, int e) {
+        long id = s.id(e);
+        if (s.hasFlag(e, FLAG_MATERIALIZED))
+            return materialized.get(id);
+
+        T element = detach(s, e);
+        materialized.put(id, element);
+        s.setFlags(e, s.flags(e) | FLAG_MATERIALIZED);
+        return element;
+    }
+
+    /**
+     * Returns VocabWord holding copy of given entry, without registering it
+     */
+    @SuppressWarnings("unchecked")
+    private T detach(Segment s, int e) {
+        VocabWord word = new VocabWord(s.frequency(e), s.label(e), s.id(e));
+        word.setSequencesCount(s.sequences(e));
+        word.setIndex(s.index(e));
+        word.setSpecial(s.hasFlag(e, FLAG_SPECIAL));
+        word.markAsLabel(s.hasFlag(e, FLAG_LABEL));
+        return (T) word;
+    }
+
+    private double merge(Segment s, int e, double frequency, long sequences) {
+        if (s.hasFlag(e, FLAG_MATERIALIZED)) {
+            T element = materialized.get(s.id(e));
+            element.incrementSequencesCount(sequences);
+            element.increaseElementFrequency((int) frequency);
+            return element.getElementFrequency();
+        }
+
+        s.setSequences(e, s.sequences(e) + sequences);
+        s.setFrequency(e, s.frequency(e) + (int) frequency);
+        return s.frequency(e);
+    }
+
+    private void remove(Segment s, int e) {
+        if (s.hasFlag(e, FLAG_MATERIALIZED))
+            materialized.remove(s.id(e));
+
+        s.setFlags(e, FLAG_REMOVED);
+        s.live--;
+    }
+
+    private boolean mergeSegment(OffHeapVocabCache<T> other, int segment) {
+        Segment src = other.segments[segment];
+        Segment dst = segments[segment];
+        boolean added = false;
+        long total = 0;
+        List<T> deferred = new ArrayList<>();
+
+        synchronized (src) {
+            synchronized (dst) {
+                for (int e = 0; e < src.numEntries; e++) {
+                    if (src.hasFlag(e, FLAG_REMOVED))
+                        continue;
+
+                    long id = src.id(e);
+                    double frequency;
+                    long sequences;
+                    int index;
+                    int flags;
+                    if (src.hasFlag(e, FLAG_MATERIALIZED)) {
+                        T element = other.materialized.get(id);
+                        if (!isPrimitive(element)) {
+                            // element carries state entry records can't hold
+                            deferred.add(element);
+                            continue;
+                        }
+
+                        frequency = element.getElementFrequency();
+                        sequences = element.getSequencesCount();
+                        index = element.getIndex();
+                        flags = (element.isSpecial() ? FLAG_SPECIAL : 0) | (element.isLabel() ? FLAG_LABEL : 0);
+                    } else {
+                        frequency = src.frequency(e);
+                        sequences = src.sequences(e);
+                        index = src.index(e);
+                        flags = src.flags(e) & (FLAG_SPECIAL | FLAG_LABEL);
+                    }
+
+                    if (heapElements.containsKey(id)) {
+                        deferred.add(other.detach(src, e));
+                        continue;
+                    }
+
+                    int d = dst.find(id);
+                    if (d >= 0) {
+                        total += (long) merge(dst, d, frequency, sequences);
+                    } else {
+                        d = dst.insert(id, src, e);
+                        dst.setFrequency(d, frequency);
+                        dst.setSequences(d, sequences);
+                        dst.setIndex(d, index);
+                        dst.setFlags(d, flags);
+                        total += (long) frequency;
+                        added = true;
+                    }
+                }
+            }
+        }
+
+        totalWordCount.addAndGet(total);
+
+        for (T element : deferred)
+            added |= addToken(element);
+
+        return added;
+    }
+
+    private void addToIndex(int index, long id) {
+        Segment s = segmentFor(id);
+        synchronized (s) {
+            int e = s.find(id);
+            if (e >= 0) {
+                if (s.hasFlag(e, FLAG_MATERIALIZED))
+                    materialized.get(id).setIndex(index);
+                else
+                    s.setIndex(e, index);
+            } else {
+                T element = heapElements.get(id);
+                if (element == null)
+                    return;
+
+                element.setIndex(index);
+            }
+        }
+
+        synchronized (indexLock) {
+            long required = (index + 1L) * 8L;
+            if (required > indexMemory.capacity()) {
+                BytePointer grown = allocate(Math.max(required, indexMemory.capacity() * 2L));
+                Pointer.memcpy(grown, indexMemory, indexMemory.capacity());
+                free(indexMemory);
+                indexMemory = grown;
+                indexTable = view(grown);
+            }
+
+            indexTable.putLong(index * 8, id);
+        }
+    }
+
+    private long idAtIndex(int index) {
+        // index table memory is released when it grows, so it's only accessed under lock
+        synchronized (indexLock) {
+            if (index < 0 || (index + 1L) * 8L > indexTable.capacity())
+                return 0L;
+
+            return indexTable.getLong(index * 8);
+        }
+    }
+
+    /**
+     * Allocates zero-filled native memory
+     */
+    private static BytePointer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalStateException("Vocabulary segment can't be larger than 2GB");
+
+        BytePointer pointer = new BytePointer(bytes);
+        Pointer.memset(pointer, 0, bytes);
+        return pointer;
+    }
+
+    private static ByteBuffer view(BytePointer pointer) {
+        return pointer.asByteBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    private static void free(Pointer pointer) {
+        if (pointer != null)
+            pointer.deallocate();
+    }
+
+    /**
+     * Single open-addressing hash table with linear probing. Not thread-safe, all access is guarded by segment monitor.
+     * Removed entries keep their slots until the next rebuild, so probing chains are never broken.
+     */
+    private static final class Segment {
+        private BytePointer slotsMemory;
+        private ByteBuffer slots;       // entry number + 1 per slot, 0 means empty slot
+        private int slotMask;
+        private BytePointer entriesMemory;
+        private ByteBuffer entries;
+        private int maxEntries;
+        private int numEntries;         // including removed ones
+        private int live;
+        private BytePointer arenaMemory;
+        private ByteBuffer arena;       // labels, as chars
+        private int arenaChars;
+
+        private Segment(int capacity) {
+            this(slotsFor(capacity), -1);
+        }
+
+        /**
+         * @param arenaBytes initial size of label arena, or -1 for default size
+         */
+        private Segment(int numSlots, long arenaBytes) {
+            slotsMemory = allocate(numSlots * 4L);
+            slots = view(slotsMemory);
+            slotMask = numSlots - 1;
+            maxEntries = numSlots / 4 * 3;
+            entriesMemory = allocate((long) maxEntries * ENTRY_BYTES);
+            entries = view(entriesMemory);
+            arenaMemory = allocate(arenaBytes < 0 ? maxEntries * 16L : arenaBytes);
+            arena = view(arenaMemory);
+        }
+
+        private long allocatedBytes() {
+            return slots == null ? 0 : slotsMemory.capacity() + entriesMemory.capacity() + arenaMemory.capacity();
+        }
+
+        private void free() {
+            OffHeapVocabCache.free(slotsMemory);
+            OffHeapVocabCache.free(entriesMemory);
+            OffHeapVocabCache.free(arenaMemory);
+            slotsMemory = entriesMemory = arenaMemory = null;
+            slots = entries = arena = null;
+        }
+
+        private static int slotsFor(int capacity) {
+            int numSlots = 16;
+            while (numSlots / 4 * 3 < capacity)
+                numSlots <<= 1;
+            return numSlots;
+        }
+
+        /**
+         * Returns entry number for given storage id, or -1 if there's no such live entry
+         */
+        private int find(long id) {
+            int e = lookup(id);
+            return e >= 0 && !hasFlag(e, FLAG_REMOVED) ? e : -1;
+        }
+
+        private int lookup(long id) {
+            int slot = (int) id & slotMask;
+            while (true) {
+                int e = slots.getInt(slot << 2) - 1;
+                if (e < 0 || id(e) == id)
+                    return e;
+
+                slot = (slot + 1) & slotMask;
+            }
+        }
+
+        private int insert(long id, String label) {
+            int e = reserve(id, label.length());
+            int offset = labelOffset(e);
+            for (int i = 0; i < label.length(); i++)
+                arena.putChar((offset + i) << 1, label.charAt(i));
+            return e;
+        }
+
+        private int insert(long id, Segment source, int sourceEntry) {
+            int length = source.labelLength(sourceEntry);
+            int e = reserve(id, length);
+            copyLabel(source, sourceEntry, e);
+            return e;
+        }
+
+        /**
+         * Creates entry for given id, or reuses removed one. Label space is reserved, but not filled
+         */
+        private int reserve(long id, int labelLength) {
+            int e = lookup(id);
+            if (e >= 0) {
+                // resurrecting removed entry
+                if (labelLength(e) != labelLength) {
+                    ensureArena((long) arenaChars + labelLength);
+                    entries.putInt(e * ENTRY_BYTES + LABEL_OFFSET, arenaChars);
+                    entries.putInt(e * ENTRY_BYTES + LABEL_LENGTH, labelLength);
+                    arenaChars += labelLength;
+                }
+                live++;
+                return e;
+            }
+
+            if (numEntries == maxEntries)
+                rebuild(slotsFor(live < numEntries / 2 ? numEntries : numEntries * 2));
+
+            ensureArena((long) arenaChars + labelLength);
+
+            e = numEntries++;
+            entries.putLong(e * ENTRY_BYTES + ID_OFFSET, id);
+            entries.putInt(e * ENTRY_BYTES + LABEL_OFFSET, arenaChars);
+            entries.putInt(e * ENTRY_BYTES + LABEL_LENGTH, labelLength);
+            arenaChars += labelLength;
+
+            int slot = (int) id & slotMask;
+            while (slots.getInt(slot << 2) != 0)
+                slot = (slot + 1) & slotMask;
+            slots.putInt(slot << 2, e + 1);
+
+            live++;
+            return e;
+        }
+
+        private void compactIfSparse() {
+            if (numEntries > 1024 && live < numEntries / 4)
+                compact();
+        }
+
+        private void compact() {
+            if (live < numEntries)
+                rebuild(slotsFor(live));
+        }
+
+        /**
+         * Rebuilds slot table, entries and arena, dropping removed entries
+         */
+        private void rebuild(int numSlots) {
+            long chars = 0;
+            for (int e = 0; e < numEntries; e++)
+                if (!hasFlag(e, FLAG_REMOVED))
+                    chars += labelLength(e);
+            Segment fresh = new Segment(numSlots, Math.max(chars * 2, numSlots / 4 * 3 * 4L));
+
+            for (int e = 0; e < numEntries; e++) {
+                if (hasFlag(e, FLAG_REMOVED))
+                    continue;
+
+                int n = fresh.reserve(id(e), labelLength(e));
+                fresh.copyLabel(this, e, n);
+                fresh.setFrequency(n, frequency(e));
+                fresh.setSequences(n, sequences(e));
+                fresh.setIndex(n, index(e));
+                fresh.setFlags(n, flags(e));
+            }
+
+            free();
+            slotsMemory = fresh.slotsMemory;
+            slots = fresh.slots;
+            slotMask = fresh.slotMask;
+            entriesMemory = fresh.entriesMemory;
+            entries = fresh.entries;
+            maxEntries = fresh.maxEntries;
+            numEntries = fresh.numEntries;
+            live = fresh.live;
+            arenaMemory = fresh.arenaMemory;
+            arena = fresh.arena;
+            arenaChars = fresh.arenaChars;
+        }
+
+        private void ensureArena(long chars) {
+            if (chars * 2 <= arena.capacity())
+                return;
+
+            BytePointer grown = allocate(Math.max(chars * 2, arena.capacity() * 2L));
+            Pointer.memcpy(grown, arenaMemory, (long) arenaChars << 1);
+            OffHeapVocabCache.free(arenaMemory);
+            arenaMemory = grown;
+            arena = view(grown);
+        }
+
+        private void copyLabel(Segment source, int sourceEntry, int e) {
+            int from = source.labelOffset(sourceEntry);
+            int to = labelOffset(e);
+            int length = source.labelLength(sourceEntry);
+            for (int i = 0; i < length; i++)
+                arena.putChar((to + i) << 1, source.arena.getChar((from + i) << 1));
+        }
+
+        private String label(int e) {
+            int offset = labelOffset(e);
+            char[] chars = new char[labelLength(e)];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = arena.getChar((offset + i) << 1);
+            return new String(chars);
+        }
+
+        private boolean hasFlag(int e, int flag) {
+            return (flags(e) & flag) != 0;
+        }
+
+        private long id(int e) {
+            return entries.getLong(e * ENTRY_BYTES + ID_OFFSET);
+        }
+
+        private int labelOffset(int e) {
+            return entries.getInt(e * ENTRY_BYTES + LABEL_OFFSET);
+        }
+
+        private int labelLength(int e) {
+            return entries.getInt(e * ENTRY_BYTES + LABEL_LENGTH);
+        }
+
+        private double frequency(int e) {
+            return entries.getDouble(e * ENTRY_BYTES + FREQUENCY_OFFSET);
+        }
+
+        private void setFrequency(int e, double value) {
+            entries.putDouble(e * ENTRY_BYTES + FREQUENCY_OFFSET, value);
+        }
+
+        private long sequences(int e) {
+            return entries.getLong(e * ENTRY_BYTES + SEQUENCES_OFFSET);
+        }
+
+        private void setSequences(int e, long value) {
+            entries.putLong(e * ENTRY_BYTES + SEQUENCES_OFFSET, value);
+        }
+
+        private int index(int e) {
+            return entries.getInt(e * ENTRY_BYTES + INDEX_OFFSET);
+        }
+
+        private void setIndex(int e, int value) {
+            entries.putInt(e * ENTRY_BYTES + INDEX_OFFSET, value);
+        }
+
+        private int flags(int e) {
+            return entries.getInt(e * ENTRY_BYTES + FLAGS_OFFSET);
+        }
+
+        private void setFlags(int e, int value) {
+            entries.putInt(e * ENTRY_BYTES + FLAGS_OFFSET, value);
+        }
+    }
+}
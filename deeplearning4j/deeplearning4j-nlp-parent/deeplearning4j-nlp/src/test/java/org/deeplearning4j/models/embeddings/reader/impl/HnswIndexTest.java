@@ -0,0 +1,183 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HnswIndexTest extends BaseDL4JTest {
+
+    @Test
+    public void testRecall() {
+        float[][] vectors = clusteredVectors(5000, 32, 50, 12);
+        HnswIndex index = new HnswIndex(vectors, 16, 100, 119);
+        index.build(4);
+
+        Random random = new Random(7);
+        double recall = 0.0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors[random.nextInt(vectors.length)].clone();
+            for (int i = 0; i < query.length; i++)
+                query[i] += (float) (random.nextGaussian() * 0.05);
+
+            recall += recall(exact(vectors, query, 10), index.search(query, 10, 64));
+        }
+
+        assertTrue("Recall@10 is too low: " + recall / queries, recall / queries > 0.95);
+    }
+
+    @Test
+    public void testEfAffectsRecall() {
+        float[][] vectors = clusteredVectors(3000, 16, 1, 13);
+        HnswIndex index = new HnswIndex(vectors, 8, 64, 119);
+        index.build(1);
+
+        Random random = new Random(9);
+        double low = 0.0;
+        double high = 0.0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = HnswIndex.normalize(randomVector(random, 16));
+            int[] expected = exact(vectors, query, 20);
+            low += recall(expected, index.search(query, 20, 20));
+            high += recall(expected, index.search(query, 20, 400));
+        }
+
+        assertTrue(high > low);
+        assertTrue(high / 50 > 0.95);
+    }
+
+    @Test
+    public void testSelfSearch() {
+        float[][] vectors = clusteredVectors(1000, 8, 10, 14);
+        HnswIndex index = new HnswIndex(vectors, 8, 50, 119);
+        index.build(2);
+
+        for (int e = 0; e < vectors.length; e += 10) {
+            int[] result = index.search(vectors[e], 1, 32);
+            assertEquals(1, result.length);
+            assertEquals(1.0f, 1.0f - HnswIndex.distance(vectors[e], vectors[result[0]]), 1e-5f);
+        }
+
+        // results are ordered by descending similarity
+        int[] result = index.search(vectors[0], 10, 32);
+        for (int e = 1; e < result.length; e++)
+            assertTrue(HnswIndex.distance(vectors[0], vectors[result[e - 1]])
+                            <= HnswIndex.distance(vectors[0], vectors[result[e]]));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        float[][] vectors = clusteredVectors(2000, 16, 20, 15);
+        HnswIndex index = new HnswIndex(vectors, 8, 64, 119);
+        index.build(2);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        index.write(baos);
+
+        HnswIndex restored = HnswIndex.read(new ByteArrayInputStream(baos.toByteArray()));
+        assertFalse(restored.hasVectors());
+        assertEquals(index.getNumElements(), restored.getNumElements());
+        assertEquals(index.getDimension(), restored.getDimension());
+        assertEquals(index.getM(), restored.getM());
+
+        try {
+            restored.search(vectors[0], 5, 32);
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try {
+            restored.attach(Arrays.copyOf(vectors, 10));
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        restored.attach(vectors);
+        for (int e = 0; e < vectors.length; e += 100)
+            assertArrayEquals(index.search(vectors[e], 10, 32), restored.search(vectors[e], 10, 32));
+    }
+
+    private static double recall(int[] expected, int[] actual) {
+        Set<Integer> set = new HashSet<>();
+        for (int a : actual)
+            set.add(a);
+
+        int hits = 0;
+        for (int e : expected)
+            if (set.contains(e))
+                hits++;
+
+        return (double) hits / expected.length;
+    }
+
+    private static int[] exact(float[][] vectors, float[] query, int k) {
+        final float[] q = HnswIndex.normalize(query.clone());
+        Integer[] ids = new Integer[vectors.length];
+        final float[] distances = new float[vectors.length];
+        for (int e = 0; e < vectors.length; e++) {
+            ids[e] = e;
+            distances[e] = HnswIndex.distance(q, vectors[e]);
+        }
+
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Float.compare(distances[o1], distances[o2]);
+            }
+        });
+
+        int[] result = new int[k];
+        for (int e = 0; e < k; e++)
+            result[e] = ids[e];
+        return result;
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++)
+            vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+
+    private static float[][] clusteredVectors(int count, int dimension, int clusters, long seed) {
+        Random random = new Random(seed);
+        float[][] centers = new float[clusters][];
+        for (int c = 0; c < clusters; c++)
+            centers[c] = randomVector(random, dimension);
+
+        float[][] vectors = new float[count][];
+        for (int e = 0; e < count; e++) {
+            float[] center = centers[random.nextInt(clusters)];
+            float[] vector = randomVector(random, dimension);
+            for (int i = 0; i < dimension; i++)
+                vector[i] = center[i] + vector[i] * 0.5f;
+            vectors[e] = HnswIndex.normalize(vector);
+        }
+        return vectors;
+    }
+}
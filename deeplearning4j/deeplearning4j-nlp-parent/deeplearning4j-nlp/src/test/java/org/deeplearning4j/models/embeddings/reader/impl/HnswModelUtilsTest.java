@@ -0,0 +1,152 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class HnswModelUtilsTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testRecallAgainstBasicModelUtils() {
+        WordVectors vectors = buildModel(3000, 32, 30);
+
+        BasicModelUtils<VocabWord> basic = new BasicModelUtils<>();
+        basic.init(vectors.lookupTable());
+
+        HnswModelUtils<VocabWord> hnsw = new HnswModelUtils<>();
+        vectors.setModelUtils(hnsw);
+
+        List<String> queries = queries(vectors, 50);
+        double recall = hnsw.recall(basic, queries, 10);
+        log.info("Recall@10: {}", recall);
+        assertTrue("Recall@10 is too low: " + recall, recall > 0.9);
+
+        Collection<String> nearest = vectors.wordsNearest("w1", 10);
+        assertEquals(10, nearest.size());
+        assertFalse(nearest.contains("w1"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        WordVectors vectors = buildModel(2000, 16, 20);
+
+        HnswModelUtils<VocabWord> hnsw = new HnswModelUtils<>(8, 64, 32);
+        vectors.setModelUtils(hnsw);
+        Collection<String> expected = vectors.wordsNearest("w10", 10);
+
+        File file = testDir.newFile("hnsw.bin");
+        WordVectorSerializer.writeHnswIndex(hnsw, file);
+
+        HnswModelUtils<VocabWord> restored = WordVectorSerializer.readHnswIndex(file);
+        assertEquals(8, restored.getM());
+
+        restored.setEfSearch(32);
+        vectors.setModelUtils(restored);
+        assertEquals(expected, vectors.wordsNearest("w10", 10));
+    }
+
+    /**
+     * Reports recall@k and per-query latency of HnswModelUtils vs BasicModelUtils for different efSearch values
+     */
+    @Test
+    @Ignore
+    public void benchmarkRecallAndLatency() {
+        WordVectors vectors = buildModel(500000, 100, 1000);
+        List<String> queries = queries(vectors, 200);
+
+        BasicModelUtils<VocabWord> basic = new BasicModelUtils<>();
+        basic.init(vectors.lookupTable());
+
+        long time = System.nanoTime();
+        for (String query : queries)
+            basic.wordsNearest(query, 10);
+        log.info("BasicModelUtils: {} us/query", (System.nanoTime() - time) / 1000 / queries.size());
+
+        HnswModelUtils<VocabWord> hnsw = new HnswModelUtils<>();
+        hnsw.init(vectors.lookupTable());
+        hnsw.buildIndex();
+
+        for (int ef : new int[] {16, 32, 64, 128, 256}) {
+            hnsw.setEfSearch(ef);
+
+            time = System.nanoTime();
+            for (String query : queries)
+                hnsw.wordsNearest(query, 10);
+            long latency = (System.nanoTime() - time) / 1000 / queries.size();
+
+            log.info("HnswModelUtils, efSearch {}: recall@10 {}, {} us/query", ef, hnsw.recall(basic, queries, 10), latency);
+        }
+    }
+
+    private static List<String> queries(WordVectors vectors, int count) {
+        Random random = new Random(12);
+        List<String> queries = new ArrayList<>();
+        for (int e = 0; e < count; e++)
+            queries.add("w" + random.nextInt(vectors.vocab().numWords()));
+        return queries;
+    }
+
+    private static WordVectors buildModel(int numWords, int dimension, int clusters) {
+        AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        for (int e = 0; e < numWords; e++) {
+            String label = "w" + e;
+            vocab.addToken(new VocabWord(1.0, label));
+            vocab.addWordToIndex(e, label);
+        }
+
+        Random random = new Random(119);
+        float[][] centers = new float[clusters][dimension];
+        for (float[] center : centers)
+            for (int i = 0; i < dimension; i++)
+                center[i] = (float) random.nextGaussian();
+
+        float[][] weights = new float[numWords][dimension];
+        for (float[] row : weights) {
+            float[] center = centers[random.nextInt(clusters)];
+            for (int i = 0; i < dimension; i++)
+                row[i] = center[i] + (float) random.nextGaussian() * 0.5f;
+        }
+
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                        .vectorLength(dimension).cache(vocab).seed(119).build();
+        table.setSyn0(Nd4j.create(weights));
+
+        return WordVectorSerializer.fromTableAndVocab(table, vocab);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.mapped;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MappedModelFileTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testVocabulary() throws Exception {
+        AbstractCache<VocabWord> vocab = buildVocab(1000);
+        File file = testDir.newFile("model.bin");
+        MappedModelFile.write(vocab, 8, vectors(1000, 8), file);
+
+        assertTrue(MappedModelFile.isMappedModel(file));
+
+        MappedModelFile model = MappedModelFile.open(file);
+        MappedVocabCache cache = model.getVocabCache();
+
+        assertEquals(1000, model.getNumWords());
+        assertEquals(8, model.getVectorLength());
+        assertEquals(vocab.totalWordOccurrences(), cache.totalWordOccurrences());
+        assertEquals(vocab.totalNumberOfDocs(), cache.totalNumberOfDocs());
+        assertEquals(vocab.words().size(), cache.words().size());
+
+        for (String word : vocab.words()) {
+            assertEquals(word, vocab.indexOf(word), cache.indexOf(word));
+            assertEquals(word, vocab.wordFrequency(word), cache.wordFrequency(word));
+            assertEquals(word, vocab.docAppearedIn(word), cache.docAppearedIn(word));
+            assertEquals(word, cache.wordAtIndex(cache.indexOf(word)));
+
+            VocabWord element = cache.wordFor(vocab.wordFor(word).getStorageId());
+            assertNotNull(word, element);
+            assertEquals(word, element.getLabel());
+        }
+
+        assertEquals(-2, cache.indexOf("absent"));
+        assertEquals(-1, cache.docAppearedIn("absent"));
+        assertFalse(cache.containsWord("absent"));
+        assertNull(cache.wordFor("absent"));
+        assertNull(cache.wordAtIndex(1000));
+    }
+
+    @Test
+    public void testVectors() throws Exception {
+        AbstractCache<VocabWord> vocab = buildVocab(500);
+        File file = testDir.newFile("model.bin");
+        MappedModelFile.write(vocab, 13, vectors(500, 13), file);
+
+        MappedVectorStorage storage = MappedModelFile.open(file).getStorage();
+        assertEquals(500, storage.size());
+
+        Iterator<float[]> expected = vectors(500, 13);
+        for (int i = 0; i < 500; i++)
+            assertArrayEquals(expected.next(), storage.getVector(i, null), 0.0f);
+
+        assertFalse(storage.containsKey(500));
+        assertNull(storage.get(500));
+    }
+
+    @Test
+    public void testWrongNumberOfVectors() throws Exception {
+        File file = testDir.newFile("model.bin");
+        try {
+            MappedModelFile.write(buildVocab(10), 4, vectors(9, 4), file);
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStaticModel() throws Exception {
+        AbstractCache<VocabWord> vocab = buildVocab(100);
+        File file = testDir.newFile("model.bin");
+        MappedModelFile.write(vocab, 10, vectors(100, 10), file);
+
+        WordVectors vectors = WordVectorSerializer.loadStaticModel(file);
+        assertEquals(100, vectors.vocabSize());
+        assertEquals(10, vectors.vectorSize());
+
+        // StaticWord2Vec can be written back into the same format
+        File copy = testDir.newFile("copy.bin");
+        WordVectorSerializer.writeMappedModel(vectors, copy);
+        WordVectors restored = WordVectorSerializer.loadMappedModel(copy);
+
+        for (String word : vocab.words())
+            assertEquals(vectors.getWordVectorMatrix(word), restored.getWordVectorMatrix(word));
+    }
+
+    private static AbstractCache<VocabWord> buildVocab(int numWords) {
+        AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        Random random = new Random(119);
+        for (int e = 0; e < numWords; e++) {
+            // non-ascii labels check unsigned byte ordering
+            VocabWord word = new VocabWord(1 + random.nextInt(100), (e % 7 == 0 ? "é" : "w") + e);
+            word.setSequencesCount(1 + random.nextInt(10));
+            vocab.addToken(word);
+        }
+        vocab.incrementTotalDocCount(17);
+
+        Huffman huffman = new Huffman(vocab.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(vocab);
+
+        return vocab;
+    }
+
+    private static Iterator<float[]> vectors(int numWords, int vectorLength) {
+        Random random = new Random(12);
+        List<float[]> result = new ArrayList<>();
+        for (int e = 0; e < numWords; e++) {
+            float[] row = new float[vectorLength];
+            for (int i = 0; i < vectorLength; i++)
+                row[i] = random.nextFloat();
+            result.add(row);
+        }
+
+        return result.iterator();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.offheap;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceIterator;
+import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.VocabConstructor;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OffHeapVocabCacheTest extends BaseDL4JTest {
+
+    @Test
+    public void testHuffman() {
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+
+        assertEquals(3, cache.numWords());
+        assertEquals(6, cache.totalWordOccurrences());
+
+        Huffman huffman = new Huffman(cache.tokens());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        assertEquals("tester", cache.wordAtIndex(0));
+        assertEquals("test", cache.wordAtIndex(1));
+        assertEquals("word", cache.wordAtIndex(2));
+        assertEquals(2, cache.indexOf("word"));
+        assertEquals(-2, cache.indexOf("absent"));
+
+        VocabWord word = cache.tokenFor("tester");
+        assertEquals(0, word.getIndex());
+        assertSame(word, cache.elementAtIndex(0));
+        assertFalse(word.getCodes().isEmpty());
+    }
+
+    @Test
+    public void testCountersAgainstAbstractCache() {
+        AbstractCache<VocabWord> reference = new AbstractCache.Builder<VocabWord>().build();
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>(0, 1);
+
+        // enough distinct words to force every segment to grow a few times
+        Random random = new Random(119);
+        for (int i = 0; i < 200000; i++) {
+            String label = "w" + random.nextInt(20000);
+            for (VocabCache<VocabWord> c : Arrays.<VocabCache<VocabWord>>asList(reference, cache)) {
+                if (!c.containsWord(label)) {
+                    VocabWord element = new VocabWord(1.0, label);
+                    element.setSequencesCount(1);
+                    c.addToken(element);
+                } else {
+                    c.incrementWordCount(label);
+                    if (i % 3 == 0)
+                        c.incrementDocCount(label, 1);
+                }
+            }
+        }
+
+        assertCachesEqual(reference, cache);
+
+        // materialized elements keep counting
+        VocabWord word = cache.wordFor("w1");
+        double frequency = word.getElementFrequency();
+        cache.incrementWordCount("w1", 5);
+        assertEquals(frequency + 5, word.getElementFrequency(), 1e-5);
+        assertEquals((int) frequency + 5, cache.wordFrequency("w1"));
+    }
+
+    @Test
+    public void testRemoval() {
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+
+        cache.removeElement("tester");
+        assertEquals(2, cache.numWords());
+        assertEquals(3, cache.totalWordOccurrences());
+        assertFalse(cache.containsWord("tester"));
+        assertNull(cache.wordFor("tester"));
+        assertEquals(-1, cache.docAppearedIn("tester"));
+
+        try {
+            cache.removeElement("tester");
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        cache.addToken(new VocabWord(4.0, "tester"));
+        assertEquals(3, cache.numWords());
+        assertEquals(4, cache.wordFrequency("tester"));
+        assertEquals(7, cache.totalWordOccurrences());
+
+        VocabWord special = new VocabWord(1.0, "special");
+        special.setSpecial(true);
+        cache.addToken(special);
+
+        assertEquals(2, cache.removeInfrequent(3));
+        assertEquals(new HashSet<>(Arrays.asList("tester", "special")), new HashSet<>(cache.words()));
+        assertEquals(5, cache.totalWordOccurrences());
+    }
+
+    @Test
+    public void testImportVocabulary() {
+        AbstractCache<VocabWord> reference = new AbstractCache.Builder<VocabWord>().build();
+        OffHeapVocabCache<VocabWord> target = new OffHeapVocabCache<>();
+
+        Random random = new Random(12);
+        for (int c = 0; c < 3; c++) {
+            AbstractCache<VocabWord> referenceSource = new AbstractCache.Builder<VocabWord>().build();
+            OffHeapVocabCache<VocabWord> source = new OffHeapVocabCache<>();
+            for (int i = 0; i < 5000; i++) {
+                String label = "w" + random.nextInt(3000);
+                int frequency = 1 + random.nextInt(5);
+                referenceSource.addToken(new VocabWord(frequency, label));
+                source.addToken(new VocabWord(frequency, label));
+            }
+            referenceSource.incrementTotalDocCount(10);
+            source.incrementTotalDocCount(10);
+
+            reference.importVocabulary(referenceSource);
+            target.importVocabulary(source);
+        }
+
+        // heap-backed sources are accepted as well
+        AbstractCache<VocabWord> heapSource = new AbstractCache.Builder<VocabWord>().build();
+        heapSource.addToken(new VocabWord(2.0, "extra"));
+        heapSource.addToken(new VocabWord(2.0, "w1"));
+        reference.importVocabulary(heapSource);
+        target.importVocabulary(heapSource);
+
+        assertCachesEqual(reference, target);
+        assertEquals(reference.totalNumberOfDocs(), target.totalNumberOfDocs());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+        cache.incrementTotalDocCount(3);
+
+        Huffman huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        AbstractCache<VocabWord> restored = AbstractCache.fromJson(cache.toJson());
+        assertCachesEqual(restored, cache);
+        assertEquals(3, restored.totalNumberOfDocs());
+        for (int i = 0; i < 3; i++)
+            assertEquals(cache.wordAtIndex(i), restored.wordAtIndex(i));
+    }
+
+    @Test
+    public void testClose() {
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>(16, 1);
+        for (int e = 0; e < 10000; e++)
+            cache.addToken(new VocabWord(1.0, "word_" + e));
+
+        assertEquals(10000, cache.numWords());
+        assertEquals("word_42", cache.wordFor("word_42").getLabel());
+        assertTrue(cache.getAllocatedBytes() > 0);
+
+        cache.close();
+        assertEquals(0, cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void testVocabConstructor() {
+        List<String> sentences = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int j = 0; j < 20; j++)
+                builder.append("word").append((int) Math.abs(random.nextGaussian() * 100)).append(' ');
+            sentences.add(builder.toString());
+        }
+
+        VocabCache<VocabWord> reference = new AbstractCache.Builder<VocabWord>().build();
+        buildVocabulary(sentences, reference);
+
+        OffHeapVocabCache<VocabWord> cache = new OffHeapVocabCache<>();
+        buildVocabulary(sentences, cache);
+
+        assertTrue(reference.numWords() > 0);
+        assertCachesEqual(reference, cache);
+        assertEquals(reference.totalNumberOfDocs(), cache.totalNumberOfDocs());
+        for (int i = 0; i < reference.numWords(); i++)
+            assertEquals(reference.elementAtIndex(i).getElementFrequency(), cache.elementAtIndex(i).getElementFrequency(), 1e-5);
+    }
+
+    private static void buildVocabulary(List<String> sentences, VocabCache<VocabWord> target) {
+        SentenceTransformer transformer = new SentenceTransformer.Builder()
+                        .iterator(new CollectionSentenceIterator(sentences))
+                        .tokenizerFactory(new DefaultTokenizerFactory()).build();
+
+        AbstractSequenceIterator<VocabWord> iterator = new AbstractSequenceIterator.Builder<>(transformer).build();
+
+        VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>().addSource(iterator, 3)
+                        .setTargetVocabCache(target).build();
+
+        constructor.buildJointVocabulary(false, true);
+    }
+
+    private static void assertCachesEqual(VocabCache<VocabWord> expected, VocabCache<VocabWord> actual) {
+        assertEquals(expected.numWords(), actual.numWords());
+        assertEquals(expected.totalWordOccurrences(), actual.totalWordOccurrences());
+        assertEquals(new HashSet<>(expected.words()), new HashSet<>(actual.words()));
+
+        for (String word : expected.words()) {
+            assertEquals(word, expected.wordFrequency(word), actual.wordFrequency(word));
+            assertEquals(word, expected.docAppearedIn(word), actual.docAppearedIn(word));
+            // Huffman order of elements with equal frequencies depends on iteration order
+            assertEquals(word, expected.indexOf(word) >= 0, actual.indexOf(word) >= 0);
+        }
+    }
+}
@@ -31,7 +31,9 @@ import org.deeplearning4j.nn.conf.layers.Layer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.conf.layers.recurrent.LastTimeStep;
 import org.deeplearning4j.nn.conf.layers.samediff.SameDiffVertex;
+import org.deeplearning4j.nn.conf.memory.ActivationLivenessAnalysis;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
 import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
 import org.deeplearning4j.nn.conf.serde.JsonMappers;
 import org.deeplearning4j.nn.weights.IWeightInit;
@@ -653,6 +655,20 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
      * @return Memory report for the network
      */
     public NetworkMemoryReport getMemoryReport(InputType... inputTypes) {
+        return getMemoryReport((Collection<String>) null, inputTypes);
+    }
+
+    /**
+     * Get a {@link MemoryReport} for the given computation graph configuration, including activation liveness
+     * reports (see {@link ActivationLivenessAnalysis}) that estimate the effect of recomputing the activations of the
+     * given vertices during backprop instead of keeping them from the forward pass (gradient checkpointing).
+     * This is an estimate only: ComputationGraph does not recompute activations
+     *
+     * @param recomputedVertices Vertices assumed to be recomputed during backprop. May be null
+     * @param inputTypes         Input types for the network
+     * @return Memory report for the network
+     */
+    public NetworkMemoryReport getMemoryReport(Collection<String> recomputedVertices, InputType... inputTypes) {
 
 
         Map<String, MemoryReport> memoryReportMap = new LinkedHashMap<>();
@@ -697,8 +713,18 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             memoryReportMap.put(s, mr);
         }
 
-        return new NetworkMemoryReport(memoryReportMap, ComputationGraphConfiguration.class, "ComputationGraph",
-                inputTypes);
+        Map<String, Long> elementsPerExample = new HashMap<>();
+        for (Map.Entry<String, InputType> e : vertexOutputs.entrySet()) {
+            elementsPerExample.put(e.getKey(), e.getValue().arrayElementsPerExample());
+        }
+
+        NetworkMemoryReport report = new NetworkMemoryReport(memoryReportMap, ComputationGraphConfiguration.class,
+                "ComputationGraph", inputTypes);
+        report.setInferenceLiveness(ActivationLivenessAnalysis.analyze(MemoryUseMode.INFERENCE, topologicalOrdering, vertexInputs,
+                elementsPerExample, networkInputs, networkOutputs, null));
+        report.setTrainingLiveness(ActivationLivenessAnalysis.analyze(MemoryUseMode.TRAINING, topologicalOrdering, vertexInputs,
+                elementsPerExample, networkInputs, networkOutputs, recomputedVertices));
+        return report;
     }
 
     @Data
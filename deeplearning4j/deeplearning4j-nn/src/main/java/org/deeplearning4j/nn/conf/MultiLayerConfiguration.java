@@ -25,8 +25,10 @@ import org.deeplearning4j.nn.conf.distribution.Distribution;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.*;
 import org.deeplearning4j.nn.conf.layers.recurrent.LastTimeStep;
+import org.deeplearning4j.nn.conf.memory.ActivationLivenessAnalysis;
 import org.deeplearning4j.nn.conf.memory.LayerMemoryReport;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
 import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
 import org.deeplearning4j.nn.conf.serde.JsonMappers;
 import org.deeplearning4j.nn.weights.IWeightInit;
@@ -415,14 +417,38 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
      * @return Memory report for the network
      */
     public NetworkMemoryReport getMemoryReport(InputType inputType) {
+        return getMemoryReport(inputType, null);
+    }
+
+    /**
+     * Get a {@link MemoryReport} for the given MultiLayerConfiguration, including activation liveness reports
+     * (see {@link ActivationLivenessAnalysis}) that estimate the effect of recomputing the activations of the given
+     * layers during backprop instead of keeping them from the forward pass (gradient checkpointing).
+     * This is an estimate only: MultiLayerNetwork does not recompute activations
+     *
+     * @param inputType          Input types for the network
+     * @param recomputedLayers   Names of the layers assumed to be recomputed during backprop (layer index for
+     *                           unnamed layers).
+     *                           May be null
+     * @return Memory report for the network
+     */
+    public NetworkMemoryReport getMemoryReport(InputType inputType, Collection<String> recomputedLayers) {
 
         Map<String, MemoryReport> memoryReportMap = new LinkedHashMap<>();
+        //Liveness of a MultiLayerNetwork is a chain: layer i consumes the activations of layer i-1
+        String inputName = "__network_input__";
+        List<String> order = new ArrayList<>();
+        Map<String, List<String>> layerInputs = new HashMap<>();
+        Map<String, Long> elementsPerExample = new HashMap<>();
+        order.add(inputName);
         int nLayers = confs.size();
         for (int i = 0; i < nLayers; i++) {
             String layerName = confs.get(i).getLayer().getLayerName();
             if (layerName == null) {
                 layerName = String.valueOf(i);
             }
+            layerInputs.put(layerName, Collections.singletonList(order.get(order.size() - 1)));
+            order.add(layerName);
 
             //Pass input type through preprocessor, if necessary
             InputPreProcessor preproc = getInputPreProcess(i);
@@ -435,9 +461,18 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             memoryReportMap.put(layerName, report);
 
             inputType = confs.get(i).getLayer().getOutputType(i, inputType);
+            elementsPerExample.put(layerName, inputType.arrayElementsPerExample());
         }
 
-        return new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class, "MultiLayerNetwork", inputType);
+        NetworkMemoryReport report = new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class,
+                        "MultiLayerNetwork", inputType);
+        List<String> outputs = nLayers == 0 ? Collections.<String>emptyList()
+                        : Collections.singletonList(order.get(order.size() - 1));
+        report.setInferenceLiveness(ActivationLivenessAnalysis.analyze(MemoryUseMode.INFERENCE, order, layerInputs,
+                        elementsPerExample, Collections.singletonList(inputName), outputs, null));
+        report.setTrainingLiveness(ActivationLivenessAnalysis.analyze(MemoryUseMode.TRAINING, order, layerInputs,
+                        elementsPerExample, Collections.singletonList(inputName), outputs, recomputedLayers));
+        return report;
     }
 
     /**
@@ -0,0 +1,200 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.conf.memory;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.workspace.ArrayType;
+
+import java.util.*;
+
+/**
+ * Liveness analysis of network activations, used for memory reports only.<br>
+ * Given the topological order of the network, the inputs of each vertex and the size of each vertex output,
+ * this class computes the interval of execution steps during which each activation must be kept, and lays the
+ * buffers out in a single hypothetical arena so that buffers with disjoint intervals share memory (greedy, largest
+ * buffers first). The peak of this layout is the activation memory a liveness-based allocator would need.<br>
+ * Note that MultiLayerNetwork and ComputationGraph do not allocate activations according to this layout: the
+ * analysis is a lower bound to compare the actual workspace sizes against.<br>
+ * <br>
+ * Steps 0..N-1 are the forward pass (in topological order); for training, steps N..2N-1 are the backward pass,
+ * vertex at position i being backpropagated at step 2N-1-i.<br>
+ * For inference, an activation is live from its producer until its last consumer (network outputs: until the end).<br>
+ * For training, an activation is live until the backward step of its last consumer, and the gradient with respect
+ * to an activation is live from the backward step of its first consumer until the backward step of its producer.<br>
+ * The analysis can also estimate the effect of gradient checkpointing: vertices marked as recomputed are assumed
+ * to release their activations after the last forward use, and to recompute them right before the first backward
+ * use. DL4J does not implement this recomputation; the numbers only show what checkpointing these vertices
+ * would save.
+ */
+public class ActivationLivenessAnalysis {
+
+    private ActivationLivenessAnalysis() {
+    }
+
+    /**
+     * @param memoryUseMode      Inference or training
+     * @param topologicalOrder   All vertices (including network inputs) in topological order
+     * @param vertexInputs       Inputs of each vertex
+     * @param elementsPerExample Size of the output activations of each vertex, in elements per example
+     * @param networkInputs      Network inputs - not part of the analysis, as these arrays are provided by the user
+     * @param networkOutputs     Network outputs
+     * @param recomputed         Vertices assumed to be recomputed during the backward pass instead of keeping their
+     *                           activations. Ignored for inference. May be null
+     * @return Liveness report
+     */
+    public static ActivationLivenessReport analyze(@NonNull MemoryUseMode memoryUseMode, @NonNull List<String> topologicalOrder,
+                    @NonNull Map<String, List<String>> vertexInputs, @NonNull Map<String, Long> elementsPerExample,
+                    @NonNull Collection<String> networkInputs, @NonNull Collection<String> networkOutputs,
+                    Collection<String> recomputed) {
+        boolean training = memoryUseMode == MemoryUseMode.TRAINING;
+        int n = topologicalOrder.size();
+
+        Map<String, Integer> position = new HashMap<>();
+        for (int i = 0; i < n; i++)
+            position.put(topologicalOrder.get(i), i);
+
+        if (recomputed != null) {
+            for (String s : recomputed) {
+                if (!position.containsKey(s))
+                    throw new IllegalArgumentException("Cannot recompute vertex \"" + s + "\": no vertex with this name exists");
+            }
+        }
+
+        Map<String, List<String>> consumers = new HashMap<>();
+        for (String s : topologicalOrder) {
+            List<String> inputs = vertexInputs.get(s);
+            if (inputs == null)
+                continue;
+            for (String in : inputs) {
+                if (!consumers.containsKey(in))
+                    consumers.put(in, new ArrayList<String>());
+                consumers.get(in).add(s);
+            }
+        }
+
+        List<ActivationLivenessReport.Buffer> buffers = new ArrayList<>();
+        List<String> recomputedVertices = new ArrayList<>();
+        for (String s : topologicalOrder) {
+            if (networkInputs.contains(s))
+                continue;
+
+            int pos = position.get(s);
+            long size = elementsPerExample.containsKey(s) ? elementsPerExample.get(s) : 0L;
+            boolean isOutput = networkOutputs.contains(s);
+            List<String> c = consumers.containsKey(s) ? consumers.get(s) : Collections.<String>emptyList();
+
+            int lastForward = pos;
+            int firstBackward = Integer.MAX_VALUE;
+            int lastBackward = -1;
+            for (String consumer : c) {
+                int cPos = position.get(consumer);
+                lastForward = Math.max(lastForward, cPos);
+                firstBackward = Math.min(firstBackward, backwardStep(n, cPos));
+                lastBackward = Math.max(lastBackward, backwardStep(n, cPos));
+            }
+
+            if (!training) {
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, false, size, pos,
+                                isOutput ? n - 1 : lastForward, 0));
+                continue;
+            }
+
+            if (isOutput) {
+                //Output activations are needed for the loss calculation, at the start of the backward pass
+                lastBackward = Math.max(lastBackward, backwardStep(n, pos));
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, false, size, pos, lastBackward, 0));
+            } else if (c.isEmpty()) {
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, false, size, pos, pos, 0));
+            } else if (recomputed != null && recomputed.contains(s)) {
+                //Release after the forward pass; recompute right before the first consumer is backpropagated.
+                //Inputs of this vertex are still live at that point, as this vertex is backpropagated later
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, false, size, pos, lastForward, 0));
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, true, size, firstBackward, lastBackward, 0));
+                recomputedVertices.add(s);
+            } else {
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATIONS, false, size, pos, lastBackward, 0));
+            }
+
+            if (!c.isEmpty()) {
+                //Gradient w.r.t. the activations: accumulated from the consumers, used when this vertex is backpropagated
+                buffers.add(new ActivationLivenessReport.Buffer(s, ArrayType.ACTIVATION_GRAD, false, size, firstBackward,
+                                backwardStep(n, pos), 0));
+            }
+        }
+
+        long total = 0;
+        for (ActivationLivenessReport.Buffer b : buffers)
+            total += b.getElementsPerExample();
+
+        long peak = assignOffsets(buffers);
+        return new ActivationLivenessReport(memoryUseMode, training ? 2 * n : n, buffers, recomputedVertices, peak, total);
+    }
+
+    private static int backwardStep(int n, int position) {
+        return 2 * n - 1 - position;
+    }
+
+    /**
+     * Assign offsets to the buffers: largest buffers first, each one placed in the lowest gap that doesn't overlap
+     * (both in time and in the arena) with any buffer already placed
+     *
+     * @return Size of the arena
+     */
+    protected static long assignOffsets(List<ActivationLivenessReport.Buffer> buffers) {
+        List<ActivationLivenessReport.Buffer> sorted = new ArrayList<>(buffers);
+        Collections.sort(sorted, new Comparator<ActivationLivenessReport.Buffer>() {
+            @Override
+            public int compare(ActivationLivenessReport.Buffer o1, ActivationLivenessReport.Buffer o2) {
+                int c = Long.compare(o2.getElementsPerExample(), o1.getElementsPerExample());
+                return c != 0 ? c : Integer.compare(o1.getFirstStep(), o2.getFirstStep());
+            }
+        });
+
+        Comparator<ActivationLivenessReport.Buffer> byOffset = new Comparator<ActivationLivenessReport.Buffer>() {
+            @Override
+            public int compare(ActivationLivenessReport.Buffer o1, ActivationLivenessReport.Buffer o2) {
+                return Long.compare(o1.getOffset(), o2.getOffset());
+            }
+        };
+
+        List<ActivationLivenessReport.Buffer> placed = new ArrayList<>();
+        long peak = 0;
+        for (ActivationLivenessReport.Buffer b : sorted) {
+            List<ActivationLivenessReport.Buffer> live = new ArrayList<>();
+            for (ActivationLivenessReport.Buffer p : placed) {
+                if (p.overlaps(b))
+                    live.add(p);
+            }
+            Collections.sort(live, byOffset);
+
+            long offset = 0;
+            for (ActivationLivenessReport.Buffer p : live) {
+                if (p.getOffset() - offset >= b.getElementsPerExample())
+                    break;
+                offset = Math.max(offset, p.getOffset() + p.getElementsPerExample());
+            }
+
+            b.setOffset(offset);
+            placed.add(b);
+            peak = Math.max(peak, offset + b.getElementsPerExample());
+        }
+
+        return peak;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.conf.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.deeplearning4j.nn.workspace.ArrayType;
+import org.nd4j.linalg.api.buffer.DataType;
+
+import java.util.List;
+
+/**
+ * Liveness report for the activations (and, for training, activation gradients) of a network.<br>
+ * Each buffer has a liveness interval over the execution steps of the network (forward pass steps followed by
+ * backward pass steps in reverse topological order), and an offset in a single hypothetical arena. Buffers with
+ * non-overlapping intervals share the same region of the arena, so the peak live size is usually much lower than the
+ * sum of all activation sizes.<br>
+ * This is a report only: networks do not allocate their activations according to it. Compare it with
+ * {@link NetworkMemoryReport#getActivationWorkspaceBytes()} to see how far the workspaces are from the lower bound.<br>
+ * All sizes and offsets are expressed in elements per example: activation sizes are linear in the minibatch size,
+ * hence the same report holds for any minibatch size and data type.
+ * See {@link ActivationLivenessAnalysis}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivationLivenessReport {
+
+    private MemoryUseMode memoryUseMode;
+    private int numSteps;
+    private List<Buffer> buffers;
+    private List<String> recomputedVertices;
+    private long peakElementsPerExample;
+    private long totalElementsPerExample;
+
+    /**
+     * Peak size of the activations of the network that are live at the same time, in bytes
+     *
+     * @param minibatchSize Minibatch size
+     * @param dataType      Data type of the activations
+     */
+    public long getPeakLiveBytes(int minibatchSize, @NonNull DataType dataType) {
+        return peakElementsPerExample * minibatchSize * dataType.width();
+    }
+
+    /**
+     * Memory for the activations of the network without any buffer reuse (i.e., every activation in its own
+     * region), in bytes
+     *
+     * @param minibatchSize Minibatch size
+     * @param dataType      Data type of the activations
+     */
+    public long getTotalBytes(int minibatchSize, @NonNull DataType dataType) {
+        return totalElementsPerExample * minibatchSize * dataType.width();
+    }
+
+    /**
+     * Single buffer of the report: the output activations of a vertex (or their gradient, for training), live
+     * from step {@code firstStep} to step {@code lastStep} inclusive
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Buffer {
+        private String vertexName;
+        private ArrayType arrayType;
+        private boolean recomputed;
+        private long elementsPerExample;
+        private int firstStep;
+        private int lastStep;
+        private long offset;
+
+        public boolean overlaps(Buffer other) {
+            return firstStep <= other.lastStep && other.firstStep <= lastStep;
+        }
+    }
+}
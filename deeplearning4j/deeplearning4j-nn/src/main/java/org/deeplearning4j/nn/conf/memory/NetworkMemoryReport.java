@@ -21,10 +21,14 @@ package org.deeplearning4j.nn.conf.memory;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import org.deeplearning4j.nn.conf.CacheMode;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.shade.jackson.annotation.JsonIgnore;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.text.DecimalFormat;
@@ -41,7 +45,7 @@ import java.util.Map;
  * @author Alex Black
  */
 @Getter
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, exclude = {"inferenceLiveness", "trainingLiveness"})
 public class NetworkMemoryReport extends MemoryReport {
 
     private static final DecimalFormat BYTES_FORMAT = new DecimalFormat("#,###");
@@ -51,6 +55,16 @@ public class NetworkMemoryReport extends MemoryReport {
     private final String modelName;
     private final InputType[] networkInputTypes;
 
+    /**
+     * Activation liveness reports (see {@link ActivationLivenessAnalysis}). Not serialized; may be null
+     */
+    @Setter
+    @JsonIgnore
+    private ActivationLivenessReport inferenceLiveness;
+    @Setter
+    @JsonIgnore
+    private ActivationLivenessReport trainingLiveness;
+
     public NetworkMemoryReport(
                     @NonNull @JsonProperty("layerAndVertexReports") Map<String, MemoryReport> layerAndVertexReports,
                     @NonNull @JsonProperty("modelClass") Class<?> modelClass,
@@ -128,6 +142,75 @@ public class NetworkMemoryReport extends MemoryReport {
         return totalBytes;
     }
 
+    /**
+     * Get the activation liveness report for the given memory use mode
+     *
+     * @param memoryUseMode Inference or training
+     * @return Activation liveness report
+     * @throws IllegalStateException if no liveness report is available for this report
+     */
+    public ActivationLivenessReport getActivationLivenessReport(@NonNull MemoryUseMode memoryUseMode) {
+        ActivationLivenessReport r = memoryUseMode == MemoryUseMode.INFERENCE ? inferenceLiveness : trainingLiveness;
+        if (r == null) {
+            throw new IllegalStateException("No activation liveness report available for memory use mode " + memoryUseMode);
+        }
+        return r;
+    }
+
+    /**
+     * Peak memory of the activations (plus activation gradients, for training) that are live at the same time -
+     * i.e., the activation memory needed if buffers were reused between activations that are not live at the same
+     * time. Networks do not currently allocate activations this way; this is a lower bound only
+     *
+     * @param minibatchSize Minibatch size
+     * @param memoryUseMode Inference or training
+     * @param dataType      Data type of the activations
+     * @return Peak live size, in bytes
+     */
+    public long getPeakLiveActivationBytes(int minibatchSize, @NonNull MemoryUseMode memoryUseMode,
+                    @NonNull DataType dataType) {
+        return getActivationLivenessReport(memoryUseMode).getPeakLiveBytes(minibatchSize, dataType);
+    }
+
+    /**
+     * Compare the peak live activation memory with the actual activation memory used by the network.
+     * See {@link #getActivationWorkspaceBytes()}
+     *
+     * @param actualBytes   Actual activation memory, in bytes
+     * @param minibatchSize Minibatch size the network was executed with
+     * @param memoryUseMode Inference or training
+     * @param dataType      Data type of the activations
+     * @return Human readable comparison
+     */
+    public String peakLiveVsActual(long actualBytes, int minibatchSize, @NonNull MemoryUseMode memoryUseMode,
+                    @NonNull DataType dataType) {
+        ActivationLivenessReport r = getActivationLivenessReport(memoryUseMode);
+        long peakLive = r.getPeakLiveBytes(minibatchSize, dataType);
+        long total = r.getTotalBytes(minibatchSize, dataType);
+        return "Activation memory (" + memoryUseMode + ", minibatch " + minibatchSize + ", " + dataType + "): peak live "
+                        + formatBytes(peakLive) + " bytes, without reuse " + formatBytes(total) + " bytes, actual "
+                        + formatBytes(actualBytes) + " bytes"
+                        + (actualBytes > 0 ? String.format(" (peak live/actual = %.2f)", peakLive / (double) actualBytes) : "");
+    }
+
+    /**
+     * Total size of the activation workspaces (WS_ALL_LAYERS_ACT, WS_LAYER_ACT_*) currently allocated for this
+     * thread - i.e., the actual activation memory of the last MultiLayerNetwork or ComputationGraph executed in
+     * this thread with workspaces enabled
+     *
+     * @return Size of the activation workspaces, in bytes
+     */
+    public static long getActivationWorkspaceBytes() {
+        long bytes = 0;
+        for (MemoryWorkspace ws : Nd4j.getWorkspaceManager().getAllWorkspacesForCurrentThread()) {
+            String id = ws.getId();
+            if (id != null && (id.equals("WS_ALL_LAYERS_ACT") || id.startsWith("WS_LAYER_ACT_"))) {
+                bytes += ws.getCurrentSize();
+            }
+        }
+        return bytes;
+    }
+
     @Override
     public String toString() {
 
@@ -164,6 +247,12 @@ public class NetworkMemoryReport extends MemoryReport {
 
         appendFixedPlusVariable(sb, "  Inference Memory (FP32)             ", fixedMemBytes, perEx);
         appendFixedPlusVariable(sb, "  Training Memory (FP32):             ", fixedMemBytesTrain, perExTrain);
+        if (inferenceLiveness != null) {
+            appendFixedPlusVariable(sb, "  Peak Live Inference Activations:   ", 0, inferenceLiveness.getPeakLiveBytes(1, DataType.FLOAT));
+        }
+        if (trainingLiveness != null) {
+            appendFixedPlusVariable(sb, "  Peak Live Training Activations:    ", 0, trainingLiveness.getPeakLiveBytes(1, DataType.FLOAT));
+        }
 
         sb.append("  Inference Memory Breakdown (FP32):\n");
         appendBreakDown(sb, MemoryUseMode.INFERENCE, CacheMode.NONE, DataType.FLOAT);
@@ -22,17 +22,38 @@ import org.nd4j.shade.guava.io.Files;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.bytedeco.javacpp.BytePointer;
+import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 /**
  *
@@ -82,14 +103,32 @@ import java.util.concurrent.TimeUnit;
  * {@code .saveEveryEpoch().saveEvery(15, TimeUnit.MINUTES, true)}<br>
  * Note that is this last example, the <i>sinceLast</i> parameter is true. This means the 15-minute counter will be
  * reset any time a model is saved.<br>
+ * <br>
+ * <b>Asynchronous saving</b>: with {@code .asyncSaving(true)}, parameters and updater state are copied to staging
+ * buffers on the training thread, and written to disk by a background thread - so training is only blocked for the
+ * duration of the copy. At most one checkpoint is pending at any time: if the previous checkpoint is still being
+ * written when the next one is due, the training thread waits for it. A checkpoint is only recorded (and returned by
+ * {@link #lastCheckpoint()}) once it has been fully written. Use {@link #awaitPendingCheckpoint()} before loading the
+ * most recent checkpoint; a pending checkpoint is also completed before the JVM exits.<br>
+ * <b>Sharded saving</b>: with {@code .shardedSaving(true)}, parameters are split into one shard per layer and updater
+ * state into fixed size blocks. Each shard is stored once in the "shards" subdirectory, named by its content hash, and
+ * the checkpoint file only holds the configuration and the list of shards. Shards that don't change between
+ * checkpoints (such as the parameters of frozen layers) are not written again. Sharded checkpoints must be loaded
+ * using the CheckpointListener load methods, not ModelSerializer.<br>
+ * Stall time and bytes written for each checkpoint are available from {@link #getCheckpointStats()}.
  *
  * @author Alex Black
  */
 @Slf4j
-public class CheckpointListener extends BaseTrainingListener implements Serializable {
+public class CheckpointListener extends BaseTrainingListener implements Serializable, Closeable {
 
     private enum KeepMode {ALL, LAST, LAST_AND_EVERY};
     private static final String[] MODEL_TYPES = new String[]{"MultiLayerNetwork", "ComputationGraph", "Model"};
+    private static final String SHARD_DIR = "shards";
+    private static final String SHARD_MANIFEST = "shards.txt";
+    private static final String PARAMS = "params";
+    private static final String UPDATER = "updater";
+    private static final long UPDATER_SHARD_SIZE = 1 << 22;
 
     private File rootDir;
     private KeepMode keepMode;
@@ -97,6 +136,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private int keepEvery;
     private boolean logSaving;
     private boolean deleteExisting;
+    private boolean asyncSaving;
+    private boolean shardedSaving;
 
     private Integer saveEveryNEpochs;
     private Integer saveEveryNIterations;
@@ -109,11 +150,19 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private int lastCheckpointNum = -1;
     private File checkpointRecordFile;
 
-    private Checkpoint lastCheckpoint;
+    private volatile Checkpoint lastCheckpoint;
     private long startTime = -1;
     private int startIter = -1;
     private Long lastSaveEveryMsNoSinceLast;
 
+    private transient ExecutorService writer;
+    private transient Thread shutdownHook;
+    private transient Future<?> pendingWrite;
+    private transient volatile Throwable asyncError;
+    private transient INDArray stagingParams;
+    private transient INDArray stagingUpdaterState;
+    private transient List<CheckpointStats> checkpointStats;
+
     private CheckpointListener(Builder builder){
         this.rootDir = builder.rootDir;
         this.keepMode = builder.keepMode;
@@ -121,6 +170,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         this.keepEvery = builder.keepEvery;
         this.logSaving = builder.logSaving;
         this.deleteExisting = builder.deleteExisting;
+        this.asyncSaving = builder.asyncSaving;
+        this.shardedSaving = builder.shardedSaving;
 
         this.saveEveryNEpochs = builder.saveEveryNEpochs;
         this.saveEveryNIterations = builder.saveEveryNIterations;
@@ -149,6 +200,12 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                         }
                     }
                 }
+                File[] shards = new File(rootDir, SHARD_DIR).listFiles();
+                if(shards != null){
+                    for(File f : shards){
+                        f.delete();
+                    }
+                }
             } else {
                 throw new IllegalStateException("Detected existing checkpoint files at directory " + rootDir.getAbsolutePath() +
                         ". Use deleteExisting(true) to delete existing checkpoint files when present.");
@@ -178,6 +235,9 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         if(saveEveryNIterations != null){
             if(saveEveryNIterSinceLast){
                 //Consider last saved model when deciding whether to save
+                if(isWritePending()){
+                    return;
+                }
                 long lastSaveIter = (lastCheckpoint != null ? lastCheckpoint.getIteration() : startIter);
                 if(iteration - lastSaveIter >= saveEveryNIterations){
                     saveCheckpoint(model);
@@ -197,6 +257,9 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         if(saveEveryUnit != null){
             if(saveEverySinceLast){
                 //Consider last saved when deciding whether to save
+                if(isWritePending()){
+                    return;
+                }
                 long lastSaveTime = (lastCheckpoint != null ? lastCheckpoint.getTimestamp() : startTime);
                 if((time - lastSaveTime) >= saveEveryMs){
                     saveCheckpoint(model);
@@ -223,6 +286,12 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     }
 
     private void saveCheckpointHelper(Model model) throws Exception {
+        long start = System.currentTimeMillis();
+        if(asyncSaving){
+            //At most one pending checkpoint: staging buffers are reused
+            awaitPendingCheckpoint();
+        }
+
         if(!checkpointRecordFile.exists()){
             checkpointRecordFile.createNewFile();
             write(Checkpoint.getFileHeader() + "\n", checkpointRecordFile);
@@ -232,18 +301,357 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                 getModelType(model), null);
         setFileName(c);
 
-        ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
+        if(!asyncSaving && !shardedSaving){
+            File f = new File(rootDir, c.getFilename());
+            ModelSerializer.writeModel(model, f, true);
+            long time = System.currentTimeMillis() - start;
+            checkpointSaved(c, new CheckpointStats(c.getCheckpointNum(), time, time, f.length(), 0, 0));
+            return;
+        }
+
+        final Snapshot snapshot = snapshot(model, c);
+        if(!asyncSaving){
+            writeSnapshot(snapshot, System.currentTimeMillis() - start);
+            return;
+        }
+
+        final long stallTime = System.currentTimeMillis() - start;
+        pendingWrite = getWriter().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSnapshot(snapshot, stallTime);
+                } catch (Throwable t){
+                    log.error("Error saving checkpoint {}", snapshot.checkpoint.getCheckpointNum(), t);
+                    asyncError = t;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return True if a checkpoint is still being written in the background. The "since last" saving conditions are
+     * not checked until it is saved
+     */
+    private boolean isWritePending(){
+        Future<?> f = pendingWrite;
+        return f != null && !f.isDone();
+    }
+
+    /**
+     * Wait for the checkpoint currently being written in the background (if any) to be saved. Only applies when
+     * asynchronous saving is enabled.
+     *
+     * @throws RuntimeException if a checkpoint could not be saved asynchronously
+     */
+    public void awaitPendingCheckpoint(){
+        Future<?> f = pendingWrite;
+        if(f != null){
+            try {
+                f.get();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for checkpoint to be saved", e);
+            } catch (Exception e){
+                throw new RuntimeException("Error saving checkpoint", e);
+            }
+            pendingWrite = null;
+        }
+
+        Throwable t = asyncError;
+        if(t != null){
+            asyncError = null;
+            throw new RuntimeException("Error saving checkpoint asynchronously", t);
+        }
+    }
+
+    /**
+     * Statistics (stall time, write time, bytes written) for all checkpoints saved by this listener
+     *
+     * @return Checkpoint statistics, in order of saving
+     */
+    public List<CheckpointStats> getCheckpointStats(){
+        List<CheckpointStats> stats = getStatsList();
+        synchronized (stats){
+            return new ArrayList<>(stats);
+        }
+    }
+
+    private synchronized List<CheckpointStats> getStatsList(){
+        if(checkpointStats == null){
+            checkpointStats = Collections.synchronizedList(new ArrayList<CheckpointStats>());
+        }
+        return checkpointStats;
+    }
+
+    private synchronized ExecutorService getWriter(){
+        if(writer == null){
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "CheckpointListener-writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+            //The writer thread is a daemon: make sure the last checkpoint is fully written before the JVM exits
+            final ExecutorService w = writer;
+            shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    w.shutdown();
+                    try {
+                        w.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "CheckpointListener-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+        return writer;
+    }
+
+    /**
+     * Wait for the checkpoint currently being written in the background (if any) to be saved, then stop the background
+     * writer thread and remove its JVM shutdown hook. Should be called once training is done when asynchronous saving
+     * is enabled. The listener remains usable: a new writer thread is started for the next asynchronous checkpoint.
+     *
+     * @throws RuntimeException if a checkpoint could not be saved asynchronously
+     */
+    @Override
+    public void close() {
+        try {
+            awaitPendingCheckpoint();
+        } finally {
+            ExecutorService w;
+            Thread hook;
+            synchronized (this){
+                w = writer;
+                hook = shutdownHook;
+                writer = null;
+                shutdownHook = null;
+            }
+            if(w != null){
+                w.shutdown();
+                try {
+                    w.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if(hook != null){
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (IllegalStateException e){
+                    //JVM is already shutting down: the hook is running or about to run
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of the model: configuration, parameters and updater state. With asynchronous saving, parameters
+     * and updater state are copied to staging buffers - otherwise the arrays of the model are used directly
+     */
+    private Snapshot snapshot(Model model, Checkpoint c){
+        String json;
+        INDArray updaterState = null;
+        if(model instanceof MultiLayerNetwork){
+            json = ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
+            updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+        } else if(model instanceof ComputationGraph){
+            json = ((ComputationGraph) model).getConfiguration().toJson();
+            updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+        } else {
+            throw new IllegalStateException("Asynchronous or sharded checkpoints are only supported for MultiLayerNetwork" +
+                    " and ComputationGraph models, got " + model.getClass().getName());
+        }
+
+        INDArray params = model.params();
+        long[] paramBoundaries = paramBoundaries(model);
+        if(asyncSaving){
+            try(MemoryWorkspace ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()){
+                stagingParams = stage(stagingParams, params);
+                stagingUpdaterState = stage(stagingUpdaterState, updaterState);
+            }
+            params = stagingParams;
+            updaterState = stagingUpdaterState;
+        }
+        return new Snapshot(c, json, params, updaterState, paramBoundaries);
+    }
+
+    private static INDArray stage(INDArray staging, INDArray source){
+        if(source == null){
+            return null;
+        }
+        if(staging == null || staging.dataType() != source.dataType() || !Arrays.equals(staging.shape(), source.shape())){
+            return source.dup();
+        }
+        staging.assign(source);
+        return staging;
+    }
+
+    /**
+     * Offsets of the parameters of each layer within the flattened parameters, used as shard boundaries
+     */
+    private static long[] paramBoundaries(Model model){
+        INDArray flat = model.params();
+        long length = flat == null ? 0 : flat.length();
+        Layer[] layers = model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getLayers()
+                : ((ComputationGraph) model).getLayers();
+
+        TreeSet<Long> boundaries = new TreeSet<>();
+        boundaries.add(0L);
+        boundaries.add(length);
+        if(layers != null){
+            for(Layer l : layers){
+                INDArray p = l.numParams() > 0 ? l.params() : null;
+                if(p == null){
+                    continue;
+                }
+                long start = p.offset() - flat.offset();
+                if(start >= 0 && start + p.length() <= length){
+                    boundaries.add(start);
+                    boundaries.add(start + p.length());
+                }
+            }
+        }
+
+        long[] out = new long[boundaries.size()];
+        int i = 0;
+        for(Long b : boundaries){
+            out[i++] = b;
+        }
+        return out;
+    }
+
+    private void writeSnapshot(Snapshot snapshot, long stallTime) throws IOException {
+        long start = System.currentTimeMillis();
+        Checkpoint c = snapshot.checkpoint;
+        File f = new File(rootDir, c.getFilename());
+        CheckpointStats stats;
+        if(shardedSaving){
+            stats = writeSharded(snapshot, f);
+        } else {
+            ModelSerializer.writeModel(snapshot.json, snapshot.params, snapshot.updaterState, f);
+            stats = new CheckpointStats(c.getCheckpointNum(), 0, 0, f.length(), 0, 0);
+        }
+        stats.setStallTimeMs(stallTime);
+        stats.setWriteTimeMs(System.currentTimeMillis() - start);
+        checkpointSaved(c, stats);
+    }
+
+    private CheckpointStats writeSharded(Snapshot snapshot, File f) throws IOException {
+        File shardDir = new File(rootDir, SHARD_DIR);
+        if(!shardDir.exists()){
+            shardDir.mkdirs();
+        }
+
+        CheckpointStats stats = new CheckpointStats(snapshot.checkpoint.getCheckpointNum(), 0, 0, 0, 0, 0);
+        StringBuilder manifest = new StringBuilder();
+        if(snapshot.params != null){
+            writeShards(PARAMS, snapshot.params, snapshot.paramBoundaries, shardDir, manifest, stats);
+        }
+        if(snapshot.updaterState != null && snapshot.updaterState.length() > 0){
+            long length = snapshot.updaterState.length();
+            long[] boundaries = new long[(int) ((length + UPDATER_SHARD_SIZE - 1) / UPDATER_SHARD_SIZE) + 1];
+            for(int i = 0; i < boundaries.length; i++){
+                boundaries[i] = Math.min(length, i * UPDATER_SHARD_SIZE);
+            }
+            writeShards(UPDATER, snapshot.updaterState, boundaries, shardDir, manifest, stats);
+        }
+
+        try(ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+            zos.putNextEntry(new ZipEntry(ModelSerializer.CONFIGURATION_JSON));
+            zos.write(snapshot.json.getBytes());
+            zos.putNextEntry(new ZipEntry(SHARD_MANIFEST));
+            zos.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        stats.setBytesWritten(stats.getBytesWritten() + f.length());
+        return stats;
+    }
+
+    private static void writeShards(String kind, INDArray array, long[] boundaries, File shardDir,
+                                    StringBuilder manifest, CheckpointStats stats) throws IOException {
+        manifest.append(kind).append(",").append(array.dataType()).append(",").append(array.length()).append("\n");
+        INDArray flat = array.reshape(array.length());
+        for(int i = 0; i < boundaries.length - 1; i++){
+            long from = boundaries[i];
+            long to = boundaries[i + 1];
+            if(to <= from){
+                continue;
+            }
 
+            INDArray block = flat.get(NDArrayIndex.interval(from, to)).dup();
+            String name = contentHash(block) + ".bin";
+            File shard = new File(shardDir, name);
+            if(shard.exists()){
+                stats.setShardsReused(stats.getShardsReused() + 1);
+            } else {
+                File tmp = new File(shardDir, name + ".tmp");
+                try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))){
+                    Nd4j.write(block, dos);
+                }
+                if(!tmp.renameTo(shard)){
+                    throw new IOException("Could not rename shard file " + tmp + " to " + shard);
+                }
+                stats.setShardsWritten(stats.getShardsWritten() + 1);
+                stats.setBytesWritten(stats.getBytesWritten() + shard.length());
+            }
+            manifest.append("block,").append(kind).append(",").append(from).append(",").append(to).append(",")
+                    .append(name).append("\n");
+        }
+    }
+
+    private static String contentHash(INDArray block){
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e){
+            throw new RuntimeException(e);
+        }
+        digest.update(block.dataType().name().getBytes(StandardCharsets.UTF_8));
+
+        Nd4j.getAffinityManager().ensureLocation(block, AffinityManager.Location.HOST);
+        long bytes = block.length() * block.dataType().width();
+        BytePointer data = new BytePointer(block.data().addressPointer());
+        data.capacity(bytes);
+        for(long pos = 0; pos < bytes; pos += (1 << 20)){
+            digest.update(data.position(pos).limit(Math.min(bytes, pos + (1 << 20))).asByteBuffer());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for(byte b : digest.digest()){
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Record a checkpoint once its files are fully written, and delete old checkpoints. Called from the writer thread
+     * with asynchronous saving
+     */
+    private void checkpointSaved(Checkpoint c, CheckpointStats stats){
         String s = c.toFileString();
         write(s + "\n", checkpointRecordFile);
+        getStatsList().add(stats);
+        this.lastCheckpoint = c;
 
         if(logSaving){
-            log.info("Model checkpoint saved: epoch {}, iteration {}, path: {}", c.getEpoch(), c.getIteration(),
-                    new File(rootDir, c.getFilename()).getPath() );
+            log.info("Model checkpoint saved: epoch {}, iteration {}, path: {} - {} bytes written, training stalled for {} ms",
+                    c.getEpoch(), c.getIteration(), new File(rootDir, c.getFilename()).getPath(),
+                    stats.getBytesWritten(), stats.getStallTimeMs());
         }
-        this.lastCheckpoint = c;
 
+        deleteOldCheckpoints(c.getCheckpointNum());
+        if(shardedSaving && keepMode != null && keepMode != KeepMode.ALL){
+            deleteUnusedShards();
+        }
+    }
 
+    private void deleteOldCheckpoints(int lastCheckpointNum){
         //Finally: determine if we should delete some old models...
         if(keepMode == null || keepMode == KeepMode.ALL){
             return;
@@ -273,6 +681,93 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         }
     }
 
+    /**
+     * Delete shards no longer referenced by any available checkpoint
+     */
+    private void deleteUnusedShards(){
+        Set<String> referenced = new HashSet<>();
+        for(Checkpoint cp : availableCheckpoints()){
+            Pair<String, List<String[]>> manifest = readManifest(getFileForCheckpoint(cp));
+            if(manifest == null){
+                continue;
+            }
+            for(String[] line : manifest.getSecond()){
+                if(line.length == 5){
+                    referenced.add(line[4]);
+                }
+            }
+        }
+
+        File[] shards = new File(rootDir, SHARD_DIR).listFiles();
+        if(shards != null){
+            for(File f : shards){
+                if(f.getName().endsWith(".bin") && !referenced.contains(f.getName())){
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Configuration JSON and list of blocks (block,kind,from,to,shard) of a sharded checkpoint, or null if the
+     * checkpoint file is not sharded
+     */
+    private static Pair<String, List<String[]>> readManifest(File f){
+        try(ZipFile zf = new ZipFile(f)){
+            ZipEntry manifest = zf.getEntry(SHARD_MANIFEST);
+            if(manifest == null){
+                return null;
+            }
+
+            String json;
+            try(InputStream is = zf.getInputStream(zf.getEntry(ModelSerializer.CONFIGURATION_JSON))){
+                json = IOUtils.toString(is, Charset.defaultCharset());
+            }
+            List<String[]> lines = new ArrayList<>();
+            try(InputStream is = zf.getInputStream(manifest)){
+                for(String line : IOUtils.readLines(is, StandardCharsets.UTF_8)){
+                    if(!line.isEmpty()){
+                        lines.add(line.split(","));
+                    }
+                }
+            }
+            return new Pair<>(json, lines);
+        } catch (IOException e){
+            throw new RuntimeException("Error reading checkpoint file: " + f.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Assemble parameters and updater state of a sharded checkpoint
+     *
+     * @return Arrays for "params" and "updater" (if present)
+     */
+    private static Map<String, INDArray> readShards(File rootDir, List<String[]> manifest){
+        Map<String, INDArray> arrays = new HashMap<>();
+        File shardDir = new File(rootDir, SHARD_DIR);
+        try {
+            for(String[] line : manifest){
+                if(line.length == 3){
+                    arrays.put(line[0], Nd4j.createUninitialized(DataType.valueOf(line[1]),
+                            1, Long.parseLong(line[2])));
+                } else {
+                    INDArray array = arrays.get(line[1]);
+                    long from = Long.parseLong(line[2]);
+                    long to = Long.parseLong(line[3]);
+                    INDArray shard;
+                    try(DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(new File(shardDir, line[4]))))){
+                        shard = Nd4j.read(dis);
+                    }
+                    array.reshape(array.length()).get(NDArrayIndex.interval(from, to)).assign(shard.reshape(to - from));
+                }
+            }
+        } catch (IOException e){
+            throw new RuntimeException("Error reading checkpoint shards from directory: " + shardDir.getAbsolutePath(), e);
+        }
+        return arrays;
+    }
+
     private static void setFileName(Checkpoint c){
         String filename = getFileName(c.getCheckpointNum(), c.getModelType());
         c.setFilename(filename);
@@ -464,6 +959,17 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
      */
     public static MultiLayerNetwork loadCheckpointMLN(File rootDir, int checkpointNum){
         File f = getFileForCheckpoint(rootDir, checkpointNum);
+        Pair<String, List<String[]>> manifest = readManifest(f);
+        if(manifest != null){
+            Map<String, INDArray> arrays = readShards(rootDir, manifest.getSecond());
+            MultiLayerNetwork net = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(manifest.getFirst()));
+            net.init(arrays.get(PARAMS), false);
+            if(arrays.containsKey(UPDATER)){
+                net.getUpdater().setStateViewArray(net, arrays.get(UPDATER), false);
+            }
+            return net;
+        }
+
         try {
             return ModelSerializer.restoreMultiLayerNetwork(f, true);
         } catch (IOException e){
@@ -520,6 +1026,17 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
      */
     public static ComputationGraph loadCheckpointCG(File rootDir, int checkpointNum){
         File f = getFileForCheckpoint(rootDir, checkpointNum);
+        Pair<String, List<String[]>> manifest = readManifest(f);
+        if(manifest != null){
+            Map<String, INDArray> arrays = readShards(rootDir, manifest.getSecond());
+            ComputationGraph cg = new ComputationGraph(ComputationGraphConfiguration.fromJson(manifest.getFirst()));
+            cg.init(arrays.get(PARAMS), false);
+            if(arrays.containsKey(UPDATER)){
+                cg.getUpdater().setStateViewArray(arrays.get(UPDATER));
+            }
+            return cg;
+        }
+
         try {
             return ModelSerializer.restoreComputationGraph(f, true);
         } catch (IOException e){
@@ -545,6 +1062,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         private int keepEvery;
         private boolean logSaving = true;
         private boolean deleteExisting = false;
+        private boolean asyncSaving = false;
+        private boolean shardedSaving = false;
 
         private Integer saveEveryNEpochs;
         private Integer saveEveryNIterations;
@@ -689,6 +1208,33 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             return this;
         }
 
+        /**
+         * If true: copy parameters and updater state to staging buffers on the training thread, and write the
+         * checkpoint on a background thread. Training is then only blocked for the duration of the copy (or until
+         * the previous checkpoint has been written, if it is still pending). Default: false<br>
+         * Note that staging buffers require as much memory as parameters and updater state. Call
+         * {@link CheckpointListener#close()} once training is done, to stop the background writer thread.
+         *
+         * @param asyncSaving Whether checkpoints should be written asynchronously
+         */
+        public Builder asyncSaving(boolean asyncSaving){
+            this.asyncSaving = asyncSaving;
+            return this;
+        }
+
+        /**
+         * If true: save parameters as one shard per layer (and updater state as fixed size blocks), named by content
+         * hash, so that shards which don't change between checkpoints (frozen layers, for example) are written only
+         * once. Default: false<br>
+         * Sharded checkpoints can only be loaded using the CheckpointListener load methods.
+         *
+         * @param shardedSaving Whether checkpoints should be sharded
+         */
+        public Builder shardedSaving(boolean shardedSaving){
+            this.shardedSaving = shardedSaving;
+            return this;
+        }
+
         public CheckpointListener build(){
             if(saveEveryNEpochs == null && saveEveryAmount == null && saveEveryNIterations == null){
                 throw new IllegalStateException("Cannot construct listener: no models will be saved (must use at least" +
@@ -698,4 +1244,20 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             return new CheckpointListener(this);
         }
     }
+
+    private static class Snapshot {
+        private final Checkpoint checkpoint;
+        private final String json;
+        private final INDArray params;
+        private final INDArray updaterState;
+        private final long[] paramBoundaries;
+
+        private Snapshot(Checkpoint checkpoint, String json, INDArray params, INDArray updaterState, long[] paramBoundaries){
+            this.checkpoint = checkpoint;
+            this.json = json;
+            this.params = params;
+            this.updaterState = updaterState;
+            this.paramBoundaries = paramBoundaries;
+        }
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.listeners;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Statistics for a single checkpoint saved by {@link CheckpointListener}
+ */
+@AllArgsConstructor
+@Data
+public class CheckpointStats implements Serializable {
+
+    private int checkpointNum;
+    /**
+     * Time (in milliseconds) the training thread was blocked by this checkpoint. With asynchronous saving, this is
+     * the time taken to copy parameters and updater state to the staging buffers (plus any time spent waiting for the
+     * previous checkpoint to be written)
+     */
+    private long stallTimeMs;
+    /**
+     * Time (in milliseconds) taken to write the checkpoint files
+     */
+    private long writeTimeMs;
+    /**
+     * Number of bytes written for this checkpoint
+     */
+    private long bytesWritten;
+    /**
+     * Number of shard files written - sharded saving only
+     */
+    private int shardsWritten;
+    /**
+     * Number of shards already present from previous checkpoints, not written again - sharded saving only
+     */
+    private int shardsReused;
+}
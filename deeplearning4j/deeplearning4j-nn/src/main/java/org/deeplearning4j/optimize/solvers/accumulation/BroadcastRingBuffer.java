@@ -0,0 +1,233 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class provides lock-free bounded broadcast buffer: every element published by any producer is delivered to every consumer,
+ * in the same order for all consumers. It's meant as replacement for {@link FancyBlockingQueue}, without barriers between consumers:
+ * each consumer has its own sequence counter and advances at its own pace.
+ *
+ * Basic idea: producers claim sequence numbers via atomic counter, and wait only if the slowest consumer lags by full capacity.
+ * Each slot stores the sequence number it was published with, so consumers know when the slot is ready to be read.
+ *
+ * PLEASE NOTE: number of consumers is fixed, and each consumer should poll from a single thread at a time.
+ *
+ * @param <E>
+ */
+public class BroadcastRingBuffer<E> {
+    // consumer cursors are padded to separate cache lines, to avoid false sharing
+    private static final int PADDING = 8;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+
+    @Getter
+    private final int capacity;
+    private final int mask;
+    @Getter
+    private final int consumers;
+
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final AtomicLongArray cursors;
+
+    // next sequence number to be claimed by producer
+    private final AtomicLong claimed = new AtomicLong(0);
+    // cached value of the slowest consumer cursor
+    private final AtomicLong gating = new AtomicLong(0);
+
+    /**
+     * @param capacity  max number of elements not yet consumed by the slowest consumer. Rounded up to the power of 2.
+     * @param consumers number of consumers
+     */
+    public BroadcastRingBuffer(int capacity, int consumers) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Capacity should be in range [1, 2^30], got [" + capacity + "]");
+
+        if (consumers < 1)
+            throw new IllegalArgumentException("Number of consumers should be positive value");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.capacity = size;
+        this.mask = size - 1;
+        this.consumers = consumers;
+        this.entries = new Object[size];
+        this.published = new AtomicLongArray(size);
+        this.cursors = new AtomicLongArray(consumers * PADDING);
+
+        for (int e = 0; e < size; e++)
+            published.set(e, -1);
+    }
+
+    /**
+     * This method publishes element to all consumers. If the slowest consumer is behind by full capacity, this method waits for it.
+     *
+     * PLEASE NOTE: this method is not interruptible, since claimed sequence has to be published anyway
+     *
+     * @param element
+     */
+    public void put(@NonNull E element) {
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - capacity;
+
+        int tries = 0;
+        while (wrapPoint >= gating.get()) {
+            long min = minCursor();
+            gating.set(min);
+
+            if (wrapPoint < min)
+                break;
+
+            tries = backOff(tries);
+        }
+
+        int index = (int) (sequence & mask);
+        entries[index] = element;
+
+        // volatile write below makes entry visible to consumers
+        published.set(index, sequence);
+    }
+
+    /**
+     * This method returns next element for the given consumer, or null if there's nothing published yet.
+     * Elements published by the same producer are delivered in publication order; consumers never skip elements.
+     *
+     * @param consumer index of the consumer, in range [0, consumers)
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public E poll(int consumer) {
+        long next = cursors.get(consumer * PADDING);
+        int index = (int) (next & mask);
+
+        if (published.get(index) != next)
+            return null;
+
+        E element = (E) entries[index];
+
+        // slot can't be overwritten before we advance our cursor, so it's safe to release it only now
+        cursors.lazySet(consumer * PADDING, next + 1);
+        return element;
+    }
+
+    /**
+     * This method waits until next element is available for the given consumer
+     *
+     * @param consumer index of the consumer
+     * @return
+     * @throws InterruptedException
+     */
+    public E take(int consumer) throws InterruptedException {
+        int tries = 0;
+        E element;
+        while ((element = poll(consumer)) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            tries = backOff(tries);
+        }
+
+        return element;
+    }
+
+    /**
+     * This method moves all elements available for the given consumer into collection
+     *
+     * @param consumer index of the consumer
+     * @param target
+     * @return number of elements moved
+     */
+    public int drainTo(int consumer, @NonNull Collection<? super E> target) {
+        int cnt = 0;
+        E element;
+        while ((element = poll(consumer)) != null) {
+            target.add(element);
+            cnt++;
+        }
+
+        return cnt;
+    }
+
+    /**
+     * This method checks if there's anything published, but not consumed yet by the given consumer
+     *
+     * @param consumer index of the consumer
+     * @return
+     */
+    public boolean isEmpty(int consumer) {
+        long next = cursors.get(consumer * PADDING);
+        return published.get((int) (next & mask)) != next;
+    }
+
+    /**
+     * This method returns number of elements claimed by producers, but not consumed yet by the given consumer.
+     * Elements being published right now are included.
+     *
+     * @param consumer index of the consumer
+     * @return
+     */
+    public int size(int consumer) {
+        return (int) (claimed.get() - cursors.get(consumer * PADDING));
+    }
+
+    /**
+     * This method moves all consumers past everything published so far.
+     *
+     * PLEASE NOTE: this method should be called only when there are no active producers or consumers
+     */
+    public void clear() {
+        long position = claimed.get();
+        for (int c = 0; c < consumers; c++)
+            cursors.set(c * PADDING, position);
+
+        for (int e = 0; e < entries.length; e++)
+            entries[e] = null;
+
+        gating.set(position);
+    }
+
+    protected long minCursor() {
+        long min = Long.MAX_VALUE;
+        for (int c = 0; c < consumers; c++)
+            min = Math.min(min, cursors.get(c * PADDING));
+
+        return min;
+    }
+
+    protected static int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            // just spin
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else
+            LockSupport.parkNanos(1000L);
+
+        return tries + 1;
+    }
+}
@@ -25,6 +25,8 @@ import lombok.val;
 import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.optimize.api.StepFunction;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.residual.ResidualClippingPostProcessor;
@@ -64,6 +66,9 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
     protected MessageHandler handler;
     @Getter
     protected List<BlockingQueue<INDArray>> messages = new ArrayList<>();
+    // used instead of messages in broadcast mode
+    @Getter
+    protected BroadcastRingBuffer<INDArray> broadcast;
     protected List<MemoryWorkspace> workspaces = new ArrayList<>();
     protected List<ReentrantLock> locks = new ArrayList<>();
 
@@ -108,6 +113,15 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     public EncodedGradientsAccumulator(int parties, @NonNull MessageHandler handler, long initialMemory,
                     int queueSize, Integer boundary, boolean encodingDebugMode) {
+        this(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode, false);
+    }
+
+    /**
+     * @param broadcastMode if true, each update is stored once in {@link BroadcastRingBuffer} shared by all parties,
+     *                      instead of being copied to per-party queues. Ignored if updates have to be relocated between devices.
+     */
+    public EncodedGradientsAccumulator(int parties, @NonNull MessageHandler handler, long initialMemory,
+                    int queueSize, Integer boundary, boolean encodingDebugMode, boolean broadcastMode) {
         this.parties = parties;
         this.handler = handler;
         this.initialMemory = initialMemory;
@@ -125,6 +139,9 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         relocatable = Nd4j.getAffinityManager().getNumberOfDevices() > 1
                         && !Nd4j.getAffinityManager().isCrossDeviceAccessSupported();
 
+        if (broadcastMode && !relocatable)
+            broadcast = new BroadcastRingBuffer<>(queueSize, parties);
+
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
 
         // we are going to take single-device systems as edge case: cpu & small models at single-gpu systems.
@@ -135,7 +152,8 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         // pre-create Queues for local workers
         int curDev = Nd4j.getAffinityManager().getDeviceForCurrentThread();
 
-        for (int i = 0; i < parties; i++) {
+        // in broadcast mode updates aren't copied to per-party queues and workspaces
+        for (int i = 0; broadcast == null && i < parties; i++) {
             messages.add(new LinkedBlockingQueue<INDArray>(queueSize));
 
             // we don't want device index to step out of boundaries here
@@ -276,6 +294,40 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     }
 
+    /**
+     * This method decodes all pending messages for current worker into given updates array
+     *
+     * @param updates
+     * @return number of decoded messages
+     */
+    protected int decodeMessages(INDArray updates) {
+        int cnt = 0;
+        INDArray compressed;
+        while ((compressed = nextMessage()) != null) {
+            int encoding = compressed.data().getInt(3);
+            if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
+                Nd4j.getExecutioner().thresholdDecode(compressed, updates);
+            else if (encoding == ThresholdCompression.BITMAP_ENCODING)
+                Nd4j.getExecutioner().bitmapDecode(compressed, updates);
+            else if (encoding == BlockEncoding.BLOCK_ENCODING)
+                BlockEncoding.decode(compressed, updates);
+            else
+                throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+
+            cnt++;
+        }
+
+        return cnt;
+    }
+
+    protected INDArray nextMessage() {
+        if (broadcast != null)
+            return broadcast.poll(index.get());
+
+        BlockingQueue<INDArray> queue = messages.get(index.get());
+        return queue.isEmpty() ? null : queue.poll();
+    }
+
     /**
      * This method applies accumulated updates via given StepFunction
      *
@@ -291,20 +343,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             Nd4j.getMemoryManager().memset(updates);
             //updates.assign(0.0);
 
-            int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
-                cnt++;
-            }
+            int cnt = decodeMessages(updates);
 
             if (cnt > 0 && isDebug)
                 log.info("Local updates to be applied: {}", cnt);
@@ -356,20 +395,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             Nd4j.getMemoryManager().memset(updates);
             //updates.assign(0.0);
 
-            int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
-                cnt++;
-            }
+            int cnt = decodeMessages(updates);
 
             if (cnt > 0 && isDebug)
                 log.info("Local updates to be applied: {}", cnt);
@@ -484,6 +510,17 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
      */
     @Override
     public void receiveUpdate(INDArray array) {
+        if (broadcast != null) {
+            // single copy out of workspaces is shared by all parties
+            try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                broadcast.put(array.unsafeDuplication());
+            } catch (Exception e) {
+                throwable.setIfFirst(e);
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
         try {
             // we're replicating COMPRESSED MESSAGES, decompression will be thread-local
             for (int i = 0; i < parties; i++) {
@@ -536,9 +573,12 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         index = new ThreadLocal<>();
 
         // throw away message queues
-        for (int i = 0; i < parties; i++) {
-            messages.get(i).clear();
+        for (BlockingQueue<INDArray> queue : messages) {
+            queue.clear();
         }
+
+        if (broadcast != null)
+            broadcast.clear();
     }
 
     @Override
@@ -555,6 +595,8 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         protected MessageHandler handler;
         protected int boundary = Integer.MAX_VALUE;
         protected boolean encodingDebugMode;
+        protected ParameterBlocks parameterBlocks;
+        protected boolean broadcastMode;
 
         /**
          * This
@@ -627,6 +669,33 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             return this;
         }
 
+        /**
+         * This method enables block encoding: each block of updates is encoded with its own threshold, as bitmap or
+         * as sparse indices depending on its density. Blocks are typically built via {@link ParameterBlocks#fromModel(Model, long)}
+         *
+         * Default value: null (whole updates vector is encoded as single block)
+         * @param blocks
+         * @return
+         */
+        public Builder parameterBlocks(ParameterBlocks blocks) {
+            this.parameterBlocks = blocks;
+            return this;
+        }
+
+        /**
+         * This method enables broadcast mode: each update is stored once in lock-free {@link BroadcastRingBuffer},
+         * and all parties read it at their own pace, instead of getting own copy of each update.
+         * Not used if updates have to be relocated between devices.
+         *
+         * Default value: false
+         * @param reallyBroadcast
+         * @return
+         */
+        public Builder broadcastMode(boolean reallyBroadcast) {
+            this.broadcastMode = reallyBroadcast;
+            return this;
+        }
+
         public Builder encodingDebugMode(boolean enable){
             this.encodingDebugMode = enable;
             return this;
@@ -635,10 +704,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         public EncodedGradientsAccumulator build() {
             if (handler == null) {
                 Preconditions.checkNotNull(thresholdAlgorithm, "Both threshold algorithm and handler are null - one or the other must be set");
-                handler = new EncodingHandler(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode);
+                handler = new EncodingHandler(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode, parameterBlocks);
             }
 
-            EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode);
+            EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode, broadcastMode);
 
             return accumulator;
         }
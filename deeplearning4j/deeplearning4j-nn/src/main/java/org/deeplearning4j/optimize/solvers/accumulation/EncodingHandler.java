@@ -22,6 +22,8 @@ import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.shade.guava.util.concurrent.AtomicDouble;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithmReducer;
@@ -32,6 +34,7 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -39,6 +42,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This MessageHandler implementation is suited for debugging mostly, but still can be used in production environment if you really want that.
@@ -46,6 +50,9 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * This handler is used as basement for distributed handler though.
  *
+ * If {@link ParameterBlocks} are provided, each block of updates gets its own threshold, and is encoded either as
+ * bitmap or as sparse indices, depending on density measured for this block. See {@link BlockEncoding} for message layout.
+ *
  * PLEASE NOTE: This handler does NOT provide any network connectivity. *
  * @author raver119@gmail.com
  */
@@ -73,12 +80,38 @@ public class EncodingHandler implements MessageHandler {
 
     protected final AtomicLong lastThresholdLogTime = new AtomicLong();
 
+    // used for block encoding only
+    protected ParameterBlocks blocks;
+    protected ThreadLocal<BlockState[]> blockStates = new ThreadLocal<>();
+    protected Map<Long, BlockState[]> allThreadBlockStates = new ConcurrentHashMap<>();
+
+    // encoding stats, one element per block (or single element if block encoding isn't used)
+    protected final AtomicLong encodedIterations = new AtomicLong();
+    protected final AtomicLong encodedMessageBytes = new AtomicLong();
+    protected AtomicLongArray encodedBytes;
+    protected AtomicLongArray encodedUpdates;
+    protected AtomicLongArray bitmapUpdates;
+
     public EncodingHandler(final ThresholdAlgorithm thresholdAlgorithm, final ResidualPostProcessor residualPostProcessor,
                            Integer boundary, boolean encodingDebugMode){
+        this(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode, null);
+    }
+
+    /**
+     * @param blocks layout of independently encoded blocks. May be null, then updates are encoded as single block.
+     */
+    public EncodingHandler(final ThresholdAlgorithm thresholdAlgorithm, final ResidualPostProcessor residualPostProcessor,
+                           Integer boundary, boolean encodingDebugMode, ParameterBlocks blocks){
         this.initialThresholdAlgorithm = thresholdAlgorithm;
         this.initialResidualPostProcessor = residualPostProcessor;
         this.boundary = boundary == null ? Integer.MAX_VALUE : boundary;
         this.encodingDebugMode = encodingDebugMode;
+        this.blocks = blocks;
+
+        int numBlocks = blocks == null ? 1 : blocks.numBlocks();
+        this.encodedBytes = new AtomicLongArray(numBlocks);
+        this.encodedUpdates = new AtomicLongArray(numBlocks);
+        this.bitmapUpdates = new AtomicLongArray(numBlocks);
     }
 
     @Override
@@ -87,6 +120,16 @@ public class EncodingHandler implements MessageHandler {
     }
 
     public INDArray encodeUpdates(int iteration, int epoch, INDArray updates) {
+        encodedIterations.incrementAndGet();
+
+        INDArray encoded = blocks == null ? encodeSingleBlock(iteration, epoch, updates) : encodeBlocks(iteration, epoch, updates);
+        if (encoded != null)
+            encodedMessageBytes.addAndGet(encoded.length() * 4);
+
+        return encoded;
+    }
+
+    protected INDArray encodeSingleBlock(int iteration, int epoch, INDArray updates) {
         if(thresholdAlgorithm.get() == null){
             synchronized (this){
                 //Synchronized in case threshold algorithm has INDArrays and we're running on GPU - don't want race condition for shifting devices
@@ -166,6 +209,7 @@ public class EncodingHandler implements MessageHandler {
                 lastSparsityRatio.set(null);
                 lastIterWasDense.get().set(true);
                 logThresholdIfReq(true, iteration, epoch);
+                recordBlock(0, encoded, true);
                 return encoded;
             } else {
                 //Record sparsity for use in calculation
@@ -201,9 +245,83 @@ public class EncodingHandler implements MessageHandler {
 
         applyPostProcessor(iteration, epoch, currThreshold, updates);
         logThresholdIfReq(lastIterWasDense.get().get(), iteration, epoch);
+        recordBlock(0, encoded, lastIterWasDense.get().get());
         return encoded;
     }
 
+    /**
+     * This method encodes each of parameter blocks independently: every block has its own ThresholdAlgorithm instance,
+     * and is encoded as bitmap or as sparse indices, whichever is smaller for the density measured at the previous iteration.
+     */
+    protected INDArray encodeBlocks(int iteration, int epoch, INDArray updates) {
+        BlockState[] states = blockStates.get();
+        if (states == null) {
+            synchronized (this) {
+                //Synchronized in case threshold algorithm has INDArrays and we're running on GPU
+                states = new BlockState[blocks.numBlocks()];
+                for (int b = 0; b < states.length; b++)
+                    states[b] = new BlockState(initialThresholdAlgorithm.clone());
+
+                blockStates.set(states);
+                allThreadBlockStates.put(Thread.currentThread().getId(), states);
+                if (initialResidualPostProcessor != null && residualPostProcessor.get() == null)
+                    residualPostProcessor.set(initialResidualPostProcessor.clone());
+            }
+        }
+
+        INDArray[] encoded = new INDArray[states.length];
+        for (int b = 0; b < states.length; b++) {
+            BlockState state = states[b];
+            INDArray block = blocks.view(updates, b);
+            long length = block.length();
+
+            double threshold = state.algorithm.calculateThreshold(iteration, epoch, state.lastThreshold, state.lastWasDense, state.lastSparsity, block);
+            state.lastThreshold = threshold;
+
+            // sparse indices are cheaper than bitmap only below 1/16 density
+            long limit = Math.max(1, length / 16);
+            long values;
+            boolean bitmap = state.bitmapMode;
+            if (!bitmap) {
+                encoded[b] = Nd4j.getExecutioner().thresholdEncode(block, threshold, (int) Math.min(limit, boundary));
+                values = encoded[b] == null ? 0 : encoded[b].length();
+
+                // message was truncated at the limit: it's still valid, but next time bitmap will be smaller
+                if (values >= limit)
+                    state.bitmapMode = true;
+            } else {
+                encoded[b] = Nd4j.create(DataType.INT32, length / 16 + 5);
+                values = Nd4j.getExecutioner().bitmapEncode(block, encoded[b], threshold);
+
+                if (values < (length / 16 + 5) / 2)
+                    state.bitmapMode = false;
+
+                // nothing to share for this block
+                if (values == 0)
+                    encoded[b] = null;
+            }
+
+            recordBlock(b, encoded[b], bitmap);
+            state.lastWasDense = values >= limit;
+            state.lastSparsity = state.lastWasDense ? null : values / (double) length;
+
+            applyPostProcessor(iteration, epoch, threshold, block);
+        }
+
+        logBlocksIfReq(states, iteration, epoch);
+        return BlockEncoding.pack(blocks, encoded);
+    }
+
+    protected void recordBlock(int block, INDArray encoded, boolean bitmap) {
+        if (encoded == null)
+            return;
+
+        encodedBytes.addAndGet(block, encoded.length() * 4);
+        encodedUpdates.incrementAndGet(block);
+        if (bitmap)
+            bitmapUpdates.incrementAndGet(block);
+    }
+
     public void applyPostProcessor(int iteration, int epoch, Double lastThreshold, INDArray residuals){
         if(initialResidualPostProcessor == null) {
             return; //No op
@@ -337,7 +455,12 @@ public class EncodingHandler implements MessageHandler {
      * @return
      */
     public ThresholdAlgorithm getAverageThresholdAlgorithm(){
-        Collection<ThresholdAlgorithm> c = this.allThreadThresholdAlgorithms.values();
+        Collection<ThresholdAlgorithm> c = new ArrayList<>(this.allThreadThresholdAlgorithms.values());
+        //With block encoding, instances of all blocks are averaged together
+        for (BlockState[] states : allThreadBlockStates.values()) {
+            for (BlockState state : states)
+                c.add(state.algorithm);
+        }
         if(c.isEmpty()){
             return null;
         }
@@ -358,7 +481,89 @@ public class EncodingHandler implements MessageHandler {
         //Remove the old instances in preparation for use in next epoch, if required
         thresholdAlgorithm = new ThreadLocal<>();
         allThreadThresholdAlgorithms.clear();
+        blockStates = new ThreadLocal<>();
+        allThreadBlockStates.clear();
 
         return ta;
     }
+
+    /**
+     * This method returns parameter blocks used for encoding, or null if updates are encoded as single block
+     */
+    public ParameterBlocks getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * This method returns number of blocks encoding stats are collected for
+     */
+    public int getNumBlocks() {
+        return encodedBytes.length();
+    }
+
+    /**
+     * This method returns total number of bytes produced by encoding of the given block, without message headers
+     */
+    public long getEncodedBytes(int block) {
+        return encodedBytes.get(block);
+    }
+
+    /**
+     * This method returns total number of bytes in all messages produced by this handler, including headers
+     */
+    public long getEncodedBytes() {
+        return encodedMessageBytes.get();
+    }
+
+    /**
+     * This method returns average number of bytes produced for the given block per encoded update,
+     * including updates where this block had nothing to share
+     */
+    public double getBytesPerUpdate(int block) {
+        long iterations = encodedIterations.get();
+        return iterations == 0 ? 0.0 : encodedBytes.get(block) / (double) iterations;
+    }
+
+    /**
+     * This method returns fraction of non-empty encodings of the given block, that used bitmap encoding
+     */
+    public double getBitmapRatio(int block) {
+        long updates = encodedUpdates.get(block);
+        return updates == 0 ? 0.0 : bitmapUpdates.get(block) / (double) updates;
+    }
+
+    protected void logBlocksIfReq(BlockState[] states, int iter, int epoch){
+        long now = System.currentTimeMillis();
+        long lastLog = lastThresholdLogTime.get();
+        if(lastLog + THRESHOLD_LOG_FREQ_MS <= now && lastThresholdLogTime.compareAndSet(lastLog, now)){
+            StringBuilder sb = new StringBuilder();
+            for (int b = 0; b < states.length; b++) {
+                BlockState state = states[b];
+                if (b > 0)
+                    sb.append("; ");
+
+                sb.append(b).append(": ").append(format(state.lastThreshold == null ? 0.0 : state.lastThreshold))
+                        .append(state.bitmapMode ? " DENSE" : " SPARSE")
+                        .append(", ").append(format(getBytesPerUpdate(b))).append(" bytes/update");
+            }
+
+            log.info("Block thresholds at iter {}, epoch {} [thread {}]: {}", iter, epoch, Thread.currentThread().getId(), sb.toString());
+        }
+    }
+
+    /**
+     * Per-thread encoding state of a single parameter block
+     */
+    protected static class BlockState {
+        protected final ThresholdAlgorithm algorithm;
+        protected Double lastThreshold;
+        protected Boolean lastWasDense;
+        protected Double lastSparsity;
+        // encoding to be used for the next iteration
+        protected boolean bitmapMode = true;
+
+        protected BlockState(@NonNull ThresholdAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
 }
@@ -23,6 +23,7 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import lombok.var;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -344,6 +345,8 @@ public class IndexedTail {
                 Nd4j.getExecutioner().thresholdDecode(encoded, result);
             } else if (encoding == ThresholdCompression.BITMAP_ENCODING) {
                 Nd4j.getExecutioner().bitmapDecode(encoded, result);
+            } else if (encoding == BlockEncoding.BLOCK_ENCODING) {
+                BlockEncoding.decode(encoded, result);
             } else
                 throw new ND4JIllegalStateException("Unknown encoding mode: [" + encoding + "]");
         } else {
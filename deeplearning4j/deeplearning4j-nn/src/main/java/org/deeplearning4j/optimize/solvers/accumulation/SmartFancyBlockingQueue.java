@@ -23,6 +23,7 @@ import EDU.oswego.cs.dl.util.concurrent.ReaderPreferenceReadWriteLock;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.compression.ThresholdCompression;
@@ -73,6 +74,8 @@ public class SmartFancyBlockingQueue extends FancyBlockingQueue<INDArray> {
                 Nd4j.getExecutioner().thresholdDecode(encoded, result);
             } else if (encoding == ThresholdCompression.BITMAP_ENCODING) {
                 Nd4j.getExecutioner().bitmapDecode(encoded, result);
+            } else if (encoding == BlockEncoding.BLOCK_ENCODING) {
+                BlockEncoding.decode(encoded, result);
             } else
                 throw new ND4JIllegalStateException("Unknown encoding mode: [" + encoding + "]");
         } else {
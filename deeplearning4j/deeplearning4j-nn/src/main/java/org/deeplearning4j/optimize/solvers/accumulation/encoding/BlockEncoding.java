@@ -0,0 +1,142 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solvers.accumulation.encoding;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.compression.ThresholdCompression;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * This class packs independently encoded parameter blocks into a single message, and decodes such messages.
+ *
+ * Message layout, all values are ints:
+ * <pre>
+ * header:  [number of blocks, total length, 0, BLOCK_ENCODING]
+ * entries: [block offset, block length, encoded length] per block
+ * payload: threshold or bitmap encoded blocks, in the same order as entries
+ * </pre>
+ * Blocks without any updates are not included into message at all.
+ */
+public class BlockEncoding {
+    /**
+     * Encoding type stored at header position 3, next to {@link ThresholdCompression#FLEXIBLE_ENCODING} and
+     * {@link ThresholdCompression#BITMAP_ENCODING}
+     */
+    public static final int BLOCK_ENCODING = 2;
+    public static final int HEADER_LENGTH = 4;
+    public static final int ENTRY_LENGTH = 3;
+
+    private BlockEncoding() {
+        //
+    }
+
+    /**
+     * This method packs encoded blocks into single message
+     *
+     * @param blocks  blocks layout
+     * @param encoded threshold or bitmap encoded blocks, null for blocks without updates
+     * @return message, or null if there's nothing to send
+     */
+    public static INDArray pack(@NonNull ParameterBlocks blocks, @NonNull INDArray[] encoded) {
+        if (encoded.length != blocks.numBlocks())
+            throw new ND4JIllegalStateException("Expected " + blocks.numBlocks() + " encoded blocks, got " + encoded.length);
+
+        int numBlocks = 0;
+        long total = HEADER_LENGTH;
+        for (INDArray e : encoded) {
+            if (e != null) {
+                numBlocks++;
+                total += ENTRY_LENGTH + e.length();
+            }
+        }
+
+        if (numBlocks == 0)
+            return null;
+
+        // encoded blocks are copied straight into the message buffer, without going through java arrays
+        INDArray message = Nd4j.create(DataType.INT32, total);
+        DataBuffer buffer = message.data();
+        buffer.put(0, numBlocks);
+        buffer.put(1, (int) blocks.getLength());
+        buffer.put(3, BLOCK_ENCODING);
+
+        long entry = HEADER_LENGTH;
+        long payload = HEADER_LENGTH + numBlocks * ENTRY_LENGTH;
+        for (int b = 0; b < encoded.length; b++) {
+            if (encoded[b] == null)
+                continue;
+
+            long length = encoded[b].length();
+            buffer.put(entry++, (int) blocks.getOffset(b));
+            buffer.put(entry++, (int) blocks.getLength(b));
+            buffer.put(entry++, (int) length);
+
+            message.get(NDArrayIndex.interval(payload, payload + length)).assign(encoded[b].reshape(length));
+            payload += length;
+        }
+
+        return message;
+    }
+
+    /**
+     * This method decodes block encoded message, and adds decoded updates to the target
+     *
+     * @param message block encoded message
+     * @param target  row vector or rank 1 array updates will be added to
+     */
+    public static void decode(@NonNull INDArray message, @NonNull INDArray target) {
+        DataBuffer data = message.data();
+        if (message.length() < HEADER_LENGTH || data.getInt(3) != BLOCK_ENCODING)
+            throw new ND4JIllegalStateException("Not a block encoded message");
+
+        if (data.getInt(1) != target.length())
+            throw new ND4JIllegalStateException("Message was encoded for length [" + data.getInt(1) + "], but target has length [" + target.length() + "]");
+
+        INDArray vector = target.rank() == 1 ? target : target.get(NDArrayIndex.point(0), NDArrayIndex.all());
+        INDArray flat = message.reshape(message.length());
+
+        int numBlocks = data.getInt(0);
+        long payload = HEADER_LENGTH + numBlocks * ENTRY_LENGTH;
+        for (int b = 0; b < numBlocks; b++) {
+            long entry = HEADER_LENGTH + b * ENTRY_LENGTH;
+            int offset = data.getInt(entry);
+            int length = data.getInt(entry + 1);
+            int encodedLength = data.getInt(entry + 2);
+
+            // decoders expect encoded block to start at the beginning of its buffer
+            INDArray block = flat.get(NDArrayIndex.interval(payload, payload + encodedLength)).dup();
+            INDArray view = vector.get(NDArrayIndex.interval(offset, offset + length));
+
+            int encoding = block.data().getInt(3);
+            if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
+                Nd4j.getExecutioner().thresholdDecode(block, view);
+            else if (encoding == ThresholdCompression.BITMAP_ENCODING)
+                Nd4j.getExecutioner().bitmapDecode(block, view);
+            else
+                throw new ND4JIllegalStateException("Unknown encoding mode for block " + b + ": [" + encoding + "]");
+
+            payload += encodedLength;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solvers.accumulation.encoding;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.exception.DL4JInvalidConfigException;
+import org.deeplearning4j.nn.api.Model;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class describes how flattened parameters (and updates) vector is split into contiguous blocks,
+ * that are encoded independently, each one with its own threshold and encoding type.
+ *
+ * Typically blocks follow layer boundaries, see {@link #fromModel(Model, long)}
+ */
+public class ParameterBlocks implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final long DEFAULT_MIN_BLOCK_SIZE = 4096;
+
+    private final long[] offsets;
+    private final long[] lengths;
+    @Getter
+    private final long length;
+
+    /**
+     * @param lengths lengths of consecutive blocks, starting at offset 0
+     */
+    public ParameterBlocks(@NonNull long... lengths) {
+        if (lengths.length == 0)
+            throw new DL4JInvalidConfigException("At least one block should be defined");
+
+        this.lengths = Arrays.copyOf(lengths, lengths.length);
+        this.offsets = new long[lengths.length];
+
+        long offset = 0;
+        for (int e = 0; e < lengths.length; e++) {
+            if (lengths[e] < 1)
+                throw new DL4JInvalidConfigException("Block length should be positive value, got [" + lengths[e] + "] for block " + e);
+
+            offsets[e] = offset;
+            offset += lengths[e];
+        }
+
+        if (offset > Integer.MAX_VALUE)
+            throw new DL4JInvalidConfigException("Encoded updates length can't exceed Integer.MAX_VALUE, got [" + offset + "]");
+
+        this.length = offset;
+    }
+
+    /**
+     * This method splits vector of given length into blocks of equal size. Last block may be shorter.
+     *
+     * @param length    total length of parameters vector
+     * @param blockSize length of each block
+     * @return
+     */
+    public static ParameterBlocks uniform(long length, long blockSize) {
+        if (length < 1 || blockSize < 1)
+            throw new DL4JInvalidConfigException("Length and block size should be positive values");
+
+        int numBlocks = (int) ((length + blockSize - 1) / blockSize);
+        long[] lengths = new long[numBlocks];
+        for (int e = 0; e < numBlocks; e++)
+            lengths[e] = Math.min(blockSize, length - e * blockSize);
+
+        return new ParameterBlocks(lengths);
+    }
+
+    /**
+     * This method builds blocks following layer boundaries of given model.
+     * Adjacent layers with fewer than minBlockSize parameters are merged together.
+     *
+     * @param model        model to build blocks for
+     * @param minBlockSize minimal number of parameters per block
+     * @return
+     */
+    public static ParameterBlocks fromModel(@NonNull Model model, long minBlockSize) {
+        INDArray params = model.params();
+        long numParams = model.numParams();
+        if (params == null || numParams < 1)
+            throw new DL4JInvalidConfigException("Model should be initialized before building parameter blocks");
+
+        // first offset of each layer within flattened params
+        TreeSet<Long> boundaries = new TreeSet<>();
+        Map<String, INDArray> table = model.paramTable();
+        String lastLayer = null;
+        for (Map.Entry<String, INDArray> entry : table.entrySet()) {
+            String key = entry.getKey();
+            int split = key.lastIndexOf('_');
+            String layer = split < 0 ? key : key.substring(0, split);
+
+            long offset = entry.getValue().offset() - params.offset();
+            if (offset > 0 && offset < numParams && !layer.equals(lastLayer))
+                boundaries.add(offset);
+
+            lastLayer = layer;
+        }
+        boundaries.add(numParams);
+
+        long[] lengths = new long[boundaries.size()];
+        int cnt = 0;
+        long start = 0;
+        for (Long boundary : boundaries) {
+            if (boundary - start >= minBlockSize) {
+                lengths[cnt++] = boundary - start;
+                start = boundary;
+            }
+        }
+
+        // the tail shorter than minBlockSize goes to the last block
+        if (start < numParams) {
+            if (cnt == 0)
+                lengths[cnt++] = numParams - start;
+            else
+                lengths[cnt - 1] += numParams - start;
+        }
+
+        return new ParameterBlocks(Arrays.copyOf(lengths, cnt));
+    }
+
+    /**
+     * This method returns number of blocks
+     */
+    public int numBlocks() {
+        return lengths.length;
+    }
+
+    /**
+     * This method returns offset of the given block within flattened vector
+     */
+    public long getOffset(int block) {
+        return offsets[block];
+    }
+
+    /**
+     * This method returns length of the given block
+     */
+    public long getLength(int block) {
+        return lengths[block];
+    }
+
+    /**
+     * This method returns view of the given block within flattened vector
+     *
+     * @param vector row vector or rank 1 array, with length equal to {@link #getLength()}
+     * @param block  index of the block
+     * @return
+     */
+    public INDArray view(@NonNull INDArray vector, int block) {
+        Preconditions.checkArgument(vector.length() == length, "Expected vector of length %s, got array of shape %ndShape", length, vector);
+
+        if (vector.rank() == 1)
+            return vector.get(NDArrayIndex.interval(offsets[block], offsets[block] + lengths[block]));
+
+        Preconditions.checkArgument(vector.rank() == 2 && vector.size(0) == 1, "Expected row vector, got array of shape %ndShape", vector);
+        return vector.get(NDArrayIndex.point(0), NDArrayIndex.interval(offsets[block], offsets[block] + lengths[block]));
+    }
+
+    /**
+     * This method returns worst case length of block encoded message, in number of int elements
+     */
+    public long maxEncodedLength() {
+        long result = BlockEncoding.HEADER_LENGTH;
+        for (long l : lengths)
+            result += BlockEncoding.ENTRY_LENGTH + l / 16 + 5;
+
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ParameterBlocks))
+            return false;
+
+        return Arrays.equals(lengths, ((ParameterBlocks) o).lengths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(lengths);
+    }
+
+    @Override
+    public String toString() {
+        return "ParameterBlocks(length=" + length + ", blocks=" + Arrays.toString(lengths) + ")";
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.Pointer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Private (copy-on-write) memory mapping of file regions into JavaCPP pointers.<br>
+ * Unlike {@link FileChannel#map(FileChannel.MapMode, long, long)}, regions may be larger than 2GB and the file may be
+ * opened read-only: memory pages are shared with the page cache until modified, and nothing is ever written back
+ * to the file. Mapping is released when the pointer is deallocated.<br>
+ * Native mapping relies on JDK internals, if they are not accessible (i.e. java.base/sun.nio.ch is not opened)
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)} is used instead, with its limitations.
+ */
+@Slf4j
+class FileMapper {
+
+    private static final Method MAP;
+    private static final Method UNMAP;
+    private static final int MAP_PRIVATE;
+    private static final long GRANULARITY;
+
+    static {
+        Method map = null, unmap = null;
+        int prot = -1;
+        long granularity = -1;
+        try {
+            Class<?> c = Class.forName("sun.nio.ch.FileChannelImpl");
+            for (Method m : c.getDeclaredMethods()) {
+                // map0(int prot, long position, long length), followed by boolean isSync in newer JDKs
+                if (m.getName().equals("map0") && m.getParameterTypes().length >= 3
+                        && m.getParameterTypes()[0] == int.class && m.getParameterTypes()[1] == long.class)
+                    map = m;
+                else if (m.getName().equals("unmap0") && m.getParameterTypes().length == 2)
+                    unmap = m;
+            }
+
+            Field pv = c.getDeclaredField("MAP_PV");
+            Field ag = c.getDeclaredField("allocationGranularity");
+            pv.setAccessible(true);
+            ag.setAccessible(true);
+            map.setAccessible(true);
+            unmap.setAccessible(true);
+            prot = pv.getInt(null);
+            granularity = ag.getLong(null);
+        } catch (Exception | Error e) {
+            log.debug("Native file mapping is not available, falling back to FileChannel.map", e);
+            map = null;
+            unmap = null;
+        }
+        MAP = map;
+        UNMAP = unmap;
+        MAP_PRIVATE = prot;
+        GRANULARITY = granularity;
+    }
+
+    private FileMapper() {}
+
+    /**
+     * Map a region of the file into memory, with copy-on-write semantics
+     *
+     * @param channel  channel of the file, opened for reading
+     * @param writable whether the channel is opened for writing too
+     * @param position position of the region in the file
+     * @param length   length of the region, in bytes
+     * @return pointer to the mapped region, or null if the region can't be mapped
+     */
+    static Pointer mapPrivate(FileChannel channel, boolean writable, long position, long length) throws IOException {
+        if (MAP != null) {
+            try {
+                return mapNative(channel, position, length);
+            } catch (IllegalAccessException e) {
+                log.debug("Native file mapping failed, falling back to FileChannel.map", e);
+            }
+        }
+
+        if (!writable || length > Integer.MAX_VALUE)
+            return null;
+
+        // Pointer keeps a reference to the mapped buffer, so it's not unmapped while the pointer is in use
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.PRIVATE, position, length);
+        return new Pointer(mapped);
+    }
+
+    private static Pointer mapNative(FileChannel channel, long position, long length)
+            throws IOException, IllegalAccessException {
+        // mapping must start at allocation granularity boundary
+        final long offset = position % GRANULARITY;
+        final long mapPosition = position - offset;
+        final long mapLength = length + offset;
+
+        final long address;
+        try {
+            address = MAP.getParameterTypes().length == 3
+                    ? (Long) MAP.invoke(channel, MAP_PRIVATE, mapPosition, mapLength)
+                    : (Long) MAP.invoke(channel, MAP_PRIVATE, mapPosition, mapLength, false);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Failed to map file", e.getCause());
+        }
+
+        return new MappedPointer(address + offset, length, address, mapLength);
+    }
+
+    private static class MappedPointer extends Pointer {
+        private MappedPointer(long address, long length, final long mapAddress, final long mapLength) {
+            this.address = address;
+            this.limit = length;
+            this.capacity = length;
+            deallocator(new Deallocator() {
+                @Override
+                public void deallocate() {
+                    try {
+                        UNMAP.invoke(null, mapAddress, mapLength);
+                    } catch (Exception e) {
+                        log.warn("Failed to unmap file region", e);
+                    }
+                }
+            });
+        }
+    }
+}
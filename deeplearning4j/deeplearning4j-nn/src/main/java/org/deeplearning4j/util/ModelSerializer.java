@@ -19,6 +19,8 @@
 package org.deeplearning4j.util;
 
 import org.apache.commons.io.input.CloseShieldInputStream;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
 import org.deeplearning4j.common.util.DL4JFileUtils;
 import org.nd4j.shade.guava.io.Files;
 import lombok.NonNull;
@@ -33,6 +35,9 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
@@ -43,11 +48,19 @@ import org.nd4j.linalg.heartbeat.reports.Task;
 import org.nd4j.common.primitives.Pair;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -67,6 +80,19 @@ public class ModelSerializer {
     public static final String COEFFICIENTS_BIN = "coefficients.bin";
     public static final String NO_PARAMS_MARKER = "noParams.marker";
     public static final String PREPROCESSOR_BIN = "preprocessor.bin";
+    public static final String COEFFICIENTS_RAW = "coefficients.raw";
+
+    /**
+     * Alignment (in bytes, relative to the start of the file) of the parameters written by {@link #writeModelMappable(Model, File, boolean)}
+     */
+    public static final int PARAMS_ALIGNMENT = 64;
+
+    private static final byte[] RAW_MAGIC = "DL4JRAW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int RAW_HEADER_LENGTH = 64;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final short ALIGNMENT_EXTRA_ID = (short) 0xD935;
+    private static final int RAW_CHUNK_SIZE = 1 << 20;
 
     private ModelSerializer() {}
 
@@ -138,8 +164,74 @@ public class ModelSerializer {
     public static void writeModel(@NonNull Model model, @NonNull OutputStream stream, boolean saveUpdater,DataNormalization dataNormalization)
             throws IOException {
         ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+        writeModel(model, zipfile, true, saveUpdater, dataNormalization);
+        zipfile.close();
+    }
 
-        // Save configuration as JSON
+    /**
+     * Write a model to a file, with parameters stored uncompressed and aligned to {@link #PARAMS_ALIGNMENT} bytes,
+     * so that they can be memory-mapped by {@link #restoreMultiLayerNetworkMapped(File)} and
+     * {@link #restoreComputationGraphMapped(File)}.<br>
+     * The file is still a valid model zip file: it can be restored with any other restore method, and is usually
+     * larger than the one written by {@link #writeModel(Model, File, boolean)} as parameters are not compressed.
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @throws IOException
+     */
+    public static void writeModelMappable(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        writeModelMappable(model, file, saveUpdater, null);
+    }
+
+    /**
+     * Write a model to a file, with parameters stored uncompressed and aligned to {@link #PARAMS_ALIGNMENT} bytes.
+     * See {@link #writeModelMappable(Model, File, boolean)}
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @throws IOException
+     */
+    public static void writeModelMappable(@NonNull Model model, @NonNull File file, boolean saveUpdater,
+                                          DataNormalization dataNormalization) throws IOException {
+        INDArray params = model.params();
+        if (params == null) {
+            writeModel(model, file, saveUpdater, dataNormalization);
+            return;
+        }
+
+        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            ZipOutputStream zipfile = new ZipOutputStream(stream);
+            // Parameters go first, so that their offset is known from the first local file header
+            writeRawParams(params, zipfile);
+            writeModel(model, zipfile, false, saveUpdater, dataNormalization);
+            zipfile.close();
+        }
+    }
+
+    /**
+     * Write a model to a file, given its configuration and (copies of) its parameters and updater state - for
+     * example, a snapshot of a model taken during training. The file can be restored as any other model file.
+     *
+     * @param configurationJson JSON of the MultiLayerConfiguration or ComputationGraphConfiguration of the model
+     * @param params the flattened parameters of the model (may be null)
+     * @param updaterState the updater state of the model (may be null)
+     * @param file the file to write to
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull String configurationJson, INDArray params, INDArray updaterState,
+                                  @NonNull File file) throws IOException {
+        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            ZipOutputStream zipfile = new ZipOutputStream(stream);
+            writeModel(zipfile, configurationJson, params, true, updaterState, null);
+            zipfile.close();
+        }
+    }
+
+    private static void writeModel(Model model, ZipOutputStream zipfile, boolean saveParams, boolean saveUpdater,
+                                   DataNormalization dataNormalization) throws IOException {
         String json = "";
         if (model instanceof MultiLayerNetwork) {
             json = ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
@@ -147,43 +239,52 @@ public class ModelSerializer {
             json = ((ComputationGraph) model).getConfiguration().toJson();
         }
 
+        INDArray updaterState = null;
+        if (saveUpdater) {
+            if (model instanceof MultiLayerNetwork) {
+                updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+            } else if (model instanceof ComputationGraph) {
+                updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+            }
+        }
+
+        writeModel(zipfile, json, model.params(), saveParams, updaterState, dataNormalization);
+    }
+
+    private static void writeModel(ZipOutputStream zipfile, String json, INDArray params, boolean saveParams,
+                                   INDArray updaterState, DataNormalization dataNormalization) throws IOException {
+        // Save configuration as JSON
         ZipEntry config = new ZipEntry(CONFIGURATION_JSON);
         zipfile.putNextEntry(config);
         zipfile.write(json.getBytes());
 
         // Save parameters as binary
-        ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
-        zipfile.putNextEntry(coefficients);
         DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile));
-        INDArray params = model.params();
-        if(params != null) {
+        if (!saveParams) {
+            // already written as COEFFICIENTS_RAW
+        } else if(params != null) {
+            ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
+            zipfile.putNextEntry(coefficients);
             try {
-                Nd4j.write(model.params(), dos);
+                Nd4j.write(params, dos);
             } finally {
                 dos.flush();
             }
         } else {
+            ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
+            zipfile.putNextEntry(coefficients);
             ZipEntry noParamsMarker = new ZipEntry(NO_PARAMS_MARKER);
             zipfile.putNextEntry(noParamsMarker);
         }
 
-        if (saveUpdater) {
-            INDArray updaterState = null;
-            if (model instanceof MultiLayerNetwork) {
-                updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
-            } else if (model instanceof ComputationGraph) {
-                updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
-            }
-
-            if (updaterState != null && updaterState.length() > 0) {
-                ZipEntry updater = new ZipEntry(UPDATER_BIN);
-                zipfile.putNextEntry(updater);
+        if (updaterState != null && updaterState.length() > 0) {
+            ZipEntry updater = new ZipEntry(UPDATER_BIN);
+            zipfile.putNextEntry(updater);
 
-                try {
-                    Nd4j.write(updaterState, dos);
-                } finally {
-                    dos.flush();
-                }
+            try {
+                Nd4j.write(updaterState, dos);
+            } finally {
+                dos.flush();
             }
         }
 
@@ -195,8 +296,178 @@ public class ModelSerializer {
             NormalizerSerializer.getDefault().write(dataNormalization, zipfile);
         }
 
-        dos.close();
-        zipfile.close();
+        dos.flush();
+    }
+
+    /**
+     * Write parameters as a stored (uncompressed) entry: fixed size header followed by raw parameters in native byte
+     * order. Entry data is aligned to PARAMS_ALIGNMENT bytes by padding the extra field of the local file header,
+     * assuming this is the first entry of the file
+     */
+    private static void writeRawParams(INDArray params, ZipOutputStream zipfile) throws IOException {
+        if (params.isView())
+            params = params.dup();
+        Nd4j.getAffinityManager().ensureLocation(params, AffinityManager.Location.HOST);
+
+        long length = params.length();
+        long dataBytes = length * params.dataType().width();
+        byte[] header = rawHeader(params.dataType(), length);
+        BytePointer data = new BytePointer(params.data().addressPointer());
+        data.capacity(dataBytes);
+
+        // stored entries need size and crc upfront
+        CRC32 crc = new CRC32();
+        crc.update(header);
+        for (long pos = 0; pos < dataBytes; pos += RAW_CHUNK_SIZE) {
+            crc.update(data.position(pos).limit(Math.min(dataBytes, pos + RAW_CHUNK_SIZE)).asByteBuffer());
+        }
+
+        long size = header.length + dataBytes;
+        ZipEntry entry = new ZipEntry(COEFFICIENTS_RAW);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+
+        // local header: 30 bytes + name + zip64 extra (if required) + our padding extra (4 bytes + padding)
+        int headerLength = LOCAL_HEADER_LENGTH + COEFFICIENTS_RAW.getBytes(StandardCharsets.UTF_8).length
+                + (size >= 0xFFFFFFFFL ? 20 : 0) + 4;
+        int padding = (PARAMS_ALIGNMENT - headerLength % PARAMS_ALIGNMENT) % PARAMS_ALIGNMENT;
+        ByteBuffer extra = ByteBuffer.allocate(4 + padding).order(ByteOrder.LITTLE_ENDIAN);
+        extra.putShort(ALIGNMENT_EXTRA_ID).putShort((short) padding);
+        entry.setExtra(extra.array());
+
+        zipfile.putNextEntry(entry);
+        zipfile.write(header);
+        byte[] buffer = new byte[RAW_CHUNK_SIZE];
+        for (long pos = 0; pos < dataBytes; pos += RAW_CHUNK_SIZE) {
+            ByteBuffer chunk = data.position(pos).limit(Math.min(dataBytes, pos + RAW_CHUNK_SIZE)).asByteBuffer();
+            int n = chunk.remaining();
+            chunk.get(buffer, 0, n);
+            zipfile.write(buffer, 0, n);
+        }
+        zipfile.closeEntry();
+    }
+
+    private static byte[] rawHeader(DataType dataType, long length) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(RAW_HEADER_LENGTH);
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.write(RAW_MAGIC);
+        dos.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+        dos.writeUTF(dataType.name());
+        dos.writeLong(length);
+        dos.flush();
+
+        byte[] header = new byte[RAW_HEADER_LENGTH];
+        System.arraycopy(baos.toByteArray(), 0, header, 0, baos.size());
+        return header;
+    }
+
+    /**
+     * Read raw parameters (header and data) from the channel into a new array
+     */
+    private static INDArray readRawParams(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RAW_HEADER_LENGTH);
+        readFully(channel, header);
+        Pair<DataType, Long> type = parseRawHeader(header.array());
+        if (type == null)
+            throw new IOException("Invalid " + COEFFICIENTS_RAW + " entry: unknown header");
+
+        long dataBytes = type.getSecond() * type.getFirst().width();
+        INDArray params = Nd4j.createUninitialized(type.getFirst(), 1, type.getSecond());
+        BytePointer data = new BytePointer(params.data().addressPointer());
+        data.capacity(dataBytes);
+        for (long pos = 0; pos < dataBytes; pos += RAW_CHUNK_SIZE) {
+            readFully(channel, data.position(pos).limit(Math.min(dataBytes, pos + RAW_CHUNK_SIZE)).asByteBuffer());
+        }
+        Nd4j.getAffinityManager().tagLocation(params, AffinityManager.Location.HOST);
+        return params;
+    }
+
+    /**
+     * Read parameters of a model file written by {@link #writeModelMappable(Model, File, boolean)}, either by
+     * mapping them into memory or by reading them into a new array
+     *
+     * @return parameters, or null if the file doesn't have the mappable layout
+     */
+    private static INDArray readRawParams(File file, boolean memoryMap) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < LOCAL_HEADER_LENGTH)
+                return null;
+
+            ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, local);
+            int nameLength = local.getShort(26) & 0xFFFF;
+            int extraLength = local.getShort(28) & 0xFFFF;
+            if (local.getInt(0) != LOCAL_HEADER_SIGNATURE || local.getShort(8) != ZipEntry.STORED
+                    || nameLength != COEFFICIENTS_RAW.length())
+                return null;
+
+            ByteBuffer name = ByteBuffer.allocate(nameLength);
+            readFully(channel, name);
+            if (!COEFFICIENTS_RAW.equals(new String(name.array(), StandardCharsets.UTF_8)))
+                return null;
+
+            long dataStart = LOCAL_HEADER_LENGTH + nameLength + extraLength;
+            ByteBuffer header = ByteBuffer.allocate(RAW_HEADER_LENGTH);
+            channel.position(dataStart);
+            readFully(channel, header);
+            Pair<DataType, Long> type = parseRawHeader(header.array());
+            if (type == null)
+                return null;
+
+            long dataBytes = type.getSecond() * type.getFirst().width();
+            Pointer mapped = null;
+            if (memoryMap) {
+                // Private (copy-on-write) mapping: pages are shared with the page cache until modified, and nothing is
+                // ever written back to the file. Mapping stays valid after the channel is closed
+                mapped = FileMapper.mapPrivate(channel, false, dataStart + RAW_HEADER_LENGTH, dataBytes);
+                if (mapped == null && file.canWrite()) {
+                    try (RandomAccessFile rw = new RandomAccessFile(file, "rw")) {
+                        mapped = FileMapper.mapPrivate(rw.getChannel(), true, dataStart + RAW_HEADER_LENGTH, dataBytes);
+                    }
+                }
+            }
+
+            if (mapped == null) {
+                if (memoryMap)
+                    log.info("Parameters of {} can't be memory-mapped, reading them into memory instead", file);
+                channel.position(dataStart);
+                return readRawParams(channel);
+            }
+
+            DataBuffer buffer = Nd4j.createBuffer(mapped, type.getSecond(), type.getFirst());
+            return Nd4j.create(buffer, 1, type.getSecond());
+        }
+    }
+
+    /**
+     * @return data type and length of the parameters, or null if header is not valid
+     */
+    private static Pair<DataType, Long> parseRawHeader(byte[] header) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(header));
+        byte[] magic = new byte[RAW_MAGIC.length];
+        dis.readFully(magic);
+        if (!Arrays.equals(magic, RAW_MAGIC))
+            return null;
+
+        boolean littleEndian = dis.readBoolean();
+        if (littleEndian != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN))
+            throw new IllegalStateException("Parameters were saved with " + (littleEndian ? "little" : "big")
+                    + " endian byte order, native byte order is " + ByteOrder.nativeOrder()
+                    + ": restore is not supported on this platform");
+
+        DataType dataType = DataType.valueOf(dis.readUTF());
+        long length = dis.readLong();
+        return new Pair<>(dataType, length);
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of model file");
+        }
     }
 
     /**
@@ -220,6 +491,10 @@ public class ModelSerializer {
      */
     public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
             throws IOException {
+        INDArray params = readRawParams(file, false);
+        if (params != null)
+            return restoreMultiLayerNetworkHelper(loadZipData(file, loadUpdater), params, loadUpdater).getFirst();
+
         try(InputStream is = new BufferedInputStream(new FileInputStream(file))){
             return restoreMultiLayerNetwork(is, loadUpdater);
         }
@@ -240,19 +515,47 @@ public class ModelSerializer {
         return restoreMultiLayerNetworkHelper(is, loadUpdater).getFirst();
     }
 
+    /**
+     * Load a MultiLayerNetwork for inference from a file written by {@link #writeModelMappable(Model, File, boolean)}:
+     * parameters are memory-mapped into the flattened parameters array of the network instead of being read, and
+     * updater state is not loaded.<br>
+     * Mapping is private (copy-on-write): memory pages are shared by all processes mapping the same file until they
+     * are modified, and the file itself is never modified. If the file has not been written by
+     * {@link #writeModelMappable(Model, File, boolean)}, parameters are read into memory instead.<br>
+     * Read-only files and parameters larger than 2GB are mapped natively, which requires access to JDK internals
+     * (--add-opens java.base/sun.nio.ch=ALL-UNNAMED on Java 9+): without it, such files are read into memory as well.
+     *
+     * @param file the file to load from
+     * @return the loaded multi layer network, without updater state
+     * @throws IOException
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetworkMapped(@NonNull File file) throws IOException {
+        INDArray params = readRawParams(file, true);
+        if (params == null) {
+            log.warn("File {} was not written with ModelSerializer.writeModelMappable, parameters can't be memory-mapped", file);
+            return restoreMultiLayerNetwork(file, false);
+        }
+        return restoreMultiLayerNetworkHelper(loadZipData(file, false), params, false).getFirst();
+    }
+
     private static Pair<MultiLayerNetwork, Map<String,byte[]>> restoreMultiLayerNetworkHelper(@NonNull InputStream is, boolean loadUpdater)
             throws IOException {
         checkInputStream(is);
 
         Map<String, byte[]> zipFile = loadZipData(is);
+        return restoreMultiLayerNetworkHelper(zipFile, null, loadUpdater);
+    }
 
+    private static Pair<MultiLayerNetwork, Map<String,byte[]>> restoreMultiLayerNetworkHelper(Map<String, byte[]> zipFile,
+                                                                                          INDArray rawParams, boolean loadUpdater)
+            throws IOException {
         boolean gotConfig = false;
         boolean gotCoefficients = false;
         boolean gotUpdaterState = false;
         boolean gotPreProcessor = false;
 
         String json = "";
-        INDArray params = null;
+        INDArray params = rawParams;
         Updater updater = null;
         INDArray updaterState = null;
         DataSetPreProcessor preProcessor = null;
@@ -278,7 +581,9 @@ public class ModelSerializer {
 
 
         byte[] coefficients = zipFile.get(COEFFICIENTS_BIN);
-        if (coefficients != null ) {
+        if (params != null) {
+            gotCoefficients = true;
+        } else if (coefficients != null ) {
             if(coefficients.length > 0) {
                 InputStream stream = new ByteArrayInputStream(coefficients);
                 DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
@@ -290,6 +595,9 @@ public class ModelSerializer {
                 byte[] noParamsMarker = zipFile.get(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (zipFile.containsKey(COEFFICIENTS_RAW)) {
+            params = readRawParams(Channels.newChannel(new ByteArrayInputStream(zipFile.get(COEFFICIENTS_RAW))));
+            gotCoefficients = true;
         }
 
         if (loadUpdater) {
@@ -465,19 +773,42 @@ public class ModelSerializer {
         return restoreComputationGraphHelper(is, loadUpdater).getFirst();
     }
 
+    /**
+     * Load a ComputationGraph for inference from a file written by {@link #writeModelMappable(Model, File, boolean)}:
+     * parameters are memory-mapped into the flattened parameters array of the network instead of being read, and
+     * updater state is not loaded. See {@link #restoreMultiLayerNetworkMapped(File)}
+     *
+     * @param file the file to load from
+     * @return the loaded computation graph, without updater state
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraphMapped(@NonNull File file) throws IOException {
+        INDArray params = readRawParams(file, true);
+        if (params == null) {
+            log.warn("File {} was not written with ModelSerializer.writeModelMappable, parameters can't be memory-mapped", file);
+            return restoreComputationGraph(file, false);
+        }
+        return restoreComputationGraphHelper(loadZipData(file, false), params, false).getFirst();
+    }
+
     private static Pair<ComputationGraph,Map<String,byte[]>> restoreComputationGraphHelper(@NonNull InputStream is, boolean loadUpdater)
             throws IOException {
         checkInputStream(is);
 
         Map<String, byte[]> files = loadZipData(is);
+        return restoreComputationGraphHelper(files, null, loadUpdater);
+    }
 
+    private static Pair<ComputationGraph,Map<String,byte[]>> restoreComputationGraphHelper(Map<String, byte[]> files,
+                                                                                         INDArray rawParams, boolean loadUpdater)
+            throws IOException {
         boolean gotConfig = false;
         boolean gotCoefficients = false;
         boolean gotUpdaterState = false;
         boolean gotPreProcessor = false;
 
         String json = "";
-        INDArray params = null;
+        INDArray params = rawParams;
         INDArray updaterState = null;
         DataSetPreProcessor preProcessor = null;
 
@@ -502,7 +833,9 @@ public class ModelSerializer {
 
 
         byte[] coefficients = files.get(COEFFICIENTS_BIN);
-        if (coefficients != null) {
+        if (params != null) {
+            gotCoefficients = true;
+        } else if (coefficients != null) {
             if(coefficients.length > 0) {
                 InputStream stream = new ByteArrayInputStream(coefficients);
                 DataInputStream dis = new DataInputStream(stream);
@@ -514,6 +847,9 @@ public class ModelSerializer {
                 byte[] noParamsMarker = files.get(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (files.containsKey(COEFFICIENTS_RAW)) {
+            params = readRawParams(Channels.newChannel(new ByteArrayInputStream(files.get(COEFFICIENTS_RAW))));
+            gotCoefficients = true;
         }
 
 
@@ -972,6 +1308,27 @@ public class ModelSerializer {
         }
     }
 
+    /**
+     * Load all entries of the model file, except for raw parameters and (optionally) the updater state
+     */
+    private static Map<String, byte[]> loadZipData(File file, boolean loadUpdater) throws IOException {
+        Map<String, byte[]> result = new HashMap<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || COEFFICIENTS_RAW.equals(entry.getName())
+                        || (!loadUpdater && UPDATER_BIN.equals(entry.getName())))
+                    continue;
+
+                try (InputStream is = zipFile.getInputStream(entry)) {
+                    result.put(entry.getName(), IOUtils.toByteArray(is));
+                }
+            }
+        }
+        return result;
+    }
+
     private static Map<String, byte[]> loadZipData(InputStream is) throws IOException {
     	Map<String, byte[]> result = new HashMap<>();
 		try (final ZipInputStream zis = new ZipInputStream(is)) {
@@ -28,6 +28,8 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
+import org.deeplearning4j.parallelism.inference.InferenceTimeoutException;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
@@ -99,6 +101,18 @@ public class InplaceParallelInference extends ParallelInference {
         return selector.output(input, inputMasks);
     }
 
+    /**
+     * Inference happens in the calling thread, so priority has no effect here, and deadline is checked only once,
+     * before the forward pass
+     */
+    @Override
+    protected INDArray[] output(INDArray[] input, INDArray[] inputMasks, @NonNull InferencePriority priority, long deadlineNanos) {
+        if (deadlineNanos < System.nanoTime())
+            throw new InferenceTimeoutException("Inference request deadline passed before execution");
+
+        return selector.output(input, inputMasks);
+    }
+
     /**
      * This method does forward pass and returns output provided by OutputAdapter
      *
@@ -28,11 +28,18 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.deeplearning4j.parallelism.inference.InferenceLanes;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
+import org.deeplearning4j.parallelism.inference.InferenceTimeoutException;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.PriorityScheduling;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchScheduler;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.PooledBatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.pool.BatchBufferPool;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
@@ -43,7 +50,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -63,14 +70,25 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected PriorityScheduling priorityScheduling = PriorityScheduling.STRICT;
+    protected long latencyTargetNanos;
+    protected int[] batchBuckets;
+    protected boolean pooledBuffers;
+    protected long maxPooledBytes = BatchBufferPool.DEFAULT_MAX_POOLED_BYTES;
 
-    // this queue holds data for inference
-    private BlockingQueue<InferenceObservable> observables;
+    // used in ADAPTIVE mode only
+    protected AdaptiveBatchScheduler scheduler;
+    // used if pooled batch buffers are enabled only
+    protected BatchBufferPool bufferPool;
+
+    // these queues hold data for inference, one queue per InferencePriority
+    private InferenceLanes lanes;
 
     private final Object locker = new Object();
 
     private InferenceWorker[] zoo;
-    private ObservablesProvider provider;
+    // one provider per InferencePriority
+    private ObservablesProvider[] providers;
 
 
 
@@ -78,6 +96,7 @@ public class ParallelInference {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_LATENCY_TARGET_MS = 20;
 
 
 
@@ -120,7 +139,7 @@ public class ParallelInference {
     }
 
     protected void init() {
-        observables = new LinkedBlockingQueue<>(queueLimit);
+        lanes = new InferenceLanes(queueLimit, priorityScheduling);
 
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
@@ -132,19 +151,59 @@ public class ParallelInference {
             boolean cRoot = !assignedRoot.get() && cDevice == currentDevice;
             assignedRoot.compareAndSet(false, cRoot);
 
-            zoo[i] = new InferenceWorker(i, model, observables, cRoot, cDevice);
+            zoo[i] = new InferenceWorker(i, model, lanes, cRoot, cDevice);
 
             zoo[i].setDaemon(true);
             zoo[i].start();
         }
 
 
+        InferencePriority[] priorities = InferencePriority.values();
+        if (pooledBuffers && (inferenceMode == InferenceMode.BATCHED || inferenceMode == InferenceMode.ADAPTIVE)) {
+            // one buffer per busy worker, one more per queued batch and one per batch being formed
+            bufferPool = new BatchBufferPool(batchLimit, 2 * workers + priorities.length, maxPooledBytes);
+        }
+
         if (inferenceMode == InferenceMode.BATCHED) {
             log.info("Initializing ObservablesProvider...");
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            providers = new ObservablesProvider[priorities.length];
+            for (int e = 0; e < priorities.length; e++)
+                providers[e] = new ObservablesProvider(nanos, batchLimit, lanes.lane(priorities[e]), null, bufferPool);
+        } else if (inferenceMode == InferenceMode.ADAPTIVE) {
+            log.info("Initializing AdaptiveObservablesProvider...");
+            scheduler = new AdaptiveBatchScheduler(latencyTargetNanos, batchLimit, workers, batchBuckets);
+            providers = new ObservablesProvider[priorities.length];
+            for (int e = 0; e < priorities.length; e++)
+                providers[e] = new AdaptiveObservablesProvider(nanos, batchLimit, lanes, priorities[e], scheduler,
+                                bufferPool);
         }
     }
 
+    /**
+     * This method returns number of requests that were dropped without execution, because their deadline passed
+     */
+    public long getExpiredCount() {
+        return lanes == null ? 0 : lanes.getExpiredCount();
+    }
+
+    /**
+     * This method returns scheduler used in ADAPTIVE inference mode, with batch size, wait time and latency histograms
+     *
+     * @return scheduler, or null for other inference modes
+     */
+    public AdaptiveBatchScheduler getBatchScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * This method returns pool of batch buffers, with allocation and reuse counters
+     *
+     * @return pool, or null if pooled batch buffers are disabled
+     */
+    public BatchBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     protected long getWorkerCounter(int workerIdx) {
         return zoo[workerIdx].getCounterValue();
     }
@@ -230,6 +289,59 @@ public class ParallelInference {
      * @return Output from the network
      */
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks){
+        return output(input, inputMasks, InferencePriority.NORMAL);
+    }
+
+    /**
+     * Generate predictions/output from the network, using given priority lane and deadline
+     *
+     * @param input    Input to the network
+     * @param priority Priority of this request
+     * @param timeout  Time after which result is not needed anymore
+     * @param timeUnit Time unit for timeout
+     * @return Output from the network
+     * @throws InferenceTimeoutException if output wasn't available within timeout
+     */
+    public INDArray output(INDArray input, @NonNull InferencePriority priority, long timeout, @NonNull TimeUnit timeUnit) {
+        return single(output(new INDArray[]{input}, null, priority, timeout, timeUnit));
+    }
+
+    /**
+     * Generate predictions/outputs from the network, using given priority lane
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @param priority   Priority of this request
+     * @return Output from the network
+     */
+    public INDArray[] output(INDArray[] input, INDArray[] inputMasks, @NonNull InferencePriority priority) {
+        return output(input, inputMasks, priority, Long.MAX_VALUE);
+    }
+
+    /**
+     * Generate predictions/outputs from the network, using given priority lane and deadline.
+     * If deadline passes before the request reaches a worker, the request is dropped without execution.
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @param priority   Priority of this request
+     * @param timeout    Time after which result is not needed anymore
+     * @param timeUnit   Time unit for timeout
+     * @return Output from the network
+     * @throws InferenceTimeoutException if output wasn't available within timeout
+     */
+    public INDArray[] output(INDArray[] input, INDArray[] inputMasks, @NonNull InferencePriority priority, long timeout,
+                    @NonNull TimeUnit timeUnit) {
+        if (timeout < 1)
+            throw new IllegalArgumentException("Timeout should be positive value");
+
+        return output(input, inputMasks, priority, System.nanoTime() + timeUnit.toNanos(timeout));
+    }
+
+    /**
+     * @param deadlineNanos System.nanoTime() based deadline, Long.MAX_VALUE for no deadline
+     */
+    protected INDArray[] output(INDArray[] input, INDArray[] inputMasks, @NonNull InferencePriority priority, long deadlineNanos) {
         Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
 
         // basically, depending on model type we either throw stuff to specific model, or wait for batch
@@ -237,31 +349,42 @@ public class ParallelInference {
         InferenceObservable observable;
 
         if (inferenceMode == InferenceMode.SEQUENTIAL) {
-            observable = new BasicInferenceObservable(input, inputMasks);
+            observable = new BasicInferenceObservable(input, inputMasks, deadlineNanos);
             observable.addObserver(observer);
             try {
-                observables.put(observable);
+                lanes.lane(priority).put(observable);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
         } else {
-            observable = provider.setInput(observer, input, inputMasks);
+            observable = providers[priority.ordinal()].setInput(observer, input, inputMasks, deadlineNanos);
         }
 
+        boolean done;
         try {
             // submit query to processing
-            // and block until Observable returns
-            //observer.wait();
-
-            observer.waitTillDone();
+            // and block until Observable returns, or deadline passes
+            done = observer.waitTillDone(deadlineNanos);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
 
+        if (!done)
+            throw new InferenceTimeoutException("Inference request wasn't completed within timeout");
+
         return observable.getOutput();
     }
 
+    private static INDArray single(INDArray[] out) {
+        if(out.length != 1){
+            throw new IllegalArgumentException("Network has multiple (" + out.length + ") output arrays, but only a" +
+                    " single output can be returned using this method. Use for output(INDArray[] input, INDArray[] " +
+                    "inputMasks) for multi-output nets");
+        }
+        return out[0];
+    }
+
     /**
      * This method does forward pass and returns output provided by OutputAdapter
      *
@@ -293,7 +416,12 @@ public class ParallelInference {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LATENCY_TARGET_MS);
+        private int[] batchBuckets;
+        private boolean pooledBuffers = false;
+        private long maxPooledBytes = BatchBufferPool.DEFAULT_MAX_POOLED_BYTES;
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+        protected PriorityScheduling priorityScheduling = PriorityScheduling.STRICT;
 
         public Builder(@NonNull Model model) {
             this.model = model;
@@ -306,6 +434,7 @@ public class ParallelInference {
          * SEQUENTIAL: Input will be sent to last-used worker unmodified.
          * BATCHED: Multiple inputs will be packed into single batch, and
          * sent to last-used device.
+         * ADAPTIVE: Same as BATCHED, but batch size is picked dynamically to meet latency target.
          *
          * @param inferenceMode
          * @return
@@ -327,6 +456,20 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method defines how requests of different {@link InferencePriority} lanes are scheduled.
+         * Default is {@link PriorityScheduling#STRICT}: HIGH priority requests always go first, so steady
+         * HIGH priority traffic starves lower priorities. Use {@link PriorityScheduling#WEIGHTED} to give every
+         * lane a guaranteed share.
+         *
+         * @param priorityScheduling
+         * @return
+         */
+        public Builder priorityScheduling(@NonNull PriorityScheduling priorityScheduling) {
+            this.priorityScheduling = priorityScheduling;
+            return this;
+        }
+
 
         /**
          * This method defines, how many model copies will be used for inference.
@@ -363,6 +506,80 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method defines p99 latency target for a single request.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: 20 ms
+         *
+         * @param latency
+         * @param timeUnit
+         * @return
+         */
+        public Builder latencyTarget(long latency, @NonNull TimeUnit timeUnit) {
+            if (latency < 1)
+                throw new IllegalStateException("Latency target should be positive value");
+
+            this.latencyTargetNanos = timeUnit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * This method defines batch sizes (in examples) batches will be padded to, so the model
+         * only sees a limited set of input shapes. Padding is disabled unless buckets are set.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         * PLEASE NOTE: buckets are counted in examples, while batchLimit is counted in requests
+         *
+         * Default value: null, no padding
+         *
+         * @param buckets
+         * @return
+         */
+        public Builder batchBuckets(@NonNull int... buckets) {
+            for (int b : buckets)
+                if (b < 1)
+                    throw new IllegalStateException("Batch buckets should be positive values");
+
+            this.batchBuckets = buckets;
+            return this;
+        }
+
+        /**
+         * This method enables pooled batch buffers for BATCHED and ADAPTIVE inference modes.<br>
+         * Requests are copied straight into pre-allocated batch arrays instead of being concatenated
+         * for every batch, so steady-state batching doesn't allocate. Output arrays returned to callers are views
+         * of the batch output. Each pooled buffer holds batchLimit rows, and buffers are shared by all requests with
+         * the same trailing shape. Requests with masks, or with shapes that don't fit a pooled buffer, are batched as usual.
+         *
+         * Default value: false
+         *
+         * @param reallyPool
+         * @return
+         */
+        public Builder pooledBuffers(boolean reallyPool) {
+            this.pooledBuffers = reallyPool;
+            return this;
+        }
+
+        /**
+         * This method defines max total size of pooled batch buffers, in bytes. Once it's reached, idle buffers of
+         * other shapes are freed, or batches fall back to regular concatenation.
+         *
+         * Default value: 512MB
+         *
+         * @param maxPooledBytes
+         * @return
+         */
+        public Builder maxPooledBytes(long maxPooledBytes) {
+            if (maxPooledBytes < 1)
+                throw new IllegalStateException("Max pooled bytes should be positive value");
+
+            this.maxPooledBytes = maxPooledBytes;
+            return this;
+        }
+
         /**
          * This method defines buffer queue size.
          *
@@ -403,6 +620,11 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.priorityScheduling = this.priorityScheduling;
+                inference.latencyTargetNanos = this.latencyTargetNanos;
+                inference.batchBuckets = this.batchBuckets;
+                inference.pooledBuffers = this.pooledBuffers;
+                inference.maxPooledBytes = this.maxPooledBytes;
 
                 inference.init();
 
@@ -417,7 +639,7 @@ public class ParallelInference {
      *
      */
     private class InferenceWorker extends Thread implements Runnable {
-        private BlockingQueue<InferenceObservable> inputQueue;
+        private InferenceLanes inputQueue;
         private AtomicBoolean shouldWork = new AtomicBoolean(true);
         private AtomicBoolean isStopped = new AtomicBoolean(false);
         private Model protoModel;
@@ -428,7 +650,7 @@ public class ParallelInference {
 
         private ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
 
-        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue, boolean rootDevice, int deviceId) {
+        private InferenceWorker(int id, @NonNull Model model, @NonNull InferenceLanes inputQueue, boolean rootDevice, int deviceId) {
             this.inputQueue = inputQueue;
             this.protoModel = model;
             this.rootDevice = rootDevice;
@@ -505,6 +727,7 @@ public class ParallelInference {
 
                     if (request != null) {
                         counter.incrementAndGet();
+                        long startNanos = System.nanoTime();
 
                         // FIXME: get rid of instanceof here, model won't change during runtime anyway
                         if (isCG) {
@@ -523,6 +746,7 @@ public class ParallelInference {
                                     }
 
                                 }
+                                recordBatch(request, startNanos);
                                 request.setOutputBatches(out);
                             } catch (Exception e){
                                 request.setOutputException(e);
@@ -544,6 +768,7 @@ public class ParallelInference {
                                         modelLock.readLock().unlock();
                                     }
                                 }
+                                recordBatch(request, startNanos);
                                 request.setOutputBatches(out);
                             } catch (Exception e){
                                 request.setOutputException(e);
@@ -565,6 +790,13 @@ public class ParallelInference {
             }
         }
 
+        private void recordBatch(InferenceObservable request, long startNanos) {
+            if (scheduler != null && request instanceof BatchedInferenceObservable) {
+                BatchedInferenceObservable batch = (BatchedInferenceObservable) request;
+                scheduler.recordBatch(batch.getArrivalTimes(), batch.getNumExamples(), startNanos, System.nanoTime());
+            }
+        }
+
         protected void shutdown() {
             shouldWork.set(false);
             while (!isStopped.get()) {
@@ -579,13 +811,28 @@ public class ParallelInference {
         private long nanos;
         private int batchLimit;
 
+        private int[] buckets;
+        private BatchBufferPool pool;
+
         private volatile BatchedInferenceObservable currentObservable;
+        private int currentLimit;
         private final Object locker = new Object();
 
         protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue) {
+            this(nanos, batchLimit, queue, null, null);
+        }
+
+        /**
+         * @param buckets batch sizes batches are padded to, may be null
+         * @param pool    pool of batch buffers, may be null
+         */
+        protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue,
+                        int[] buckets, BatchBufferPool pool) {
             this.targetQueue = queue;
             this.nanos = nanos;
             this.batchLimit = batchLimit;
+            this.buckets = buckets;
+            this.pool = pool;
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray input){
@@ -597,15 +844,21 @@ public class ParallelInference {
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask) {
+            return setInput(observer, input, inputMask, Long.MAX_VALUE);
+        }
+
+        protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask, long deadlineNanos) {
             synchronized (locker) {
                 boolean isNew = false;
-                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
-                                || currentObservable.isLocked()) {
+                // isLocked() should be the last check here: it holds read lock till addInput() call
+                if (currentObservable == null || currentObservable.getCounter() >= currentLimit
+                                || !currentObservable.canAccept(input, inputMask) || currentObservable.isLocked()) {
                     isNew = true;
-                    currentObservable = new BatchedInferenceObservable();
+                    currentObservable = newObservable(input, inputMask);
+                    currentLimit = batchLimit();
                 }
 
-                currentObservable.addInput(input, inputMask);
+                currentObservable.addInput(input, inputMask, deadlineNanos);
                 currentObservable.addObserver(observer);
 
                 try {
@@ -619,5 +872,51 @@ public class ParallelInference {
                 return currentObservable;
             }
         }
+
+        /**
+         * This method returns maximal number of requests for the batch being formed.
+         * Called once per batch, when the batch is created
+         */
+        protected int batchLimit() {
+            return batchLimit;
+        }
+
+        protected BatchedInferenceObservable newObservable(INDArray[] input, INDArray[] inputMask) {
+            if (pool != null && inputMask == null) {
+                BatchBufferPool.Buffer buffer = pool.acquire(input);
+                if (buffer != null)
+                    return new PooledBatchedInferenceObservable(buffer, buckets);
+            }
+
+            return new BatchedInferenceObservable(buckets);
+        }
+    }
+
+
+    /**
+     * ObservablesProvider for ADAPTIVE mode: batch limit is provided by AdaptiveBatchScheduler, based on
+     * number of batches pending in all lanes, and batches are padded to scheduler buckets, if any
+     */
+    protected static class AdaptiveObservablesProvider extends ObservablesProvider {
+        private final InferenceLanes lanes;
+        private final AdaptiveBatchScheduler scheduler;
+
+        protected AdaptiveObservablesProvider(long nanos, int batchLimit, @NonNull InferenceLanes lanes,
+                        @NonNull InferencePriority priority, @NonNull AdaptiveBatchScheduler scheduler) {
+            this(nanos, batchLimit, lanes, priority, scheduler, null);
+        }
+
+        protected AdaptiveObservablesProvider(long nanos, int batchLimit, @NonNull InferenceLanes lanes,
+                        @NonNull InferencePriority priority, @NonNull AdaptiveBatchScheduler scheduler,
+                        BatchBufferPool pool) {
+            super(nanos, batchLimit, lanes.lane(priority), scheduler.getBuckets(), pool);
+            this.lanes = lanes;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        protected int batchLimit() {
+            return scheduler.batchLimit(lanes.size());
+        }
     }
 }
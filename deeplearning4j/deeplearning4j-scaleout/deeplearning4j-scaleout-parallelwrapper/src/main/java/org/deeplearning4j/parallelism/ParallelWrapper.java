@@ -23,6 +23,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.core.storage.StatsStorageRouter;
 import org.deeplearning4j.core.storage.listener.RoutingIterationListener;
 import org.deeplearning4j.optimize.solvers.accumulation.EncodingHandler;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.threshold.AdaptiveThresholdAlgorithm;
 import org.nd4j.linalg.dataset.AsyncDataSetIterator;;
 import org.nd4j.linalg.dataset.AsyncMultiDataSetIterator;
@@ -693,6 +694,8 @@ public class ParallelWrapper implements AutoCloseable {
         protected ThresholdAlgorithm thresholdAlgorithm;
         protected ResidualPostProcessor residualPostProcessor;
         protected Long encoderMemory = -1L;
+        protected long encodingBlockSize = 0;
+        protected boolean broadcastUpdates = false;
 
         protected GradientsAccumulator accumulator;
 
@@ -900,6 +903,37 @@ public class ParallelWrapper implements AutoCloseable {
             return this;
         }
 
+        /**
+         * This method enables block encoding of shared gradients: gradients of each layer (adjacent layers are merged
+         * until block has at least minBlockSize parameters) are encoded with their own threshold, as bitmap or as
+         * sparse indices, depending on their density. Only used in SHARED_GRADIENTS training mode.
+         *
+         * Default value: 0, block encoding is disabled
+         * @param minBlockSize minimal number of parameters per block, see {@link ParameterBlocks#DEFAULT_MIN_BLOCK_SIZE}
+         * @return
+         */
+        public Builder encodingBlockSize(long minBlockSize) {
+            if (minBlockSize < 0)
+                throw new DL4JInvalidConfigException("Block size should be non-negative value");
+
+            this.encodingBlockSize = minBlockSize;
+            return this;
+        }
+
+        /**
+         * This method enables broadcast mode of shared gradients: each update is stored once, in a ring buffer read by
+         * all workers, instead of being copied to per-worker queues. Only used in SHARED_GRADIENTS training mode, and
+         * ignored if updates have to be relocated between devices.
+         *
+         * Default value: false
+         * @param reallyBroadcast
+         * @return
+         */
+        public Builder broadcastUpdates(boolean reallyBroadcast) {
+            this.broadcastUpdates = reallyBroadcast;
+            return this;
+        }
+
         /**
          * This method returns ParallelWrapper instance
          *
@@ -936,12 +970,17 @@ public class ParallelWrapper implements AutoCloseable {
                         // we're limiting max size of updates for Sparse encoding to the size of bitmap encoded message
                         val maxUpdate = (int) (numParams / 16 + 5);
 
+                        ParameterBlocks blocks = encodingBlockSize > 0 ? ParameterBlocks.fromModel(model, encodingBlockSize) : null;
+
+                        // block encoded messages carry per-block headers on top of that
+                        long maxMessage = blocks == null ? maxUpdate : blocks.maxEncodedLength();
+
                         // memory sie in number of bytes
                         long memorySize = encoderMemory == null || encoderMemory < 0
-                                            ? maxUpdate * 4 * (workers + 3)
+                                            ? maxMessage * 4 * (workers + 3)
                                             : encoderMemory;
 
-                        this.accumulator = new EncodedGradientsAccumulator(workers, new EncodingHandler(thresholdAlgorithm, residualPostProcessor, maxUpdate, false), memorySize, workers + 2, Integer.MAX_VALUE, false);
+                        this.accumulator = new EncodedGradientsAccumulator(workers, new EncodingHandler(thresholdAlgorithm, residualPostProcessor, maxUpdate, false, blocks), memorySize, workers + 2, Integer.MAX_VALUE, false, broadcastUpdates);
                     }
                 }
                     break;
@@ -0,0 +1,191 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.NonNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds one request queue per {@link InferencePriority}, and picks next request for inference workers
+ * according to {@link PriorityScheduling}:
+ *
+ * STRICT: lanes are drained in priority order, HIGH first. Lower priority lanes may starve
+ * WEIGHTED: lanes are served in weighted round-robin order, using {@link InferencePriority#getWeight()}
+ *
+ * Requests whose deadline already passed are cancelled here, before they reach the model.
+ */
+public class InferenceLanes {
+    private final Lane[] lanes;
+    private final PriorityScheduling scheduling;
+
+    // number of requests available across all lanes
+    private final Semaphore available = new Semaphore(0);
+
+    // smooth weighted round-robin state, guarded by this
+    private final int[] currentWeights;
+
+    private final AtomicLong expiredCounter = new AtomicLong(0);
+
+    public InferenceLanes(int queueLimit, @NonNull PriorityScheduling scheduling) {
+        InferencePriority[] priorities = InferencePriority.values();
+        this.lanes = new Lane[priorities.length];
+        this.currentWeights = new int[priorities.length];
+        this.scheduling = scheduling;
+
+        for (int e = 0; e < priorities.length; e++)
+            lanes[e] = new Lane(queueLimit, available);
+    }
+
+    /**
+     * This method returns queue for given priority. Anything put into this queue becomes available via {@link #take()}
+     *
+     * @param priority
+     * @return
+     */
+    public BlockingQueue<InferenceObservable> lane(@NonNull InferencePriority priority) {
+        return lanes[priority.ordinal()];
+    }
+
+    /**
+     * This method blocks until there's a request with non-expired inputs, and returns it
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    public InferenceObservable take() throws InterruptedException {
+        while (true) {
+            available.acquire();
+
+            InferenceObservable observable = poll();
+            if (observable == null) {
+                // shouldn't ever happen, permits are released only after successful insertion
+                continue;
+            }
+
+            if (observable.cancelExpired(System.nanoTime())) {
+                expiredCounter.incrementAndGet();
+                continue;
+            }
+
+            return observable;
+        }
+    }
+
+    /**
+     * This method returns total number of requests waiting in all lanes
+     */
+    public int size() {
+        int size = 0;
+        for (Lane l : lanes)
+            size += l.size();
+
+        return size;
+    }
+
+    /**
+     * This method returns number of requests that were dropped because all their inputs expired
+     */
+    public long getExpiredCount() {
+        return expiredCounter.get();
+    }
+
+    private InferenceObservable poll() {
+        if (scheduling == PriorityScheduling.WEIGHTED)
+            return pollWeighted();
+
+        for (Lane l : lanes) {
+            InferenceObservable observable = l.poll();
+            if (observable != null)
+                return observable;
+        }
+
+        return null;
+    }
+
+    /**
+     * Smooth weighted round-robin over non-empty lanes: every non-empty lane gains its weight, the lane
+     * with highest current weight is served and loses the total weight of non-empty lanes
+     */
+    private synchronized InferenceObservable pollWeighted() {
+        InferencePriority[] priorities = InferencePriority.values();
+        while (true) {
+            int best = -1;
+            int total = 0;
+            for (int e = 0; e < lanes.length; e++) {
+                if (lanes[e].isEmpty())
+                    continue;
+
+                currentWeights[e] += priorities[e].getWeight();
+                total += priorities[e].getWeight();
+                if (best < 0 || currentWeights[e] > currentWeights[best])
+                    best = e;
+            }
+
+            if (best < 0)
+                return null;
+
+            currentWeights[best] -= total;
+
+            InferenceObservable observable = lanes[best].poll();
+            if (observable != null)
+                return observable;
+        }
+    }
+
+    /**
+     * Lane queue: every successful insertion releases one permit of the shared semaphore
+     */
+    private static class Lane extends LinkedBlockingQueue<InferenceObservable> {
+        private final transient Semaphore available;
+
+        private Lane(int capacity, Semaphore available) {
+            super(capacity);
+            this.available = available;
+        }
+
+        @Override
+        public void put(InferenceObservable observable) throws InterruptedException {
+            super.put(observable);
+            available.release();
+        }
+
+        @Override
+        public boolean offer(InferenceObservable observable) {
+            boolean result = super.offer(observable);
+            if (result)
+                available.release();
+
+            return result;
+        }
+
+        @Override
+        public boolean offer(InferenceObservable observable, long timeout, TimeUnit unit) throws InterruptedException {
+            boolean result = super.offer(observable, timeout, unit);
+            if (result)
+                available.release();
+
+            return result;
+        }
+    }
+}
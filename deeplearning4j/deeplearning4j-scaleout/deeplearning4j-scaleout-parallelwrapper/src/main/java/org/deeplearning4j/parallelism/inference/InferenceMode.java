@@ -38,4 +38,10 @@ public enum InferenceMode {
      * Inference will applied in the calling thread instead of workers. Worker models will be using shared parameters on per-device basis.
      */
     INPLACE,
+
+    /**
+     * input will be batched as in BATCHED mode, but batch size is picked per batch, to keep p99 latency under the target,
+     * using observed queue depth and throughput. Batches can optionally be padded to a fixed set of sizes.
+     */
+    ADAPTIVE,
 }
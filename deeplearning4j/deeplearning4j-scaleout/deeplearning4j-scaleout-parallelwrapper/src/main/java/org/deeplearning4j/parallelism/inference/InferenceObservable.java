@@ -43,6 +43,24 @@ public interface InferenceObservable {
 
     void addInput(INDArray[] input, INDArray[] inputMasks);
 
+    /**
+     * Add input with the deadline, after which the caller is not interested in the result anymore
+     *
+     * @param input         Input arrays
+     * @param inputMasks    Input mask arrays. May be null.
+     * @param deadlineNanos System.nanoTime() based deadline, Long.MAX_VALUE for no deadline
+     */
+    void addInput(INDArray[] input, INDArray[] inputMasks, long deadlineNanos);
+
+    /**
+     * Cancel inputs whose deadline has passed, so they won't be executed. Cancelled callers get
+     * {@link InferenceTimeoutException} from {@link #getOutput()}
+     *
+     * @param nowNanos current System.nanoTime()
+     * @return true if nothing is left to execute in this observable
+     */
+    boolean cancelExpired(long nowNanos);
+
     void setOutputBatches(List<INDArray[]> output);
 
     void setOutputException(Exception e);
@@ -0,0 +1,54 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+/**
+ * This enum describes priority lanes of ParallelInference. Each priority has its own request queue,
+ * and requests of different priorities are never batched together.
+ * How workers pick requests from the lanes is defined by {@link PriorityScheduling}.
+ */
+public enum InferencePriority {
+    /**
+     * latency-sensitive requests, i.e. interactive traffic
+     */
+    HIGH(4),
+
+    /**
+     * default priority
+     */
+    NORMAL(2),
+
+    /**
+     * throughput-oriented requests, i.e. bulk scoring
+     */
+    LOW(1);
+
+    private final int weight;
+
+    InferencePriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * This method returns relative share of this lane in {@link PriorityScheduling#WEIGHTED} mode
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.parallelism.inference;
+
+/**
+ * This enum describes how ParallelInference workers pick requests from {@link InferencePriority} lanes
+ */
+public enum PriorityScheduling {
+    /**
+     * Lanes are drained in strict priority order, HIGH first.
+     * PLEASE NOTE: there's no aging, so steady HIGH priority traffic starves NORMAL and LOW lanes
+     */
+    STRICT,
+
+    /**
+     * Non-empty lanes are served in smooth weighted round-robin order, using {@link InferencePriority#getWeight()}.
+     * Lower priority lanes get a guaranteed share of requests, so they are never starved
+     */
+    WEIGHTED,
+}
@@ -0,0 +1,270 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class picks batch size for ADAPTIVE inference mode.<br>
+ * Batch execution time is modelled as {@code overhead + perExample * numExamples}, fitted with exponentially decayed
+ * least squares over completed batches. For every new batch the scheduler picks the largest size whose expected
+ * queueing + execution time still fits into the p99 latency target, and additionally shrinks it
+ * if the p99 latency observed over the last window of requests exceeds the target.
+ *
+ * Until enough batches were observed, the scheduler behaves exactly like BATCHED mode with the configured batch limit.
+ */
+public class AdaptiveBatchScheduler {
+    /**
+     * Number of completed batches required before the cost model is used
+     */
+    public static final int WARMUP_BATCHES = 16;
+
+    /**
+     * Number of requests per p99 feedback window
+     */
+    public static final int WINDOW_SIZE = 512;
+
+    private static final double DECAY = 0.95;
+    private static final double MIN_CORRECTION = 0.05;
+
+    @Getter
+    private final long latencyTargetNanos;
+    @Getter
+    private final int maxBatchSize;
+    private final int workers;
+    private final int[] buckets;
+
+    // batch sizes (in requests) picked by the scheduler
+    @Getter
+    private final InferenceHistogram batchSizeHistogram = new InferenceHistogram();
+    // time between request submission and the start of its batch execution, in nanoseconds
+    @Getter
+    private final InferenceHistogram waitTimeHistogram = new InferenceHistogram();
+    // batch execution time, in nanoseconds
+    @Getter
+    private final InferenceHistogram executionTimeHistogram = new InferenceHistogram();
+    // request submission -> batch completion, in nanoseconds
+    @Getter
+    private final InferenceHistogram latencyHistogram = new InferenceHistogram();
+    private final InferenceHistogram windowHistogram = new InferenceHistogram();
+
+    // decayed least squares sums: x - number of examples in batch, y - batch execution nanos
+    private double sW, sX, sY, sXX, sXY;
+    private volatile double examplesPerRequest = 1.0;
+    private volatile double correction = 1.0;
+    private long batches;
+
+    private volatile double overheadNanos;
+    private volatile double perExampleNanos;
+    private volatile boolean calibrated;
+    private volatile int lastLimit;
+
+    /**
+     * @param latencyTargetNanos p99 latency target for a single request, in nanoseconds
+     * @param maxBatchSize       hard limit for number of requests per batch
+     * @param workers            number of inference workers consuming batches
+     * @param buckets            allowed batch sizes (in examples) batches will be padded to. May be null.
+     */
+    public AdaptiveBatchScheduler(long latencyTargetNanos, int maxBatchSize, int workers, int[] buckets) {
+        if (latencyTargetNanos <= 0)
+            throw new IllegalArgumentException("Latency target should be positive value");
+
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Max batch size should be positive value");
+
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.workers = Math.max(1, workers);
+        this.lastLimit = maxBatchSize;
+
+        if (buckets != null && buckets.length > 0) {
+            this.buckets = Arrays.copyOf(buckets, buckets.length);
+            Arrays.sort(this.buckets);
+        } else
+            this.buckets = null;
+    }
+
+    /**
+     * This method returns power-of-two buckets, from 1 to the first power of two >= maxBatchSize
+     *
+     * @param maxBatchSize
+     * @return
+     */
+    public static int[] powerOfTwoBuckets(int maxBatchSize) {
+        int cnt = 1;
+        while ((1 << (cnt - 1)) < maxBatchSize)
+            cnt++;
+
+        int[] result = new int[cnt];
+        for (int e = 0; e < cnt; e++)
+            result[e] = 1 << e;
+
+        return result;
+    }
+
+    /**
+     * This method returns batch sizes used for padding, or null if padding is disabled
+     */
+    public int[] getBuckets() {
+        return buckets == null ? null : Arrays.copyOf(buckets, buckets.length);
+    }
+
+    /**
+     * This method returns size (in examples) the batch of given size should be padded to.
+     * If there's no bucket large enough, numExamples is returned as is
+     *
+     * @param numExamples
+     * @return
+     */
+    public long bucketFor(long numExamples) {
+        if (buckets == null)
+            return numExamples;
+
+        for (int b : buckets)
+            if (b >= numExamples)
+                return b;
+
+        return numExamples;
+    }
+
+    /**
+     * This method returns maximal number of requests the batch being formed right now may hold
+     *
+     * @param queueDepth number of batches waiting for a free worker
+     * @return batch limit, in range [1, maxBatchSize]
+     */
+    public int batchLimit(int queueDepth) {
+        if (!calibrated)
+            return maxBatchSize;
+
+        double perExample = perExampleNanos;
+        double overhead = overheadNanos;
+
+        // batches queued ahead of us have to be processed first
+        double expectedBatch = overhead + perExample * examplesPerRequest * lastLimit;
+        double queueWait = (double) queueDepth / workers * expectedBatch;
+
+        double budget = latencyTargetNanos * correction - queueWait - overhead;
+        int limit;
+        if (budget <= 0)
+            limit = 1;
+        else if (perExample <= 0)
+            limit = maxBatchSize;
+        else {
+            long requests = (long) (budget / perExample / Math.max(1.0, examplesPerRequest));
+            limit = (int) Math.max(1, Math.min(maxBatchSize, requests));
+        }
+
+        lastLimit = limit;
+        return limit;
+    }
+
+    /**
+     * This method records completed batch
+     *
+     * @param arrivalNanos   System.nanoTime() of each request submission
+     * @param numExamples    total number of examples in the batch, without padding
+     * @param startNanos     System.nanoTime() when batch execution started
+     * @param endNanos       System.nanoTime() when batch execution finished
+     */
+    public void recordBatch(@NonNull List<Long> arrivalNanos, long numExamples, long startNanos, long endNanos) {
+        int numRequests = arrivalNanos.size();
+        if (numRequests == 0)
+            return;
+
+        long execution = endNanos - startNanos;
+
+        batchSizeHistogram.record(numRequests);
+        executionTimeHistogram.record(execution);
+
+        for (Long arrival : arrivalNanos) {
+            waitTimeHistogram.record(startNanos - arrival);
+            latencyHistogram.record(endNanos - arrival);
+            windowHistogram.record(endNanos - arrival);
+        }
+
+        synchronized (this) {
+            double x = numExamples;
+            double y = execution;
+
+            sW = sW * DECAY + 1.0;
+            sX = sX * DECAY + x;
+            sY = sY * DECAY + y;
+            sXX = sXX * DECAY + x * x;
+            sXY = sXY * DECAY + x * y;
+
+            examplesPerRequest = examplesPerRequest * DECAY + (x / numRequests) * (1.0 - DECAY);
+
+            double denominator = sW * sXX - sX * sX;
+            if (Math.abs(denominator) > 1e-9) {
+                double slope = (sW * sXY - sX * sY) / denominator;
+                double intercept = (sY - slope * sX) / sW;
+
+                // non-positive slope means we didn't see enough distinct batch sizes yet
+                if (slope > 0) {
+                    perExampleNanos = slope;
+                    overheadNanos = Math.max(0.0, intercept);
+                } else {
+                    perExampleNanos = sY / Math.max(1.0, sX);
+                    overheadNanos = 0.0;
+                }
+            } else {
+                perExampleNanos = sY / Math.max(1.0, sX);
+                overheadNanos = 0.0;
+            }
+
+            if (windowHistogram.getCount() >= WINDOW_SIZE) {
+                long p99 = windowHistogram.getPercentile(99);
+                if (p99 > latencyTargetNanos)
+                    correction = Math.max(MIN_CORRECTION, correction * latencyTargetNanos / p99);
+                else
+                    correction = Math.min(1.0, correction * 1.1);
+
+                windowHistogram.reset();
+            }
+
+            if (++batches >= WARMUP_BATCHES)
+                calibrated = true;
+        }
+    }
+
+    /**
+     * This method returns current estimate of per-batch fixed cost, in nanoseconds
+     */
+    public double getOverheadNanos() {
+        return overheadNanos;
+    }
+
+    /**
+     * This method returns current estimate of per-example cost, in nanoseconds
+     */
+    public double getPerExampleNanos() {
+        return perExampleNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBatchScheduler(target=" + latencyTargetNanos + "ns, batchSizes=" + batchSizeHistogram
+                        + ", waitTimes=" + waitTimeHistogram + ", latency=" + latencyHistogram + ")";
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram for non-negative long values (batch sizes, nanoseconds etc).<br>
+ * Each power of two is split into {@link #SUB_BUCKETS} linear sub-buckets, so values below 16 are exact
+ * and larger values are recorded with at most 12.5% relative error.
+ */
+public class InferenceHistogram {
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int NUM_BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * This method records single value. Negative values are recorded as 0
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long cMax;
+        while ((cMax = max.get()) < value && !max.compareAndSet(cMax, value));
+    }
+
+    /**
+     * This method returns number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * This method returns largest recorded value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * This method returns arithmetic mean of recorded values
+     */
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0.0 : (double) sum.get() / c;
+    }
+
+    /**
+     * This method returns upper bound of the bucket holding given percentile
+     *
+     * @param percentile percentile, in range [0, 100]
+     * @return estimated value, or 0 if nothing was recorded yet
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long threshold = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        if (threshold < 1)
+            threshold = 1;
+
+        long seen = 0;
+        for (int e = 0; e < NUM_BUCKETS; e++) {
+            seen += counts.get(e);
+            if (seen >= threshold)
+                return Math.min(bucketUpperBound(e), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * This method returns non-empty buckets as map of inclusive bucket upper bound -> number of values
+     */
+    public Map<Long, Long> getBuckets() {
+        Map<Long, Long> result = new LinkedHashMap<>();
+        for (int e = 0; e < NUM_BUCKETS; e++) {
+            long c = counts.get(e);
+            if (c > 0)
+                result.put(bucketUpperBound(e), c);
+        }
+
+        return result;
+    }
+
+    /**
+     * This method drops all recorded values
+     */
+    public void reset() {
+        for (int e = 0; e < NUM_BUCKETS; e++)
+            counts.set(e, 0);
+
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    protected static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    protected static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lower = (1L << exp) + (sub << (exp - SUB_BITS));
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "InferenceHistogram(count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                        + ", p99=" + getPercentile(99) + ", max=" + getMax() + ")";
+    }
+}
@@ -23,6 +23,7 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferenceTimeoutException;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.common.primitives.Pair;
 
@@ -41,6 +42,8 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     private long id;
     private INDArray[] output;
     protected Exception exception;
+    // System.nanoTime() after which this request is not worth computing anymore
+    private long deadlineNanos = Long.MAX_VALUE;
 
 
     public BasicInferenceObservable(INDArray... inputs) {
@@ -48,9 +51,14 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     }
 
     public BasicInferenceObservable(INDArray[] inputs, INDArray[] inputMasks){
+        this(inputs, inputMasks, Long.MAX_VALUE);
+    }
+
+    public BasicInferenceObservable(INDArray[] inputs, INDArray[] inputMasks, long deadlineNanos){
         super();
         this.input = inputs;
         this.inputMasks = inputMasks;
+        this.deadlineNanos = deadlineNanos;
     }
 
     @Override
@@ -60,8 +68,23 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
 
     @Override
     public void addInput(@NonNull INDArray[] input, INDArray[] inputMasks) {
+        addInput(input, inputMasks, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void addInput(@NonNull INDArray[] input, INDArray[] inputMasks, long deadlineNanos) {
         this.input = input;
         this.inputMasks = inputMasks;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public boolean cancelExpired(long nowNanos) {
+        if (deadlineNanos >= nowNanos)
+            return false;
+
+        setOutputException(new InferenceTimeoutException("Inference request deadline passed before execution"));
+        return true;
     }
 
     @Override
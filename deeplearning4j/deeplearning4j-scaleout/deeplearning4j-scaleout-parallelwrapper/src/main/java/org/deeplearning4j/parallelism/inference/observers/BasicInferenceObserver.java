@@ -52,4 +52,21 @@ public class BasicInferenceObserver implements Observer {
             LockSupport.parkNanos(1000);
         }
     }
+
+    /**
+     * This method blocks until observable is done, or deadline passes
+     *
+     * @param deadlineNanos System.nanoTime() based deadline, Long.MAX_VALUE for no deadline
+     * @return true if observable is done, false if deadline passed first
+     */
+    public boolean waitTillDone(long deadlineNanos) {
+        while (!finished.get()) {
+            if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() > deadlineNanos)
+                return finished.get();
+
+            LockSupport.parkNanos(1000);
+        }
+
+        return true;
+    }
 }
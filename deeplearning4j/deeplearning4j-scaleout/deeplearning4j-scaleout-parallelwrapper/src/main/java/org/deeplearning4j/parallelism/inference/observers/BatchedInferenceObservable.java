@@ -21,18 +21,22 @@ package org.deeplearning4j.parallelism.inference.observers;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferenceTimeoutException;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetUtil;
+import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.primitives.Pair;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -55,15 +59,41 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicBoolean isLocked = new AtomicBoolean(false);
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
 
+    // System.nanoTime() of each addInput call
+    private List<Long> arrivals = new ArrayList<>();
+    private AtomicLong numExamples = new AtomicLong(0);
+    protected int[] buckets;
+
+    // System.nanoTime() deadline of each input, Long.MAX_VALUE if none
+    private List<Long> deadlines = new ArrayList<>();
+    private BitSet expired = new BitSet();
+    // indices of inputs that are still alive at getInputBatches() time, null if all inputs are alive
+    private int[] active;
+
     public BatchedInferenceObservable() {
 
     }
 
+    /**
+     * @param buckets sorted batch sizes (in examples) merged batches will be padded to with zeros. May be null.
+     */
+    public BatchedInferenceObservable(int[] buckets) {
+        this.buckets = buckets;
+    }
+
     @Override
     public void addInput(INDArray[] input, INDArray[] inputMasks) {
+        addInput(input, inputMasks, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void addInput(INDArray[] input, INDArray[] inputMasks, long deadlineNanos) {
         synchronized (locker) {
             inputs.add(input);
             this.inputMasks.add(inputMasks);
+            deadlines.add(deadlineNanos);
+            arrivals.add(System.nanoTime());
+            numExamples.addAndGet(input[0].size(0));
             position.set(counter.getAndIncrement());
 
             if (isReadLocked.get())
@@ -78,19 +108,34 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
 
         outputBatchInputArrays.clear();
 
+        // inputs cancelled via cancelExpired() are excluded from the batch
+        if (expired.isEmpty()) {
+            active = null;
+        } else {
+            active = new int[inputs.size() - expired.cardinality()];
+            int cnt = 0;
+            for (int i = expired.nextClearBit(0); i < inputs.size(); i = expired.nextClearBit(i + 1))
+                active[cnt++] = i;
+        }
+
+        int numActive = active == null ? inputs.size() : active.length;
+        if (numActive == 0) {
+            realLocker.writeLock().unlock();
+            return Collections.emptyList();
+        }
+
         // this method should pile individual examples into single batch
 
-        if (counter.get() > 1) {
+        if (numActive > 1) {
 
             int pos = 0;
             List<Pair<INDArray[],INDArray[]>> out = new ArrayList<>();
-            int numArrays = inputs.get(0).length;
-            while(pos < inputs.size()) {
+            while(pos < numActive) {
 
                 //First: determine which we can actually batch...
                 int lastPossible = pos;
-                for (int i = pos+1; i < inputs.size(); i++) {
-                    if (canBatch(inputs.get(pos), inputs.get(i))) {
+                for (int i = pos+1; i < numActive; i++) {
+                    if (canBatch(inputs.get(index(pos)), inputs.get(index(i)))) {
                         lastPossible = i;
                     } else {
                         break;
@@ -102,22 +147,21 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
                 INDArray[][] fMasksToMerge = null;
                 int fPos = 0;
                 for( int i=pos; i<=lastPossible; i++ ){
-                    featuresToMerge[fPos] = inputs.get(i);
+                    featuresToMerge[fPos] = inputs.get(index(i));
 
-                    if(inputMasks.get(i) != null) {
+                    if(inputMasks.get(index(i)) != null) {
                         if(fMasksToMerge == null){
                             fMasksToMerge = new INDArray[countToMerge][0];
                             for( int j=0; j<countToMerge; j++ ){
                                 fMasksToMerge[j] = null;
                             }
                         }
-                        fMasksToMerge[fPos] = inputMasks.get(i);
+                        fMasksToMerge[fPos] = inputMasks.get(index(i));
                     }
                     fPos++;
                 }
 
-                Pair<INDArray[],INDArray[]> merged = DataSetUtil.mergeFeatures(featuresToMerge, fMasksToMerge);
-                out.add(merged);
+                out.add(mergeInputs(featuresToMerge, fMasksToMerge, active == null && pos == 0 && lastPossible == numActive - 1));
 
                 outputBatchInputArrays.add(new int[]{pos, lastPossible});
                 pos = lastPossible+1;
@@ -127,8 +171,103 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         } else {
             outputBatchInputArrays.add(new int[]{0,0});
             realLocker.writeLock().unlock();
-            return Collections.singletonList(new Pair<>(inputs.get(0), inputMasks.get(0)));
+            return Collections.singletonList(padToBucket(new Pair<>(inputs.get(index(0)), inputMasks.get(index(0)))));
+        }
+    }
+
+    /**
+     * This method merges inputs into single batch, padded to the bucket size if buckets are defined
+     *
+     * @param features   inputs to merge
+     * @param masks      input masks, may be null
+     * @param wholeBatch true if these are all inputs of this observable, in order of submission
+     * @return
+     */
+    protected Pair<INDArray[],INDArray[]> mergeInputs(INDArray[][] features, INDArray[][] masks, boolean wholeBatch) {
+        return padToBucket(DataSetUtil.mergeFeatures(features, masks));
+    }
+
+    /**
+     * This method checks if given input can be added to this observable. Capacity and lock state are checked separately.
+     */
+    public boolean canAccept(INDArray[] input, INDArray[] inputMasks) {
+        return true;
+    }
+
+    /**
+     * This method maps position within alive inputs to position within all inputs
+     */
+    private int index(int activePosition) {
+        return active == null ? activePosition : active[activePosition];
+    }
+
+    @Override
+    public boolean cancelExpired(long nowNanos) {
+        int alive = 0;
+        realLocker.writeLock().lock();
+        try {
+            // no more inputs can join this batch from now on
+            isLocked.set(true);
+
+            for (int i = 0; i < deadlines.size(); i++) {
+                if (deadlines.get(i) < nowNanos)
+                    expired.set(i);
+                else if (!expired.get(i))
+                    alive++;
+            }
+        } finally {
+            realLocker.writeLock().unlock();
         }
+
+        if (alive > 0)
+            return false;
+
+        this.setChanged();
+        notifyObservers();
+        return true;
+    }
+
+    /**
+     * This method pads batch with zero examples up to the nearest bucket size, so model sees limited set of shapes.
+     * Padded examples are dropped in splitExamples(), since split uses original input sizes
+     */
+    protected Pair<INDArray[],INDArray[]> padToBucket(Pair<INDArray[],INDArray[]> batch) {
+        if (buckets == null)
+            return batch;
+
+        long size = batch.getFirst()[0].size(0);
+        long target = size;
+        for (int b : buckets) {
+            if (b >= size) {
+                target = b;
+                break;
+            }
+        }
+
+        if (target == size)
+            return batch;
+
+        return new Pair<>(pad(batch.getFirst(), target - size), pad(batch.getSecond(), target - size));
+    }
+
+    private static INDArray[] pad(INDArray[] arrays, long extra) {
+        if (arrays == null)
+            return null;
+
+        INDArray[] result = new INDArray[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            if (arrays[i] == null)
+                continue;
+
+            // single allocation: rows past the original size are left zeroed
+            long rows = arrays[i].size(0);
+            long[] shape = arrays[i].shape().clone();
+            shape[0] = rows + extra;
+            result[i] = Nd4j.create(arrays[i].dataType(), shape);
+            result[i].get(NDArrayIndex.interval(0, rows)).assign(arrays[i]);
+        }
+
+        return result;
     }
 
     private static boolean canBatch(INDArray[] first, INDArray[] candidate){
@@ -149,28 +288,25 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     @Override
     public void setOutputBatches(List<INDArray[]> output) {
         //this method should split batched output INDArray[] into multiple separate INDArrays
-        int countNumInputBatches = 0;   //Counter for total number of input batches processed
+        // outputs are indexed by input position, expired inputs get no output
+        while (outputs.size() < inputs.size())
+            outputs.add(null);
+
         for( int outBatchNum=0; outBatchNum<output.size(); outBatchNum++ ){ //Iterate over output batch
             INDArray[] currBatchOutputs = output.get(outBatchNum);
             int[] inputBatchIdxs = outputBatchInputArrays.get(outBatchNum);
             int inputBatchCount = inputBatchIdxs[1] - inputBatchIdxs[0] + 1;
             for (int i = 0; i < inputBatchCount; i++) {
-                outputs.add(new INDArray[currBatchOutputs.length]);
+                outputs.set(index(inputBatchIdxs[0] + i), new INDArray[currBatchOutputs.length]);
             }
 
             // pull back results for individual input batches
-            int firstInputBatch = countNumInputBatches;
             for (int outputNumber = 0; outputNumber < currBatchOutputs.length; outputNumber++) {    //Iterate over net outputs
                 INDArray[] split = splitExamples(currBatchOutputs[outputNumber], inputBatchIdxs[0], inputBatchIdxs[1]);
 
-                int currentInputBatch = firstInputBatch;
                 //Iterate over input batch (examples) - note that each output batch is made up of 1 or more input batches
                 for (int inputInBatch = 0; inputInBatch < inputBatchCount; inputInBatch++) {
-                    outputs.get(currentInputBatch++)[outputNumber] = split[inputInBatch];
-
-                    if(outputNumber == 0){
-                        countNumInputBatches++;
-                    }
+                    outputs.get(index(inputBatchIdxs[0] + inputInBatch))[outputNumber] = split[inputInBatch];
                 }
             }
         }
@@ -182,7 +318,7 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private INDArray[] splitExamples(INDArray netOutput, int firstInputComponent, int lastInputComponent){
 
         int numSplits = lastInputComponent - firstInputComponent + 1;
-        if(numSplits == 1){
+        if(numSplits == 1 && netOutput.size(0) == inputs.get(index(firstInputComponent))[0].size(0)){
             return new INDArray[]{netOutput};
         } else {
             INDArray[] out = new INDArray[numSplits];
@@ -192,7 +328,7 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
             }
             int examplesSoFar = 0;
             for( int inNum = 0; inNum < numSplits; inNum++ ){
-                val inSizeEx = inputs.get(firstInputComponent + inNum)[0].size(0);
+                val inSizeEx = inputs.get(index(firstInputComponent + inNum))[0].size(0);
                 indices[0] = NDArrayIndex.interval(examplesSoFar, examplesSoFar+inSizeEx);
                 out[inNum] = netOutput.get(indices);
                 examplesSoFar += inSizeEx;
@@ -222,24 +358,51 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         return counter.get();
     }
 
+    /**
+     * This method returns System.nanoTime() of each input submission, in order of submission
+     */
+    public List<Long> getArrivalTimes() {
+        synchronized (locker) {
+            return new ArrayList<>(arrivals);
+        }
+    }
+
+    /**
+     * This method returns total number of examples in this batch, padding excluded
+     */
+    public long getNumExamples() {
+        return numExamples.get();
+    }
+
 
 
+    /**
+     * This method checks if new inputs can't be added to this observable anymore. If it returns false, read lock is
+     * held by the caller until the next addInput() call
+     */
     public boolean isLocked() {
-        boolean lck = !realLocker.readLock().tryLock();
+        if (!realLocker.readLock().tryLock())
+            return true;
 
-        boolean result = lck || isLocked.get();
-
-        if (!result)
-            isReadLocked.set(true);
+        // batch was taken or cancelled already: release read lock we've just acquired, no addInput() will follow
+        if (isLocked.get()) {
+            realLocker.readLock().unlock();
+            return true;
+        }
 
-        return result;
+        isReadLocked.set(true);
+        return false;
     }
 
 
     @Override
     public INDArray[] getOutput() {
         // basically we should take care of splits here: each client should get its own part of output, wrt order number
+        int pos = position.get();
+        if (expired.get(pos))
+            throw new InferenceTimeoutException("Inference request deadline passed before execution");
+
         checkOutputException();
-        return outputs.get(position.get());
+        return outputs.get(pos);
     }
 }
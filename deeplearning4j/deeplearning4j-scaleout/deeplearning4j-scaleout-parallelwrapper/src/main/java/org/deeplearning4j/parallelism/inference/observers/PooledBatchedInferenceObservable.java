@@ -0,0 +1,147 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference.observers;
+
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.pool.BatchBufferPool;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.List;
+
+/**
+ * This class implements pooled BATCHED inference: requests are copied straight into their rows of a
+ * pre-allocated batch buffer, leased from {@link BatchBufferPool}, and the batch passed to the model
+ * is a view of that buffer. Buffer is returned to the pool once the forward pass is done.
+ *
+ * Copies are done by the inference worker, with the buffer pulled to the worker's device first: callers only
+ * reserve rows of the buffer.
+ *
+ * If some inputs expired or can't be batched together, this class falls back to regular concatenation.
+ */
+public class PooledBatchedInferenceObservable extends BatchedInferenceObservable {
+    private final BatchBufferPool.Buffer buffer;
+    private long filled;
+    private boolean fallback;
+
+    public PooledBatchedInferenceObservable(@NonNull BatchBufferPool.Buffer buffer, int[] buckets) {
+        super(buckets);
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean canAccept(INDArray[] input, INDArray[] inputMasks) {
+        synchronized (buffer) {
+            return inputMasks == null && buffer.isCompatible(input) && filled + input[0].size(0) <= buffer.getCapacity();
+        }
+    }
+
+    @Override
+    public void addInput(INDArray[] input, INDArray[] inputMasks, long deadlineNanos) {
+        synchronized (buffer) {
+            if (!fallback && canAccept(input, inputMasks)) {
+                // reserve rows for this request, actual copy happens in mergeInputs()
+                filled += input[0].size(0);
+            } else {
+                fallback = true;
+            }
+        }
+
+        super.addInput(input, inputMasks, deadlineNanos);
+    }
+
+    @Override
+    protected Pair<INDArray[],INDArray[]> mergeInputs(INDArray[][] features, INDArray[][] masks, boolean wholeBatch) {
+        synchronized (buffer) {
+            if (!wholeBatch || fallback)
+                return super.mergeInputs(features, masks, wholeBatch);
+
+            // rows past the filled part are left as is: their outputs are never handed out
+            long size = filled;
+            if (buckets != null) {
+                for (int b : buckets) {
+                    if (b >= size) {
+                        if (b <= buffer.getCapacity())
+                            size = b;
+                        break;
+                    }
+                }
+            }
+
+            // this is called from the inference worker: pull buffer to the worker's device before writing into it
+            INDArray[] arrays = buffer.getArrays();
+            for (INDArray array : arrays)
+                Nd4j.getAffinityManager().touch(array);
+
+            long pos = 0;
+            for (INDArray[] f : features) {
+                long rows = f[0].size(0);
+                for (int i = 0; i < arrays.length; i++)
+                    rows(arrays[i], pos, pos + rows).assign(f[i]);
+
+                pos += rows;
+            }
+
+            INDArray[] batch = new INDArray[arrays.length];
+            for (int i = 0; i < arrays.length; i++)
+                batch[i] = rows(arrays[i], 0, size);
+
+            return new Pair<>(batch, null);
+        }
+    }
+
+    @Override
+    public void setOutputBatches(List<INDArray[]> output) {
+        try {
+            super.setOutputBatches(output);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public void setOutputException(Exception exception) {
+        try {
+            super.setOutputException(exception);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public boolean cancelExpired(long nowNanos) {
+        boolean result = super.cancelExpired(nowNanos);
+        if (result)
+            buffer.release();
+
+        return result;
+    }
+
+    private static INDArray rows(INDArray array, long from, long to) {
+        INDArrayIndex[] indices = new INDArrayIndex[array.rank()];
+        indices[0] = NDArrayIndex.interval(from, to);
+        for (int i = 1; i < indices.length; i++)
+            indices[i] = NDArrayIndex.all();
+
+        return array.get(indices);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference.pool;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds pre-allocated batch buffers for pooled batching in ParallelInference.<br>
+ * Each buffer set holds one array per network input, with the first dimension sized for the whole batch:
+ * buffers are keyed by data type and trailing (non-batch) shape of the inputs, and always have the same capacity
+ * in rows, no matter how many rows individual requests have. Batches are formed right in these arrays, so no
+ * per-batch concatenation is needed, and buffers are returned to the pool once the forward pass is done.
+ *
+ * Total size of the pooled buffers is capped: once the cap is reached, idle buffers of other shapes are freed
+ * to make room, and if that's not enough, batch falls back to regular concatenation.
+ *
+ * Buffers are allocated out of workspaces: they are leased by caller threads and filled by inference workers,
+ * while workspaces are bound to a single thread.
+ */
+public class BatchBufferPool {
+    public static final long DEFAULT_MAX_POOLED_BYTES = 512L * 1024L * 1024L;
+
+    private final int capacity;
+    private final int maxBuffersPerShape;
+    private final long maxPooledBytes;
+
+    private final Map<Key, Queue<INDArray[]>> free = new ConcurrentHashMap<>();
+    private final Map<Key, AtomicInteger> allocated = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong(0);
+
+    private final AtomicLong allocations = new AtomicLong(0);
+    private final AtomicLong reuses = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * @param capacity           number of rows (examples) each buffer array can hold
+     * @param maxBuffersPerShape max number of buffer sets allocated for each distinct input shape
+     */
+    public BatchBufferPool(int capacity, int maxBuffersPerShape) {
+        this(capacity, maxBuffersPerShape, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+     * @param capacity           number of rows (examples) each buffer array can hold
+     * @param maxBuffersPerShape max number of buffer sets allocated for each distinct input shape
+     * @param maxPooledBytes     max total size of all buffer sets allocated by this pool, in bytes
+     */
+    public BatchBufferPool(int capacity, int maxBuffersPerShape, long maxPooledBytes) {
+        if (capacity < 1 || maxBuffersPerShape < 1 || maxPooledBytes < 1)
+            throw new IllegalArgumentException("Capacity, number of buffers and max pooled bytes should be positive values");
+
+        this.capacity = capacity;
+        this.maxBuffersPerShape = maxBuffersPerShape;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * This method returns buffer set suitable for batching requests shaped like given one,
+     * or null if pool for this shape is exhausted, or request doesn't fit into a buffer
+     *
+     * @param example one of requests that will be written into the buffer
+     * @return
+     */
+    public Buffer acquire(@NonNull INDArray[] example) {
+        if (example.length == 0 || example[0].rank() == 0 || example[0].size(0) > capacity) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Key key = new Key(example, capacity);
+
+        Queue<INDArray[]> queue = free.get(key);
+        if (queue != null) {
+            INDArray[] arrays = queue.poll();
+            if (arrays != null) {
+                reuses.incrementAndGet();
+                return new Buffer(this, key, arrays);
+            }
+        }
+
+        AtomicInteger counter = allocated.computeIfAbsent(key, k -> new AtomicInteger(0));
+        if (counter.incrementAndGet() > maxBuffersPerShape) {
+            counter.decrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (!reserve(key.bytes, key)) {
+            counter.decrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+
+        INDArray[] arrays = new INDArray[example.length];
+        try (MemoryWorkspace ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()) {
+            for (int i = 0; i < example.length; i++)
+                arrays[i] = Nd4j.create(key.dataTypes[i], key.shapes[i]);
+        }
+
+        allocations.incrementAndGet();
+        return new Buffer(this, key, arrays);
+    }
+
+    /**
+     * This method reserves given number of bytes within the pool cap, freeing idle buffers of other shapes if required
+     */
+    private boolean reserve(long bytes, Key key) {
+        while (true) {
+            long current = pooledBytes.get();
+            if (current + bytes <= maxPooledBytes) {
+                if (pooledBytes.compareAndSet(current, current + bytes))
+                    return true;
+
+                continue;
+            }
+
+            if (!evictOne(key))
+                return false;
+        }
+    }
+
+    /**
+     * This method frees one idle buffer set of any shape but given one
+     *
+     * @return true if something was freed
+     */
+    private boolean evictOne(Key keep) {
+        for (Map.Entry<Key, Queue<INDArray[]>> e : free.entrySet()) {
+            if (e.getKey().equals(keep))
+                continue;
+
+            INDArray[] arrays = e.getValue().poll();
+            if (arrays == null)
+                continue;
+
+            for (INDArray array : arrays)
+                if (array.closeable())
+                    array.close();
+
+            allocated.get(e.getKey()).decrementAndGet();
+            pooledBytes.addAndGet(-e.getKey().bytes);
+            evictions.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    protected void release(@NonNull Key key, @NonNull INDArray[] arrays) {
+        free.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>()).add(arrays);
+    }
+
+    /**
+     * This method returns number of rows (examples) each buffer array can hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method returns total size of the buffer sets currently allocated by this pool, in bytes
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * This method returns number of buffer sets allocated so far
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * This method returns number of times previously allocated buffer set was reused
+     */
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    /**
+     * This method returns number of times pool was exhausted, and batch had to fall back to concatenation
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * This method returns number of idle buffer sets freed to stay within the pool cap
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Buffer set leased from the pool. Should be released exactly once.
+     */
+    public static class Buffer {
+        private final BatchBufferPool pool;
+        private final Key key;
+        private final INDArray[] arrays;
+        private volatile boolean released;
+
+        private Buffer(BatchBufferPool pool, Key key, INDArray[] arrays) {
+            this.pool = pool;
+            this.key = key;
+            this.arrays = arrays;
+        }
+
+        /**
+         * This method returns buffer arrays, one per network input
+         */
+        public INDArray[] getArrays() {
+            return arrays;
+        }
+
+        /**
+         * This method returns number of rows (examples) each buffer array can hold
+         */
+        public long getCapacity() {
+            return arrays[0].size(0);
+        }
+
+        /**
+         * This method checks if given request can be written into this buffer set, ignoring its capacity
+         */
+        public boolean isCompatible(@NonNull INDArray[] input) {
+            return key.isCompatible(input);
+        }
+
+        public synchronized void release() {
+            if (released)
+                return;
+
+            released = true;
+            pool.release(key, arrays);
+        }
+    }
+
+    /**
+     * Pool key: data type and trailing shape of each input, with batch dimension sized for pool capacity
+     */
+    protected static class Key {
+        private final DataType[] dataTypes;
+        private final long[][] shapes;
+        private final long bytes;
+
+        protected Key(INDArray[] example, int capacity) {
+            dataTypes = new DataType[example.length];
+            shapes = new long[example.length][0];
+            long total = 0;
+            for (int i = 0; i < example.length; i++) {
+                dataTypes[i] = example[i].dataType();
+                shapes[i] = example[i].shape().clone();
+                shapes[i][0] = capacity;
+
+                long length = 1;
+                for (long s : shapes[i])
+                    length *= s;
+                total += length * dataTypes[i].width();
+            }
+            bytes = total;
+        }
+
+        protected boolean isCompatible(INDArray[] input) {
+            if (input.length != shapes.length)
+                return false;
+
+            for (int i = 0; i < input.length; i++) {
+                if (input[i].dataType() != dataTypes[i] || input[i].rank() != shapes[i].length)
+                    return false;
+
+                for (int j = 1; j < shapes[i].length; j++)
+                    if (input[i].size(j) != shapes[i][j])
+                        return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return Arrays.equals(dataTypes, other.dataTypes) && Arrays.deepEquals(shapes, other.shapes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(dataTypes) + Arrays.deepHashCode(shapes);
+        }
+    }
+}
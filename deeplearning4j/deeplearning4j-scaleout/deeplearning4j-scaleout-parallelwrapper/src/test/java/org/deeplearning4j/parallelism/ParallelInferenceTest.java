@@ -38,8 +38,12 @@ import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
+import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchScheduler;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.pool.BatchBufferPool;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
@@ -54,6 +58,7 @@ import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -219,6 +224,80 @@ public class ParallelInferenceTest extends BaseDL4JTest {
     }
 
 
+    @Test(timeout = 60000L)
+    public void testInferenceAdaptive1() throws Exception {
+        ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(InferenceMode.ADAPTIVE).batchLimit(8)
+                .latencyTarget(50, TimeUnit.MILLISECONDS).batchBuckets(1, 2, 4, 8).workers(2).build();
+        try {
+            iterator = new MnistDataSetIterator(1, false, 12345);
+
+            INDArray array1 = inf.output(iterator.next().getFeatures());
+            assertFalse(array1.isAttached());
+            assertArrayEquals(new long[] {1, 10}, array1.shape());
+
+            iterator.reset();
+
+            evalClassifcationMultipleThreads(inf, iterator, 10);
+
+            AdaptiveBatchScheduler scheduler = inf.getBatchScheduler();
+            assertNotNull(scheduler);
+            assertArrayEquals(new int[] {1, 2, 4, 8}, scheduler.getBuckets());
+            assertTrue(scheduler.getBatchSizeHistogram().getCount() > 0);
+            assertTrue(scheduler.getBatchSizeHistogram().getMax() <= 8);
+            assertTrue(scheduler.getWaitTimeHistogram().getCount() > 0);
+        } finally {
+            inf.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testInferencePooled1() throws Exception {
+        for (InferenceMode mode : new InferenceMode[] {InferenceMode.BATCHED, InferenceMode.ADAPTIVE}) {
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(mode).batchLimit(8)
+                    .pooledBuffers(true).workers(2).build();
+            try {
+                iterator = new MnistDataSetIterator(1, false, 12345);
+
+                INDArray array1 = inf.output(iterator.next().getFeatures());
+                assertArrayEquals(new long[] {1, 10}, array1.shape());
+
+                iterator.reset();
+                evalClassifcationMultipleThreads(inf, iterator, 10);
+
+                BatchBufferPool pool = inf.getBufferPool();
+                assertNotNull(pool);
+                assertTrue(pool.getAllocations() > 0);
+                assertTrue(pool.getReuses() > 0);
+            } finally {
+                inf.shutdown();
+            }
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testInferencePriorities1() throws Exception {
+        for (LoadBalanceMode lbm : LoadBalanceMode.values()) {
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(InferenceMode.BATCHED).batchLimit(8)
+                    .loadBalanceMode(lbm).workers(2).build();
+            try {
+                iterator = new MnistDataSetIterator(1, false, 12345);
+                INDArray features = iterator.next().getFeatures();
+
+                INDArray exp = inf.output(features);
+                for (InferencePriority p : InferencePriority.values()) {
+                    assertEquals(exp, inf.output(new INDArray[]{features}, null, p)[0]);
+                    assertEquals(exp, inf.output(features, p, 30, TimeUnit.SECONDS));
+                }
+
+                iterator.reset();
+                evalClassifcationMultipleThreads(inf, iterator, 10);
+                assertEquals(0, inf.getExpiredCount());
+            } finally {
+                inf.shutdown();
+            }
+        }
+    }
+
     @Test
     public void testProvider1() throws Exception {
         LinkedBlockingQueue queue = new LinkedBlockingQueue();
@@ -235,6 +314,40 @@ public class ParallelInferenceTest extends BaseDL4JTest {
         assertTrue(observable1 == observable2);
     }
 
+    @Test(timeout = 20000L)
+    public void testProviderExpiredWhileProducing() throws Exception {
+        final LinkedBlockingQueue<InferenceObservable> queue = new LinkedBlockingQueue<>();
+        final BasicInferenceObserver observer = new BasicInferenceObserver();
+        final ParallelInference.ObservablesProvider provider =
+                        new ParallelInference.ObservablesProvider(10000000L, 1000, queue);
+
+        // first batch holds an already expired request only
+        BatchedInferenceObservable expired = (BatchedInferenceObservable) provider.setInput(observer,
+                        new INDArray[]{Nd4j.create(1, 10)}, null, System.nanoTime() - 1);
+
+        final AtomicInteger produced = new AtomicInteger();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200; i++) {
+                    provider.setInput(observer, new INDArray[]{Nd4j.create(1, 10)}, null, Long.MAX_VALUE);
+                    produced.incrementAndGet();
+                }
+            }
+        });
+        producer.start();
+
+        // worker side: cancel the expired batch while the producer keeps calling isLocked() on it
+        expired.cancelExpired(System.nanoTime());
+        producer.join();
+        assertEquals(200, produced.get());
+
+        // every observable must still be lockable by a worker
+        for (InferenceObservable observable : queue) {
+            observable.getInputBatches();
+        }
+    }
+
     @Test
     public void testProvider2() throws Exception {
         LinkedBlockingQueue queue = new LinkedBlockingQueue();
@@ -0,0 +1,114 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InferenceLanesTest extends BaseDL4JTest {
+
+    @Test
+    public void testStrictPriority1() throws Exception {
+        InferenceLanes lanes = new InferenceLanes(16, PriorityScheduling.STRICT);
+
+        InferenceObservable low = new BasicInferenceObservable(new INDArray[0], null);
+        InferenceObservable normal = new BasicInferenceObservable(new INDArray[0], null);
+        InferenceObservable high = new BasicInferenceObservable(new INDArray[0], null);
+
+        lanes.lane(InferencePriority.LOW).put(low);
+        lanes.lane(InferencePriority.NORMAL).put(normal);
+        lanes.lane(InferencePriority.HIGH).put(high);
+
+        assertEquals(3, lanes.size());
+        assertSame(high, lanes.take());
+        assertSame(normal, lanes.take());
+        assertSame(low, lanes.take());
+        assertEquals(0, lanes.size());
+    }
+
+    @Test
+    public void testStrictPriorityStarvation1() throws Exception {
+        InferenceLanes lanes = new InferenceLanes(64, PriorityScheduling.STRICT);
+
+        InferenceObservable low = new BasicInferenceObservable(new INDArray[0], null);
+        lanes.lane(InferencePriority.LOW).put(low);
+
+        // as long as HIGH lane has requests, LOW lane is never served
+        for (int e = 0; e < 10; e++) {
+            lanes.lane(InferencePriority.HIGH).put(new BasicInferenceObservable(new INDArray[0], null));
+            assertNotSame(low, lanes.take());
+        }
+
+        assertSame(low, lanes.take());
+    }
+
+    @Test
+    public void testWeightedRoundRobin1() throws Exception {
+        InferenceLanes lanes = new InferenceLanes(64, PriorityScheduling.WEIGHTED);
+
+        for (int e = 0; e < 14; e++) {
+            lanes.lane(InferencePriority.HIGH).put(new BasicInferenceObservable(new INDArray[0], null));
+            lanes.lane(InferencePriority.LOW).put(new BasicInferenceObservable(new INDArray[0], null));
+        }
+
+        List<InferenceObservable> high = new ArrayList<>(lanes.lane(InferencePriority.HIGH));
+
+        // HIGH:LOW weights are 4:1, so LOW lane still gets served while HIGH lane is not empty
+        int highCount = 0;
+        for (int e = 0; e < 10; e++) {
+            if (high.contains(lanes.take()))
+                highCount++;
+        }
+
+        assertEquals(8, highCount);
+    }
+
+    @Test
+    public void testExpiredDropped1() throws Exception {
+        InferenceLanes lanes = new InferenceLanes(16, PriorityScheduling.STRICT);
+
+        BasicInferenceObserver observer = new BasicInferenceObserver();
+        InferenceObservable expired = new BasicInferenceObservable(new INDArray[0], null, System.nanoTime() - 1);
+        expired.addObserver(observer);
+        InferenceObservable alive = new BasicInferenceObservable(new INDArray[0], null, Long.MAX_VALUE);
+
+        lanes.lane(InferencePriority.HIGH).put(expired);
+        lanes.lane(InferencePriority.LOW).put(alive);
+
+        assertSame(alive, lanes.take());
+        assertEquals(1, lanes.getExpiredCount());
+
+        // caller of expired request is notified, and gets exception instead of output
+        assertTrue(observer.waitTillDone(System.nanoTime()));
+        try {
+            expired.getOutput();
+            fail("Expected exception");
+        } catch (InferenceTimeoutException e) {
+            //
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchSchedulerTest extends BaseDL4JTest {
+
+    @Test
+    public void testHistogram1() {
+        InferenceHistogram histogram = new InferenceHistogram();
+        for (int e = 1; e <= 100; e++)
+            histogram.record(e);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-5);
+
+        // log-linear buckets: at most 12.5% relative error
+        assertEquals(50, histogram.getPercentile(50), 50 * 0.125);
+        assertEquals(99, histogram.getPercentile(99), 99 * 0.125);
+        assertEquals(100, histogram.getPercentile(100));
+
+        long total = 0;
+        for (Long c : histogram.getBuckets().values())
+            total += c;
+        assertEquals(100, total);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testBuckets1() {
+        assertArrayEquals(new int[] {1, 2, 4, 8, 16, 32}, AdaptiveBatchScheduler.powerOfTwoBuckets(32));
+        assertArrayEquals(new int[] {1, 2, 4, 8, 16, 32}, AdaptiveBatchScheduler.powerOfTwoBuckets(20));
+
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(TimeUnit.MILLISECONDS.toNanos(10), 32, 1,
+                        new int[] {16, 4, 8});
+        assertEquals(4, scheduler.bucketFor(3));
+        assertEquals(8, scheduler.bucketFor(8));
+        assertEquals(16, scheduler.bucketFor(9));
+        assertEquals(40, scheduler.bucketFor(40));
+    }
+
+    @Test
+    public void testBatchLimit1() {
+        long target = TimeUnit.MILLISECONDS.toNanos(10);
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(target, 64, 1, null);
+
+        // not calibrated yet: behaves like BATCHED mode
+        assertEquals(64, scheduler.batchLimit(0));
+
+        // synthetic cost model: 1ms overhead + 0.5ms per example, single example per request
+        long now = 0;
+        for (int e = 0; e < AdaptiveBatchScheduler.WARMUP_BATCHES * 2; e++) {
+            int size = 1 + (e % 8);
+            List<Long> arrivals = new ArrayList<>();
+            for (int i = 0; i < size; i++)
+                arrivals.add(now);
+
+            long execution = TimeUnit.MICROSECONDS.toNanos(1000 + 500 * size);
+            scheduler.recordBatch(arrivals, size, now, now + execution);
+            now += execution;
+        }
+
+        assertEquals(1e6, scheduler.getOverheadNanos(), 1e4);
+        assertEquals(5e5, scheduler.getPerExampleNanos(), 1e4);
+
+        // (10ms - 1ms) / 0.5ms = 18 requests
+        int limit = scheduler.batchLimit(0);
+        assertEquals(18, limit, 1);
+
+        // deep queue eats into the latency budget
+        assertTrue(scheduler.batchLimit(2) < limit);
+        assertEquals(1, scheduler.batchLimit(100));
+
+        assertEquals(AdaptiveBatchScheduler.WARMUP_BATCHES * 2, scheduler.getBatchSizeHistogram().getCount());
+        assertTrue(scheduler.getWaitTimeHistogram().getCount() > 0);
+    }
+}
@@ -22,8 +22,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.BaseDL4JTest;
 import org.junit.After;
 import org.junit.Before;
+import org.deeplearning4j.parallelism.inference.InferenceTimeoutException;
+import org.deeplearning4j.parallelism.inference.pool.BatchBufferPool;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.common.primitives.Pair;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.lang.reflect.Field;
@@ -32,8 +35,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * @author raver119@gmail.com
@@ -143,4 +145,148 @@ public class BatchedInferenceObservableTest extends BaseDL4JTest {
             assertEquals((float) i, outputs.get(i)[1].meanNumber().floatValue(), 0.001f);
         }
     }
+
+    @Test
+    public void testBucketPadding1() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable(new int[] {1, 2, 4, 8});
+
+        for (int i = 0; i < 5; i++) {
+            observable.addInput(new INDArray[]{Nd4j.create(1,10).assign(i)}, null);
+        }
+
+        assertEquals(5, observable.getNumExamples());
+        assertEquals(5, observable.getArrivalTimes().size());
+
+        INDArray array = observable.getInputBatches().get(0).getFirst()[0];
+        assertArrayEquals(new long[] {8, 10}, array.shape());
+        assertEquals(0.0f, array.getRow(7).meanNumber().floatValue(), 0.001f);
+
+        observable.setOutputBatches(Collections.singletonList(new INDArray[]{array.dup()}));
+
+        List<INDArray[]> outputs = observable.getOutputs();
+        assertEquals(5, outputs.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new long[] {1, 10}, outputs.get(i)[0].shape());
+            assertEquals((float) i, outputs.get(i)[0].meanNumber().floatValue(), 0.001f);
+        }
+    }
+
+    @Test
+    public void testExpiredInputs1() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable();
+
+        observable.addInput(new INDArray[]{Nd4j.create(1,10).assign(0)}, null, Long.MAX_VALUE);
+        observable.addInput(new INDArray[]{Nd4j.create(1,10).assign(1)}, null, System.nanoTime() - 1);
+        observable.addInput(new INDArray[]{Nd4j.create(1,10).assign(2)}, null, Long.MAX_VALUE);
+
+        assertFalse(observable.cancelExpired(System.nanoTime()));
+        assertTrue(observable.isLocked());
+
+        List<Pair<INDArray[], INDArray[]>> batches = observable.getInputBatches();
+        assertEquals(1, batches.size());
+
+        INDArray array = batches.get(0).getFirst()[0];
+        assertArrayEquals(new long[] {2, 10}, array.shape());
+        assertEquals(0.0f, array.getRow(0).meanNumber().floatValue(), 0.001f);
+        assertEquals(2.0f, array.getRow(1).meanNumber().floatValue(), 0.001f);
+
+        observable.setOutputBatches(Collections.singletonList(new INDArray[]{array.dup()}));
+
+        observable.setPosition(0);
+        assertEquals(0.0f, observable.getOutput()[0].meanNumber().floatValue(), 0.001f);
+
+        observable.setPosition(2);
+        assertEquals(2.0f, observable.getOutput()[0].meanNumber().floatValue(), 0.001f);
+
+        observable.setPosition(1);
+        try {
+            observable.getOutput();
+            fail("Expected exception");
+        } catch (InferenceTimeoutException e) {
+            //
+        }
+    }
+
+    @Test
+    public void testExpiredInputs2() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable();
+
+        observable.addInput(new INDArray[]{Nd4j.create(1,10)}, null, System.nanoTime() - 1);
+        observable.addInput(new INDArray[]{Nd4j.create(1,10)}, null, System.nanoTime() - 1);
+
+        // nothing left to compute
+        assertTrue(observable.cancelExpired(System.nanoTime()));
+        assertTrue(observable.getInputBatches().isEmpty());
+    }
+
+    @Test
+    public void testPooledBatch1() throws Exception {
+        BatchBufferPool pool = new BatchBufferPool(8, 1);
+        INDArray[] example = new INDArray[]{Nd4j.create(1,10)};
+
+        BatchBufferPool.Buffer buffer = pool.acquire(example);
+        assertNotNull(buffer);
+        assertNull(pool.acquire(example));
+        assertEquals(1, pool.getMisses());
+
+        PooledBatchedInferenceObservable observable = new PooledBatchedInferenceObservable(buffer, new int[] {1, 2, 4, 8});
+        for (int i = 0; i < 5; i++) {
+            INDArray[] input = new INDArray[]{Nd4j.create(1,10).assign(i)};
+            assertTrue(observable.canAccept(input, null));
+            observable.addInput(input, null);
+        }
+
+        // wrong shape and masks can't be written into this buffer
+        assertFalse(observable.canAccept(new INDArray[]{Nd4j.create(1,11)}, null));
+        assertFalse(observable.canAccept(new INDArray[]{Nd4j.create(1,10)}, new INDArray[]{Nd4j.create(1,10)}));
+
+        INDArray array = observable.getInputBatches().get(0).getFirst()[0];
+        assertArrayEquals(new long[] {8, 10}, array.shape());
+        for (int i = 0; i < 5; i++)
+            assertEquals((float) i, array.getRow(i).meanNumber().floatValue(), 0.001f);
+
+        observable.setOutputBatches(Collections.singletonList(new INDArray[]{array.dup()}));
+
+        List<INDArray[]> outputs = observable.getOutputs();
+        assertEquals(5, outputs.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals((float) i, outputs.get(i)[0].meanNumber().floatValue(), 0.001f);
+
+        // buffer is back in the pool
+        assertNotNull(pool.acquire(example));
+        assertEquals(1, pool.getAllocations());
+        assertEquals(1, pool.getReuses());
+    }
+
+    @Test
+    public void testPooledBuffersCapped1() throws Exception {
+        // room for one [8, 10] float buffer plus one [8, 5] float buffer
+        BatchBufferPool pool = new BatchBufferPool(8, 2, 8 * 10 * 4 + 8 * 5 * 4);
+
+        // requests of different sizes share buffers of the same trailing shape
+        BatchBufferPool.Buffer b1 = pool.acquire(new INDArray[]{Nd4j.create(1,10)});
+        assertNotNull(b1);
+        assertEquals(8, b1.getCapacity());
+        assertNull(pool.acquire(new INDArray[]{Nd4j.create(3,10)}));
+        b1.release();
+
+        BatchBufferPool.Buffer b2 = pool.acquire(new INDArray[]{Nd4j.create(3,10)});
+        assertSame(b1.getArrays(), b2.getArrays());
+        b2.release();
+
+        BatchBufferPool.Buffer b3 = pool.acquire(new INDArray[]{Nd4j.create(1,5)});
+        assertNotNull(b3);
+        b3.release();
+        assertEquals(2, pool.getAllocations());
+
+        // idle buffers of other shapes are freed to stay within the cap
+        BatchBufferPool.Buffer b4 = pool.acquire(new INDArray[]{Nd4j.create(1,7)});
+        assertNotNull(b4);
+        assertTrue(pool.getEvictions() > 0);
+        assertTrue(pool.getPooledBytes() <= 8 * 10 * 4 + 8 * 5 * 4);
+
+        // requests larger than the buffer are never pooled
+        assertNull(pool.acquire(new INDArray[]{Nd4j.create(9,7)}));
+    }
+
 }
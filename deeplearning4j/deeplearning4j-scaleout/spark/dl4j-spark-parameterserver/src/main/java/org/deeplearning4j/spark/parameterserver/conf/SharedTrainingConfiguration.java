@@ -51,6 +51,19 @@ public class SharedTrainingConfiguration implements Serializable {
     @Builder.Default
     protected boolean encodingDebugMode = false;
 
+    /**
+     * Minimal number of parameters per block for block encoding of updates, see
+     * {@link org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks#fromModel}. 0 disables block encoding
+     */
+    @Builder.Default
+    protected long encodingBlockSize = 0L;
+
+    /**
+     * If true, each update is stored once in a ring buffer read by all local workers, instead of per-worker queues
+     */
+    @Builder.Default
+    protected boolean broadcastUpdates = false;
+
     /**
      * This value **overrides** bufferSize calculations for gradients accumulator
      */
@@ -25,6 +25,7 @@ import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.solvers.accumulation.FancyBlockingQueue;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.IndexedTail;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
 import org.deeplearning4j.spark.parameterserver.networking.v1.messages.SilentUpdatesMessage;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -169,6 +170,8 @@ public class SilentTrainingDriver implements TrainingDriver<SilentUpdatesMessage
                 } else if (encoding == ThresholdCompression.BITMAP_ENCODING) {
                     Nd4j.getExecutioner().bitmapDecode(message.getUpdates(), updates);
                     denseCounter.incrementAndGet();
+                } else if (encoding == BlockEncoding.BLOCK_ENCODING) {
+                    BlockEncoding.decode(message.getUpdates(), updates);
                 } else
                     throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
 
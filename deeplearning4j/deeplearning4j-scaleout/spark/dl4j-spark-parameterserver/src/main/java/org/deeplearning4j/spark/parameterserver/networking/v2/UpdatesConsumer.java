@@ -28,6 +28,7 @@ import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.solvers.accumulation.FancyBlockingQueue;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.IndexedTail;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.BlockEncoding;
 import org.deeplearning4j.optimize.solvers.accumulation.SmartFancyBlockingQueue;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.compression.ThresholdCompression;
@@ -135,6 +136,8 @@ public class UpdatesConsumer implements UpdatesHandler {
                     } else if (encoding == ThresholdCompression.BITMAP_ENCODING) {
                         Nd4j.getExecutioner().bitmapDecode(array, updates);
                         denseCounter.incrementAndGet();
+                    } else if (encoding == BlockEncoding.BLOCK_ENCODING) {
+                        BlockEncoding.decode(array, updates);
                     } else
                         throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
 
@@ -22,6 +22,7 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.optimize.solvers.accumulation.EncodingHandler;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
@@ -50,6 +51,17 @@ public class WiredEncodingHandler extends EncodingHandler {
         super(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode);
     }
 
+    /**
+     * This method builds new WiredEncodingHandler instance, with block encoding of updates
+     *
+     * @param thresholdAlgorithm The threshold algorithm to use
+     * @param blocks             layout of independently encoded blocks. May be null, then updates are encoded as single block
+     */
+    public WiredEncodingHandler(ThresholdAlgorithm thresholdAlgorithm, ResidualPostProcessor residualPostProcessor, Integer boundary,
+                                boolean encodingDebugMode, ParameterBlocks blocks) {
+        super(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode, blocks);
+    }
+
     /**
      * This method sends given message to all registered recipients
      *
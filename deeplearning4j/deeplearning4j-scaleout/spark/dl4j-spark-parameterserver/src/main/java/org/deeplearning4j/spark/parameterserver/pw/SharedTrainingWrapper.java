@@ -34,6 +34,7 @@ import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.optimize.listeners.SleepyTrainingListener;
 import org.deeplearning4j.optimize.solvers.accumulation.EncodedGradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.EncodingHandler;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.parallelism.ParallelWrapper;
 import org.deeplearning4j.spark.parameterserver.conf.SharedTrainingConfiguration;
 import org.deeplearning4j.spark.parameterserver.iterators.VirtualDataSetIterator;
@@ -254,7 +255,11 @@ public class SharedTrainingWrapper {
                     }
                 }
 
-                val handler = new WiredEncodingHandler(trainingConfiguration.getThresholdAlgorithm(), trainingConfiguration.getResidualPostProcessor(), null, trainingConfiguration.isEncodingDebugMode());
+                // with block encoding, each layer (or group of small layers) gets its own threshold and encoding type
+                ParameterBlocks blocks = trainingConfiguration.getEncodingBlockSize() > 0
+                                ? ParameterBlocks.fromModel(model, trainingConfiguration.getEncodingBlockSize()) : null;
+
+                val handler = new WiredEncodingHandler(trainingConfiguration.getThresholdAlgorithm(), trainingConfiguration.getResidualPostProcessor(), null, trainingConfiguration.isEncodingDebugMode(), blocks);
 
                 // TODO: if there will be no code difference - use the same class instead of 2 different classes
                 val modelParamsSupplier = new ModelParamsConsumer();
@@ -272,10 +277,15 @@ public class SharedTrainingWrapper {
 
                     int queueSize = numWorkers * 2;
 
-                    val bufferSize = trainingConfiguration.getBufferSize() > 0 ? trainingConfiguration.getBufferSize()
+                    long bufferSize = trainingConfiguration.getBufferSize() > 0 ? trainingConfiguration.getBufferSize()
                                     : EncodedGradientsAccumulator.getOptimalBufferSize(model, numWorkers, 2);
 
+                    // block encoded messages carry per-block headers on top of that
+                    if (blocks != null && trainingConfiguration.getBufferSize() <= 0)
+                        bufferSize = Math.max(bufferSize, blocks.maxEncodedLength() * 4 * numWorkers * 2);
+
                     accumulator = new EncodedGradientsAccumulator.Builder(numWorkers).messageHandler(handler)
+                            .broadcastMode(trainingConfiguration.isBroadcastUpdates())
                             .thresholdAlgorithm(trainingConfiguration.getThresholdAlgorithm())
                             .residualPostProcessor(trainingConfiguration.getResidualPostProcessor())
                             .memoryParameters(bufferSize, queueSize)
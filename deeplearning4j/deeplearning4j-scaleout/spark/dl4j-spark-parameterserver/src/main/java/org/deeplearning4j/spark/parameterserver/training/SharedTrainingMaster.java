@@ -40,6 +40,7 @@ import org.deeplearning4j.core.storage.StorageMetaData;
 import org.deeplearning4j.common.config.DL4JEnvironmentVars;
 import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ParameterBlocks;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.residual.ResidualClippingPostProcessor;
@@ -119,6 +120,8 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
     protected long debugLongerIterations = 0L;
     protected boolean logMinibatchesPerWorker = false;
     protected boolean encodingDebugMode = false;
+    protected long encodingBlockSize = 0L;
+    protected boolean broadcastUpdates = false;
 
     protected ThresholdAlgorithm thresholdAlgorithm;
     protected ResidualPostProcessor residualPostProcessor;
@@ -269,7 +272,9 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
                 .voidConfiguration(voidConfiguration)
                 .debugLongerIterations(debugLongerIterations)
                 .numberOfWorkersPerNode(numWorkersPerNode)
-                .encodingDebugMode(encodingDebugMode).build();
+                .encodingDebugMode(encodingDebugMode)
+                .encodingBlockSize(encodingBlockSize)
+                .broadcastUpdates(broadcastUpdates).build();
 
         if (collectTrainingStats)
             stats.logBroadcastStart();
@@ -301,6 +306,8 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
                 .numberOfWorkersPerNode(numWorkersPerNode)
                 .prefetchSize(workerPrefetchBatches)
                 .encodingDebugMode(encodingDebugMode)
+                .encodingBlockSize(encodingBlockSize)
+                .broadcastUpdates(broadcastUpdates)
                 .build();
 
         if (collectTrainingStats)
@@ -920,6 +927,8 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
         protected Boolean workerTogglePeriodicGC = new Boolean(true);
         protected Integer workerPeriodicGCFrequency = new Integer(5000);
         protected boolean encodingDebugMode = false;
+        protected long encodingBlockSize = 0L;
+        protected boolean broadcastUpdates = false;
 
         /**
          * Create a SharedTrainingMaster with defaults other than the RDD number of examples
@@ -1253,6 +1262,33 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
             return this;
         }
 
+        /**
+         * Enable block encoding of shared updates: updates of each layer (adjacent layers are merged until block has
+         * at least minBlockSize parameters) are encoded with their own threshold, as bitmap or as sparse indices,
+         * depending on their density.<br>
+         * Block encoding is disabled by default (0).
+         *
+         * @param minBlockSize minimal number of parameters per block, see {@link ParameterBlocks#DEFAULT_MIN_BLOCK_SIZE}
+         */
+        public Builder encodingBlockSize(long minBlockSize){
+            if (minBlockSize < 0)
+                throw new DL4JInvalidConfigException("Block size should be non-negative value");
+
+            this.encodingBlockSize = minBlockSize;
+            return this;
+        }
+
+        /**
+         * Enable broadcast mode for updates on workers: each update is stored once, in a ring buffer read by all local
+         * worker threads, instead of being copied to a queue per worker thread. Disabled by default.
+         *
+         * @param reallyBroadcast If true: use broadcast mode
+         */
+        public Builder broadcastUpdates(boolean reallyBroadcast){
+            this.broadcastUpdates = reallyBroadcast;
+            return this;
+        }
+
         public SharedTrainingMaster build() {
             SharedTrainingMaster master = new SharedTrainingMaster(voidConfiguration, numWorkers, rddTrainingApproach,
                             storageLevel, collectTrainingStats, repartitionStrategy, repartition,
@@ -1261,6 +1297,8 @@ public class SharedTrainingMaster extends BaseTrainingMaster<SharedTrainingResul
                     workerPeriodicGCFrequency, encodingDebugMode);
             if (transport != null)
                 master.transport = this.transport;
+            master.encodingBlockSize = this.encodingBlockSize;
+            master.broadcastUpdates = this.broadcastUpdates;
 
             return master;
         }
@@ -114,9 +114,9 @@ public class SameDiff extends SDBaseOps {
 
     //Fields for graph structure and execution
     @Getter
-    private final Map<String, Variable> variables = new LinkedHashMap<>();         //Use linked hash map to guarantee iteration order based on order they were added. Used in inputs() and flatbuffers serde
+    private final Map<String, Variable> variables = new VersionedMap<>();         //Use linked hash map to guarantee iteration order based on order they were added. Used in inputs() and flatbuffers serde
     @Getter
-    private final Map<String, SameDiffOp> ops = new LinkedHashMap<>();
+    private final Map<String, SameDiffOp> ops = new VersionedMap<>();
     @Getter
     private final Map<Long, InferenceSession> sessions = new ConcurrentHashMap<>();      //Key: thread ID
 
@@ -275,6 +275,22 @@ public class SameDiff extends SDBaseOps {
     @Setter
     boolean logExecution = true;
 
+    /**
+     * If true: for inference, record an execution plan (op schedule, resolved op inputs, output shapes and array
+     * lifetimes) per call signature - requested outputs plus placeholder shapes and types - and reuse it for later calls
+     * with the same signature, skipping the per-call graph analysis. Useful for low latency serving of small graphs.
+     * Graphs with control flow are always executed without a plan. Default: false
+     */
+    @Getter
+    @Setter
+    private boolean cacheExecutionPlans = false;
+
+    /**
+     * Incremented on every modification of the graph: ops or variables added, removed, renamed or replaced, op inputs
+     * or outputs changed, or variable/constant arrays set. See {@link #getGraphVersion()}
+     */
+    private long graphVersion;
+
     @Getter
     private SameDiff parent;
 
@@ -357,6 +373,7 @@ public class SameDiff extends SDBaseOps {
      * @param initialize          If true: transfer any arrays from the current array holders to the new/specified ones
      */
     public void setArrayHolders(@NonNull ArrayHolder variableArrayHolder, @NonNull ArrayHolder constantArrayHolder, boolean initialize){
+        markGraphModified();
         if(initialize){
             variableArrayHolder.initFrom(this.variablesArrays);
             constantArrayHolder.initFrom(this.constantArrays);
@@ -693,8 +710,10 @@ public class SameDiff extends SDBaseOps {
         SDVariable v = getVariable(varName);
         if (v.isConstant()) {
             constantArrays.setArray(varName, arr);
+            markGraphModified();
         } else if (v.getVariableType() == VariableType.VARIABLE) {
             variablesArrays.setArray(varName, arr);
+            markGraphModified();
         } else if (v.isPlaceHolder()) {
             long tid = Thread.currentThread().getId();
             if (!placeholdersPerThread.containsKey(tid)) {
@@ -806,9 +825,11 @@ public class SameDiff extends SDBaseOps {
         switch (variable.getVariableType()) {
             case VARIABLE:
                 variablesArrays.setArray(variable.name(), arr);
+                markGraphModified();
                 break;
             case CONSTANT:
                 constantArrays.setArray(variable.name(), arr);
+                markGraphModified();
                 break;
             case ARRAY:
                 throw new UnsupportedOperationException("Cannot associate array with SDVariable of type ARRAY - arrays for" +
@@ -866,6 +887,7 @@ public class SameDiff extends SDBaseOps {
         } else {
             constantArrays.setArray(variable.name(), arr);
         }
+        markGraphModified();
     }
 
 
@@ -981,6 +1003,7 @@ public class SameDiff extends SDBaseOps {
         }
 
         ops.get(function.getOwnName()).setOutputsOfOp(Arrays.asList(varNames));
+        markGraphModified();
 
         for (String resultName : varNames) {
             variables.get(resultName).setOutputOfOp(function.getOwnName());
@@ -1102,6 +1125,7 @@ public class SameDiff extends SDBaseOps {
 
         //Update variable 'inputs to op' accounting for repeated inputs (like y = x+x)
         ops.get(function.getOwnName()).setInputsToOp(Arrays.asList(variables));     //Duplicate variables OK/required here
+        markGraphModified();
 
         for (String variableName : variables) {
             List<String> funcs = this.variables.get(variableName).getInputsForOp();
@@ -1148,6 +1172,7 @@ public class SameDiff extends SDBaseOps {
         oldArgs = new ArrayList<>(oldArgs);
         oldArgs.set(i, newName);
         ops.get(function.getOwnName()).setInputsToOp(oldArgs);
+        markGraphModified();
 
         List<String> funcs = this.variables.get(newName).getInputsForOp();
 
@@ -1787,7 +1812,7 @@ public class SameDiff extends SDBaseOps {
 
                         long validationStart = System.currentTimeMillis();
                         outputHelper(validationData, new At(at.epoch(), 0, 0, 0, null, Operation.TRAINING_VALIDATION),
-                                listenersWitHistory);
+                                listenersWitHistory, 1);
 
                         long validationTime = System.currentTimeMillis() - validationStart;
 
@@ -2287,7 +2312,15 @@ public class SameDiff extends SDBaseOps {
      * @param outputs   The set of outputs to report.  If null, defaults to all outputs of this SameDiff.
      */
     public Map<String, INDArray> output(@NonNull MultiDataSetIterator iterator, @NonNull List<Listener> listeners, @NonNull String... outputs) {
-        return stackOutputs(outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, outputs));
+        return output(iterator, listeners, 1, outputs);
+    }
+
+    /**
+     * As per {@link #output(MultiDataSetIterator, List, String...)}, but executing up to {@code parallelism} independent
+     * ops of the graph concurrently. See {@link OutputConfig#parallelism(int)}.
+     */
+    public Map<String, INDArray> output(@NonNull MultiDataSetIterator iterator, @NonNull List<Listener> listeners, int parallelism, @NonNull String... outputs) {
+        return stackOutputs(outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, parallelism, outputs));
     }
 
     /**
@@ -2324,7 +2357,15 @@ public class SameDiff extends SDBaseOps {
      * @param outputs   The set of outputs to report.  If null, defaults to all outputs of this SameDiff.
      */
     public List<Map<String, INDArray>> outputBatches(MultiDataSetIterator iterator, List<Listener> listeners, String... outputs) {
-        return outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, outputs);
+        return outputBatches(iterator, listeners, 1, outputs);
+    }
+
+    /**
+     * As per {@link #outputBatches(MultiDataSetIterator, List, String...)}, but executing up to {@code parallelism}
+     * independent ops of the graph concurrently. See {@link OutputConfig#parallelism(int)}.
+     */
+    public List<Map<String, INDArray>> outputBatches(MultiDataSetIterator iterator, List<Listener> listeners, int parallelism, String... outputs) {
+        return outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, parallelism, outputs);
     }
 
     /**
@@ -2366,7 +2407,7 @@ public class SameDiff extends SDBaseOps {
     /**
      * Helper method to run inference.  Also used for validation
      */
-    private List<Map<String, INDArray>> outputHelper(MultiDataSetIterator iterator, At at, @NonNull List<Listener> listeners, @NonNull String... outputs) {
+    private List<Map<String, INDArray>> outputHelper(MultiDataSetIterator iterator, At at, @NonNull List<Listener> listeners, int parallelism, @NonNull String... outputs) {
         Preconditions.checkState(trainingConfig != null, "Training config has not been set");
 
         List<Listener> activeListeners = new ArrayList<>();
@@ -2422,7 +2463,7 @@ public class SameDiff extends SDBaseOps {
                     l.iterationStart(this, at, ds, (dataEnd - dataStart));
                 }
 
-                Map<String, INDArray> outs = directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, neededOutputsArr);
+                Map<String, INDArray> outs = directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, parallelism, neededOutputsArr);
 
                 for (Listener l : activeListeners) {
                     l.iterationDone(this, at, ds, null);
@@ -2430,7 +2471,7 @@ public class SameDiff extends SDBaseOps {
 
                 predictions.add(outs);
             } else {
-                predictions.add(directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, neededOutputsArr));
+                predictions.add(directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, parallelism, neededOutputsArr));
             }
             at.setIteration(at.iteration() + 1);
         }
@@ -2526,7 +2567,25 @@ public class SameDiff extends SDBaseOps {
         return batchOutputHelper(placeholders, listeners, Operation.INFERENCE, outputs);
     }
 
+    /**
+     * As per {@link #output(Map, List, String...)}, but executing up to {@code parallelism} independent ops of the
+     * graph concurrently. See {@link BatchOutputConfig#parallelism(int)}.
+     *
+     * @param placeholders The values to use for placeholders.
+     * @param listeners    Additional listeners to use during this operation.
+     * @param parallelism  Maximum number of ops to execute concurrently. 1: sequential execution
+     * @param outputs      The variables to output and return.
+     */
+    public Map<String, INDArray> output(Map<String, INDArray> placeholders, List<Listener> listeners, int parallelism, String... outputs) {
+        return batchOutputHelper(placeholders, listeners, Operation.INFERENCE, parallelism, outputs);
+    }
+
     protected Map<String, INDArray> batchOutputHelper(Map<String, INDArray> placeholders, List<Listener> listeners, Operation operation, String... outputs) {
+        return batchOutputHelper(placeholders, listeners, operation, 1, outputs);
+    }
+
+    protected Map<String, INDArray> batchOutputHelper(Map<String, INDArray> placeholders, List<Listener> listeners, Operation operation,
+                                                      int parallelism, String... outputs) {
         List<Listener> activeListeners = new ArrayList<>();
 
         if(operation == null)
@@ -2548,7 +2607,7 @@ public class SameDiff extends SDBaseOps {
 
         validateListenerActivations(activeListeners, operation);
 
-        Map<String, INDArray> ret = directExecHelper(placeholders, At.defaultAt(operation), null, Collections.<String>emptyList(), activeListeners, outputs);
+        Map<String, INDArray> ret = directExecHelper(placeholders, At.defaultAt(operation), null, Collections.<String>emptyList(), activeListeners, parallelism, outputs);
 
         for (Listener l : activeListeners) {
             l.operationEnd(this, operation);
@@ -2561,6 +2620,17 @@ public class SameDiff extends SDBaseOps {
      */
     protected Map<String, INDArray> directExecHelper(Map<String, INDArray> placeholders, At at, MultiDataSet batch,
                                                      Collection<String> requiredActivations, List<Listener> activeListeners, String... outputs) {
+        return directExecHelper(placeholders, at, batch, requiredActivations, activeListeners, 1, outputs);
+    }
+
+    /**
+     * As per {@link #directExecHelper(Map, At, MultiDataSet, Collection, List, String...)}, executing up to
+     * {@code parallelism} independent ops concurrently
+     */
+    protected Map<String, INDArray> directExecHelper(Map<String, INDArray> placeholders, At at, MultiDataSet batch,
+                                                     Collection<String> requiredActivations, List<Listener> activeListeners,
+                                                     int parallelism, String... outputs) {
+        Preconditions.checkArgument(parallelism >= 1, "Parallelism must be 1 or more, got %s", parallelism);
         if (at == null)
             at = At.defaultAt();
 
@@ -2580,6 +2650,8 @@ public class SameDiff extends SDBaseOps {
         //Placeholder validation is performed in InferenceSession
 
         InferenceSession is = sessions.get(threadId);
+        is.setParallelism(parallelism);
+        is.setCacheExecutionPlans(cacheExecutionPlans);
         return is.output(outputs == null ? Collections.emptyList() : Arrays.asList(outputs),
                 placeholders, batch, requiredActivations, activeListeners, at);
     }
@@ -3240,6 +3312,7 @@ public class SameDiff extends SDBaseOps {
                 continue;   //No-op
 
             v.setDataType(d);
+            markGraphModified();
 
             switch (v.getVariableType()) {
                 case VARIABLE:
@@ -3321,6 +3394,26 @@ public class SameDiff extends SDBaseOps {
         }
     }
 
+    /**
+     * Remove the specified constant, and its array, from the graph. The constant must not be used by any ops, or be
+     * a control dependency.
+     *
+     * @param name Name of the constant to remove
+     */
+    public void removeConstant(@NonNull String name) {
+        Variable v = variables.get(name);
+        Preconditions.checkState(v != null && v.getVariable().getVariableType() == VariableType.CONSTANT,
+                "Cannot remove constant \"%s\": no constant with this name exists", name);
+        Preconditions.checkState(v.getInputsForOp() == null || v.getInputsForOp().isEmpty(),
+                "Cannot remove constant \"%s\": constant is used as an input to ops %s", name, v.getInputsForOp());
+        Preconditions.checkState((v.getControlDepsForOp() == null || v.getControlDepsForOp().isEmpty()) &&
+                (v.getControlDepsForVar() == null || v.getControlDepsForVar().isEmpty()),
+                "Cannot remove constant \"%s\": constant is a control dependency", name);
+
+        variables.remove(name);
+        constantArrays.removeArray(name);
+    }
+
     /**
      * Rename the specified variable to the new name.
      *
@@ -3332,7 +3425,7 @@ public class SameDiff extends SDBaseOps {
         Preconditions.checkState(!variables.containsKey(to), "Cannot rename variable \"%s\" to name \"%s\": a variable with name \"%s\" already exists", from, to, to);
 
         Variable v = variables.get(from);
-        SameDiffOp opToReName = ops.get(stripVarSuffix(from));
+        SameDiffOp opToReName = v.getOutputOfOp() == null ? null : ops.get(stripVarSuffix(from));
         v.setName(to);
         v.getVariable().setVarName(to);
         if (v.getInputsForOp() != null) {
@@ -3381,7 +3474,8 @@ public class SameDiff extends SDBaseOps {
         }
 
         if (v.getOutputOfOp() != null) {
-            SameDiffOp op = ops.get(stripVarSuffix(from));
+            //Output variable names don't necessarily match the name of the op that produces them
+            SameDiffOp op = ops.get(v.getOutputOfOp());
             if(op != null && op.getOutputsOfOp() != null) {
                 List<String> newOuts = new ArrayList<>(op.getOutputsOfOp());
                 while (newOuts.contains(from)) {
@@ -3411,7 +3505,7 @@ public class SameDiff extends SDBaseOps {
         variables.remove(from);
         variables.put(to, v);
         //set as just op name, update to set as the name of the output
-        if(opToReName != null && opToReName.getOp() != null && opToReName.getOp().isOwnNameSetWithDefault()) {
+        if(opToReName != null && opToReName.getOp() != null && opToReName.getOp().isOwnNameSetWithDefault() && !ops.containsKey(to)) {
             ops.remove(from);
             opToReName.getOp().setOwnName(to);
             ops.put(to,opToReName);
@@ -3528,6 +3622,7 @@ public class SameDiff extends SDBaseOps {
                 }
 
                 ops.get(function.getOwnName()).setInputsToOp(newArgs);
+                markGraphModified();
                 break;
             }
         }
@@ -6147,4 +6242,54 @@ public class SameDiff extends SDBaseOps {
         loopScope.close();
         return updateVariableNamesAndReferences(exits, outputNames);
     }
+
+    /**
+     * Get the graph version: a counter that is incremented on every modification of the graph - ops or variables added,
+     * removed, renamed or replaced, op inputs or outputs changed, or variable/constant arrays set. Used to detect
+     * stale cached state, such as execution plans
+     *
+     * @return Current graph version
+     */
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /**
+     * Mark the graph as modified, incrementing the graph version. Modifications made via SameDiff methods, or via
+     * {@link #getOps()} and {@link #getVariables()} map operations, are detected automatically; this method should
+     * only be called after modifying ops or variables in place - for example, {@link SameDiffOp#setInputsToOp(List)}
+     */
+    public void markGraphModified() {
+        graphVersion++;
+    }
+
+    /**
+     * Linked hash map (iteration order based on insertion order) that marks the graph as modified on any put or remove
+     */
+    private class VersionedMap<V> extends LinkedHashMap<String, V> {
+        @Override
+        public V put(String key, V value) {
+            markGraphModified();
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends V> m) {
+            markGraphModified();
+            super.putAll(m);
+        }
+
+        @Override
+        public V remove(Object key) {
+            markGraphModified();
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            markGraphModified();
+            super.clear();
+        }
+    }
+
 }
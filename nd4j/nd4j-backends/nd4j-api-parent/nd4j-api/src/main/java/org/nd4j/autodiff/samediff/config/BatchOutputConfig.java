@@ -53,6 +53,8 @@ public class BatchOutputConfig {
     @NonNull
     private List<Listener> listeners = new ArrayList<>();
 
+    private int parallelism = 1;
+
     public BatchOutputConfig(@NonNull SameDiff sd){
         this.sd = sd;
     }
@@ -130,6 +132,17 @@ public class BatchOutputConfig {
         return this;
     }
 
+    /**
+     * Set the maximum number of independent ops (such as the branches of a multi-tower or multi-head graph) to execute
+     * concurrently. Default: 1 (ops are executed one at a time).<br>
+     * Parallel execution is only used when no listeners are active for the operation.
+     */
+    public BatchOutputConfig parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism >= 1, "Parallelism must be 1 or more, got %s", parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
     /**
      * @deprecated Use {@link #output()}
      */
@@ -142,7 +155,7 @@ public class BatchOutputConfig {
      * Do inference and return the results
      */
     public Map<String,INDArray> output() {
-        return sd.output(placeholders, listeners, outputs.toArray(new String[0]));
+        return sd.output(placeholders, listeners, parallelism, outputs.toArray(new String[0]));
     }
 
     /**
@@ -59,6 +59,8 @@ public class OutputConfig {
 
     private MultiDataSetIterator data;
 
+    private int parallelism = 1;
+
     public OutputConfig(@NonNull SameDiff sd) {
         this.sd = sd;
     }
@@ -121,6 +123,17 @@ public class OutputConfig {
         return this;
     }
 
+    /**
+     * Set the maximum number of independent ops (such as the branches of a multi-tower or multi-head graph) to execute
+     * concurrently. Default: 1 (ops are executed one at a time).<br>
+     * Parallel execution is only used when no listeners are active for the operation.
+     */
+    public OutputConfig parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism >= 1, "Parallelism must be 1 or more, got %s", parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
     private void validateConfig() {
         Preconditions.checkNotNull(data, "Must specify data.  It may not be null.");
     }
@@ -132,14 +145,14 @@ public class OutputConfig {
      * variable time series length and CNNs with variable image sizes will most likely have issues.
      */
     public Map<String, INDArray> exec() {
-        return sd.output(data, listeners, outputs.toArray(new String[0]));
+        return sd.output(data, listeners, parallelism, outputs.toArray(new String[0]));
     }
 
     /**
      * Do inference and return the results in batches.
      */
     public List<Map<String, INDArray>> execBatches() {
-        return sd.outputBatches(data, listeners, outputs.toArray(new String[0]));
+        return sd.outputBatches(data, listeners, parallelism, outputs.toArray(new String[0]));
     }
 
     /**
@@ -154,7 +167,7 @@ public class OutputConfig {
         Preconditions.checkState(outputs.size() == 1,
                 "Can only use execSingle() when exactly one output is specified, there were %s", outputs.size());
 
-        return sd.output(data, listeners, outputs.toArray(new String[0])).get(outputs.get(0));
+        return sd.output(data, listeners, parallelism, outputs.toArray(new String[0])).get(outputs.get(0));
     }
 
 
@@ -168,6 +181,6 @@ public class OutputConfig {
                 "Can only use execSingleBatches() when exactly one output is specified, there were %s", outputs.size());
 
         return SameDiffUtils
-                .getSingleOutput(sd.outputBatches(data, listeners, outputs.toArray(new String[0])), outputs.get(0));
+                .getSingleOutput(sd.outputBatches(data, listeners, parallelism, outputs.toArray(new String[0])), outputs.get(0));
     }
 }
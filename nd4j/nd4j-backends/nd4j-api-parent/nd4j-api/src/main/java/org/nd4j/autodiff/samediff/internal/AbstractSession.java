@@ -88,6 +88,21 @@ public abstract class AbstractSession<T, O> {
      */
     protected final Set<String> zeroInputOpsInSubgraph = new HashSet<>();
 
+    /**
+     * Maximum number of ops (from the same frame/iteration) that may be executed concurrently. 1 (default): all ops are
+     * executed one at a time on the calling thread. See {@link #canExecuteInParallel(DifferentialFunction)}
+     */
+    @Getter
+    @Setter
+    protected int parallelism = 1;
+
+    /**
+     * Execution steps that have been taken from the dependency tracker, parameterized and executed as part of a parallel
+     * batch, but whose outputs have not yet been stored. Value: the parameterized op for the step
+     */
+    protected final Map<ExecStep, O> preparedSteps = new HashMap<>();
+    protected final Queue<ExecStep> pendingSteps = new LinkedList<>();
+
     public AbstractSession(@NonNull SameDiff sameDiff) {
         this.sameDiff = sameDiff;
     }
@@ -153,6 +168,8 @@ public abstract class AbstractSession<T, O> {
         subgraphOps.clear();
         nodeOutputs.clear();            //TODO eventually we'll have (optional) cache here for later execs... main challenge is detecting in-place array modifications and invalidating old results. And overall memory use...
         tensorArrays.clear();
+        preparedSteps.clear();
+        pendingSteps.clear();
 
         //Step 1: determine subgraph structure we actually need to execute
         //Basic plan: work backwards from the variables we want, based on the graph structure, to work out what
@@ -264,24 +281,30 @@ public abstract class AbstractSession<T, O> {
         int currentFrameIter = 0;
         FrameIter currParentFrame = null;
         ExecStepPredicate predicate = new ExecStepPredicate();
-        while (allExecuted.size() < allRequired.size()) {
-            if (!dt.hasNewAllSatisfied()) {
-                //Haven't got all of the outputs the user requested, but there's nothing left that we can execute. Should not happen.
-                execFailed(userRequestedUnique, out, allRequired, allExecuted, step);
-            }
-
-            //Get variable in the current frame/iteration and execute it's corresponding op
-            //If no more ops exist for the current frame/iter, we'll switch to the next frame/iter
-            //The idea is to not mix the order of execution of ops in different frames/iters - i.e., finish the current
-            // frame/iter before starting the next one
-            predicate.setCurrentFrame(currentFrame);
-            predicate.setCurrentFrameIter(currentFrameIter);
-            predicate.setCurrParentFrame(currParentFrame);
-
-            ExecStep es = dt.getFirstNewAllSatisfiedMatching(predicate);
+        boolean parallel = parallelism > 1 && (listeners == null || listeners.isEmpty());
+        //Steps already executed as part of a parallel batch are always stored, even once we have all required outputs,
+        // so that their arrays are released as usual
+        while (allExecuted.size() < allRequired.size() || !pendingSteps.isEmpty()) {
+            ExecStep es = pendingSteps.poll();
             if (es == null) {
-                //We must have finished the current frame/iter, and are switching to the next one
-                es = dt.getNewAllSatisfied();
+                if (!dt.hasNewAllSatisfied()) {
+                    //Haven't got all of the outputs the user requested, but there's nothing left that we can execute. Should not happen.
+                    execFailed(userRequestedUnique, out, allRequired, allExecuted, step);
+                }
+
+                //Get variable in the current frame/iteration and execute it's corresponding op
+                //If no more ops exist for the current frame/iter, we'll switch to the next frame/iter
+                //The idea is to not mix the order of execution of ops in different frames/iters - i.e., finish the current
+                // frame/iter before starting the next one
+                predicate.setCurrentFrame(currentFrame);
+                predicate.setCurrentFrameIter(currentFrameIter);
+                predicate.setCurrParentFrame(currParentFrame);
+
+                es = dt.getFirstNewAllSatisfiedMatching(predicate);
+                if (es == null) {
+                    //We must have finished the current frame/iter, and are switching to the next one
+                    es = dt.getNewAllSatisfied();
+                }
             }
 
             currentFrame = es.getFrameIter().getFrame();
@@ -291,6 +314,7 @@ public abstract class AbstractSession<T, O> {
             log.trace("Beginning execution step {}: {}", step, es);
 
             FrameIter outFrameIter;
+            OpInputs opInputs = null;
             boolean skipDepUpdate = false;      //Only used for Switch ops, which have slightly different handling...
             boolean skipMarkSatisfied = false;  //Only for enter ops, because of different frame/iter
             if (es.getType() == ExecType.CONSTANT || es.getType() == ExecType.VARIABLE) {
@@ -349,54 +373,24 @@ public abstract class AbstractSession<T, O> {
 
 
                 //Resolve the inputs to this execution step (op) to actual arrays
-                Set<VarId> inputs = null;
-                Set<VarId> allIterInputs = null;
-                Set<String> constAndPhInputs = null;
-                DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
-
-                List<String> inputNames = op.getInputsToOp();
-                if (inputNames != null && !inputNames.isEmpty()) {
-                    inputs = new HashSet<>();
-                    allIterInputs = new HashSet<>();
-                    constAndPhInputs = new HashSet<>();
-                    List<ExecStep> deps = dl.getDependencies();
-                    if (deps != null && !deps.isEmpty()) {
-                        for (ExecStep dep : deps) {
-                            switch (dep.getType()) {
-                                case OP:
-                                case SWITCH_L:
-                                case SWITCH_R:
-                                    //The current execution step depends on one output of the op "dep"
-                                    SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
-                                    List<String> inputsToExecOp = toExecOp.getInputsToOp();
-                                    SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
-                                    List<String> inputOpOutNames = inputOp.getOutputsOfOp();
-                                    for (String s : inputsToExecOp) {
-                                        if (inputOpOutNames.contains(s)) {
-                                            VarId vid = new VarId(s, dep.getFrameIter().getFrame(), dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame());
-                                            inputs.add(vid);
-                                        }
-                                    }
-                                    break;
-                                case VARIABLE:
-                                    inputs.add(new VarId(dep.getName(), OUTER_FRAME, 0, null));
-                                    break;
-                                case CONSTANT:
-                                case PLACEHOLDER:
-                                    constAndPhInputs.add(dep.getName());
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
-                            }
-                        }
-                    }
-                }
+                opInputs = resolveInputs(es, op);
+                Set<VarId> inputs = opInputs.getInputs();
+                Set<VarId> allIterInputs = opInputs.getAllIterInputs();
+                Set<String> constAndPhInputs = opInputs.getConstAndPhInputs();
 
 
                 // Do execution of the op, in 2 steps
                 // (a) "Parameterize" the op - i.e., find and set the arrays on the op, allocate outputs, etc ready for execution
                 // (b) actually execute the operation
-                O parameterizedOp = getAndParameterizeOp(opName, outFrameIter, inputs, allIterInputs, constAndPhInputs, placeholderValues, reqOutputVariablesSet);
+                // For parallel execution, (a) is done on this thread for all ready ops of the current frame/iteration, and
+                // (b) is done by the worker threads before the outputs of these ops are stored one at a time below
+                O parameterizedOp = preparedSteps.remove(es);
+                if (parameterizedOp == null) {
+                    parameterizedOp = getAndParameterizeOp(opName, outFrameIter, inputs, allIterInputs, constAndPhInputs, placeholderValues, reqOutputVariablesSet);
+                    if (parallel && canExecuteInParallel(o)) {
+                        prepareParallelBatch(es, parameterizedOp, placeholderValues, reqOutputVariablesSet);
+                    }
+                }
                 T[] opOutputValues = getOutputs(parameterizedOp, outFrameIter, inputs, allIterInputs, constAndPhInputs, listeners, at, batch, reqOutputVariablesSet);
                 List<String> opOutVarNames = op.getOutputsOfOp();
 
@@ -494,6 +488,7 @@ public abstract class AbstractSession<T, O> {
                 dt.markSatisfied(es, true);
             }
 
+            stepExecuted(es, opInputs);
             step++;
         }
 
@@ -503,6 +498,134 @@ public abstract class AbstractSession<T, O> {
         return out;
     }
 
+    /**
+     * Resolve the inputs of the given op execution step, based on the dependencies of that step
+     *
+     * @param es Execution step for the op
+     * @param op Op to get the inputs for
+     * @return The op inputs
+     */
+    protected OpInputs resolveInputs(ExecStep es, SameDiffOp op) {
+        Set<VarId> inputs = null;
+        Set<VarId> allIterInputs = null;
+        Set<String> constAndPhInputs = null;
+        DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
+
+        List<String> inputNames = op.getInputsToOp();
+        if (inputNames != null && !inputNames.isEmpty()) {
+            inputs = new HashSet<>();
+            allIterInputs = new HashSet<>();
+            constAndPhInputs = new HashSet<>();
+            List<ExecStep> deps = dl.getDependencies();
+            if (deps != null && !deps.isEmpty()) {
+                for (ExecStep dep : deps) {
+                    switch (dep.getType()) {
+                        case OP:
+                        case SWITCH_L:
+                        case SWITCH_R:
+                            //The current execution step depends on one output of the op "dep"
+                            SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
+                            List<String> inputsToExecOp = toExecOp.getInputsToOp();
+                            SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
+                            List<String> inputOpOutNames = inputOp.getOutputsOfOp();
+                            for (String s : inputsToExecOp) {
+                                if (inputOpOutNames.contains(s)) {
+                                    VarId vid = new VarId(s, dep.getFrameIter().getFrame(), dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame());
+                                    inputs.add(vid);
+                                }
+                            }
+                            break;
+                        case VARIABLE:
+                            inputs.add(new VarId(dep.getName(), OUTER_FRAME, 0, null));
+                            break;
+                        case CONSTANT:
+                        case PLACEHOLDER:
+                            constAndPhInputs.add(dep.getName());
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
+                    }
+                }
+            }
+        }
+
+        return new OpInputs(inputs, allIterInputs, constAndPhInputs);
+    }
+
+    /**
+     * Take all other ready ops of the same frame/iteration that can be executed in parallel from the dependency tracker,
+     * parameterize them, and execute them concurrently together with the (already parameterized) op for the current
+     * execution step. The other steps are queued in {@link #pendingSteps}, so their outputs are stored (one at a time)
+     * immediately after the current step.<br>
+     * Note that all ops in the batch are parameterized - i.e., have their output arrays allocated - before any of them
+     * is executed, and nothing is released until the outputs are stored, so memory management is unchanged
+     *
+     * @param es              Current execution step
+     * @param parameterizedOp Parameterized op for the current execution step
+     */
+    protected void prepareParallelBatch(final ExecStep es, O parameterizedOp, Map<String, T> placeholderValues, Set<String> reqOutputVariablesSet) {
+        final ExecStepPredicate sameFrameIter = new ExecStepPredicate(es.getFrameIter().getFrame(), es.getFrameIter().getIteration(),
+                es.getFrameIter().getParentFrame());
+        Predicate<ExecStep> predicate = new Predicate<ExecStep>() {
+            @Override
+            public boolean test(ExecStep step) {
+                return step.getType() == ExecType.OP && sameFrameIter.test(step) &&
+                        canExecuteInParallel(sameDiff.getOps().get(step.getName()).getOp());
+            }
+        };
+
+        List<O> batch = new ArrayList<>();
+        batch.add(parameterizedOp);
+        while (dt.hasNewAllSatisfied()) {
+            ExecStep next = dt.getFirstNewAllSatisfiedMatching(predicate);
+            if (next == null)
+                break;
+
+            OpInputs in = resolveInputs(next, sameDiff.getOps().get(next.getName()));
+            O op = getAndParameterizeOp(next.getName(), next.getFrameIter(), in.getInputs(), in.getAllIterInputs(),
+                    in.getConstAndPhInputs(), placeholderValues, reqOutputVariablesSet);
+            batch.add(op);
+            preparedSteps.put(next, op);
+            pendingSteps.add(next);
+        }
+
+        if (batch.size() > 1) {
+            log.trace("Executing {} ops in parallel, starting at step {}", batch.size(), es);
+            executeInParallel(batch);
+        }
+    }
+
+    /**
+     * Called after each execution step, once its outputs have been stored. Default: no-op
+     *
+     * @param es     Executed step
+     * @param inputs Resolved inputs of the step, if it's an op step. Null otherwise
+     */
+    protected void stepExecuted(ExecStep es, OpInputs inputs) {
+        //No op
+    }
+
+    /**
+     * Whether the given op may be executed concurrently with other ops from the same frame/iteration, once it has been
+     * parameterized. Ops that read or modify session state during execution (control flow, tensor arrays, etc) must
+     * return false. Default: false (sequential execution only)
+     */
+    protected boolean canExecuteInParallel(DifferentialFunction op) {
+        return false;
+    }
+
+    /**
+     * Execute the given parameterized ops concurrently. The results must be returned by the subsequent
+     * {@link #getOutputs(Object, FrameIter, Set, Set, Set, List, At, MultiDataSet, Set)} call for each op, which must not
+     * execute the op again.<br>
+     * Only called when {@link #canExecuteInParallel(DifferentialFunction)} returns true for all ops
+     *
+     * @param ops Parameterized ops to execute
+     */
+    protected void executeInParallel(List<O> ops) {
+        throw new UnsupportedOperationException("Parallel execution is not supported by " + getClass().getSimpleName());
+    }
+
     /**
      * Add the control dependency from Op -> variable
      *
@@ -988,6 +1111,17 @@ public abstract class AbstractSession<T, O> {
         }
     }
 
+    /**
+     * The inputs of an op execution step: op outputs (at a given frame + iteration) and constants/placeholders
+     */
+    @Data
+    @AllArgsConstructor
+    protected static class OpInputs {
+        private Set<VarId> inputs;
+        private Set<VarId> allIterInputs;
+        private Set<String> constAndPhInputs;
+    }
+
     /**
      * Used in getting the next ExecStep that matches the specified (current) frame/iteration
      */
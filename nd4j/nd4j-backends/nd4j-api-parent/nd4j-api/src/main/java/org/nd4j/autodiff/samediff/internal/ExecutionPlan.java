@@ -0,0 +1,299 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.listeners.Operation;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.AbstractSession.ExecStep;
+import org.nd4j.autodiff.samediff.internal.AbstractSession.ExecType;
+import org.nd4j.autodiff.samediff.internal.AbstractSession.OpInputs;
+import org.nd4j.autodiff.samediff.internal.AbstractSession.VarId;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.CustomOp;
+import org.nd4j.linalg.api.ops.Op;
+import org.nd4j.linalg.api.ops.ReduceOp;
+import org.nd4j.linalg.api.ops.impl.controlflow.compat.*;
+import org.nd4j.linalg.api.ops.impl.shape.tensorops.BaseTensorOp;
+import org.nd4j.linalg.api.ops.impl.transforms.same.Identity;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+
+import java.util.*;
+
+import static org.nd4j.autodiff.samediff.internal.AbstractSession.OUTER_FRAME;
+
+/**
+ * ExecutionPlan: the result of one (sequential) execution of a static SameDiff graph - i.e., one without control flow -
+ * recorded by {@link InferenceSession}, for reuse by later executions with the same {@link Key} (requested outputs,
+ * placeholder shapes/types and variable/constant shapes) on the same graph version ({@link SameDiff#getGraphVersion()}).<br>
+ * A plan contains:<br>
+ * (a) The linear schedule of execution steps, in the order they were executed<br>
+ * (b) The resolved inputs of each op<br>
+ * (c) The output shapes of ops, where these can't depend on the values (as opposed to the shapes) of the op inputs<br>
+ * (d) The array lifetimes: after which step each op output array is no longer required, and can be released<br>
+ * Replaying a plan hence skips subgraph calculation, dependency tracking and most output shape calculations.
+ */
+@Getter
+public class ExecutionPlan {
+
+    private final Key key;
+    private final List<ExecStep> steps = new ArrayList<>();
+    private final List<OpInputs> inputs = new ArrayList<>();
+    private final Map<String, List<LongShapeDescriptor>> outputShapes = new HashMap<>();
+    /**
+     * Op output arrays (identified by VarId) to release after each step. Empty until {@link #finish(SameDiff, Set)}
+     */
+    private final List<List<VarId>> releaseAfter = new ArrayList<>();
+    private final long graphVersion;
+    private boolean valid = true;
+
+    protected ExecutionPlan(@NonNull Key key, @NonNull SameDiff sameDiff) {
+        this.key = key;
+        this.graphVersion = sameDiff.getGraphVersion();
+    }
+
+    /**
+     * Record the next execution step
+     *
+     * @param es     Executed step
+     * @param inputs Resolved inputs of the step, for op steps. Null otherwise
+     */
+    protected void addStep(ExecStep es, OpInputs inputs) {
+        if (!valid)
+            return;
+
+        if (!OUTER_FRAME.equals(es.getFrameIter().getFrame())) {
+            valid = false;
+            return;
+        }
+        steps.add(es);
+        this.inputs.add(inputs);
+    }
+
+    /**
+     * Record the calculated output shapes of the specified op. Should only be called for ops whose output shapes can
+     * only depend on the shapes of their inputs - see {@link #canCacheOutputShapes(DifferentialFunction, INDArray[])}
+     */
+    protected void addOutputShapes(String opName, List<LongShapeDescriptor> shapes) {
+        outputShapes.put(opName, shapes);
+    }
+
+    /**
+     * @return The cached output shapes for the specified op, or null if not available
+     */
+    public List<LongShapeDescriptor> getOutputShapes(String opName) {
+        return outputShapes.get(opName);
+    }
+
+    /**
+     * @return True if the graph has been modified since the plan was recorded - i.e., ops or variables have been
+     * added, removed, renamed or replaced, or variable/constant arrays have been set. See {@link SameDiff#getGraphVersion()}
+     */
+    public boolean isStale(SameDiff sameDiff) {
+        return graphVersion != sameDiff.getGraphVersion();
+    }
+
+    /**
+     * Finish recording the plan: check that all executed ops can be replayed, and calculate the array lifetimes
+     *
+     * @param sameDiff        SameDiff instance the plan was recorded for
+     * @param requiredOutputs Variables requested by the user. These are never released
+     */
+    protected void finish(SameDiff sameDiff, Set<String> requiredOutputs) {
+        if (!valid)
+            return;
+
+        Map<VarId, VarId> aliases = new HashMap<>();    //Key: output of identity op. Value: the (op output) array it forwards
+        Map<VarId, Integer> lastUse = new LinkedHashMap<>();  //Only contains arrays allocated by ops, that we can release
+        Set<VarId> retain = new HashSet<>();
+        for (int i = 0; i < steps.size(); i++) {
+            ExecStep es = steps.get(i);
+            if (es.getType() != ExecType.OP)
+                continue;
+
+            SameDiffOp op = sameDiff.getOps().get(es.getName());
+            DifferentialFunction df = op.getOp();
+            if (!canReplay(df)) {
+                valid = false;
+                return;
+            }
+
+            OpInputs in = inputs.get(i);
+            if (in != null && in.getInputs() != null) {
+                for (VarId v : in.getInputs()) {
+                    VarId root = root(v, aliases);
+                    if (lastUse.containsKey(root))
+                        lastUse.put(root, i);
+                }
+            }
+
+            List<String> outNames = op.getOutputsOfOp();
+            if (df instanceof Identity) {
+                //Identity forwards its input array: the output is an alias of the input, not a new array
+                VarId out = new VarId(outNames.get(0), OUTER_FRAME, 0, null);
+                if (in != null && in.getInputs() != null && in.getInputs().size() == 1) {
+                    aliases.put(out, root(in.getInputs().iterator().next(), aliases));
+                }
+                continue;
+            }
+
+            for (String s : outNames) {
+                VarId out = new VarId(s, OUTER_FRAME, 0, null);
+                lastUse.put(out, i);        //Not used anywhere (yet): can be released immediately
+                if (requiredOutputs.contains(s))
+                    retain.add(out);
+            }
+        }
+
+        //Arrays forwarded to requested outputs by identity ops must not be released either
+        for (String s : requiredOutputs) {
+            retain.add(root(new VarId(s, OUTER_FRAME, 0, null), aliases));
+        }
+
+        for (int i = 0; i < steps.size(); i++) {
+            releaseAfter.add(Collections.<VarId>emptyList());
+        }
+        for (Map.Entry<VarId, Integer> e : lastUse.entrySet()) {
+            if (retain.contains(e.getKey()))
+                continue;
+            int step = e.getValue();
+            if (releaseAfter.get(step).isEmpty())
+                releaseAfter.set(step, new ArrayList<VarId>());
+            releaseAfter.get(step).add(e.getKey());
+        }
+    }
+
+    private static VarId root(VarId v, Map<VarId, VarId> aliases) {
+        VarId a = aliases.get(v);
+        return a == null ? v : a;
+    }
+
+    /**
+     * @return True if ops of this type can be replayed as part of a plan. Control flow and tensor array ops depend on
+     * the values of their inputs, so graphs containing these are always executed without a plan
+     */
+    protected static boolean canReplay(DifferentialFunction df) {
+        return !(df instanceof Enter || df instanceof Exit || df instanceof NextIteration || df instanceof Merge ||
+                df instanceof Switch || df instanceof LoopCond || df instanceof BaseTensorOp);
+    }
+
+    /**
+     * Custom ops whose output shapes only depend on the shapes (and the op arguments) of their inputs, never on the
+     * input values. Ops such as non max suppression, choose, unique or range have output shapes that depend on the
+     * input values, and must never be added here
+     */
+    protected static final Set<String> SHAPE_ONLY_CUSTOM_OPS = new HashSet<>(Arrays.asList(
+            "add", "subtract", "multiply", "divide", "reversesubtract", "reversedivide", "squaredsubtract", "realdiv",
+            "maximum", "minimum", "pow", "matmul", "biasadd", "xw_plus_b", "softmax", "log_softmax", "relu", "relu6",
+            "layer_norm", "batchnorm", "standardize", "lrn",
+            "conv1d", "conv2d", "conv3dnew", "deconv2d", "deconv3d", "depthwise_conv2d", "sconv2d",
+            "maxpool2d", "avgpool2d", "pnormpool2d", "maxpool3dnew", "avgpool3dnew", "upsampling2d",
+            "lstmLayer", "lstmBlock", "gruCell", "sru", "concat", "stack"));
+
+    /**
+     * Whether the output shapes of an op can be cached in the plan. Output shapes are cached only if they can't depend
+     * on the values of the op inputs:<br>
+     * - Legacy ops, unless the reduction axes are provided as an array<br>
+     * - Custom ops in {@link #SHAPE_ONLY_CUSTOM_OPS}, if all inputs are floating point arrays (integer inputs of these
+     *   ops are dynamic arguments such as the concat axis)
+     *
+     * @param df   Op
+     * @param args Op input arrays. May be null
+     */
+    public static boolean canCacheOutputShapes(DifferentialFunction df, INDArray[] args) {
+        if (!(df instanceof CustomOp)) {
+            //Legacy ops: output shape is calculated from the input shapes and the op dimensions, except for
+            //reductions where the dimensions are set from the values of the second input
+            return df instanceof Op && !(df instanceof ReduceOp && ((ReduceOp) df).getOpType() != Op.Type.REDUCE3
+                    && df.argNames().length == 2);
+        }
+        if (!SHAPE_ONLY_CUSTOM_OPS.contains(df.opName()))
+            return false;
+        if (args != null) {
+            for (INDArray arr : args) {
+                if (!arr.dataType().isFPType())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Key for a plan: all inputs to the execution that can change the op schedule or the op output shapes - requested
+     * outputs, placeholder shapes and types, and the shapes and types of the (non-placeholder) variable and constant arrays
+     */
+    @EqualsAndHashCode
+    public static class Key {
+        private final Set<String> outputs;
+        private final Set<String> requiredActivations;
+        private final Map<String, List<Long>> placeholderShapes;
+        private final Map<String, DataType> placeholderTypes;
+        private final Map<String, List<Long>> arrayShapes;
+        private final Map<String, DataType> arrayTypes;
+        private final Operation operation;
+
+        public Key(@NonNull SameDiff sameDiff, Collection<String> outputs, Collection<String> requiredActivations,
+                   Map<String, INDArray> placeholders, Operation operation) {
+            this.outputs = new HashSet<>(outputs);
+            this.requiredActivations = requiredActivations == null ? Collections.<String>emptySet() : new HashSet<>(requiredActivations);
+            this.placeholderShapes = new HashMap<>();
+            this.placeholderTypes = new HashMap<>();
+            if (placeholders != null) {
+                for (Map.Entry<String, INDArray> e : placeholders.entrySet()) {
+                    INDArray arr = e.getValue();
+                    if (arr == null)
+                        continue;
+                    placeholderShapes.put(e.getKey(), shapeOf(arr));
+                    placeholderTypes.put(e.getKey(), arr.dataType());
+                }
+            }
+
+            //Variable and constant arrays can be replaced (with different shapes) without any change to the ops
+            this.arrayShapes = new HashMap<>();
+            this.arrayTypes = new HashMap<>();
+            for (SDVariable v : sameDiff.variables()) {
+                if (v.getVariableType() != VariableType.VARIABLE && v.getVariableType() != VariableType.CONSTANT)
+                    continue;
+                if (!sameDiff.arrayAlreadyExistsForVarName(v.name()))
+                    continue;
+                INDArray arr = sameDiff.getArrForVarName(v.name());
+                if (arr == null)
+                    continue;
+                arrayShapes.put(v.name(), shapeOf(arr));
+                arrayTypes.put(v.name(), arr.dataType());
+            }
+            this.operation = operation;
+        }
+
+        private static List<Long> shapeOf(INDArray arr) {
+            List<Long> shape = new ArrayList<>();
+            for (long l : arr.shape())
+                shape.add(l);
+            if (arr.isEmpty())
+                shape.add(-1L);     //Distinguish empty arrays from scalars etc
+            return shape;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.autodiff.samediff.internal.memory.ArrayCacheMemoryMgr;
+import org.nd4j.autodiff.samediff.internal.memory.MemoryMgrStats;
+import org.nd4j.autodiff.samediff.internal.memory.SizeClassMemoryMgr;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
@@ -52,6 +54,8 @@ import org.nd4j.common.primitives.Pair;
 import org.nd4j.common.util.ArrayUtil;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.nd4j.imports.VariableUtils.stripVarSuffix;
 
@@ -75,6 +79,7 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
             "Alternatively, arrays defined in a workspace must be replaced after the workspace has been closed.";
 
     protected static final String KERAS_TRAIN_TEST = "keras_learning_phase";
+    protected static final int MAX_EXECUTION_PLANS = 32;
 
     @Getter
     @Setter
@@ -90,14 +95,160 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
 
     private Map<String,OpContext> opContexts = new HashMap<>();
 
+    /**
+     * Memory manager allocation statistics for the last output call, if the memory manager is a {@link SizeClassMemoryMgr};
+     * null otherwise
+     */
+    @Getter
+    private MemoryMgrStats lastMemoryStats;
+    private MemoryMgrStats memoryStatsStart;
+
+    /**
+     * Outputs of ops that have been executed by {@link #executeInParallel(List)}, but not yet returned by getOutputs.
+     * Key: op name
+     */
+    private final Map<String, INDArray[]> parallelOutputs = new HashMap<>();
+    private ThreadPoolExecutor parallelExecutor;
+
+    /**
+     * If true: record an {@link ExecutionPlan} for each distinct call signature (requested outputs, placeholder
+     * shapes and types), and replay it for later calls with the same signature. Only used for sequential execution
+     */
+    @Getter
+    @Setter
+    private boolean cacheExecutionPlans;
+    private final Map<ExecutionPlan.Key, ExecutionPlan> executionPlans = new LinkedHashMap<ExecutionPlan.Key, ExecutionPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ExecutionPlan.Key, ExecutionPlan> eldest) {
+            return size() > MAX_EXECUTION_PLANS;
+        }
+    };
+    private ExecutionPlan recordingPlan;    //Plan being recorded in the current output call, if any
+    private ExecutionPlan activePlan;       //Plan being replayed in the current output call, if any
+    /**
+     * The execution plan recorded or replayed by the last output call, if any
+     */
+    @Getter
+    private ExecutionPlan lastExecutionPlan;
+
     public InferenceSession(@NonNull SameDiff sameDiff) {
         super(sameDiff);
         mmgr = new ArrayCacheMemoryMgr();
     }
 
+    @Override
+    public Map<String, INDArray> output(@NonNull List<String> variables, Map<String, INDArray> placeholderValues, MultiDataSet batch,
+                                        Collection<String> requiredActivations, List<Listener> listeners, At at) {
+        lastExecutionPlan = null;
+        if (!cacheExecutionPlans || parallelism > 1) {
+            return super.output(variables, placeholderValues, batch, requiredActivations, listeners, at);
+        }
+
+        if (at == null)
+            at = At.defaultAt();
+
+        ExecutionPlan.Key key = new ExecutionPlan.Key(sameDiff, variables, requiredActivations, placeholderValues, at.operation());
+        ExecutionPlan plan = executionPlans.get(key);
+        if (plan != null && !plan.isStale(sameDiff)) {
+            if (!plan.isValid()) {
+                //Graph can't be executed using a plan - control flow etc
+                return super.output(variables, placeholderValues, batch, requiredActivations, listeners, at);
+            }
+            lastExecutionPlan = plan;
+            return execPlan(plan, variables, placeholderValues, batch, listeners, at);
+        }
+
+        recordingPlan = new ExecutionPlan(key, sameDiff);
+        try {
+            Map<String, INDArray> out = super.output(variables, placeholderValues, batch, requiredActivations, listeners, at);
+            recordingPlan.finish(sameDiff, new HashSet<>(variables));
+            executionPlans.put(key, recordingPlan);
+            if (recordingPlan.isValid())
+                lastExecutionPlan = recordingPlan;
+            return out;
+        } finally {
+            recordingPlan = null;
+        }
+    }
+
+    /**
+     * Execute the graph using a previously recorded plan: ops are executed in the recorded order with the recorded
+     * inputs, and op output arrays are released after the recorded steps, without any dependency tracking
+     */
+    protected Map<String, INDArray> execPlan(ExecutionPlan plan, List<String> variables, Map<String, INDArray> placeholderValues,
+                                             MultiDataSet batch, List<Listener> listeners, At at) {
+        Set<String> reqOutputVariablesSet = new HashSet<>(variables);
+        placeholderValues = preprocessPlaceholders(placeholderValues, at);
+
+        dt.clear();
+        nodeOutputs.clear();
+        tensorArrays.clear();
+
+        activePlan = plan;
+        try {
+            Map<String, INDArray> out = new HashMap<>();
+            List<ExecStep> steps = plan.getSteps();
+            for (int i = 0; i < steps.size(); i++) {
+                ExecStep es = steps.get(i);
+                String name = es.getName();
+                if (es.getType() == ExecType.OP) {
+                    OpInputs in = plan.getInputs().get(i);
+                    FrameIter fi = es.getFrameIter();
+                    Pair<SameDiffOp, OpContext> op = getAndParameterizeOp(name, fi, in.getInputs(), in.getAllIterInputs(),
+                            in.getConstAndPhInputs(), placeholderValues, reqOutputVariablesSet);
+                    INDArray[] opOutputs = getOutputs(op, fi, in.getInputs(), in.getAllIterInputs(), in.getConstAndPhInputs(),
+                            listeners, at, batch, reqOutputVariablesSet);
+
+                    List<String> outNames = op.getFirst().getOutputsOfOp();
+                    for (int j = 0; j < opOutputs.length; j++) {
+                        String n = outNames.get(j);
+                        nodeOutputs.put(new VarId(n, OUTER_FRAME, 0, null), opOutputs[j]);
+                        if (reqOutputVariablesSet.contains(n))
+                            out.put(n, opOutputs[j]);
+                    }
+                } else {
+                    INDArray arr;
+                    if (es.getType() == ExecType.PLACEHOLDER) {
+                        arr = placeholderValues == null ? null : placeholderValues.get(name);
+                    } else {
+                        arr = getConstantOrVariable(name);
+                    }
+                    nodeOutputs.put(new VarId(name, OUTER_FRAME, 0, null), arr);
+                    if (reqOutputVariablesSet.contains(name))
+                        out.put(name, arr);
+                }
+
+                for (VarId v : plan.getReleaseAfter().get(i)) {
+                    INDArray arr = nodeOutputs.get(v);
+                    if (arr != null)
+                        mmgr.release(arr);
+                }
+            }
+
+            return postProcessOutput(out);
+        } finally {
+            activePlan = null;
+        }
+    }
+
+    @Override
+    protected void stepExecuted(ExecStep es, OpInputs inputs) {
+        if (recordingPlan != null)
+            recordingPlan.addStep(es, inputs);
+    }
+
+    /**
+     * Remove all cached execution plans
+     */
+    public void clearExecutionPlans() {
+        executionPlans.clear();
+    }
+
     @Override
     protected Map<String, INDArray> preprocessPlaceholders(Map<String, INDArray> placeholders, At at) {
         arrayUseTracker.clear();
+        parallelOutputs.clear();
+        memoryStatsStart = mmgr instanceof SizeClassMemoryMgr ? ((SizeClassMemoryMgr) mmgr).getStats() : null;
 
         //We'll also use this method as a "pre execution" hook-in, to mark variables as something we should never deallocate
         //This occurs by never marking these "ConstantDep" and "VariableDep" instances as satisfied, so there's always
@@ -207,6 +358,13 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
             }
         }
 
+        if (memoryStatsStart != null && mmgr instanceof SizeClassMemoryMgr) {
+            lastMemoryStats = ((SizeClassMemoryMgr) mmgr).getStats().since(memoryStatsStart);
+            log.debug("Memory manager statistics for output call: {}", lastMemoryStats);
+        } else {
+            lastMemoryStats = null;
+        }
+
         return output;
     }
 
@@ -223,7 +381,9 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
             }
         }
 
-        INDArray[] out = doExec(op.getOp(), opPair.getRight(), outputFrameIter, opInputs, allIterInputs, constAndPhInputs);
+        INDArray[] out = parallelOutputs.remove(op.getName());
+        if (out == null)
+            out = doExec(op.getOp(), opPair.getRight(), outputFrameIter, opInputs, allIterInputs, constAndPhInputs);
 
         if (log.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
@@ -266,6 +426,10 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
         if(opPair.getSecond() != null)
             opPair.getSecond().purge();
 
+        if (activePlan != null) {
+            //Array lifetimes are part of the plan: see execPlan
+            return out;
+        }
 
         //Record array uses for memory management/deallocation
         SameDiffOp o = sameDiff.getOps().get(op.getName());
@@ -494,19 +658,120 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 throw new IllegalStateException(s);
             }
             return opContext.getOutputArrays().toArray(new INDArray[0]);
-        } else if (op instanceof CustomOp) {
+        } else if (op instanceof CustomOp || op instanceof Op) {
+            return execOp(op, opContext);
+        } else {
+            throw new UnsupportedOperationException("Execution not yet implemented for: " + op.getClass().getName());
+        }
+    }
+
+    /**
+     * Execute a standard (custom or legacy) op using the arrays set on its (parameterized) op context.
+     * Does not access any session state, hence may be called from any thread
+     */
+    protected INDArray[] execOp(DifferentialFunction op, OpContext opContext) {
+        if (op instanceof CustomOp) {
             CustomOp c = (CustomOp) op;
             Nd4j.exec(c, opContext);
             return opContext.getOutputArrays().toArray(new INDArray[0]);
-        } else if (op instanceof Op) {
+        } else {
             Op o = (Op) op;
             Nd4j.exec(o, opContext);
             return new INDArray[]{opContext.getOutputArray(0)};
-        } else {
-            throw new UnsupportedOperationException("Execution not yet implemented for: " + op.getClass().getName());
         }
     }
 
+    @Override
+    protected boolean canExecuteInParallel(DifferentialFunction op) {
+        //Identity passes through its input, control flow and tensor array ops read and modify session state, and the
+        // remaining special cases allocate or validate during execution: these are always executed sequentially
+        if (op instanceof Identity || op instanceof Assert || op instanceof BaseTensorOp || op instanceof GradientBackwardsMarker ||
+                op instanceof ExternalErrorsFunction || op instanceof LoopCond || op instanceof Enter || op instanceof Exit ||
+                op instanceof NextIteration || op instanceof Merge || op instanceof Switch) {
+            return false;
+        }
+        return op instanceof CustomOp || op instanceof Op;
+    }
+
+    @Override
+    protected void executeInParallel(final List<Pair<SameDiffOp, OpContext>> ops) {
+        //Each op has its own OpContext (see getAndParameterizeOp), with inputs set and outputs allocated on the calling
+        // thread. Workers only execute the ops; storing outputs and releasing arrays is done later in getOutputs, on
+        // the calling thread, so the memory manager and array use tracker are never accessed concurrently
+        int numWorkers = Math.min(parallelism, ops.size()) - 1;
+        final AtomicInteger next = new AtomicInteger();
+        final INDArray[][] results = new INDArray[ops.size()][];
+        final Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+
+        ThreadPoolExecutor executor = parallelExecutor(parallelism - 1);
+        List<Future<?>> futures = new ArrayList<>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+                    execParallelBatch(ops, next, results);
+                }
+            }));
+        }
+
+        //The calling thread executes ops too, rather than just waiting on the workers
+        RuntimeException failure = null;
+        try {
+            execParallelBatch(ops, next, results);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null)
+                    failure = new IllegalStateException("Interrupted while waiting for parallel op execution", e);
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            }
+        }
+        if (failure != null)
+            throw failure;
+
+        for (int i = 0; i < ops.size(); i++) {
+            parallelOutputs.put(ops.get(i).getFirst().getName(), results[i]);
+        }
+    }
+
+    protected void execParallelBatch(List<Pair<SameDiffOp, OpContext>> ops, AtomicInteger next, INDArray[][] results) {
+        int i;
+        while ((i = next.getAndIncrement()) < ops.size()) {
+            Pair<SameDiffOp, OpContext> p = ops.get(i);
+            results[i] = execOp(p.getFirst().getOp(), p.getSecond());
+        }
+    }
+
+    protected synchronized ThreadPoolExecutor parallelExecutor(int numThreads) {
+        if (parallelExecutor == null || parallelExecutor.getCorePoolSize() != numThreads) {
+            if (parallelExecutor != null)
+                parallelExecutor.shutdown();
+
+            //Idle threads are terminated, so sessions that are no longer used don't keep any threads alive
+            parallelExecutor = new ThreadPoolExecutor(numThreads, numThreads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = Executors.defaultThreadFactory().newThread(r);
+                            t.setDaemon(true);
+                            t.setName("InferenceSession-worker-" + t.getName());
+                            return t;
+                        }
+                    });
+            parallelExecutor.allowCoreThreadTimeOut(true);
+        }
+        return parallelExecutor;
+    }
+
     /**
      * Forward pass for TensorArray ops
      */
@@ -876,7 +1141,12 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 oc.setBArguments(customOp.bArgs());
 
 
-            List<LongShapeDescriptor> outShape = customOp.calculateOutputShape(oc);
+            List<LongShapeDescriptor> outShape = activePlan == null ? null : activePlan.getOutputShapes(opName);
+            if (outShape == null) {
+                outShape = customOp.calculateOutputShape(oc);
+                if (recordingPlan != null && ExecutionPlan.canCacheOutputShapes(df, args))
+                    recordingPlan.addOutputShapes(opName, outShape);
+            }
             Preconditions.checkState(outShape != null && outShape.size() > 0, "Failed to calculate output shapes for op %s (%s) - no shapes were returned by calculateOutputShape()", customOp.opName(), customOp.getOwnName());
             String[] outNames = df.outputVariablesNames();
             Preconditions.checkState(outNames.length == outShape.size(), "Error in operation shape calculation for op \"%s\": Got %s op output shapes for an operation" +
@@ -951,7 +1221,12 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 INDArray z = mmgr.allocate(false, oc.getInputArray(0).dataType(), oc.getInputArray(0).shape());
                 oc.setOutputArray(0, z);
             } else {
-                List<LongShapeDescriptor> outputShape = ((BaseOp) op).calculateOutputShape(oc);
+                List<LongShapeDescriptor> outputShape = activePlan == null ? null : activePlan.getOutputShapes(opName);
+                if (outputShape == null) {
+                    outputShape = ((BaseOp) op).calculateOutputShape(oc);
+                    if (recordingPlan != null && ExecutionPlan.canCacheOutputShapes(df, args))
+                        recordingPlan.addOutputShapes(opName, outputShape);
+                }
                 Preconditions.checkState(outputShape != null && outputShape.size() == 1, "Could not calculate output shape for op: %s", op.getClass());
                 LongShapeDescriptor lsd = outputShape.get(0);
                 INDArray z = mmgr.allocate(isOutput, lsd);
@@ -19,8 +19,14 @@
 package org.nd4j.autodiff.samediff.internal.memory;
 
 import lombok.NonNull;
+import org.bytedeco.javacpp.Pointer;
 import org.nd4j.autodiff.samediff.internal.SessionMemMgr;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 /**
  * Abstract memory manager, that implements ulike and dup methods using the underlying allocate methods
@@ -40,4 +46,23 @@ public abstract class AbstractMemoryMgr implements SessionMemMgr {
         out.assign(arr);
         return out;
     }
+
+    /**
+     * @return Total memory available for arrays: {@link Pointer#maxBytes()} on CPU, or total memory of GPU 0 on CUDA
+     */
+    protected static long totalMemBytes() {
+        if(isCpu()){
+            return Pointer.maxBytes();
+        } else {
+            Properties p = Nd4j.getExecutioner().getEnvironmentInformation();
+            List devList = (List) p.get("cuda.devicesInformation");
+            Map m = (Map) devList.get(0);
+            return (Long)m.get("cuda.totalMemory");
+        }
+    }
+
+    protected static boolean isCpu() {
+        String backend = Nd4j.getExecutioner().getEnvironmentInformation().getProperty("backend");
+        return !"CUDA".equalsIgnoreCase(backend);
+    }
 }
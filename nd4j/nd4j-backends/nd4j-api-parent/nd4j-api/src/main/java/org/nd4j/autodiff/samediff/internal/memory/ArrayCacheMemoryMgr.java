@@ -19,7 +19,6 @@
 package org.nd4j.autodiff.samediff.internal.memory;
 
 import lombok.*;
-import org.bytedeco.javacpp.Pointer;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -96,22 +95,10 @@ public class ArrayCacheMemoryMgr extends AbstractMemoryMgr {
         this.smallArrayThreshold = smallArrayThreshold;
         this.largerArrayMaxMultiple = largerArrayMaxMultiple;
 
-        if(isCpu()){
-            totalMemBytes = Pointer.maxBytes();
-        } else {
-            Properties p = Nd4j.getExecutioner().getEnvironmentInformation();
-            List devList = (List) p.get("cuda.devicesInformation");
-            Map m = (Map) devList.get(0);
-            totalMemBytes = (Long)m.get("cuda.totalMemory");
-        }
+        totalMemBytes = totalMemBytes();
         maxCacheBytes = (long)(maxMemFrac * totalMemBytes);
     }
 
-    private boolean isCpu() {
-        String backend = Nd4j.getExecutioner().getEnvironmentInformation().getProperty("backend");
-        return !"CUDA".equalsIgnoreCase(backend);
-    }
-
     @Override
     public INDArray allocate(boolean detached, DataType dataType, long... shape) {
         if (arrayStores.containsKey(dataType)) {
@@ -0,0 +1,71 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Allocation statistics of a {@link SizeClassMemoryMgr}: either totals since creation, or the difference between two
+ * snapshots (see {@link #since(MemoryMgrStats)}), for example for a single InferenceSession output call.
+ */
+@Data
+@AllArgsConstructor
+public class MemoryMgrStats {
+    /** Number of allocate calls */
+    private long allocations;
+    /** Number of allocations served from the cache */
+    private long cacheHits;
+    /** Number of allocations that required a new buffer */
+    private long cacheMisses;
+    /** Number of arrays released */
+    private long releases;
+    /** Number of cached buffers deallocated to stay under the cache size limit */
+    private long evictions;
+    /** Bytes of new buffers allocated */
+    private long bytesAllocated;
+    /** Bytes of buffers served from the cache */
+    private long bytesReused;
+    /** Bytes currently held in the cache (not a difference, even for deltas) */
+    private long bytesCached;
+
+    /**
+     * @return Fraction of allocations served from the cache, 0.0 if no allocations were made
+     */
+    public double hitRate() {
+        return allocations == 0 ? 0.0 : cacheHits / (double) allocations;
+    }
+
+    /**
+     * @param start Earlier snapshot of the same memory manager
+     * @return Statistics for the period between the two snapshots
+     */
+    public MemoryMgrStats since(@NonNull MemoryMgrStats start) {
+        return new MemoryMgrStats(allocations - start.allocations, cacheHits - start.cacheHits,
+                cacheMisses - start.cacheMisses, releases - start.releases, evictions - start.evictions,
+                bytesAllocated - start.bytesAllocated, bytesReused - start.bytesReused, bytesCached);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryMgrStats(allocations=%d, hitRate=%.3f, releases=%d, evictions=%d, bytesAllocated=%d, bytesReused=%d, bytesCached=%d)",
+                allocations, hitRate(), releases, evictions, bytesAllocated, bytesReused, bytesCached);
+    }
+}
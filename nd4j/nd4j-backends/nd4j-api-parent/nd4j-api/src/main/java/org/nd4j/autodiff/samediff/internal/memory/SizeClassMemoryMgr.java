@@ -0,0 +1,292 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal.memory;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.util.ArrayUtil;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SizeClassMemoryMgr is a pooling memory manager that, unlike {@link ArrayCacheMemoryMgr}, doesn't need an array of
+ * the same (or similar) length to be released before it can reuse memory.<br>
+ * Buffers are allocated in power-of-two size classes (per datatype), and arrays are returned as views of the first
+ * N elements of a buffer. Any request of up to 2^k elements can be served by any cached buffer of class k, which
+ * gives a high hit rate for variable size inputs (such as differing sequence lengths or batch sizes) at the cost of
+ * up to 2x memory overhead per array.
+ * <br><br>
+ * Released buffers are kept in per-thread free lists, so allocations and releases need no locking. When the cache
+ * size limit would be exceeded, whole size classes are deallocated in least recently used order.
+ * <br><br>
+ * Allocation statistics are available from {@link #getStats()}; InferenceSession also records them for each output
+ * call, see InferenceSession#getLastMemoryStats().
+ */
+public class SizeClassMemoryMgr extends AbstractMemoryMgr {
+
+    /**
+     * Maximum number of bytes held in the cache, over all threads
+     */
+    @Getter
+    private final long maxCacheBytes;
+
+    private final AtomicLong currentCacheBytes = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesAllocated = new AtomicLong();
+    private final AtomicLong bytesReused = new AtomicLong();
+
+    private final List<FreeLists> allFreeLists = Collections.synchronizedList(new ArrayList<FreeLists>());
+    private final ThreadLocal<FreeLists> freeLists = new ThreadLocal<FreeLists>() {
+        @Override
+        protected FreeLists initialValue() {
+            FreeLists lists = new FreeLists();
+            allFreeLists.add(lists);
+            return lists;
+        }
+    };
+
+    /**
+     * Create a SizeClassMemoryMgr with a cache of up to 0.25 x max memory, as per {@link ArrayCacheMemoryMgr}
+     */
+    public SizeClassMemoryMgr() {
+        this(0.25);
+    }
+
+    /**
+     * @param maxMemFrac Maximum memory fraction to use as cache
+     */
+    public SizeClassMemoryMgr(double maxMemFrac) {
+        this((long) (checkFraction(maxMemFrac) * totalMemBytes()));
+    }
+
+    /**
+     * @param maxCacheBytes Maximum number of bytes to hold in the cache
+     */
+    public SizeClassMemoryMgr(long maxCacheBytes) {
+        Preconditions.checkArgument(maxCacheBytes >= 0, "Maximum cache size must be >= 0, got %s", maxCacheBytes);
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    private static double checkFraction(double maxMemFrac) {
+        Preconditions.checkArgument(maxMemFrac > 0 && maxMemFrac < 1, "Maximum memory fraction for cache must be between 0.0 and 1.0, got %s", maxMemFrac);
+        return maxMemFrac;
+    }
+
+    @Override
+    public INDArray allocate(boolean detached, DataType dataType, long... shape) {
+        return allocate(dataType, shape, Nd4j.order());
+    }
+
+    @Override
+    public INDArray allocate(boolean detached, LongShapeDescriptor descriptor) {
+        if (descriptor.isEmpty()) {
+            INDArray ret = Nd4j.create(descriptor);
+            if (detached) {
+                ret = ret.detach();
+            }
+
+            return ret;
+        }
+
+        return allocate(descriptor.dataType(), descriptor.getShape(), descriptor.getOrder());
+    }
+
+    private INDArray allocate(DataType dataType, long[] shape, char order) {
+        allocations.incrementAndGet();
+        if (dataType == DataType.UTF8) {
+            //Don't cache string arrays due to variable length buffers
+            return Nd4j.createUninitializedDetached(dataType, shape);
+        }
+
+        long length = shape.length == 0 ? 1 : ArrayUtil.prod(shape);
+        int sizeClass = sizeClassFor(length);
+
+        DataBuffer buffer = freeLists.get().poll(key(dataType, sizeClass));
+        if (buffer != null) {
+            long bytes = buffer.length() * dataType.width();
+            currentCacheBytes.addAndGet(-bytes);
+            cacheHits.incrementAndGet();
+            bytesReused.addAndGet(bytes);
+        } else {
+            buffer = Nd4j.createUninitializedDetached(dataType, 1L << sizeClass).data();
+            bytesAllocated.addAndGet(buffer.length() * dataType.width());
+        }
+
+        //Always a new array object, as SameDiff array use tracking relies on object identity
+        return Nd4j.create(buffer, shape, Nd4j.getStrides(shape, order), 0, order);
+    }
+
+    @Override
+    public void release(@NonNull INDArray array) {
+        releases.incrementAndGet();
+
+        DataBuffer buffer = array.data();
+        if (buffer == null || array.isEmpty()) {
+            if (array.closeable())
+                array.close();
+            return;
+        }
+
+        DataType dataType = array.dataType();
+        if (dataType == DataType.UTF8 || array.offset() != 0 || array.isAttached() || buffer.length() == 0) {
+            //Not poolable: variable length string buffers, views into other arrays, workspace memory
+            if (array.closeable())
+                array.close();
+            return;
+        }
+
+        long bytes = buffer.length() * dataType.width();
+        if (bytes > maxCacheBytes) {
+            //Can't store even if we clear everything - too large
+            close(buffer);
+            return;
+        }
+
+        //Arrays not allocated here may have any length: file them under the largest class they can fully serve
+        int sizeClass = 63 - Long.numberOfLeadingZeros(buffer.length());
+
+        FreeLists lists = freeLists.get();
+        if (currentCacheBytes.get() + bytes > maxCacheBytes) {
+            lists.evict(bytes);
+            if (currentCacheBytes.get() + bytes > maxCacheBytes) {
+                //Remaining cached memory belongs to other threads
+                evictions.incrementAndGet();
+                close(buffer);
+                return;
+            }
+        }
+
+        lists.add(key(dataType, sizeClass), buffer, bytes);
+    }
+
+    /**
+     * @return Allocation statistics since this memory manager was created
+     */
+    public MemoryMgrStats getStats() {
+        return new MemoryMgrStats(allocations.get(), cacheHits.get(), allocations.get() - cacheHits.get(),
+                releases.get(), evictions.get(), bytesAllocated.get(), bytesReused.get(), currentCacheBytes.get());
+    }
+
+    /**
+     * @return Number of bytes currently held in the cache, over all threads
+     */
+    public long getCurrentCacheBytes() {
+        return currentCacheBytes.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (allFreeLists) {
+            for (FreeLists lists : allFreeLists) {
+                lists.clear();
+            }
+        }
+    }
+
+    /**
+     * @param length Number of elements
+     * @return Smallest k such that 2^k >= length
+     */
+    protected static int sizeClassFor(long length) {
+        return length <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(length - 1);
+    }
+
+    private static long key(DataType dataType, int sizeClass) {
+        return ((long) dataType.ordinal() << 8) | sizeClass;
+    }
+
+    private static void close(DataBuffer buffer) {
+        if (buffer.closeable())
+            buffer.close();
+    }
+
+    /**
+     * Free lists of a single thread, by datatype and size class. Classes are kept in access order, for LRU eviction.
+     * Synchronized only so that {@link #close()} can be called from any thread.
+     */
+    private class FreeLists {
+        private final LinkedHashMap<Long, ArrayDeque<DataBuffer>> classes = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Long, Long> classBytes = new HashMap<>();
+        private final Set<DataBuffer> cached = Collections.newSetFromMap(new IdentityHashMap<DataBuffer, Boolean>());
+
+        private synchronized DataBuffer poll(long key) {
+            ArrayDeque<DataBuffer> free = classes.get(key);
+            if (free == null || free.isEmpty())
+                return null;
+
+            DataBuffer buffer = free.pollLast();
+            cached.remove(buffer);
+            classBytes.put(key, classBytes.get(key) - buffer.length() * buffer.dataType().width());
+            return buffer;
+        }
+
+        private synchronized void add(long key, DataBuffer buffer, long bytes) {
+            Preconditions.checkState(cached.add(buffer), "Array was released multiple times: buffer of length %s", buffer.length());
+
+            ArrayDeque<DataBuffer> free = classes.get(key);
+            if (free == null) {
+                free = new ArrayDeque<>();
+                classes.put(key, free);
+                classBytes.put(key, 0L);
+            }
+            free.addLast(buffer);
+            classBytes.put(key, classBytes.get(key) + bytes);
+            currentCacheBytes.addAndGet(bytes);
+        }
+
+        /**
+         * Deallocate whole size classes, least recently used first, until the given number of bytes fits in the cache
+         */
+        private synchronized void evict(long bytes) {
+            Iterator<Map.Entry<Long, ArrayDeque<DataBuffer>>> iter = classes.entrySet().iterator();
+            while (currentCacheBytes.get() + bytes > maxCacheBytes && iter.hasNext()) {
+                Map.Entry<Long, ArrayDeque<DataBuffer>> e = iter.next();
+                for (DataBuffer buffer : e.getValue()) {
+                    cached.remove(buffer);
+                    evictions.incrementAndGet();
+                    close(buffer);
+                }
+                currentCacheBytes.addAndGet(-classBytes.remove(e.getKey()));
+                iter.remove();
+            }
+        }
+
+        private synchronized void clear() {
+            for (Map.Entry<Long, ArrayDeque<DataBuffer>> e : classes.entrySet()) {
+                for (DataBuffer buffer : e.getValue()) {
+                    close(buffer);
+                }
+                currentCacheBytes.addAndGet(-classBytes.get(e.getKey()));
+            }
+            classes.clear();
+            classBytes.clear();
+            cached.clear();
+        }
+    }
+}
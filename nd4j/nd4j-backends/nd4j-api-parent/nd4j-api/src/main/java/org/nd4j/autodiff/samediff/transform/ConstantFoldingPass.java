@@ -0,0 +1,143 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.controlflow.compat.BaseCompatOp;
+import org.nd4j.linalg.api.ops.impl.layers.ExternalErrorsFunction;
+import org.nd4j.linalg.api.ops.impl.shape.tensorops.BaseTensorOp;
+import org.nd4j.linalg.api.ops.impl.transforms.Assert;
+import org.nd4j.linalg.api.ops.impl.transforms.gradient.GradientBackwardsMarker;
+import org.nd4j.linalg.api.ops.random.BaseRandomOp;
+
+import java.util.*;
+
+/**
+ * Constant folding: ops whose inputs are all constants (directly, or via other ops that can be folded) are executed
+ * once, and their outputs are replaced by constants with the same names.<br>
+ * Random ops, control flow and tensor array ops are never folded. Outputs with more than maxConstantLength elements are
+ * not folded, to avoid (for example) replacing a cheap "fill" op with a large constant array.
+ */
+@Slf4j
+public class ConstantFoldingPass implements OptimizationPass {
+    public static final long DEFAULT_MAX_CONSTANT_LENGTH = 10_000_000L;
+
+    private final long maxConstantLength;
+
+    public ConstantFoldingPass() {
+        this(DEFAULT_MAX_CONSTANT_LENGTH);
+    }
+
+    /**
+     * @param maxConstantLength Maximum number of elements of a folded constant
+     */
+    public ConstantFoldingPass(long maxConstantLength) {
+        this.maxConstantLength = maxConstantLength;
+    }
+
+    @Override
+    public String name() {
+        return "ConstantFolding";
+    }
+
+    @Override
+    public int apply(SameDiff sd) {
+        //Find all ops that can be folded: ops with constant inputs, or inputs that are outputs of other ops being folded
+        Set<String> constants = new HashSet<>();
+        for (Variable v : sd.getVariables().values()) {
+            if (v.getVariable().getVariableType() == VariableType.CONSTANT)
+                constants.add(v.getName());
+        }
+
+        List<SameDiffOp> toFold = new ArrayList<>();
+        Set<String> foldedOps = new HashSet<>();
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (SameDiffOp op : sd.getOps().values()) {
+                if (!foldedOps.contains(op.getName()) && canFold(sd, op, constants)) {
+                    toFold.add(op);
+                    foldedOps.add(op.getName());
+                    constants.addAll(op.getOutputsOfOp());
+                    added = true;
+                }
+            }
+        }
+
+        if (toFold.isEmpty())
+            return 0;
+
+        List<String> outputs = new ArrayList<>();
+        for (SameDiffOp op : toFold)
+            outputs.addAll(op.getOutputsOfOp());
+        Map<String, INDArray> values = sd.output(Collections.<String, INDArray>emptyMap(), outputs);
+
+        int count = 0;
+        for (SameDiffOp op : toFold) {
+            List<SDVariable> newOutputs = new ArrayList<>();
+            for (String s : op.getOutputsOfOp()) {
+                INDArray arr = values.get(s);
+                if (arr == null || arr.length() > maxConstantLength) {
+                    newOutputs = null;
+                    break;
+                }
+                newOutputs.add(sd.constant(arr));
+            }
+
+            if (newOutputs == null) {
+                log.debug("Not folding op {}: output is too large", op.getName());
+                continue;
+            }
+
+            DifferentialFunction df = op.getOp();
+            SubGraph sg = SubGraph.builder().sameDiff(sd).rootNode(df).childNodes(Collections.<DifferentialFunction>emptyList()).build();
+            GraphTransformUtil.replaceSubgraphInPlace(sd, sg, newOutputs);
+            count++;
+        }
+
+        return count;
+    }
+
+    protected boolean canFold(SameDiff sd, SameDiffOp op, Set<String> constants) {
+        DifferentialFunction df = op.getOp();
+        if (df instanceof BaseRandomOp || df.getClass().getName().startsWith("org.nd4j.linalg.api.ops.random.") ||
+                df instanceof BaseCompatOp || df instanceof BaseTensorOp || df instanceof Assert ||
+                df instanceof ExternalErrorsFunction || df instanceof GradientBackwardsMarker) {
+            return false;
+        }
+
+        List<String> inputs = op.getInputsToOp();
+        if (inputs == null || inputs.isEmpty() || op.getOutputsOfOp() == null || op.getOutputsOfOp().isEmpty())
+            return false;
+        for (String s : inputs) {
+            if (!constants.contains(s))
+                return false;
+        }
+
+        SubGraph sg = SubGraph.builder().sameDiff(sd).rootNode(df).childNodes(Collections.<DifferentialFunction>emptyList()).build();
+        return GraphTransformUtil.canReplaceInPlace(sd, sg);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.enums.WeightsFormat;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.BatchNorm;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.Conv2D;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.nd4j.autodiff.samediff.transform.MatMulBiasFusionPass.paramArray;
+
+/**
+ * Folds inference mode batch normalization into the preceding 2d convolution: batchnorm(conv2d(x, W, b)) is replaced
+ * by conv2d(x, W', b'), where W' = W * gamma / sqrt(var + eps) and b' = (b - mean) * gamma / sqrt(var + eps) + beta,
+ * scaled along the output channel dimension.<br>
+ * The convolution weights and bias, and the batch norm mean, variance, gamma and beta must all be constants or variables;
+ * the folded weights and bias are constants.
+ */
+public class ConvBatchNormFusionPass implements OptimizationPass {
+
+    @Override
+    public String name() {
+        return "ConvBatchNormFusion";
+    }
+
+    @Override
+    public int apply(SameDiff sd) {
+        SubGraphPredicate p = SubGraphPredicate.withRoot(OpPredicate.classEquals(BatchNorm.class))
+                .withInputSubgraph(0, OpPredicate.classEquals(Conv2D.class));
+        return GraphTransformUtil.replaceSubgraphsInPlace(sd, p, new SubGraphProcessor() {
+            @Override
+            public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                return fold(sd, (BatchNorm) subGraph.getRootNode(), (Conv2D) subGraph.getChildNodes().get(0));
+            }
+        });
+    }
+
+    protected List<SDVariable> fold(SameDiff sd, BatchNorm bn, Conv2D conv) {
+        Conv2DConfig config = conv.getConfig();
+        if (config == null || bn.outputVariables().length != 1)
+            return null;
+
+        //Batch norm must be applied along the channels dimension of the convolution output
+        int channelAxis = config.isNHWC() ? 3 : 1;
+        int[] axis = bn.getJaxis();
+        if (axis != null && axis.length != 1)
+            return null;
+        int bnAxis = axis == null ? 3 : (axis[0] < 0 ? axis[0] + 4 : axis[0]);
+        if (bnAxis != channelAxis)
+            return null;
+
+        SDVariable[] bnArgs = bn.args();
+        int idx = 3;
+        INDArray mean = paramArray(bnArgs[1]);
+        INDArray var = paramArray(bnArgs[2]);
+        INDArray gamma = bn.isApplyGamma() ? paramArray(bnArgs[idx++]) : null;
+        INDArray beta = bn.isApplyBeta() ? paramArray(bnArgs[idx]) : null;
+        if (mean == null || var == null || (bn.isApplyGamma() && gamma == null) || (bn.isApplyBeta() && beta == null))
+            return null;
+
+        SDVariable[] convArgs = conv.args();
+        INDArray w = paramArray(convArgs[1]);
+        INDArray b = convArgs.length > 2 ? paramArray(convArgs[2]) : null;
+        if (w == null || w.rank() != 4 || (convArgs.length > 2 && b == null) || !w.dataType().isFPType())
+            return null;
+
+        WeightsFormat wf = config.getWeightsFormat();
+        int outAxis = wf == WeightsFormat.YXIO ? 3 : 0;
+        long nOut = w.size(outAxis);
+        if (mean.length() != nOut || var.length() != nOut || (gamma != null && gamma.length() != nOut) ||
+                (beta != null && beta.length() != nOut) || (b != null && b.length() != nOut))
+            return null;
+
+        DataType dt = w.dataType();
+        INDArray scale = Transforms.sqrt(var.castTo(dt).reshape(nOut).add(bn.getEpsilon()), false);
+        scale = (gamma == null ? Nd4j.ones(dt, nOut) : gamma.castTo(dt).reshape(nOut)).div(scale);
+
+        long[] scaleShape = outAxis == 3 ? new long[]{1, 1, 1, nOut} : new long[]{nOut, 1, 1, 1};
+        INDArray newW = w.mul(scale.reshape(scaleShape));
+        INDArray newB = (b == null ? Nd4j.zeros(dt, nOut) : b.castTo(dt).reshape(nOut)).sub(mean.castTo(dt).reshape(nOut)).muli(scale);
+        if (beta != null)
+            newB.addi(beta.castTo(dt).reshape(nOut));
+
+        SDVariable out = new Conv2D(sd, convArgs[0], sd.constant(newW), sd.constant(newB), config).outputVariable();
+        return Collections.singletonList(out);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.BaseScalarOp;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarAdd;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarDivision;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarMultiplication;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarSubtraction;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.DivOp;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.MulOp;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.SubOp;
+import org.nd4j.linalg.api.shape.Shape;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collapses chains of element-wise arithmetic ops with constant operands into a single op, so that only one intermediate
+ * array is allocated:<br>
+ * - Scalar ops: (x * a) * b becomes x * (a*b); similarly for add, subtract and divide<br>
+ * - Pairwise ops with constant arrays: (x + C1) + C2 becomes x + (C1+C2); similarly for mul, sub and div.<br>
+ * Only floating point chains are collapsed. Note that the results may differ from the original graph due to rounding.
+ */
+public class ElementwiseChainFusionPass implements OptimizationPass {
+
+    @Override
+    public String name() {
+        return "ElementwiseChainFusion";
+    }
+
+    @Override
+    public int apply(SameDiff sd) {
+        int count = 0;
+        for (final Class<?> c : new Class<?>[]{ScalarMultiplication.class, ScalarAdd.class, ScalarSubtraction.class, ScalarDivision.class}) {
+            SubGraphPredicate p = SubGraphPredicate.withRoot(OpPredicate.classEquals(c))
+                    .withInputCount(1)
+                    .withInputSubgraph(0, OpPredicate.classEquals(c));
+            count += GraphTransformUtil.replaceSubgraphsInPlace(sd, p, new SubGraphProcessor() {
+                @Override
+                public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                    return fuseScalar(sd, (BaseScalarOp) subGraph.getRootNode(), (BaseScalarOp) subGraph.getChildNodes().get(0));
+                }
+            });
+        }
+
+        for (final Class<?> c : new Class<?>[]{MulOp.class, AddOp.class, SubOp.class, DivOp.class}) {
+            SubGraphPredicate p = SubGraphPredicate.withRoot(OpPredicate.classEquals(c))
+                    .withInputCount(2)
+                    .withInputSubgraph(0, OpPredicate.classEquals(c));
+            count += GraphTransformUtil.replaceSubgraphsInPlace(sd, p, new SubGraphProcessor() {
+                @Override
+                public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                    return fusePairwise(sd, subGraph.getRootNode(), subGraph.getChildNodes().get(0));
+                }
+            });
+        }
+        return count;
+    }
+
+    protected List<SDVariable> fuseScalar(SameDiff sd, BaseScalarOp outer, BaseScalarOp inner) {
+        SDVariable x = inner.arg(0);
+        if (inner.args().length != 1 || outer.args().length != 1 || !x.dataType().isFPType())
+            return null;
+
+        double a = inner.scalar().getDouble(0);
+        double b = outer.scalar().getDouble(0);
+        SDVariable out;
+        if (outer instanceof ScalarMultiplication) {
+            out = new ScalarMultiplication(sd, x, a * b).outputVariable();
+        } else if (outer instanceof ScalarAdd) {
+            out = new ScalarAdd(sd, x, a + b).outputVariable();
+        } else if (outer instanceof ScalarSubtraction) {
+            out = new ScalarSubtraction(sd, x, a + b).outputVariable();
+        } else {
+            out = new ScalarDivision(sd, x, a * b).outputVariable();
+        }
+        return Collections.singletonList(out);
+    }
+
+    protected List<SDVariable> fusePairwise(SameDiff sd, DifferentialFunction outer, DifferentialFunction inner) {
+        SDVariable x = inner.arg(0);
+        SDVariable c1 = inner.arg(1);
+        SDVariable c2 = outer.arg(1);
+        if (c1.getVariableType() != VariableType.CONSTANT || c2.getVariableType() != VariableType.CONSTANT ||
+                !x.dataType().isFPType() || c1.dataType() != x.dataType() || c2.dataType() != x.dataType())
+            return null;
+
+        INDArray a = c1.getArr();
+        INDArray b = c2.getArr();
+        if (!Shape.areShapesBroadcastable(a.shape(), b.shape()))
+            return null;
+
+        SDVariable out;
+        if (outer instanceof MulOp) {
+            out = new MulOp(sd, x, sd.constant(a.mul(b))).outputVariable();
+        } else if (outer instanceof AddOp) {
+            out = new AddOp(sd, x, sd.constant(a.add(b))).outputVariable();
+        } else if (outer instanceof SubOp) {
+            out = new SubOp(sd, x, sd.constant(a.add(b))).outputVariable();
+        } else {
+            out = new DivOp(sd, x, sd.constant(a.mul(b))).outputVariable();
+        }
+        return Collections.singletonList(out);
+    }
+}
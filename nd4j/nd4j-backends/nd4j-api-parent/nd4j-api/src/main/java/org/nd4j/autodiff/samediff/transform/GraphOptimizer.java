@@ -0,0 +1,172 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.*;
+
+/**
+ * GraphOptimizer applies a set of {@link OptimizationPass}es to a SameDiff graph before inference, to reduce the number
+ * of ops executed and intermediate arrays allocated - for example, for graphs imported from TensorFlow or ONNX.<br>
+ * The default passes are:<br>
+ * - {@link ConstantFoldingPass}: ops with only constant inputs are replaced by constants<br>
+ * - {@link ConvBatchNormFusionPass}: batch norm after conv2d is folded into the convolution weights and bias<br>
+ * - {@link MatMulBiasFusionPass}: mmul + bias (+ relu) is replaced by xw_plus_b or relu_layer<br>
+ * - {@link ElementwiseChainFusionPass}: chains of element-wise arithmetic ops with constant operands are collapsed<br>
+ * <br>
+ * The graph is modified in place. The names of the graph outputs are unchanged, but intermediate variables removed by the
+ * passes can no longer be requested as outputs. The optimized graph is intended for inference only: parameters of fused
+ * ops (such as folded batch norm weights) are converted to constants.
+ */
+@Slf4j
+public class GraphOptimizer {
+    /**
+     * Maximum number of times the passes are applied: passes are applied again as long as any pass modifies the graph,
+     * as one rewrite can enable others (for example, folded constants enable further fusion)
+     */
+    public static final int MAX_ROUNDS = 5;
+
+    private GraphOptimizer() {
+    }
+
+    /**
+     * @return The default optimization passes
+     */
+    public static List<OptimizationPass> defaultPasses() {
+        return Arrays.<OptimizationPass>asList(new ConstantFoldingPass(), new ConvBatchNormFusionPass(),
+                new MatMulBiasFusionPass(), new ElementwiseChainFusionPass());
+    }
+
+    /**
+     * Optimize the graph in place using the default passes - see {@link #defaultPasses()}
+     *
+     * @param sd SameDiff instance to optimize
+     * @return Report of the changes to the graph
+     */
+    public static OptimizationReport optimize(@NonNull SameDiff sd) {
+        return optimize(sd, defaultPasses());
+    }
+
+    /**
+     * Optimize the graph in place using the specified passes
+     *
+     * @param sd     SameDiff instance to optimize
+     * @param passes Passes to apply, in order
+     * @return Report of the changes to the graph
+     */
+    public static OptimizationReport optimize(@NonNull SameDiff sd, @NonNull List<OptimizationPass> passes) {
+        OptimizationReport report = new OptimizationReport();
+        report.setOpsBefore(sd.getOps().size());
+
+        //Variables that aren't used by any ops are graph outputs (or unused constants): these are always kept
+        Set<String> unusedBefore = new HashSet<>();
+        for (Variable v : sd.getVariables().values()) {
+            if (v.getInputsForOp() == null || v.getInputsForOp().isEmpty())
+                unusedBefore.add(v.getName());
+        }
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            int rewrites = 0;
+            for (OptimizationPass pass : passes) {
+                int opsBefore = sd.getOps().size();
+                int n = pass.apply(sd);
+                report.addPass(pass.name(), n, opsBefore - sd.getOps().size());
+                rewrites += n;
+            }
+            if (rewrites == 0)
+                break;
+        }
+
+        //Remove constants that are no longer used after folding and fusion: original weights, folded intermediate values, etc
+        List<String> toRemove = new ArrayList<>();
+        for (Variable v : sd.getVariables().values()) {
+            if (v.getVariable().getVariableType() == VariableType.CONSTANT && !unusedBefore.contains(v.getName()) &&
+                    (v.getInputsForOp() == null || v.getInputsForOp().isEmpty()) &&
+                    (v.getControlDepsForOp() == null || v.getControlDepsForOp().isEmpty()) &&
+                    (v.getControlDepsForVar() == null || v.getControlDepsForVar().isEmpty())) {
+                toRemove.add(v.getName());
+            }
+        }
+        for (String s : toRemove) {
+            sd.removeConstant(s);
+        }
+        report.setConstantsRemoved(toRemove.size());
+        report.setOpsAfter(sd.getOps().size());
+
+        //Sessions may have cached state (such as op contexts or execution plans) for the original graph
+        sd.getSessions().clear();
+        //Re-setting the loss variables also removes any previously created gradient function, which refers to the original graph
+        List<String> loss = sd.getLossVariables();
+        if (!loss.isEmpty()) {
+            sd.setLossVariables(loss.toArray(new String[0]));
+        }
+
+        log.info("Optimized graph: {}", report);
+        return report;
+    }
+
+    /**
+     * Optimize the graph in place using the specified passes, measuring the mean latency of inference before and after
+     * optimization - see {@link #measureLatency(SameDiff, Map, int, String...)}
+     *
+     * @param sd           SameDiff instance to optimize
+     * @param passes       Passes to apply, in order
+     * @param placeholders Placeholder arrays used to measure latency
+     * @param iterations   Number of iterations to measure latency over
+     * @param outputs      Outputs to calculate
+     * @return Report of the changes to the graph, including latency
+     */
+    public static OptimizationReport optimize(@NonNull SameDiff sd, @NonNull List<OptimizationPass> passes, Map<String, INDArray> placeholders,
+                                              int iterations, @NonNull String... outputs) {
+        double before = measureLatency(sd, placeholders, iterations, outputs);
+        OptimizationReport report = optimize(sd, passes);
+        report.setLatencyBeforeMs(before);
+        report.setLatencyAfterMs(measureLatency(sd, placeholders, iterations, outputs));
+        log.info("Inference latency: {} ms before optimization, {} ms after", before, report.getLatencyAfterMs());
+        return report;
+    }
+
+    /**
+     * Measure the mean latency of {@link SameDiff#output(Map, String...)}, in milliseconds. One additional (warmup)
+     * iteration is executed first, and is not included in the result
+     *
+     * @param sd           SameDiff instance
+     * @param placeholders Placeholder arrays
+     * @param iterations   Number of iterations to measure latency over
+     * @param outputs      Outputs to calculate
+     * @return Mean latency, in milliseconds
+     */
+    public static double measureLatency(@NonNull SameDiff sd, Map<String, INDArray> placeholders, int iterations, @NonNull String... outputs) {
+        Preconditions.checkArgument(iterations > 0, "Number of iterations must be positive, got %s", iterations);
+        sd.output(placeholders, outputs);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sd.output(placeholders, outputs);
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+}
@@ -26,9 +26,7 @@ import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.internal.Variable;
 import org.nd4j.common.base.Preconditions;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * GraphTransformUtil provides a number of utility methods to modify graphs - replacing nodes and subgraphs, etc.<br>
@@ -62,113 +60,223 @@ public class GraphTransformUtil {
 
         for (SubGraph sg : subgraphs) {
             List<SDVariable> newOutputs = processor.processSubgraph(sd, sg);
-            List<SDVariable> oldOutputs = sg.outputs();
-            Preconditions.checkState(oldOutputs.size() == newOutputs.size(), "Error applying subgraph processor: " +
-                    "different number of outputs for subgraph (%s) vs. returned by preprocessor (%s)", oldOutputs.size(), newOutputs.size());
-
-            //Step 1: replace the old outputs with new outputs
-            //So for initial graph (x -> y -> z) and post application of processor we now have (x -> (y, A); y->z),
-            // we want to end up with (x -> A -> z)
-            List<DifferentialFunction> allSubGraphFns = sg.allFunctionsInSubgraph();
-            for (int i = 0; i < oldOutputs.size(); i++) {
-                String oldOutVarName = oldOutputs.get(i).name();
-                String newOutVarName = newOutputs.get(i).name();
-                Preconditions.checkState(!oldOutVarName.equals(newOutVarName), "Reusing old variables not yet implemented");
-
-                //Update inputs for ops: if X->opA, and now Y->opA, then X.inputsForOps contains "opA"; Y.inputsForOps should be updated
-                List<String> oldInputsForOps = sd.getVariables().get(oldOutVarName).getInputsForOp();
-                if (oldInputsForOps != null) {
-                    List<String> newInputsForOps = new ArrayList<>();
-                    for (String s : oldInputsForOps) {
-                        DifferentialFunction df = sd.getOpById(s);
-                        if (!allSubGraphFns.contains(df)) {
-                            newInputsForOps.add(s);
-                        }
+            replaceSubgraph(sd, sg, sg.outputs(), newOutputs);
+        }
+
+        return sd;
+    }
+
+    /**
+     * Find the subgraphs that match the specified SubGraphPredicate and replace them with a different subgraph, modifying
+     * the SameDiff instance in place.<br>
+     * Unlike {@link #replaceSubgraphsMatching(SameDiff, SubGraphPredicate, SubGraphProcessor)}, subgraphs are matched and
+     * replaced one at a time (so overlapping matches are handled correctly), and the new output variables are renamed
+     * to the names of the old outputs - hence graph outputs, loss variables and any other references by name are unchanged.
+     * <br>
+     * Only subgraphs with the following properties are replaced:<br>
+     * - All outputs of the subgraph are outputs of the root function<br>
+     * - Intermediate variables (outputs of the child nodes) are used only within the subgraph<br>
+     * - No control dependencies to or from the subgraph exist<br>
+     * The processor may return null to leave a matched subgraph unmodified.
+     *
+     * @param sd        SameDiff instance to modify
+     * @param p         SubGraphPredicate to define and select the subgraphs that should be modified or replaced
+     * @param processor SubGraphProcessor is used to define how the subgraphs (selected by the SubGraphPredicate) should
+     *                  be modified/replaced
+     * @return Number of subgraphs that were replaced
+     */
+    public static int replaceSubgraphsInPlace(@NonNull SameDiff sd, @NonNull SubGraphPredicate p, @NonNull SubGraphProcessor processor) {
+        Set<String> skipped = new HashSet<>();
+        int count = 0;
+        boolean replaced = true;
+        while (replaced) {
+            replaced = false;
+            for (DifferentialFunction df : sd.ops()) {
+                if (skipped.contains(df.getOwnName()) || !p.matches(sd, df))
+                    continue;
+
+                SubGraph sg = p.getSubGraph(sd, df);
+                List<SDVariable> newOutputs = canReplaceInPlace(sd, sg) ? processor.processSubgraph(sd, sg) : null;
+                if (newOutputs == null) {
+                    skipped.add(df.getOwnName());
+                    continue;
+                }
+
+                replaceSubgraphInPlace(sd, sg, newOutputs);
+                count++;
+
+                //Graph structure has changed: find matches again from the start
+                replaced = true;
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Replace the specified subgraph with a new subgraph, modifying the SameDiff instance in place. The new outputs (usually
+     * created from the inputs of the subgraph) replace the outputs of the subgraph's root function, and are renamed
+     * to the names of the old outputs.<br>
+     * See {@link #replaceSubgraphsInPlace(SameDiff, SubGraphPredicate, SubGraphProcessor)} for the requirements on the
+     * subgraph, and {@link #canReplaceInPlace(SameDiff, SubGraph)} to check them
+     *
+     * @param sd         SameDiff instance to modify
+     * @param sg         Subgraph to replace
+     * @param newOutputs New output variables - one for each output of the root function
+     */
+    public static void replaceSubgraphInPlace(@NonNull SameDiff sd, @NonNull SubGraph sg, @NonNull List<SDVariable> newOutputs) {
+        Preconditions.checkState(canReplaceInPlace(sd, sg), "Subgraph with root %s cannot be replaced in place: intermediate " +
+                "variables are used outside of the subgraph, or control dependencies exist", sg.getRootNode().getOwnName());
+        List<SDVariable> oldOutputs = Arrays.asList(sg.getRootNode().outputVariables());
+        replaceSubgraph(sd, sg, oldOutputs, newOutputs);
+        for (int i = 0; i < oldOutputs.size(); i++) {
+            sd.renameVariable(newOutputs.get(i).name(), oldOutputs.get(i).name());
+        }
+    }
+
+    /**
+     * Determine if the specified subgraph can be replaced in place - see {@link #replaceSubgraphInPlace(SameDiff, SubGraph, List)}
+     *
+     * @param sd SameDiff instance the subgraph belongs to
+     * @param sg Subgraph
+     * @return True if the subgraph can be replaced in place
+     */
+    public static boolean canReplaceInPlace(@NonNull SameDiff sd, @NonNull SubGraph sg) {
+        for (DifferentialFunction df : sg.allFunctionsInSubgraph()) {
+            SameDiffOp op = sd.getOps().get(df.getOwnName());
+            if (op.getControlDeps() != null && !op.getControlDeps().isEmpty())
+                return false;
+            if (op.getVarControlDeps() != null && !op.getVarControlDeps().isEmpty())
+                return false;
+            if (op.getControlDepFor() != null && !op.getControlDepFor().isEmpty())
+                return false;
+
+            for (String s : op.getOutputsOfOp()) {
+                Variable v = sd.getVariables().get(s);
+                if ((v.getControlDeps() != null && !v.getControlDeps().isEmpty()) ||
+                        (v.getControlDepsForOp() != null && !v.getControlDepsForOp().isEmpty()) ||
+                        (v.getControlDepsForVar() != null && !v.getControlDepsForVar().isEmpty()))
+                    return false;
+
+                if (df != sg.getRootNode()) {
+                    //Intermediate variables can't be used outside of the subgraph, or be a graph output
+                    if (v.getInputsForOp() == null || v.getInputsForOp().isEmpty())
+                        return false;
+                    for (String opName : v.getInputsForOp()) {
+                        if (!sg.inSubgraph(sd.getOpById(opName)))
+                            return false;
                     }
-                    sd.getVariables().get(newOutVarName).setInputsForOp(newInputsForOps);
                 }
+            }
+        }
+        return true;
+    }
+
+    private static void replaceSubgraph(SameDiff sd, SubGraph sg, List<SDVariable> oldOutputs, List<SDVariable> newOutputs) {
+        Preconditions.checkState(oldOutputs.size() == newOutputs.size(), "Error applying subgraph processor: " +
+                "different number of outputs for subgraph (%s) vs. returned by preprocessor (%s)", oldOutputs.size(), newOutputs.size());
 
+        //Step 1: replace the old outputs with new outputs
+        //So for initial graph (x -> y -> z) and post application of processor we now have (x -> (y, A); y->z),
+        // we want to end up with (x -> A -> z)
+        List<DifferentialFunction> allSubGraphFns = sg.allFunctionsInSubgraph();
+        for (int i = 0; i < oldOutputs.size(); i++) {
+            String oldOutVarName = oldOutputs.get(i).name();
+            String newOutVarName = newOutputs.get(i).name();
+            Preconditions.checkState(!oldOutVarName.equals(newOutVarName), "Reusing old variables not yet implemented");
 
-                //Basically: anywhere that oldName exists, newName should be substituted
-                for (Variable v : sd.getVariables().values()) {
-                    // if control dep v -> oldOutput exists, replace it
-                    if (v.getControlDepsForVar() != null) {
-                        List<String> cds = v.getControlDepsForVar();
-                        int idx;
-                        while ((idx = cds.indexOf(oldOutVarName)) > 0) {
-                            cds.set(idx, newOutVarName);
-                        }
+            //Update inputs for ops: if X->opA, and now Y->opA, then X.inputsForOps contains "opA"; Y.inputsForOps should be updated
+            List<String> oldInputsForOps = sd.getVariables().get(oldOutVarName).getInputsForOp();
+            if (oldInputsForOps != null) {
+                List<String> newInputsForOps = new ArrayList<>();
+                for (String s : oldInputsForOps) {
+                    DifferentialFunction df = sd.getOpById(s);
+                    if (!allSubGraphFns.contains(df)) {
+                        newInputsForOps.add(s);
                     }
+                }
+                sd.getVariables().get(newOutVarName).setInputsForOp(newInputsForOps);
+            }
+
+
+            //Basically: anywhere that oldName exists, newName should be substituted
+            for (Variable v : sd.getVariables().values()) {
+                // if control dep v -> oldOutput exists, replace it
+                if (v.getControlDepsForVar() != null) {
+                    List<String> cds = v.getControlDepsForVar();
+                    int idx;
+                    while ((idx = cds.indexOf(oldOutVarName)) > 0) {
+                        cds.set(idx, newOutVarName);
+                    }
+                }
 
-                    if (v.getControlDeps() != null) {
-                        List<String> cds = v.getControlDeps();
-                        //Control dependency oldOutput -> v exists, replace it
-                        int idx;
-                        while ((idx = cds.indexOf(oldOutVarName)) > 0) {
-                            cds.set(idx, newOutVarName);
-                        }
+                if (v.getControlDeps() != null) {
+                    List<String> cds = v.getControlDeps();
+                    //Control dependency oldOutput -> v exists, replace it
+                    int idx;
+                    while ((idx = cds.indexOf(oldOutVarName)) > 0) {
+                        cds.set(idx, newOutVarName);
                     }
                 }
+            }
 
-                for (SameDiffOp op : sd.getOps().values()) {
-                    List<String> inputsToOp = op.getInputsToOp();
-                    if (inputsToOp != null) {
-                        int idx;
-                        while ((idx = inputsToOp.indexOf(oldOutVarName)) >= 0) {
-                            //Previous Op.inputs = {oldVarName, ...} - now {newVarName, ...}
-                            inputsToOp.set(idx, newOutVarName);
-                        }
+            for (SameDiffOp op : sd.getOps().values()) {
+                List<String> inputsToOp = op.getInputsToOp();
+                if (inputsToOp != null) {
+                    int idx;
+                    while ((idx = inputsToOp.indexOf(oldOutVarName)) >= 0) {
+                        //Previous Op.inputs = {oldVarName, ...} - now {newVarName, ...}
+                        inputsToOp.set(idx, newOutVarName);
                     }
+                }
 
-                    //Don't need to modify outputsOfOp - old outputs are only on functions to be removed anyway
-                    List<String> controlDeps = op.getControlDeps();
-                    if (controlDeps != null) {
-                        int idx;
-                        while ((idx = controlDeps.indexOf(oldOutVarName)) >= 0) {
-                            //Previous Op.inputs = {oldVarName, ...} - now {newVarName, ...}
-                            controlDeps.set(idx, newOutVarName);
-                        }
+                //Don't need to modify outputsOfOp - old outputs are only on functions to be removed anyway
+                List<String> controlDeps = op.getControlDeps();
+                if (controlDeps != null) {
+                    int idx;
+                    while ((idx = controlDeps.indexOf(oldOutVarName)) >= 0) {
+                        //Previous Op.inputs = {oldVarName, ...} - now {newVarName, ...}
+                        controlDeps.set(idx, newOutVarName);
                     }
                 }
             }
+        }
 
-            //Step 2: Update input variables: if X -> (subgraph) exists, then X.inputsForOp needs to be updated
-            List<SDVariable> inputs = sg.inputs();
-            for (SDVariable v : inputs) {
-                Variable var = sd.getVariables().get(v.name());
-                if (var.getInputsForOp() != null) {
-                    List<String> newInputsForOp = new ArrayList<>(var.getInputsForOp());
-                    for (String opName : var.getInputsForOp()) {
-                        //Two possibilities here:
-                        // (1) variable is (was) input to op that has been removed - just remove from list
-                        // (2) variable is now connected directly as an output: (A->B->C) becomes (A->C)
-                        // For the latter case, this
-                        DifferentialFunction df = sd.getOpById(opName);
-                        if (allSubGraphFns.contains(df)) {
-                            newInputsForOp.remove(opName);
-                        }
+        //Step 2: Update input variables: if X -> (subgraph) exists, then X.inputsForOp needs to be updated
+        List<SDVariable> inputs = sg.inputs();
+        for (SDVariable v : inputs) {
+            Variable var = sd.getVariables().get(v.name());
+            if (var.getInputsForOp() != null) {
+                List<String> newInputsForOp = new ArrayList<>(var.getInputsForOp());
+                for (String opName : var.getInputsForOp()) {
+                    //Two possibilities here:
+                    // (1) variable is (was) input to op that has been removed - just remove from list
+                    // (2) variable is now connected directly as an output: (A->B->C) becomes (A->C)
+                    // For the latter case, this
+                    DifferentialFunction df = sd.getOpById(opName);
+                    if (allSubGraphFns.contains(df)) {
+                        newInputsForOp.remove(opName);
                     }
-                    var.setInputsForOp(newInputsForOp);
                 }
+                var.setInputsForOp(newInputsForOp);
             }
+        }
 
 
-            //Step 3: Remove the old variables and old functions
-            Map<String, SameDiffOp> ops = sd.getOps();
-            Map<String, Variable> vars = sd.getVariables();
+        //Step 3: Remove the old variables and old functions
+        Map<String, SameDiffOp> ops = sd.getOps();
+        Map<String, Variable> vars = sd.getVariables();
 
-            for (DifferentialFunction df : sg.allFunctionsInSubgraph()) {
-                ops.remove(df.getOwnName());
-                SDVariable[] outputs = df.outputVariables();
-                if (outputs != null) {
-                    for (SDVariable v : outputs) {
-                        vars.remove(v.name());
-                    }
+        for (DifferentialFunction df : sg.allFunctionsInSubgraph()) {
+            ops.remove(df.getOwnName());
+            SDVariable[] outputs = df.outputVariables();
+            if (outputs != null) {
+                for (SDVariable v : outputs) {
+                    vars.remove(v.name());
                 }
             }
         }
-
-        return sd;
     }
 
     /**
@@ -0,0 +1,180 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.BaseScalarOp;
+import org.nd4j.linalg.api.ops.BaseTransformOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.scalar.RectifiedLinear;
+import org.nd4j.linalg.api.ops.impl.transforms.BaseDynamicTransformOp;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.bp.BaseArithmeticBackpropOp;
+
+import java.util.*;
+
+/**
+ * Fuses dense layers: mmul(x, W) + b is replaced by a single xw_plus_b op, and relu(xw_plus_b(x, W, b)) by a single
+ * relu_layer op.<br>
+ * Only 2d matrix multiplications (without transposes) with a rank 1 (or [1, nOut] constant) bias are fused: W and b
+ * must be constants or variables, and the rank of x must be known from the graph structure.
+ */
+public class MatMulBiasFusionPass implements OptimizationPass {
+    private static final int MAX_RANK_SEARCH_DEPTH = 256;
+
+    @Override
+    public String name() {
+        return "MatMulBiasFusion";
+    }
+
+    @Override
+    public int apply(SameDiff sd) {
+        int count = 0;
+        //mmul(x, W) + b, or b + mmul(x, W)
+        for (int i = 0; i < 2; i++) {
+            final int mmulIdx = i;
+            SubGraphPredicate p = SubGraphPredicate.withRoot(OpPredicate.classEquals(AddOp.class))
+                    .withInputCount(2)
+                    .withInputSubgraph(mmulIdx, OpPredicate.classEquals(Mmul.class));
+            count += GraphTransformUtil.replaceSubgraphsInPlace(sd, p, new SubGraphProcessor() {
+                @Override
+                public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                    return fuseBias(sd, subGraph, subGraph.getRootNode().arg(1 - mmulIdx));
+                }
+            });
+        }
+
+        SubGraphPredicate biasAdd = SubGraphPredicate.withRoot(OpPredicate.classEquals(BiasAdd.class))
+                .withInputCount(2)
+                .withInputSubgraph(0, OpPredicate.classEquals(Mmul.class));
+        count += GraphTransformUtil.replaceSubgraphsInPlace(sd, biasAdd, new SubGraphProcessor() {
+            @Override
+            public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                return fuseBias(sd, subGraph, subGraph.getRootNode().arg(1));
+            }
+        });
+
+        //relu(xw_plus_b(x, W, b)) -> relu_layer(x, W, b)
+        SubGraphPredicate relu = SubGraphPredicate.withRoot(OpPredicate.classEquals(RectifiedLinear.class))
+                .withInputCount(1)
+                .withInputSubgraph(0, OpPredicate.classEquals(XwPlusB.class));
+        count += GraphTransformUtil.replaceSubgraphsInPlace(sd, relu, new SubGraphProcessor() {
+            @Override
+            public List<SDVariable> processSubgraph(SameDiff sd, SubGraph subGraph) {
+                RectifiedLinear r = (RectifiedLinear) subGraph.getRootNode();
+                XwPlusB xwb = (XwPlusB) subGraph.getChildNodes().get(0);
+                if (r.scalar().getDouble(0) != 0.0 || !allZero(xwb.iArgs()))
+                    return null;
+                SDVariable[] args = xwb.args();
+                return Collections.singletonList(new ReluLayer(sd, args[0], args[1], args[2]).outputVariable());
+            }
+        });
+
+        return count;
+    }
+
+    protected List<SDVariable> fuseBias(SameDiff sd, SubGraph subGraph, SDVariable bias) {
+        Mmul mmul = (Mmul) subGraph.getChildNodes().get(0);
+        double[] t = mmul.tArgs();
+        if (!allZero(mmul.iArgs()) || (t.length > 0 && t[0] != 1.0) || (t.length > 1 && t[1] != 0.0))
+            return null;
+
+        SDVariable x = mmul.arg(0);
+        SDVariable w = mmul.arg(1);
+        INDArray wArr = paramArray(w);
+        INDArray bArr = paramArray(bias);
+        if (wArr == null || bArr == null || wArr.rank() != 2 || rank(sd, x, 0) != 2)
+            return null;
+        if (x.dataType() != w.dataType() || x.dataType() != bias.dataType() || !x.dataType().isFPType())
+            return null;
+
+        long nOut = wArr.size(1);
+        if (bArr.length() != nOut)
+            return null;
+        if (bArr.rank() != 1) {
+            //[1, nOut] bias: xw_plus_b requires a vector
+            if (bArr.rank() != 2 || bArr.size(0) != 1 || bias.getVariableType() != VariableType.CONSTANT)
+                return null;
+            bias = sd.constant(bArr.reshape(nOut));
+        }
+
+        return Collections.singletonList(new XwPlusB(sd, x, w, bias).outputVariable());
+    }
+
+    protected static INDArray paramArray(SDVariable v) {
+        if (v.getVariableType() != VariableType.CONSTANT && v.getVariableType() != VariableType.VARIABLE)
+            return null;
+        return v.getArr();
+    }
+
+    protected static boolean allZero(long[] args) {
+        if (args != null) {
+            for (long l : args) {
+                if (l != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Infer the rank of the specified variable from the graph structure, without executing it
+     *
+     * @return Rank of the variable, or -1 if it can't be determined
+     */
+    protected static int rank(SameDiff sd, SDVariable v, int depth) {
+        if (v.getVariableType() != VariableType.ARRAY) {
+            long[] shape = v.getShape();
+            return shape == null ? -1 : shape.length;
+        }
+
+        DifferentialFunction df = sd.getVariableOutputOp(v.name());
+        if (df == null || depth > MAX_RANK_SEARCH_DEPTH)
+            return -1;
+        SDVariable[] args = df.args();
+        if (args == null || args.length == 0 || df.outputVariables().length != 1)
+            return -1;
+
+        if (df instanceof Mmul || df instanceof XwPlusB || df instanceof ReluLayer) {
+            return rank(sd, args[0], depth + 1) == 2 && rank(sd, args[1], depth + 1) == 2 ? 2 : -1;
+        } else if (df instanceof BaseTransformOp || df instanceof BaseScalarOp || df instanceof BiasAdd) {
+            //Shape preserving ops
+            return rank(sd, args[0], depth + 1);
+        } else if (df instanceof BaseDynamicTransformOp && !(df instanceof BaseArithmeticBackpropOp)) {
+            //Element-wise ops with broadcasting
+            int max = -1;
+            for (SDVariable arg : args) {
+                int r = rank(sd, arg, depth + 1);
+                if (r < 0)
+                    return -1;
+                max = Math.max(max, r);
+            }
+            return max;
+        }
+
+        return -1;
+    }
+}
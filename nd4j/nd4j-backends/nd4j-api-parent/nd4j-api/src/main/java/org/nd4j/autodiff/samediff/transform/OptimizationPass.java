@@ -0,0 +1,41 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import org.nd4j.autodiff.samediff.SameDiff;
+
+/**
+ * An OptimizationPass rewrites a SameDiff graph in place, without changing the values of the graph outputs.<br>
+ * Passes are usually applied via {@link GraphOptimizer}
+ */
+public interface OptimizationPass {
+
+    /**
+     * @return Name of the pass, as used in the {@link OptimizationReport}
+     */
+    String name();
+
+    /**
+     * Apply the pass to the specified SameDiff instance, modifying it in place
+     *
+     * @param sd SameDiff instance to optimize
+     * @return Number of rewrites that were applied - 0 if the graph was not modified
+     */
+    int apply(SameDiff sd);
+}
@@ -0,0 +1,74 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.transform;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of the changes made by {@link GraphOptimizer}: number of ops before and after optimization, the number of
+ * rewrites and ops removed by each pass, and (if measured) the mean inference latency before and after optimization
+ */
+@Data
+public class OptimizationReport {
+    private int opsBefore;
+    private int opsAfter;
+    private int constantsRemoved;
+    private final Map<String, Integer> rewritesPerPass = new LinkedHashMap<>();
+    private final Map<String, Integer> opsRemovedPerPass = new LinkedHashMap<>();
+    private double latencyBeforeMs = Double.NaN;
+    private double latencyAfterMs = Double.NaN;
+
+    protected void addPass(String name, int rewrites, int opsRemoved) {
+        Integer r = rewritesPerPass.get(name);
+        Integer o = opsRemovedPerPass.get(name);
+        rewritesPerPass.put(name, (r == null ? 0 : r) + rewrites);
+        opsRemovedPerPass.put(name, (o == null ? 0 : o) + opsRemoved);
+    }
+
+    /**
+     * @return Fraction of ops removed by the optimizer, in range 0 to 1
+     */
+    public double opReduction() {
+        return opsBefore == 0 ? 0.0 : (opsBefore - opsAfter) / (double) opsBefore;
+    }
+
+    /**
+     * @return Fraction of latency removed by the optimizer, or NaN if latency was not measured
+     */
+    public double latencyReduction() {
+        return (latencyBeforeMs - latencyAfterMs) / latencyBeforeMs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Ops: %d -> %d (%.1f%% reduction)", opsBefore, opsAfter, 100 * opReduction()));
+        if (!Double.isNaN(latencyBeforeMs)) {
+            sb.append(String.format(", latency: %.3f ms -> %.3f ms (%.1f%% reduction)", latencyBeforeMs, latencyAfterMs, 100 * latencyReduction()));
+        }
+        sb.append(", constants removed: ").append(constantsRemoved).append("\n");
+        for (Map.Entry<String, Integer> e : rewritesPerPass.entrySet()) {
+            sb.append(String.format("  %-24s rewrites: %-6d ops removed: %d%n", e.getKey(), e.getValue(), opsRemovedPerPass.get(e.getKey())));
+        }
+        return sb.toString();
+    }
+}
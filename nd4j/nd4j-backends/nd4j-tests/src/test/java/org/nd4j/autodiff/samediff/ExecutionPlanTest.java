@@ -0,0 +1,242 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Test;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.internal.AbstractSession.VarId;
+import org.nd4j.autodiff.samediff.internal.ExecutionPlan;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.memory.SizeClassMemoryMgr;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ExecutionPlanTest extends BaseNd4jTest {
+
+    public ExecutionPlanTest(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    @Test
+    public void testPlanReuse() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = graph();
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        Map<String, INDArray> expected = sd.output(Collections.singletonMap("in", in), "out", "id");
+
+        sd.setCacheExecutionPlans(true);
+        Map<String, INDArray> first = sd.output(Collections.singletonMap("in", in), "out", "id");
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        ExecutionPlan plan = session.getLastExecutionPlan();
+        assertNotNull(plan);
+        assertEquals(expected, first);
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, INDArray> out = sd.output(Collections.singletonMap("in", in), "out", "id");
+            assertSame(plan, session.getLastExecutionPlan());
+            assertEquals(expected, out);
+        }
+
+        //Different placeholder shape: new plan
+        INDArray in2 = Nd4j.rand(DataType.FLOAT, 7, 5);
+        INDArray expected2 = in2.mmul(sd.getVariable("w").getArr()).addRowVector(sd.getVariable("b").getArr());
+        Map<String, INDArray> out2 = sd.output(Collections.singletonMap("in", in2), "out", "id");
+        assertNotSame(plan, session.getLastExecutionPlan());
+        assertEquals(expected2, out2.get("id"));
+        assertArrayEquals(new long[]{7, 1}, out2.get("out").shape());
+
+        //Different requested outputs: new plan
+        sd.output(Collections.singletonMap("in", in), "out");
+        assertNotSame(plan, session.getLastExecutionPlan());
+    }
+
+    @Test
+    public void testArrayLifetimes() {
+        SameDiff sd = graph();
+        sd.setCacheExecutionPlans(true);
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        sd.output(Collections.singletonMap("in", in), "out", "id");
+        ExecutionPlan plan = sd.getSessions().get(Thread.currentThread().getId()).getLastExecutionPlan();
+
+        Set<String> released = new HashSet<>();
+        for (List<VarId> l : plan.getReleaseAfter()) {
+            for (VarId v : l) {
+                assertTrue("Released twice: " + v, released.add(v.getVariable()));
+            }
+        }
+
+        //"id" is a requested output, and an alias of "lin" - so neither must be released
+        assertFalse(released.contains("lin"));
+        assertFalse(released.contains("id"));
+        assertFalse(released.contains("out"));
+        assertTrue(released.contains("act"));
+        assertFalse(released.contains("in"));
+        assertFalse(released.contains("w"));
+    }
+
+    @Test
+    public void testReleasedArraysReused() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = graph();
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        INDArray expected = sd.outputSingle(Collections.singletonMap("in", in), "out");
+
+        sd.setCacheExecutionPlans(true);
+        sd.outputSingle(Collections.singletonMap("in", in), "out");
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr();
+        session.setMmgr(mmgr);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, sd.outputSingle(Collections.singletonMap("in", in), "out"));
+        }
+        assertTrue(mmgr.getStats().getCacheHits() > 0);
+    }
+
+    @Test
+    public void testGraphChange() {
+        SameDiff sd = graph();
+        sd.setCacheExecutionPlans(true);
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        sd.output(Collections.singletonMap("in", in), "out");
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        ExecutionPlan plan = session.getLastExecutionPlan();
+
+        sd.getVariable("out").mul("out2", 3.0);
+        Map<String, INDArray> m = sd.output(Collections.singletonMap("in", in), "out", "out2");
+        assertNotSame(plan, session.getLastExecutionPlan());
+        assertEquals(m.get("out").mul(3.0), m.get("out2"));
+    }
+
+    @Test
+    public void testVariableArrayChange() {
+        SameDiff sd = graph();
+        sd.setCacheExecutionPlans(true);
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        sd.output(Collections.singletonMap("in", in), "id");
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        ExecutionPlan plan = session.getLastExecutionPlan();
+
+        //Same ops and variables, different variable shapes: cached output shapes must not be reused
+        INDArray w = Nd4j.rand(DataType.FLOAT, 5, 6);
+        INDArray b = Nd4j.rand(DataType.FLOAT, 1, 6);
+        sd.getVariable("w").setArray(w);
+        sd.getVariable("b").setArray(b);
+        INDArray out = sd.outputSingle(Collections.singletonMap("in", in), "id");
+        assertNotSame(plan, session.getLastExecutionPlan());
+        assertEquals(in.mmul(w).addRowVector(b), out);
+    }
+
+    @Test
+    public void testGraphChangeSameSize() {
+        SameDiff sd = graph();
+        SDVariable w2 = sd.var("w2", Nd4j.rand(DataType.FLOAT, 5, 3));
+        sd.setCacheExecutionPlans(true);
+        INDArray in = Nd4j.rand(DataType.FLOAT, 4, 5);
+        sd.output(Collections.singletonMap("in", in), "id");
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        ExecutionPlan plan = session.getLastExecutionPlan();
+        long version = sd.getGraphVersion();
+
+        //Rewire the mmul op: number of ops and variables is unchanged
+        DifferentialFunction mmul = sd.getVariableOutputOp(sd.getVariableOutputOp("lin").arg(0).name());
+        sd.replaceArgFor(1, w2, mmul);
+        assertNotEquals(version, sd.getGraphVersion());
+
+        INDArray out = sd.outputSingle(Collections.singletonMap("in", in), "id");
+        assertNotSame(plan, session.getLastExecutionPlan());
+        assertEquals(in.mmul(w2.getArr()).addRowVector(sd.getVariable("b").getArr()), out);
+    }
+
+    @Test
+    public void testValueDependentOutputShapes() {
+        //Number of boxes selected by non max suppression depends on the score values, not only on the input shapes
+        SameDiff sd = SameDiff.create();
+        SDVariable boxes = sd.placeHolder("boxes", DataType.FLOAT, -1, 4);
+        SDVariable scores = sd.placeHolder("scores", DataType.FLOAT, -1);
+        SDVariable nms = sd.image().nonMaxSuppression("nms", boxes, scores, 10, 0.5, 0.5);
+
+        //Non-overlapping boxes: only the score threshold removes boxes
+        INDArray b = Nd4j.createFromArray(new float[][]{{0, 0, 1, 1}, {2, 2, 3, 3}, {4, 4, 5, 5}, {6, 6, 7, 7}});
+        INDArray s1 = Nd4j.createFromArray(0.9f, 0.8f, 0.7f, 0.6f);
+        INDArray s2 = Nd4j.createFromArray(0.9f, 0.1f, 0.7f, 0.2f);
+        Map<String, INDArray> ph1 = new HashMap<>();
+        ph1.put("boxes", b);
+        ph1.put("scores", s1);
+        Map<String, INDArray> ph2 = new HashMap<>();
+        ph2.put("boxes", b);
+        ph2.put("scores", s2);
+
+        INDArray expected1 = sd.outputSingle(ph1, "nms");
+        INDArray expected2 = sd.outputSingle(ph2, "nms");
+        assertEquals(4, expected1.length());
+        assertEquals(2, expected2.length());
+
+        sd.setCacheExecutionPlans(true);
+        assertEquals(expected1, sd.outputSingle(ph1, "nms"));
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        ExecutionPlan plan = session.getLastExecutionPlan();
+        assertNull(plan.getOutputShapes(sd.getVariableOutputOp(nms.name()).getOwnName()));
+
+        //Same placeholder shapes: the plan is reused, but the output shape must be recalculated
+        assertEquals(expected2, sd.outputSingle(ph2, "nms"));
+        assertSame(plan, session.getLastExecutionPlan());
+        assertEquals(expected1, sd.outputSingle(ph1, "nms"));
+    }
+
+    @Test
+    public void testCanCacheOutputShapes() {
+        SameDiff sd = graph();
+        SDVariable boxes = sd.var("boxes", Nd4j.rand(DataType.FLOAT, 3, 4));
+        SDVariable scores = sd.var("scores", Nd4j.rand(DataType.FLOAT, 3));
+        SDVariable nms = sd.image().nonMaxSuppression(boxes, scores, 10, 0.5, 0.5);
+
+        assertTrue(ExecutionPlan.canCacheOutputShapes(sd.getVariableOutputOp("lin"), null));
+        assertTrue(ExecutionPlan.canCacheOutputShapes(sd.getVariableOutputOp("act"), null));
+        assertFalse(ExecutionPlan.canCacheOutputShapes(sd.getVariableOutputOp(nms.name()), null));
+    }
+
+    private static SameDiff graph() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 5);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 5, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 1, 3));
+        SDVariable lin = in.mmul(w).add("lin", b);
+        sd.identity("id", lin);
+        SDVariable act = sd.math.tanh(lin).rename("act");
+        act.mul(2.0).sum("out", true, 1);
+        return sd;
+    }
+}
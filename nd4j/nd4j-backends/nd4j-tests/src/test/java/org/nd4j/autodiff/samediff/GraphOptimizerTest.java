@@ -0,0 +1,204 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.transform.ConvBatchNormFusionPass;
+import org.nd4j.autodiff.samediff.transform.ElementwiseChainFusionPass;
+import org.nd4j.autodiff.samediff.transform.GraphOptimizer;
+import org.nd4j.autodiff.samediff.transform.MatMulBiasFusionPass;
+import org.nd4j.autodiff.samediff.transform.OptimizationReport;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.Conv2D;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GraphOptimizerTest extends BaseNd4jTest {
+
+    public GraphOptimizerTest(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    @Test
+    public void testConstantFolding() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 3);
+        SDVariable c1 = sd.constant("c1", Nd4j.createFromArray(1.0f, 2.0f, 3.0f));
+        SDVariable c2 = sd.constant("c2", Nd4j.createFromArray(0.5f, 0.5f, 0.5f));
+        SDVariable t = c1.add("t1", c2).mul("t2", 2.0);
+        SDVariable out = in.mul("out", t);
+        SDVariable constOut = t.sub("constOut", 1.0);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 4, 3);
+        Map<String, INDArray> expected = sd.output(Collections.singletonMap("in", inArr), "out", "constOut");
+
+        OptimizationReport r = GraphOptimizer.optimize(sd);
+        assertEquals(4, r.getOpsBefore());
+        assertEquals(1, r.getOpsAfter());
+        assertEquals(VariableType.CONSTANT, sd.getVariable("t2").getVariableType());
+        assertEquals(VariableType.CONSTANT, sd.getVariable("constOut").getVariableType());
+
+        //Constants only used by folded ops are removed; folded graph outputs are kept
+        assertFalse(sd.hasVariable("c1"));
+        assertFalse(sd.hasVariable("t1"));
+        assertTrue(sd.hasVariable("constOut"));
+
+        Map<String, INDArray> actual = sd.output(Collections.singletonMap("in", inArr), "out", "constOut");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testMatMulBiasActivation() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w0 = sd.var("w0", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable b0 = sd.var("b0", Nd4j.rand(DataType.FLOAT, 5));
+        SDVariable w1 = sd.var("w1", Nd4j.rand(DataType.FLOAT, 5, 3));
+        SDVariable b1 = sd.constant("b1", Nd4j.rand(DataType.FLOAT, 1, 3));
+
+        SDVariable h = sd.nn().relu("h", in.mmul(w0).add(b0), 0.0);
+        SDVariable out = sd.nn().softmax("out", h.mmul(w1).add(b1));
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 8, 4);
+        INDArray expected = sd.outputSingle(Collections.singletonMap("in", inArr), "out");
+
+        int n = new MatMulBiasFusionPass().apply(sd);
+        assertEquals(3, n);
+        assertEquals(0, countOps(sd, Mmul.class));
+        assertEquals(1, countOps(sd, ReluLayer.class));
+        assertEquals(1, countOps(sd, XwPlusB.class));
+        assertEquals(3, sd.getOps().size());
+        assertEquals(sd.getVariableOutputOp("h").getClass(), ReluLayer.class);
+
+        INDArray actual = sd.outputSingle(Collections.singletonMap("in", inArr), "out");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSharedIntermediateNotFused() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 5));
+        SDVariable mmul = in.mmul("mmul", w);
+        mmul.add("out1", b);
+        mmul.mul("out2", 2.0);
+
+        assertEquals(0, new MatMulBiasFusionPass().apply(sd));
+        assertEquals(3, sd.getOps().size());
+    }
+
+    @Test
+    public void testConvBatchNorm() {
+        Nd4j.getRandom().setSeed(12345);
+        for (boolean nchw : new boolean[]{true, false}) {
+            SameDiff sd = SameDiff.create();
+            int mb = 2, nIn = 3, nOut = 4, h = 8, w = 8;
+            SDVariable in = nchw ? sd.placeHolder("in", DataType.FLOAT, -1, nIn, h, w) : sd.placeHolder("in", DataType.FLOAT, -1, h, w, nIn);
+            SDVariable weights = sd.var("w", Nd4j.rand(DataType.FLOAT, 3, 3, nIn, nOut));
+            SDVariable bias = sd.var("b", Nd4j.rand(DataType.FLOAT, nOut));
+            Conv2DConfig c = Conv2DConfig.builder().kH(3).kW(3).sH(1).sW(1).isSameMode(true).dataFormat(nchw ? Conv2DConfig.NCHW : Conv2DConfig.NHWC).build();
+            SDVariable conv = sd.cnn().conv2d(in, weights, bias, c);
+
+            SDVariable mean = sd.var("mean", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable var = sd.var("var", Nd4j.rand(DataType.FLOAT, nOut).addi(0.5));
+            SDVariable gamma = sd.var("gamma", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable beta = sd.var("beta", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable bn = sd.nn().batchNorm(conv, mean, var, gamma, beta, 1e-5, nchw ? 1 : 3);
+            SDVariable out = sd.math().tanh("out", bn);
+
+            INDArray inArr = nchw ? Nd4j.rand(DataType.FLOAT, mb, nIn, h, w) : Nd4j.rand(DataType.FLOAT, mb, h, w, nIn);
+            INDArray expected = sd.outputSingle(Collections.singletonMap("in", inArr), "out");
+
+            assertEquals(1, new ConvBatchNormFusionPass().apply(sd));
+            assertEquals(2, sd.getOps().size());
+            assertEquals(1, countOps(sd, Conv2D.class));
+
+            INDArray actual = sd.outputSingle(Collections.singletonMap("in", inArr), "out");
+            assertTrue(expected.equalsWithEps(actual, 1e-4));
+        }
+    }
+
+    @Test
+    public void testElementwiseChains() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 3);
+        SDVariable c1 = sd.constant("c1", Nd4j.createFromArray(1.0f, 2.0f, 3.0f));
+        SDVariable c2 = sd.constant("c2", Nd4j.scalar(DataType.FLOAT, 4.0f));
+        in.mul(2.0).mul(3.0).add(1.0).add("out1", 2.0);
+        in.add(c1).add("out2", c2);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 4, 3);
+        Map<String, INDArray> expected = sd.output(Collections.singletonMap("in", inArr), "out1", "out2");
+
+        assertEquals(3, new ElementwiseChainFusionPass().apply(sd));
+        assertEquals(3, sd.getOps().size());
+
+        Map<String, INDArray> actual = sd.output(Collections.singletonMap("in", inArr), "out1", "out2");
+        for (String s : expected.keySet()) {
+            assertTrue(s, expected.get(s).equalsWithEps(actual.get(s), 1e-5));
+        }
+    }
+
+    @Test
+    @Ignore("Benchmark - run manually")
+    public void benchmarkMlp() {
+        SameDiff sd = SameDiff.create();
+        SDVariable x = sd.placeHolder("in", DataType.FLOAT, -1, 256);
+        for (int i = 0; i < 8; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 256, 256).subi(0.5).muli(0.1));
+            SDVariable b = sd.constant("b" + i, Nd4j.rand(DataType.FLOAT, 1, 256));
+            SDVariable scale = sd.constant("s" + i, Nd4j.scalar(DataType.FLOAT, 2.0f)).mul(0.5);
+            x = sd.nn().relu(x.mmul(w).add(b).mul(scale).mul(1.0), 0.0);
+        }
+        x.add("out", 0.0);
+
+        Map<String, INDArray> ph = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 32, 256));
+        OptimizationReport r = GraphOptimizer.optimize(sd, GraphOptimizer.defaultPasses(), ph, 200, "out");
+        System.out.println(r);
+    }
+
+    private static int countOps(SameDiff sd, Class<?> c) {
+        int count = 0;
+        for (SameDiffOp op : sd.getOps().values()) {
+            if (op.getOp().getClass() == c)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Test;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.memory.SizeClassMemoryMgr;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.learning.config.Sgd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SameDiffParallelOutputTest extends BaseNd4jTest {
+
+    public SameDiffParallelOutputTest(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    @Test
+    public void testMultiTowerMatchesSequential() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = multiTower(6);
+
+        INDArray in = Nd4j.rand(DataType.FLOAT, 8, 16);
+        List<String> outputs = new ArrayList<>();
+        for (String s : sd.variableMap().keySet()) {
+            if (sd.getVariable(s).getVariableType() == VariableType.ARRAY)
+                outputs.add(s);
+        }
+
+        Map<String, INDArray> expected = sd.batchOutput()
+                .input("in", in)
+                .output(outputs.toArray(new String[0]))
+                .output();
+
+        for (int parallelism : new int[]{2, 4, 8}) {
+            // a few iterations, so released arrays get reused by later ops
+            for (int i = 0; i < 3; i++) {
+                Map<String, INDArray> actual = sd.batchOutput()
+                        .input("in", in)
+                        .output(outputs.toArray(new String[0]))
+                        .parallelism(parallelism)
+                        .output();
+
+                assertEquals(expected.keySet(), actual.keySet());
+                for (String s : outputs) {
+                    assertEquals(s, expected.get(s), actual.get(s));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReleasesMemory() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = multiTower(4);
+        INDArray in = Nd4j.rand(DataType.FLOAT, 8, 16);
+        INDArray expected = sd.batchOutput().input("in", in).output("out").outputSingle();
+
+        // same memory manager type for both executions: intermediate arrays must be released as they are consumed
+        InferenceSession session = sd.getSessions().get(Thread.currentThread().getId());
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr();
+        session.setMmgr(mmgr);
+        for (int i = 0; i < 5; i++) {
+            INDArray out = sd.batchOutput().input("in", in).output("out").parallelism(4).outputSingle();
+            assertEquals(expected, out);
+        }
+
+        assertTrue(mmgr.getStats().getReleases() > 0);
+        assertTrue(mmgr.getStats().getCacheHits() > 0);
+        assertEquals(4, session.getParallelism());
+    }
+
+    @Test
+    public void testOutputConfig() {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = multiTower(3);
+        sd.setTrainingConfig(new TrainingConfig.Builder()
+                .updater(new Sgd(0.1))
+                .dataSetFeatureMapping("in")
+                .dataSetLabelMapping()
+                .build());
+
+        DataSet ds = new DataSet(Nd4j.rand(DataType.FLOAT, 8, 16), null);
+        INDArray expected = sd.output().data(ds).output("out").execSingle();
+        INDArray actual = sd.output().data(ds).output("out").parallelism(4).execSingle();
+        assertEquals(expected, actual);
+
+        INDArray batch = sd.batchOutput().input("in", ds.getFeatures()).output("out").parallelism(4).outputSingle();
+        assertEquals(expected, batch);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        SameDiff sd = multiTower(2);
+        sd.batchOutput().output("out").parallelism(0);
+    }
+
+    /**
+     * Graph with a number of independent towers of (custom and legacy) ops, merged at the end
+     */
+    private static SameDiff multiTower(int numTowers) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 16);
+
+        SDVariable[] towers = new SDVariable[numTowers];
+        for (int i = 0; i < numTowers; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 16, 8));
+            SDVariable b = sd.var("b" + i, Nd4j.rand(DataType.FLOAT, 1, 8));
+            SDVariable h = sd.nn.tanh(in.mmul(w).add(b));
+            SDVariable g = sd.math.exp(h.mul(0.5)).sub(h);
+            towers[i] = g.sum(true, 1);
+        }
+
+        SDVariable merged = sd.concat(1, towers);
+        sd.math.log(merged.add(1.0)).mean("out", 1);
+        return sd;
+    }
+}
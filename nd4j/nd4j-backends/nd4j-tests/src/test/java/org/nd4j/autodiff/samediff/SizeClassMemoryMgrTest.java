@@ -0,0 +1,158 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Test;
+import org.nd4j.autodiff.listeners.At;
+import org.nd4j.autodiff.listeners.Operation;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.memory.MemoryMgrStats;
+import org.nd4j.autodiff.samediff.internal.memory.SizeClassMemoryMgr;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SizeClassMemoryMgrTest extends BaseNd4jTest {
+
+    public SizeClassMemoryMgrTest(Nd4jBackend b){
+        super(b);
+    }
+
+    @Override
+    public char ordering(){
+        return 'c';
+    }
+
+    @Test
+    public void testReuseWithinSizeClass() {
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr(1L << 20);
+
+        //15 and 14 elements: both are served by a 16 element buffer
+        INDArray a1 = mmgr.allocate(false, DataType.FLOAT, 3, 5);
+        assertArrayEquals(new long[]{3, 5}, a1.shape());
+        assertEquals(16, a1.data().length());
+        DataBuffer buffer = a1.data();
+        mmgr.release(a1);
+        assertEquals(64, mmgr.getCurrentCacheBytes());
+
+        INDArray a2 = mmgr.allocate(false, DataType.FLOAT, 2, 7);
+        assertArrayEquals(new long[]{2, 7}, a2.shape());
+        assertSame(buffer, a2.data());
+        assertNotSame(a1, a2);
+        assertEquals(0, mmgr.getCurrentCacheBytes());
+
+        a2.assign(Nd4j.linspace(DataType.FLOAT, 1, 14, 1).reshape(2, 7));
+        assertEquals(Nd4j.linspace(DataType.FLOAT, 1, 14, 1).reshape(2, 7), a2);
+
+        //Different datatype or larger class: new buffer
+        mmgr.release(a2);
+        INDArray a3 = mmgr.allocate(false, DataType.DOUBLE, 2, 7);
+        INDArray a4 = mmgr.allocate(false, DataType.FLOAT, 17);
+        assertEquals(32, a4.data().length());
+
+        MemoryMgrStats stats = mmgr.getStats();
+        assertEquals(4, stats.getAllocations());
+        assertEquals(1, stats.getCacheHits());
+        assertEquals(3, stats.getCacheMisses());
+        assertEquals(0.25, stats.hitRate(), 1e-6);
+        assertEquals(64, stats.getBytesReused());
+        assertEquals(64 + 16 * 8 + 32 * 4, stats.getBytesAllocated());
+        assertEquals(64, stats.getBytesCached());
+
+        mmgr.close();
+        assertEquals(0, mmgr.getCurrentCacheBytes());
+    }
+
+    @Test
+    public void testLruClassEviction() {
+        //Room for 128 floats
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr(512L);
+
+        INDArray a = mmgr.allocate(false, DataType.FLOAT, 64);
+        INDArray b = mmgr.allocate(false, DataType.FLOAT, 32);
+        INDArray c = mmgr.allocate(false, DataType.FLOAT, 16);
+        INDArray d = mmgr.allocate(false, DataType.FLOAT, 64);
+        DataBuffer aBuffer = a.data();
+        DataBuffer bBuffer = b.data();
+
+        mmgr.release(a);
+        mmgr.release(b);
+        mmgr.release(c);
+        assertEquals(448, mmgr.getCurrentCacheBytes());
+
+        //Class of 64 elements is the least recently used: evicted as a whole
+        mmgr.release(d);
+        assertTrue(aBuffer.wasClosed());
+        assertFalse(bBuffer.wasClosed());
+        assertEquals(448, mmgr.getCurrentCacheBytes());
+        assertEquals(1, mmgr.getStats().getEvictions());
+
+        //Larger than the whole cache: never cached
+        mmgr.release(Nd4j.create(DataType.FLOAT, 200));
+        assertEquals(448, mmgr.getCurrentCacheBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRelease() {
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr(1L << 20);
+        INDArray a = mmgr.allocate(false, DataType.FLOAT, 10);
+        mmgr.release(a);
+        mmgr.release(a);
+    }
+
+    @Test
+    public void testStatsPerOutputCall() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 1, 3));
+        SDVariable out = sd.nn.tanh(in.mmul(w).add(b)).mul("out", 2.0);
+
+        InferenceSession is = new InferenceSession(sd);
+        SizeClassMemoryMgr mmgr = new SizeClassMemoryMgr(1L << 24);
+        is.setMmgr(mmgr);
+
+        //Batch sizes 7 and 6 give arrays of different lengths, but in the same size classes
+        for (int minibatch : new int[]{7, 6}) {
+            INDArray input = Nd4j.rand(DataType.FLOAT, minibatch, 4);
+            Map<String, INDArray> m = is.output(Collections.singletonList("out"), Collections.singletonMap("in", input), null,
+                    Collections.<String>emptyList(), null, At.defaultAt(Operation.INFERENCE));
+
+            INDArray exp = sd.outputSingle(Collections.singletonMap("in", input), "out");
+            assertEquals(exp, m.get("out"));
+
+            MemoryMgrStats stats = is.getLastMemoryStats();
+            assertNotNull(stats);
+            assertTrue(stats.getAllocations() > 0);
+            if (minibatch == 6) {
+                assertTrue(stats.getCacheHits() > 0);
+            }
+        }
+
+        assertTrue(mmgr.getStats().getAllocations() >= is.getLastMemoryStats().getAllocations());
+    }
+}
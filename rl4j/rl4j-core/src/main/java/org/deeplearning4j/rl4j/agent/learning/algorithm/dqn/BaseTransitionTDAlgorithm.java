@@ -27,6 +27,7 @@ import org.deeplearning4j.rl4j.agent.learning.update.Features;
 import org.deeplearning4j.rl4j.agent.learning.update.FeaturesBuilder;
 import org.deeplearning4j.rl4j.agent.learning.update.FeaturesLabels;
 import org.deeplearning4j.rl4j.experience.StateActionRewardState;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
 import org.deeplearning4j.rl4j.network.CommonLabelNames;
 import org.deeplearning4j.rl4j.network.CommonOutputNames;
 import org.deeplearning4j.rl4j.network.IOutputNeuralNet;
@@ -85,25 +86,57 @@ public abstract class BaseTransitionTDAlgorithm implements IUpdateAlgorithm<Feat
 
         int size = stateActionRewardStates.size();
 
-        Features features = featuresBuilder.build(stateActionRewardStates);
-        Features nextFeatures = featuresBuilder.build(stateActionRewardStates.stream().map(e -> e.getNextObservation()), stateActionRewardStates.size());
+        // Batches from a columnar replay memory come with the observations already in batch tensors
+        TransitionBatch<Integer> batch = stateActionRewardStates instanceof TransitionBatch
+                ? (TransitionBatch<Integer>) stateActionRewardStates
+                : null;
+
+        Features features;
+        Features nextFeatures;
+        if(batch != null && size > 0 && !qNetwork.isRecurrent()) {
+            features = batch.getObservations();
+            nextFeatures = batch.getNextObservations();
+        } else {
+            features = featuresBuilder.build(stateActionRewardStates);
+            nextFeatures = featuresBuilder.build(stateActionRewardStates.stream().map(e -> e.getNextObservation()), stateActionRewardStates.size());
+        }
 
         initComputation(features, nextFeatures);
 
+        double[] weights = batch == null ? null : batch.getWeights();
+        double[] tdErrors = batch != null && batch.isPrioritized() ? new double[size] : null;
+
         INDArray updatedQValues = qNetwork.output(features).get(CommonOutputNames.QValues);
         for (int i = 0; i < size; ++i) {
             StateActionRewardState<Integer> stateActionRewardState = stateActionRewardStates.get(i);
             double yTarget = computeTarget(i, stateActionRewardState.getReward(), stateActionRewardState.isTerminal());
 
-            if(isClamped) {
+            if(isClamped || tdErrors != null || weights != null) {
                 double previousQValue = updatedQValues.getDouble(i, stateActionRewardState.getAction());
-                double lowBound = previousQValue - errorClamp;
-                double highBound = previousQValue + errorClamp;
-                yTarget = Math.min(highBound, Math.max(yTarget, lowBound));
+
+                if(tdErrors != null) {
+                    tdErrors[i] = yTarget - previousQValue;
+                }
+
+                if(isClamped) {
+                    double lowBound = previousQValue - errorClamp;
+                    double highBound = previousQValue + errorClamp;
+                    yTarget = Math.min(highBound, Math.max(yTarget, lowBound));
+                }
+
+                // With a squared error loss, moving the target toward the current Q-Value by the importance-sampling
+                // weight scales the gradient of this transition by the same weight
+                if(weights != null) {
+                    yTarget = previousQValue + weights[i] * (yTarget - previousQValue);
+                }
             }
             updatedQValues.putScalar(i, stateActionRewardState.getAction(), yTarget);
         }
 
+        if(tdErrors != null) {
+            batch.updatePriorities(tdErrors);
+        }
+
         FeaturesLabels featuresLabels = new FeaturesLabels(features);
         featuresLabels.putLabels(CommonLabelNames.QValues, updatedQValues);
 
@@ -21,8 +21,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.SuperBuilder;
+import org.deeplearning4j.rl4j.learning.sync.ColumnarExpReplay;
 import org.deeplearning4j.rl4j.learning.sync.ExpReplay;
 import org.deeplearning4j.rl4j.learning.sync.IExpReplay;
+import org.deeplearning4j.rl4j.learning.sync.PrioritizedExpReplay;
 import org.deeplearning4j.rl4j.observation.Observation;
 import org.nd4j.linalg.api.rng.Random;
 
@@ -39,6 +41,8 @@ import java.util.List;
 public class ReplayMemoryExperienceHandler<A> implements ExperienceHandler<A, StateActionRewardState<A>> {
     private static final int DEFAULT_MAX_REPLAY_MEMORY_SIZE = 150000;
     private static final int DEFAULT_BATCH_SIZE = 32;
+    private static final double DEFAULT_PRIORITY_ALPHA = 0.6;
+    private static final double DEFAULT_PRIORITY_BETA = 0.4;
     private final int batchSize;
 
     private IExpReplay<A> expReplay;
@@ -51,7 +55,21 @@ public class ReplayMemoryExperienceHandler<A> implements ExperienceHandler<A, St
     }
 
     public ReplayMemoryExperienceHandler(Configuration configuration, Random random) {
-        this(new ExpReplay<A>(configuration.maxReplayMemorySize, configuration.batchSize, random));
+        this(createExpReplay(configuration, random));
+    }
+
+    private static <A> IExpReplay<A> createExpReplay(Configuration configuration, Random random) {
+        switch (configuration.replayMemoryType) {
+            case Columnar:
+                return new ColumnarExpReplay<A>(configuration.maxReplayMemorySize, configuration.batchSize, random);
+
+            case Prioritized:
+                return new PrioritizedExpReplay<A>(configuration.maxReplayMemorySize, configuration.batchSize, random,
+                        configuration.priorityAlpha, configuration.priorityBeta);
+
+            default:
+                return new ExpReplay<A>(configuration.maxReplayMemorySize, configuration.batchSize, random);
+        }
     }
 
     public void addExperience(Observation observation, A action, double reward, boolean isTerminal) {
@@ -108,5 +126,33 @@ public class ReplayMemoryExperienceHandler<A> implements ExperienceHandler<A, St
          */
         @Builder.Default
         private int batchSize = DEFAULT_BATCH_SIZE;
+
+        /**
+         * The kind of replay memory. Default is Queue.
+         */
+        @Builder.Default
+        private ReplayMemoryType replayMemoryType = ReplayMemoryType.Queue;
+
+        /**
+         * With the Prioritized replay memory, how much prioritization is used, 0 being uniform. Default is 0.6
+         */
+        @Builder.Default
+        private double priorityAlpha = DEFAULT_PRIORITY_ALPHA;
+
+        /**
+         * With the Prioritized replay memory, how much the importance-sampling weights compensate for the
+         * prioritization, 1 being full compensation. Default is 0.4
+         */
+        @Builder.Default
+        private double priorityBeta = DEFAULT_PRIORITY_BETA;
     }
+
+    /**
+     * <ul>
+     *     <li>Queue: transitions are kept as objects, see {@link ExpReplay}</li>
+     *     <li>Columnar: observations are kept in ring-buffer INDArrays and sampled uniformly, see {@link ColumnarExpReplay}</li>
+     *     <li>Prioritized: as Columnar, but sampled by TD-error, see {@link PrioritizedExpReplay}</li>
+     * </ul>
+     */
+    public enum ReplayMemoryType { Queue, Columnar, Prioritized }
 }
@@ -0,0 +1,125 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.experience;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.rl4j.agent.learning.update.Features;
+import org.deeplearning4j.rl4j.learning.sync.PrioritizedExpReplay;
+import org.deeplearning4j.rl4j.observation.Observation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+
+/**
+ * A batch of {@link StateActionRewardState transitions} sampled from a columnar replay memory. In addition to the
+ * transitions themselves, it holds the observations and next observations already gathered into batch tensors, so
+ * that the update algorithms can use them as is. The observations of the transitions are views of these tensors.
+ *
+ * @param <A> Action type
+ */
+public class TransitionBatch<A> extends ArrayList<StateActionRewardState<A>> {
+
+    /**
+     * The observations of the batch, one row per transition. Null if the batch is empty
+     */
+    @Getter
+    private final Features observations;
+
+    /**
+     * The next observations of the batch, one row per transition. Null if the batch is empty
+     */
+    @Getter
+    private final Features nextObservations;
+
+    /**
+     * The indices of the sampled transitions in the replay memory
+     */
+    @Getter
+    private final int[] indices;
+
+    /**
+     * The importance-sampling weights of the transitions, or null if the transitions were sampled uniformly
+     */
+    @Getter
+    private final double[] weights;
+
+    private final PrioritizedExpReplay<A> source;
+
+    /**
+     * Create an empty batch
+     */
+    public TransitionBatch() {
+        observations = null;
+        nextObservations = null;
+        indices = new int[0];
+        weights = null;
+        source = null;
+    }
+
+    public TransitionBatch(@NonNull INDArray[] observations, @NonNull INDArray[] nextObservations, @NonNull int[] indices,
+                           @NonNull A[] actions, @NonNull double[] rewards, @NonNull boolean[] isTerminal) {
+        this(observations, nextObservations, indices, actions, rewards, isTerminal, null, null);
+    }
+
+    public TransitionBatch(@NonNull INDArray[] observations, @NonNull INDArray[] nextObservations, @NonNull int[] indices,
+                           @NonNull A[] actions, @NonNull double[] rewards, @NonNull boolean[] isTerminal,
+                           double[] weights, PrioritizedExpReplay<A> source) {
+        super(indices.length);
+
+        this.observations = new Features(observations);
+        this.nextObservations = new Features(nextObservations);
+        this.indices = indices;
+        this.weights = weights;
+        this.source = source;
+
+        for (int i = 0; i < indices.length; ++i) {
+            StateActionRewardState<A> transition = new StateActionRewardState<>(rowOf(observations, i), actions[i], rewards[i], isTerminal[i]);
+            transition.setNextObservation(rowOf(nextObservations, i));
+            add(transition);
+        }
+    }
+
+    /**
+     * @return True if the batch was sampled by priority, and the priorities should be updated with {@link #updatePriorities(double[])}
+     */
+    public boolean isPrioritized() {
+        return source != null;
+    }
+
+    /**
+     * Update the priorities of the sampled transitions in the replay memory. Does nothing if the batch was sampled uniformly.
+     * @param tdErrors The TD-errors of the transitions, in batch order
+     */
+    public void updatePriorities(@NonNull double[] tdErrors) {
+        if (source != null) {
+            source.updatePriorities(indices, tdErrors);
+        }
+    }
+
+    private static Observation rowOf(INDArray[] channels, int idx) {
+        INDArray[] row = new INDArray[channels.length];
+        for (int channelIdx = 0; channelIdx < channels.length; ++channelIdx) {
+            row[channelIdx] = channels[channelIdx].get(NDArrayIndex.interval(idx, idx + 1));
+        }
+
+        return new Observation(row);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.rl4j.experience.StateActionRewardState;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
+import org.deeplearning4j.rl4j.observation.Observation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.rng.Random;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Exp Replay implementation that keeps the transitions in columns instead of objects: observations and next
+ * observations are copied into pre-allocated ring-buffer INDArrays (one row per transition), and actions, rewards and
+ * terminal flags into primitive arrays.
+ *
+ * Stored transitions are not referenced after {@link #store(StateActionRewardState)}, and sampled batches are
+ * gathered with a single pullRows per channel into a {@link TransitionBatch}, instead of a dup() of every observation.
+ *
+ * Observations must have a batch size of 1 as dimension 0 (see {@link org.deeplearning4j.rl4j.helper.INDArrayHelper#forceCorrectShape(INDArray)}),
+ * and must keep the same shapes during the training.
+ *
+ * @param <A> Action type
+ */
+public class ColumnarExpReplay<A> implements IExpReplay<A> {
+
+    private final int batchSize;
+    protected final Random rnd;
+
+    /**
+     * The maximum number of stored transitions
+     */
+    @Getter
+    private final int maxSize;
+
+    private long[][] shapeByChannel;
+    private INDArray[] observations;
+    private INDArray[] nextObservations;
+    private final Object[] actions;
+    private final double[] rewards;
+    private final boolean[] isTerminal;
+
+    private int position = 0;
+    private int size = 0;
+
+    public ColumnarExpReplay(int maxSize, int batchSize, @NonNull Random rnd) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size should be positive value");
+        }
+
+        this.maxSize = maxSize;
+        this.batchSize = batchSize;
+        this.rnd = rnd;
+
+        actions = new Object[maxSize];
+        rewards = new double[maxSize];
+        isTerminal = new boolean[maxSize];
+    }
+
+    /**
+     * @return The number of stored transitions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param stateActionRewardState a new transition to store. Its observations are copied, the transition itself is not kept.
+     */
+    @Override
+    public void store(@NonNull StateActionRewardState<A> stateActionRewardState) {
+        Observation observation = stateActionRewardState.getObservation();
+        Observation nextObservation = stateActionRewardState.getNextObservation();
+        if (observation == null || observation.isSkipped() || nextObservation == null || nextObservation.isSkipped()) {
+            throw new IllegalArgumentException("Transitions with missing or skipped observations can't be stored");
+        }
+
+        if (shapeByChannel == null) {
+            allocate(observation);
+        }
+
+        int slot = position;
+        copyInto(observations, slot, observation);
+        copyInto(nextObservations, slot, nextObservation);
+        actions[slot] = stateActionRewardState.getAction();
+        rewards[slot] = stateActionRewardState.getReward();
+        isTerminal[slot] = stateActionRewardState.isTerminal();
+
+        position = (position + 1) % maxSize;
+        size = Math.min(size + 1, maxSize);
+
+        onStored(slot);
+    }
+
+    /**
+     * @return a batch of uniformly sampled transitions
+     */
+    @Override
+    public TransitionBatch<A> getBatch() {
+        return getBatch(batchSize);
+    }
+
+    /**
+     * @param size The number of transitions to sample
+     * @return a batch of sampled transitions, empty if nothing was stored yet
+     */
+    public TransitionBatch<A> getBatch(int size) {
+        int actualBatchSize = Math.min(this.size, size);
+        if (actualBatchSize == 0) {
+            return new TransitionBatch<>();
+        }
+
+        return gather(sampleIndices(actualBatchSize));
+    }
+
+    @Override
+    public int getDesignatedBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return Math.min(size, batchSize);
+    }
+
+    /**
+     * Called after a transition was written to the storage
+     * @param slot The index of the transition in the storage
+     */
+    protected void onStored(int slot) {
+        // Do nothing
+    }
+
+    /**
+     * Select the transitions of a batch. The default implementation samples uniformly, without duplicates.
+     * @param batchSize The number of transitions to select, at most {@link #size()}
+     * @return The indices of the transitions in the storage
+     */
+    protected int[] sampleIndices(int batchSize) {
+        // Floyd's algorithm: exactly batchSize draws, no matter how full the storage is
+        int[] result = new int[batchSize];
+        IntSet selected = new IntOpenHashSet(batchSize);
+        int idx = 0;
+        for (int j = size - batchSize; j < size; ++j) {
+            int next = rnd.nextInt(j + 1);
+            if (!selected.add(next)) {
+                next = j;
+                selected.add(next);
+            }
+            result[idx++] = next;
+        }
+
+        return result;
+    }
+
+    /**
+     * Build a batch from the given transitions
+     * @param indices The indices of the transitions in the storage
+     * @return The batch
+     */
+    protected TransitionBatch<A> gather(int[] indices) {
+        return gather(indices, null, null);
+    }
+
+    /**
+     * Build a batch from the given transitions
+     * @param indices The indices of the transitions in the storage
+     * @param weights The importance-sampling weights of the transitions, null if sampled uniformly
+     * @param source The replay memory to report the TD-errors to, null if sampled uniformly
+     * @return The batch
+     */
+    protected TransitionBatch<A> gather(int[] indices, double[] weights, PrioritizedExpReplay<A> source) {
+        return new TransitionBatch<>(pull(observations, indices), pull(nextObservations, indices), indices,
+                actionsOf(indices), rewardsOf(indices), isTerminalOf(indices), weights, source);
+    }
+
+    private A[] actionsOf(int[] indices) {
+        Object[] result = new Object[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            result[i] = actions[indices[i]];
+        }
+
+        return (A[]) result;
+    }
+
+    private double[] rewardsOf(int[] indices) {
+        double[] result = new double[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            result[i] = rewards[indices[i]];
+        }
+
+        return result;
+    }
+
+    private boolean[] isTerminalOf(int[] indices) {
+        boolean[] result = new boolean[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            result[i] = isTerminal[indices[i]];
+        }
+
+        return result;
+    }
+
+    private INDArray[] pull(INDArray[] storage, int[] indices) {
+        INDArray[] result = new INDArray[storage.length];
+        for (int channelIdx = 0; channelIdx < storage.length; ++channelIdx) {
+            long[] batchShape = shapeByChannel[channelIdx].clone();
+            batchShape[0] = indices.length;
+            result[channelIdx] = Nd4j.pullRows(storage[channelIdx], 1, indices).reshape(batchShape);
+        }
+
+        return result;
+    }
+
+    private void allocate(Observation observation) {
+        int numChannels = observation.numChannels();
+        // validate all channels first, so a rejected observation doesn't leave the storage half allocated
+        for (int channelIdx = 0; channelIdx < numChannels; ++channelIdx) {
+            INDArray channelData = observation.getChannelData(channelIdx);
+            if (channelData.rank() < 2) {
+                // sampled batches are reshaped to [batchSize, ...shape[1:]], which needs the batch dimension
+                throw new IllegalArgumentException("Observations should have a batch dimension, got shape "
+                        + Arrays.toString(channelData.shape()));
+            }
+            if (channelData.shape()[0] != 1) {
+                throw new IllegalArgumentException("Observations should have a batch size of 1 as dimension 0, got shape "
+                        + Arrays.toString(channelData.shape()));
+            }
+        }
+
+        shapeByChannel = new long[numChannels][];
+        observations = new INDArray[numChannels];
+        nextObservations = new INDArray[numChannels];
+        for (int channelIdx = 0; channelIdx < numChannels; ++channelIdx) {
+            INDArray channelData = observation.getChannelData(channelIdx);
+            shapeByChannel[channelIdx] = channelData.shape();
+            observations[channelIdx] = Nd4j.create(channelData.dataType(), maxSize, channelData.length());
+            nextObservations[channelIdx] = Nd4j.create(channelData.dataType(), maxSize, channelData.length());
+        }
+    }
+
+    private void copyInto(INDArray[] storage, int slot, Observation observation) {
+        if (observation.numChannels() != storage.length) {
+            throw new IllegalArgumentException("Expected " + storage.length + " channels, got " + observation.numChannels());
+        }
+
+        for (int channelIdx = 0; channelIdx < storage.length; ++channelIdx) {
+            INDArray channelData = observation.getChannelData(channelIdx);
+            if (channelData.length() != storage[channelIdx].columns()) {
+                throw new IllegalArgumentException("Observation shape changed: expected " + storage[channelIdx].columns()
+                        + " elements in channel " + channelIdx + ", got " + channelData.length());
+            }
+
+            storage[channelIdx].getRow(slot).assign(channelData.reshape(channelData.length()));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
+import org.nd4j.linalg.api.rng.Random;
+
+/**
+ * Prioritized Exp Replay, see https://arxiv.org/abs/1511.05952
+ *
+ * Transitions are sampled with probability p<sub>i</sub><sup>alpha</sup> / sum<sub>k</sub> p<sub>k</sub><sup>alpha</sup>,
+ * where p<sub>i</sub> is the last absolute TD-error of the transition (new transitions get the max priority seen so far).
+ * Sampling is stratified: the priority mass is split in batch size segments, and one transition is drawn from each
+ * segment with a {@link SumTree}. The same transition may therefore appear more than once in a batch.
+ *
+ * Sampled batches carry the importance-sampling weights (N * P(i))<sup>-beta</sup>, normalized by the max weight of the batch,
+ * and the TD-errors should be reported back with {@link TransitionBatch#updatePriorities(double[])}.
+ *
+ * @param <A> Action type
+ */
+public class PrioritizedExpReplay<A> extends ColumnarExpReplay<A> {
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * How much prioritization is used, 0 being uniform sampling
+     */
+    @Getter
+    private final double alpha;
+
+    /**
+     * How much the importance-sampling weights compensate for the non-uniform sampling, 1 being full compensation
+     */
+    @Getter @Setter
+    private double beta;
+
+    private final SumTree tree;
+    private double maxPriority = 1.0;
+
+    public PrioritizedExpReplay(int maxSize, int batchSize, @NonNull Random rnd, double alpha, double beta) {
+        super(maxSize, batchSize, rnd);
+
+        if (alpha < 0.0) {
+            throw new IllegalArgumentException("Alpha should be non-negative value");
+        }
+
+        this.alpha = alpha;
+        this.beta = beta;
+        tree = new SumTree(maxSize);
+    }
+
+    /**
+     * Update the priorities of transitions from their TD-errors
+     * @param indices The indices of the transitions in the storage, as returned by {@link TransitionBatch#getIndices()}
+     * @param tdErrors The TD-errors of the transitions
+     */
+    public void updatePriorities(@NonNull int[] indices, @NonNull double[] tdErrors) {
+        if (indices.length != tdErrors.length) {
+            throw new IllegalArgumentException("Expected " + indices.length + " TD-errors, got " + tdErrors.length);
+        }
+
+        for (int i = 0; i < indices.length; ++i) {
+            double priority = Math.abs(tdErrors[i]) + EPSILON;
+            maxPriority = Math.max(maxPriority, priority);
+            tree.set(indices[i], Math.pow(priority, alpha));
+        }
+    }
+
+    /**
+     * @param index The index of the transition in the storage
+     * @return The probability to sample the transition
+     */
+    public double getProbability(int index) {
+        return tree.get(index) / tree.total();
+    }
+
+    @Override
+    protected void onStored(int slot) {
+        tree.set(slot, Math.pow(maxPriority, alpha));
+    }
+
+    @Override
+    protected int[] sampleIndices(int batchSize) {
+        double segment = tree.total() / batchSize;
+        int[] result = new int[batchSize];
+        for (int i = 0; i < batchSize; ++i) {
+            double value = Math.min((i + rnd.nextDouble()) * segment, Math.nextDown(tree.total()));
+            result[i] = tree.find(value);
+        }
+
+        return result;
+    }
+
+    @Override
+    protected TransitionBatch<A> gather(int[] indices) {
+        double total = tree.total();
+        double[] weights = new double[indices.length];
+        double maxWeight = 0.0;
+        for (int i = 0; i < indices.length; ++i) {
+            weights[i] = Math.pow(size() * tree.get(indices[i]) / total, -beta);
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        for (int i = 0; i < indices.length; ++i) {
+            weights[i] /= maxWeight;
+        }
+
+        return gather(indices, weights, this);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import lombok.Getter;
+
+/**
+ * A binary tree where each node holds the sum of its children, used to sample elements proportionally to their
+ * priority in O(log n). Leaves hold the priorities of elements [0, capacity).
+ */
+public class SumTree {
+
+    @Getter
+    private final int capacity;
+
+    // tree[1] is the root, leaves are at [leafOffset, leafOffset + capacity)
+    private final int leafOffset;
+    private final double[] tree;
+
+    /**
+     * @param capacity The number of elements
+     */
+    public SumTree(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive value");
+        }
+
+        this.capacity = capacity;
+
+        int offset = 1;
+        while (offset < capacity) {
+            offset <<= 1;
+        }
+        leafOffset = offset;
+        tree = new double[2 * offset];
+    }
+
+    /**
+     * @return The sum of all priorities
+     */
+    public double total() {
+        return tree[1];
+    }
+
+    /**
+     * @param index The index of the element
+     * @return The priority of the element
+     */
+    public double get(int index) {
+        return tree[leafOffset + index];
+    }
+
+    /**
+     * Set the priority of an element
+     * @param index The index of the element
+     * @param priority The new priority, must be non-negative
+     */
+    public void set(int index, double priority) {
+        if (index < 0 || index >= capacity) {
+            throw new IllegalArgumentException("Index " + index + " is out of range [0, " + capacity + ")");
+        }
+        if (priority < 0.0 || Double.isNaN(priority)) {
+            throw new IllegalArgumentException("Priority should be non-negative value, got " + priority);
+        }
+
+        // parents are recomputed from their children: propagating deltas leaves rounding residue in subtrees
+        // whose leaves are all zero, and find() could then descend into them
+        int node = leafOffset + index;
+        tree[node] = priority;
+        node >>= 1;
+        while (node > 0) {
+            tree[node] = tree[node << 1] + tree[(node << 1) + 1];
+            node >>= 1;
+        }
+    }
+
+    /**
+     * Find the element where the cumulative sum of priorities reaches <i>value</i>. Only elements with a non-zero
+     * priority are returned: values out of range [0, total()) are clamped to the first or last such element.
+     * @param value A value in range [0, total())
+     * @return The index of the element
+     */
+    public int find(double value) {
+        if (!(total() > 0.0)) {
+            throw new IllegalStateException("Can't find an element, all priorities are zero");
+        }
+
+        value = Math.max(value, 0.0);
+        int node = 1;
+        while (node < leafOffset) {
+            // only descend into subtrees with a non-zero sum, so the leaf found always has a non-zero priority
+            int left = node << 1;
+            if (tree[left + 1] <= 0.0 || (value < tree[left] && tree[left] > 0.0)) {
+                node = left;
+            } else {
+                value -= tree[left];
+                node = left + 1;
+            }
+        }
+
+        return node - leafOffset;
+    }
+}
@@ -21,11 +21,14 @@ package org.deeplearning4j.rl4j.agent.learning.algorithm.dqn;
 import org.deeplearning4j.rl4j.agent.learning.update.Features;
 import org.deeplearning4j.rl4j.agent.learning.update.FeaturesLabels;
 import org.deeplearning4j.rl4j.experience.StateActionRewardState;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
+import org.deeplearning4j.rl4j.learning.sync.PrioritizedExpReplay;
 import org.deeplearning4j.rl4j.network.CommonLabelNames;
 import org.deeplearning4j.rl4j.network.CommonOutputNames;
 import org.deeplearning4j.rl4j.network.IOutputNeuralNet;
 import org.deeplearning4j.rl4j.network.NeuralNetOutput;
 import org.deeplearning4j.rl4j.observation.Observation;
+import org.deeplearning4j.rl4j.support.MockRandom;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -146,6 +149,32 @@ public class StandardDQNTest {
 
     }
 
+    @Test
+    public void when_batchIsPrioritized_expect_tdErrorsReportedToReplayMemory() {
+
+        // Assemble
+        PrioritizedExpReplay<Integer> expReplay = new PrioritizedExpReplay<Integer>(2, 2, new MockRandom(new double[] { 0.1, 0.9 }, null), 1.0, 1.0);
+        expReplay.store(buildTransition(buildObservation(new double[]{1.1, 2.2}),
+                0, 1.0, false, buildObservation(new double[]{11.0, 22.0})));
+        expReplay.store(buildTransition(buildObservation(new double[]{3.3, 4.4}),
+                1, 2.0, true, buildObservation(new double[]{33.0, 44.0})));
+        TransitionBatch<Integer> stateActionRewardStates = expReplay.getBatch();
+
+        StandardDQN sut = new StandardDQN(qNetworkMock, targetQNetworkMock, configuration);
+
+        // Act
+        FeaturesLabels result = sut.compute(stateActionRewardStates);
+
+        // Assert
+        INDArray evaluatedQValues = result.getLabels(CommonLabelNames.QValues);
+        assertEquals((1.0 + 0.5 * 22.0), evaluatedQValues.getDouble(0, 0), 0.0001);
+        assertEquals(2.0, evaluatedQValues.getDouble(1, 1), 0.0001);
+
+        // TD-errors are 12.0 - 1.1 and 2.0 - 4.4
+        assertEquals(10.9 / 13.3, expReplay.getProbability(0), 0.0001);
+        assertEquals(2.4 / 13.3, expReplay.getProbability(1), 0.0001);
+    }
+
     private Observation buildObservation(double[] data) {
         return new Observation(Nd4j.create(data).reshape(1, 2));
     }
@@ -0,0 +1,160 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import org.deeplearning4j.rl4j.experience.StateActionRewardState;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
+import org.deeplearning4j.rl4j.observation.Observation;
+import org.deeplearning4j.rl4j.support.MockRandom;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.*;
+
+public class ColumnarExpReplayTest {
+    @Test
+    public void when_storingElementWithStorageNotFull_expect_elementStored() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(null, new int[] { 0 });
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(2, 1, randomMock);
+
+        // Act
+        sut.store(buildTransition(buildObservation(1.0), 123, 234, buildObservation(2.0)));
+        TransitionBatch<Integer> results = sut.getBatch(1);
+
+        // Assert
+        assertEquals(1, sut.size());
+        assertEquals(1, results.size());
+        assertEquals(123, (int)results.get(0).getAction());
+        assertEquals(234, (int)results.get(0).getReward());
+        assertEquals(1.0, results.get(0).getObservation().getData().getDouble(0, 0), 0.0);
+        assertEquals(2.0, results.get(0).getNextObservation().getData().getDouble(0, 0), 0.0);
+    }
+
+    @Test
+    public void when_storingElementWithStorageFull_expect_oldestElementReplacedByStored() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(null, new int[] { 0, 1 });
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(2, 1, randomMock);
+
+        // Act
+        sut.store(buildTransition(buildObservation(1.0), 1, 2, buildObservation(1.5)));
+        sut.store(buildTransition(buildObservation(3.0), 3, 4, buildObservation(3.5)));
+        sut.store(buildTransition(buildObservation(5.0), 5, 6, buildObservation(5.5)));
+        TransitionBatch<Integer> results = sut.getBatch(2);
+
+        // Assert
+        assertEquals(2, sut.size());
+        assertEquals(2, results.size());
+
+        // Slot 0 was overwritten by the third transition
+        assertArrayEquals(new int[] { 0, 1 }, results.getIndices());
+        assertEquals(5, (int)results.get(0).getAction());
+        assertEquals(6, (int)results.get(0).getReward());
+        assertEquals(5.0, results.get(0).getObservation().getData().getDouble(0, 0), 0.0);
+        assertEquals(5.5, results.get(0).getNextObservation().getData().getDouble(0, 0), 0.0);
+        assertEquals(3, (int)results.get(1).getAction());
+        assertEquals(4, (int)results.get(1).getReward());
+    }
+
+    @Test
+    public void when_randomGivesDuplicates_expect_noDuplicatesInBatch() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(null, new int[] { 1, 1, 1 });
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(5, 3, randomMock);
+        for (int i = 0; i < 5; ++i) {
+            sut.store(buildTransition(buildObservation(i), i, i, buildObservation(i)));
+        }
+
+        // Act
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert
+        assertEquals(3, results.size());
+        assertArrayEquals(new int[] { 1, 3, 4 }, results.getIndices());
+    }
+
+    @Test
+    public void when_gettingBatch_expect_observationsInBatchTensors() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(null, new int[] { 0, 1, 2 });
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(10, 3, randomMock);
+        for (int i = 0; i < 3; ++i) {
+            INDArray data = Nd4j.create(new double[] { i, 10 + i }).reshape(1, 2);
+            INDArray nextData = Nd4j.create(new double[] { 100 + i, 110 + i }).reshape(1, 2);
+            sut.store(buildTransition(new Observation(data), i, i, new Observation(nextData)));
+        }
+
+        // Act
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert
+        INDArray observations = results.getObservations().get(0);
+        INDArray nextObservations = results.getNextObservations().get(0);
+        assertArrayEquals(new long[] { 3, 2 }, observations.shape());
+        assertEquals(3, results.getObservations().getBatchSize());
+        for (int i = 0; i < 3; ++i) {
+            int idx = results.getIndices()[i];
+            assertEquals(idx, observations.getDouble(i, 0), 0.0);
+            assertEquals(10 + idx, observations.getDouble(i, 1), 0.0);
+            assertEquals(110 + idx, nextObservations.getDouble(i, 1), 0.0);
+            assertArrayEquals(new long[] { 1, 2 }, results.get(i).getObservation().getData().shape());
+        }
+        assertNull(results.getWeights());
+        assertFalse(results.isPrioritized());
+    }
+
+    @Test
+    public void when_storageIsEmpty_expect_emptyBatch() {
+        // Arrange
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(10, 3, new MockRandom(null, new int[0]));
+
+        // Act
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert
+        assertEquals(0, sut.getBatchSize());
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_nextObservationIsSkipped_expect_exception() {
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(10, 3, new MockRandom(null, new int[0]));
+        sut.store(buildTransition(buildObservation(1.0), 1, 1, Observation.SkippedObservation));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_observationHasNoBatchDimension_expect_exception() {
+        ColumnarExpReplay<Integer> sut = new ColumnarExpReplay<Integer>(10, 3, new MockRandom(null, new int[0]));
+        Observation observation = new Observation(Nd4j.create(new double[] { 1.0, 2.0 }));
+        sut.store(buildTransition(observation, 1, 1, observation));
+    }
+
+    private StateActionRewardState<Integer> buildTransition(Observation observation, Integer action, double reward, Observation nextObservation) {
+        StateActionRewardState<Integer> result = new StateActionRewardState<Integer>(observation, action, reward, false);
+        result.setNextObservation(nextObservation);
+
+        return result;
+    }
+
+    private Observation buildObservation(double value) {
+        return new Observation(Nd4j.create(new double[] { value }).reshape(1, 1));
+    }
+}
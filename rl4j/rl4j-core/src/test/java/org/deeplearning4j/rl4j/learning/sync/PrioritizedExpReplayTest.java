@@ -0,0 +1,201 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2021 Deeplearning4j Contributors
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import org.deeplearning4j.rl4j.experience.StateActionRewardState;
+import org.deeplearning4j.rl4j.experience.TransitionBatch;
+import org.deeplearning4j.rl4j.observation.Observation;
+import org.deeplearning4j.rl4j.support.MockRandom;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.*;
+
+public class PrioritizedExpReplayTest {
+
+    @Test
+    public void when_findingInSumTree_expect_elementCoveringValue() {
+        // Arrange
+        SumTree sut = new SumTree(5);
+        sut.set(0, 1.0);
+        sut.set(1, 0.0);
+        sut.set(2, 2.0);
+        sut.set(3, 0.5);
+        sut.set(4, 1.5);
+
+        // Act & Assert
+        assertEquals(5.0, sut.total(), 1e-9);
+        assertEquals(0, sut.find(0.0));
+        assertEquals(0, sut.find(0.99));
+        assertEquals(2, sut.find(1.0));
+        assertEquals(2, sut.find(2.99));
+        assertEquals(3, sut.find(3.2));
+        assertEquals(4, sut.find(4.99));
+
+        sut.set(2, 0.0);
+        assertEquals(3.0, sut.total(), 1e-9);
+        assertEquals(3, sut.find(1.2));
+    }
+
+    @Test
+    public void when_prioritiesAreReset_expect_zeroElementsNeverFound() {
+        // Arrange
+        SumTree sut = new SumTree(8);
+        for (int i = 0; i < 8; ++i) {
+            sut.set(i, 0.1 * (i + 1));
+        }
+
+        // Act
+        for (int i = 1; i < 8; ++i) {
+            sut.set(i, 0.0);
+        }
+
+        // Assert: no rounding residue is left in the emptied subtrees
+        assertEquals(0.1, sut.total(), 0.0);
+        assertEquals(0, sut.find(0.0));
+        assertEquals(0, sut.find(Math.nextDown(sut.total())));
+        assertEquals(0, sut.find(1.0));
+    }
+
+    @Test
+    public void when_valueOutOfRange_expect_clampedToNonZeroElements() {
+        // Arrange
+        SumTree sut = new SumTree(5);
+        sut.set(1, 1.0);
+        sut.set(2, 2.0);
+
+        // Act & Assert
+        assertEquals(1, sut.find(-1.0));
+        assertEquals(2, sut.find(3.0));
+        assertEquals(2, sut.find(100.0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void when_allPrioritiesAreZero_expect_exception() {
+        new SumTree(4).find(0.0);
+    }
+
+    @Test
+    public void when_partiallyFilled_expect_onlyFilledElementsAndFiniteWeights() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(new double[] { 0.0, 0.5, 0.999999, 0.999999 }, null);
+        PrioritizedExpReplay<Integer> sut = new PrioritizedExpReplay<Integer>(10, 4, randomMock, 0.6, 0.4);
+        for (int i = 0; i < 3; ++i) {
+            sut.store(buildTransition(i));
+        }
+        sut.updatePriorities(new int[] { 0, 1, 2 }, new double[] { 0.3, 0.7, 0.1 });
+
+        // Act
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert
+        for (int i = 0; i < results.size(); ++i) {
+            assertTrue(results.getIndices()[i] < 3);
+            assertTrue(Double.isFinite(results.getWeights()[i]));
+            assertTrue(results.getWeights()[i] > 0.0);
+        }
+    }
+
+    @Test
+    public void when_storingElements_expect_maxPriority() {
+        // Arrange
+        PrioritizedExpReplay<Integer> sut = new PrioritizedExpReplay<Integer>(4, 2, new MockRandom(null, null), 0.5, 1.0);
+
+        // Act
+        for (int i = 0; i < 4; ++i) {
+            sut.store(buildTransition(i));
+        }
+
+        // Assert
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(0.25, sut.getProbability(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void when_updatingPriorities_expect_samplingByTDError() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(new double[] { 0.75, 0.75 }, null);
+        PrioritizedExpReplay<Integer> sut = new PrioritizedExpReplay<Integer>(4, 2, randomMock, 1.0, 1.0);
+        for (int i = 0; i < 4; ++i) {
+            sut.store(buildTransition(i));
+        }
+
+        // Act
+        sut.updatePriorities(new int[] { 0, 1, 2, 3 }, new double[] { 1.0, 0.0, -3.0, 0.0 });
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert
+        assertEquals(0.25, sut.getProbability(0), 1e-5);
+        assertEquals(0.75, sut.getProbability(2), 1e-5);
+        assertTrue(results.isPrioritized());
+
+        // Segments are [0, 2) and [2, 4): values 1.5 and 3.5 both fall in element 2
+        assertArrayEquals(new int[] { 2, 2 }, results.getIndices());
+        assertEquals(2, (int) results.get(0).getAction());
+        assertArrayEquals(new double[] { 1.0, 1.0 }, results.getWeights(), 1e-9);
+    }
+
+    @Test
+    public void when_reportingTDErrorsOfBatch_expect_prioritiesUpdated() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(new double[] { 0.1, 0.9 }, null);
+        PrioritizedExpReplay<Integer> sut = new PrioritizedExpReplay<Integer>(2, 2, randomMock, 1.0, 1.0);
+        sut.store(buildTransition(0));
+        sut.store(buildTransition(1));
+        TransitionBatch<Integer> batch = sut.getBatch();
+
+        // Act
+        assertArrayEquals(new int[] { 0, 1 }, batch.getIndices());
+        batch.updatePriorities(new double[] { 0.0, 4.0 });
+
+        // Assert
+        assertTrue(sut.getProbability(0) < 1e-5);
+        assertEquals(1.0, sut.getProbability(1), 1e-5);
+    }
+
+    @Test
+    public void when_prioritiesDiffer_expect_weightsCompensateSampling() {
+        // Arrange
+        MockRandom randomMock = new MockRandom(new double[] { 0.0, 0.99 }, null);
+        PrioritizedExpReplay<Integer> sut = new PrioritizedExpReplay<Integer>(2, 2, randomMock, 1.0, 1.0);
+        sut.store(buildTransition(0));
+        sut.store(buildTransition(1));
+        sut.updatePriorities(new int[] { 0, 1 }, new double[] { 1.0, 3.0 });
+
+        // Act
+        TransitionBatch<Integer> results = sut.getBatch();
+
+        // Assert: P = { 0.25, 0.75 }, weights = (N * P)^-1 normalized by the max
+        assertArrayEquals(new int[] { 0, 1 }, results.getIndices());
+        assertEquals(1.0, results.getWeights()[0], 1e-5);
+        assertEquals(1.0 / 3.0, results.getWeights()[1], 1e-5);
+    }
+
+    private StateActionRewardState<Integer> buildTransition(int value) {
+        StateActionRewardState<Integer> result = new StateActionRewardState<Integer>(buildObservation(value), value, value, false);
+        result.setNextObservation(buildObservation(value + 1));
+
+        return result;
+    }
+
+    private Observation buildObservation(double value) {
+        return new Observation(Nd4j.create(new double[] { value }).reshape(1, 1));
+    }
+}